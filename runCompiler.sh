@@ -4,4 +4,4 @@ cd classes
 export CLASSPATH=""
 for file in `ls ../lib/`; do export CLASSPATH=$CLASSPATH:../lib/$file; done
 
-java -cp $CLASSPATH:. CTdsCompiler ../$1
+java -cp $CLASSPATH:. CTdsCompiler ../$1 "${@:2}"
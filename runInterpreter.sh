@@ -3,4 +3,4 @@ cd classes
 export CLASSPATH=""
 for file in `ls ../lib/`; do export CLASSPATH=$CLASSPATH:../lib/$file; done
 
-java -cp $CLASSPATH:. CTdsInterpreter ../$1
\ No newline at end of file
+java -cp $CLASSPATH:. CTdsInterpreter ../$1 "${@:2}"
\ No newline at end of file
@@ -1,47 +1,140 @@
 import java.io.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.LinkedList;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 
 /**
- * This class provides some methods for generate the assembler code for the CTds language
+ * This class provides some methods for generate the x86-64 assembler code for the
+ * CTds language, following the System V calling convention: the first six int and
+ * boolean arguments are passed in %edi, %esi, %edx, %ecx, %r8d and %r9d, the first
+ * eight float arguments in %xmm0-%xmm7 and the rest on the stack. The frames are
+ * aligned to 16 bytes, the globals are accessed relative to %rip and the floats are
+ * computed in the xmm registers with the scalar SSE instructions. The indexes of
+ * the array elements are checked, unless the optimizer proved them in bounds, and
+ * an invalid index prints the error of the interpreter and exits.
  * @author Facundo Molina
  */
 public class AssemblerCodeGenerator {
 
+	private static final String[] int_argument_registers = {"edi","esi","edx","ecx","r8d","r9d"};
+	private static final String[] float_argument_registers = {"xmm0","xmm1","xmm2","xmm3","xmm4","xmm5","xmm6","xmm7"};
+	private static final String index_register = "r10";		// Register for the index of an array element
+	private static final String base_register = "r11";		// Register for the address of a global array
+
 	private static int labelIndex;					// Index labels counter
 	private static LinkedList<String> floatLabels; 	// Float labels to add at the end
-	
+	private static LinkedList<String> indexErrors;	// Code that reports each invalid index, to add at the end
+	private static LinkedList<String> indexFormats;	// Error message of each invalid index, to add at the end
+	private static LinkedList<Expression> pushedArguments;	// Arguments pushed for the next call
+	private static LinkedList<Location> parameters;		// Parameters of the current method
+	private static ArrayList<Integer> parameterOffsets;	// Offset of each parameter in the frame
+	private static boolean inMethod;				// True if a method was started
+	private static RegisterAllocator allocator;		// Registers of the current method
+	private static IdentityHashMap<DeclarationIdentifier,Integer> uses;	// Amount of reads of each variable of the current method
+	private static LinkedList<String> savedRegisters;	// Callee saved registers stored in the frame
+	private static ArrayList<Integer> savedOffsets;	// Offset of each saved register
+
 	/**
  	 * Generate assembler code from a given list of intermediate code statements
+ 	 * in the given file
  	 */
- 	public static void generateAssemblerCode(List<IntermediateCodeStatement> iCodeStatements) {
- 		
+ 	public static void generateAssemblerCode(List<IntermediateCodeStatement> iCodeStatements, String fileName) {
+
  		labelIndex = 0;
  		floatLabels = new LinkedList<String>();
+ 		indexErrors = new LinkedList<String>();
+ 		indexFormats = new LinkedList<String>();
+ 		pushedArguments = new LinkedList<Expression>();
+ 		parameters = new LinkedList<Location>();
+ 		parameterOffsets = new ArrayList<Integer>();
+ 		inMethod = false;
+ 		savedRegisters = new LinkedList<String>();
+ 		savedOffsets = new ArrayList<Integer>();
 
  		try {
 
  			// Output file
-			PrintWriter writer = new PrintWriter("../assembler.s", "UTF-8");
+			PrintWriter writer = new PrintWriter(fileName, "UTF-8");
 			writer.println("\t.text");
-			
-			for (IntermediateCodeStatement intermediateCodeStmt: iCodeStatements) {
+
+			Iterator<List<IntermediateCodeStatement>> methods = ControlFlowGraph.getMethods(iCodeStatements).iterator();
+			List<IntermediateCodeStatement> statements = new ArrayList<IntermediateCodeStatement>(iCodeStatements);
+			StringBuilder code = new StringBuilder();
+			for (int i = 0; i < statements.size(); i++) {
+				IntermediateCodeStatement intermediateCodeStmt = statements.get(i);
+
+				if (intermediateCodeStmt.getInstruction() == IntermediateCodeInstruction.INITML) {
+					// Allocate the registers of the method
+					List<IntermediateCodeStatement> method = methods.next();
+					allocator = new RegisterAllocator(method);
+					uses = countUses(method);
+				}
+
+				if (i+1 < statements.size() && isTailCall(intermediateCodeStmt,statements.get(i+1))) {
+					// The called method returns directly to the caller of the
+					// current method, so the return is not needed
+					code.append(generateCodeForTailCall((TwoAddressStatement)intermediateCodeStmt));
+					i++;
+					continue;
+				}
+
+				if (i+1 < statements.size() && isCompareAndBranch(intermediateCodeStmt,statements.get(i+1))) {
+					// The condition is only read by the next jump, so the flags of
+					// the comparison are used directly
+					code.append(generateCodeForCompareAndBranch((ThreeAddressStatement)intermediateCodeStmt,(OneAddressStatement)statements.get(i+1)));
+					i++;
+					continue;
+				}
 
 				// Generate the assembler code for each intermediate code statement
-				writer.print(generateCodeForStatement(intermediateCodeStmt));
+				code.append(generateCodeForStatement(intermediateCodeStmt));
 
 			}
 
-			
-			for (String floatLbl : floatLabels) {	
-				
+			// The last method could end without a return statement
+			code.append(generateCodeForMethodEnd());
+
+			// Add the code that reports the invalid indexes
+			for (String indexError : indexErrors) {
+				code.append(indexError);
+			}
+			if (!indexErrors.isEmpty()) {
+				code.append(generateCodeForIndexError());
+			}
+
+			// Write the code of the methods after the peephole optimization
+			writer.print(PeepholeOptimizer.optimize(code.toString()));
+
+			// Write the function that prints the floats
+			writer.print(generateCodeForPrintFloat());
+
+			writer.println("\t"+".section .rodata");
+
+			// Write the mask that flips the sign of a float
+			writer.println("\t"+".align 16");
+			writer.println(".floatsign:");
+			writer.println("\t"+".long -2147483648, 0, 0, 0");
+			for (String floatLbl : floatLabels) {
+
 				// Write each float label at the end of the file
 				writer.print(floatLbl);
-			
+
 			}
 
+			// Write the format strings used by the print statements
+			writer.print(generateCodeForPrintFormats());
+			for (String indexFormat : indexFormats) {
+
+				// Write the error message of each invalid index
+				writer.print(indexFormat);
+
+			}
+
+			// The stack is not executable
+			writer.println("\t"+".section .note.GNU-stack,\"\",@progbits");
+
 			writer.close();
 
 
@@ -63,14 +156,14 @@ public class AssemblerCodeGenerator {
  	 * Generate the assembler code for a given IntermediateCodeStatement
  	 */
  	private static String generateCodeForStatement(IntermediateCodeStatement stmt) {
- 		
+
  		IntermediateCodeInstruction instruction = stmt.getInstruction();
 
  		switch (instruction) {
  			case ADDI:
  				return generateCodeForIntegerArithmeticalOperation((ThreeAddressStatement)stmt,"addl");
  			case ADDF:
-				return generateCodeForFloatArithmeticalOperation((ThreeAddressStatement)stmt,"fadds");
+				return generateCodeForFloatArithmeticalOperation((ThreeAddressStatement)stmt,"addss");
  			case AND:
  				return generateCodeForLogicalOperation((ThreeAddressStatement)stmt,"andl");
  			case ASSIGN:
@@ -80,16 +173,16 @@ public class AssemblerCodeGenerator {
  			case DIVI:
  				return generateCodeForIntegerArithmeticalOperation((ThreeAddressStatement)stmt,"idivl");
  			case DIVF:
- 				return generateCodeForFloatArithmeticalOperation((ThreeAddressStatement)stmt,"fdivs");
+ 				return generateCodeForFloatArithmeticalOperation((ThreeAddressStatement)stmt,"divss");
  			case EQ:
- 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"je");
+ 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"e");
  			case GLOBAL:
  				return generateCodeForGlobal((OneAddressStatement)stmt);
  			case GREAT:
- 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"jg");
+ 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"g");
  			case GREATEQ:
- 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"jge");
- 			case INITML: 
+ 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"ge");
+ 			case INITML:
  				return generateCodeForInitMl((OneAddressStatement)stmt);
  			case JUMP:
  				return generateCodeForJump((OneAddressStatement)stmt);
@@ -98,21 +191,25 @@ public class AssemblerCodeGenerator {
  			case LABEL:
  				return generateCodeForLabel((OneAddressStatement)stmt);
  			case LESS:
- 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"jl");
+ 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"l");
  			case LESSEQ:
- 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"jle");
+ 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"le");
  			case MOD:
  				return generateCodeForIntegerArithmeticalOperation((ThreeAddressStatement)stmt,"mod");
  			case MULTI:
  				return generateCodeForIntegerArithmeticalOperation((ThreeAddressStatement)stmt,"imull");
  			case MULTF:
- 				return generateCodeForFloatArithmeticalOperation((ThreeAddressStatement)stmt,"fmuls");
+ 				return generateCodeForFloatArithmeticalOperation((ThreeAddressStatement)stmt,"mulss");
  			case NEQ:
- 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"jne");
+ 				return generateCodeForRelationalOperation((ThreeAddressStatement)stmt,"ne");
  			case NOT:
  				return generateCodeForNot((TwoAddressStatement)stmt);
  			case OR:
  				return generateCodeForLogicalOperation((ThreeAddressStatement)stmt,"orl");
+ 			case PARAM:
+ 				return generateCodeForParam((OneAddressStatement)stmt);
+ 			case PRINT:
+ 				return generateCodeForPrint((OneAddressStatement)stmt);
  			case PUSH:
  				return generateCodeForPush((OneAddressStatement)stmt);
  			case RESERVE:
@@ -122,7 +219,7 @@ public class AssemblerCodeGenerator {
  			case SUBI:
  				return generateCodeForIntegerArithmeticalOperation(stmt,"subl");
  			case SUBF:
- 				return generateCodeForFloatArithmeticalOperation(stmt,"fsubs");
+ 				return generateCodeForFloatArithmeticalOperation(stmt,"subss");
  			default: return "\t"+"def\n";
  		}
 
@@ -133,70 +230,147 @@ public class AssemblerCodeGenerator {
  	 */
  	private static String generateCodeForAssign(TwoAddressStatement stmt) {
  		Expression expression = stmt.getExpression();
- 		
- 		// Mov the expression to the ebx 
- 		String movl = generateCodeForBinaryInstructionToRegister("movl",(Expression)expression,"ebx","ebx");
- 		
- 		// Mov the ebx content to the corresponding location
- 		String assign = "\t"+"movl %ebx, ";
  		Location result = (Location)stmt.getResult();
- 		if (result instanceof VarLocation) {
- 			// The result is a var location
- 			DeclarationIdentifier declIdentifier = result.getDeclaration();
- 			if (declIdentifier.isGlobal()) {
- 				assign += declIdentifier.getId()+"\n";
- 			} else {
- 				assign += result.getOffset()+"(%ebp)"+"\n";
- 			}
- 			return movl+assign;
- 		} else {
- 			// The result is a var array location
- 			VarArrayLocation arrayLocation = (VarArrayLocation)result;
- 			Expression index = arrayLocation.getExpression();
- 			String movIndex = "";
- 			if (index instanceof Literal) {
- 				// The index is a literal
- 				movIndex = generateCodeForBinaryInstructionToRegister("movl",(Literal)index,"ecx");
- 			} else {
- 				// The index is stored in a location
- 				movIndex = generateCodeForBinaryInstructionToRegister("movl",(VarLocation)index,"ecx"); 
- 			}
- 			DeclarationIdentifier declIdentifier = arrayLocation.getDeclaration();
- 			if (declIdentifier.isGlobal()) {
- 				String mul = "\t"+"imull $4, %ecx"+"\n";
- 				assign += declIdentifier.getId()+"+0(%ecx)"+"\n";
- 				return movl+movIndex+mul+assign;
- 			} else {
-				Integer arraySize = arrayLocation.getDeclaration().getCapacity();
- 				Integer correctBase = result.getOffset()-(4*(arraySize-1));
- 				assign += correctBase+"(%ebp,%ecx,4)"+"\n";
- 				return movl+movIndex+assign;
- 			}
+ 		String move = getOperandType(result).equals(Type.FLOAT) ? "movss" : "movl";
+ 		if (getRegister(result) != null) {
+ 			// Mov the expression to the register of the location
+ 			return generateCodeForBinaryInstructionToRegister(move,expression,getRegister(result));
+ 		} else if (getRegister(expression) != null || expression instanceof IntLiteral || expression instanceof BooleanLiteral) {
+ 			// Mov the register or the literal to the location
+ 			return generateCodeForAddress(result)+"\t"+move+" "+getOperand(expression)+", "+getOperand(result)+"\n";
  		}
+
+ 		// Mov the expression to the eax register
+ 		String movl = generateCodeForBinaryInstructionToRegister("movl",expression,"eax");
+
+ 		// Mov the eax content to the corresponding location
+ 		String assign = generateCodeForBinaryInstructionFromRegister("movl","eax",result);
+ 		return movl+assign;
  	}
 
  	/**
- 	 * Generate the assembler code for the statement with instruction CALL 
+ 	 * Generate the assembler code for the statement with instruction CALL. The
+ 	 * pushed arguments are passed in the registers of the calling convention
+ 	 * and the remaining ones on the stack, from the last one to the first one.
  	 */
  	private static String generateCodeForCall(IntermediateCodeStatement stmt) {
+ 		// The arguments were pushed from the last one to the first one
+ 		LinkedList<Expression> arguments = new LinkedList<Expression>();
+ 		for (Expression argument : pushedArguments) {
+ 			arguments.addFirst(argument);
+ 		}
+ 		pushedArguments.clear();
+
+ 		String registers = "";
+ 		LinkedList<Expression> stackArguments = new LinkedList<Expression>();
+ 		int intArguments = 0;
+ 		int floatArguments = 0;
+ 		for (Expression argument : arguments) {
+ 			if (getOperandType(argument).equals(Type.FLOAT) && floatArguments < float_argument_registers.length) {
+ 				registers += generateCodeForBinaryInstructionToRegister("movss",argument,float_argument_registers[floatArguments]);
+ 				floatArguments++;
+ 			} else if (!getOperandType(argument).equals(Type.FLOAT) && intArguments < int_argument_registers.length) {
+ 				registers += generateCodeForBinaryInstructionToRegister("movl",argument,int_argument_registers[intArguments]);
+ 				intArguments++;
+ 			} else {
+ 				stackArguments.addFirst(argument);
+ 			}
+ 		}
+
+ 		// Push the stack arguments keeping the stack aligned to 16 bytes
+ 		String push = "";
+ 		int stackSize = 8*stackArguments.size();
+ 		if (stackArguments.size() % 2 == 1) {
+ 			push += "\t"+"subq $8, %rsp"+"\n";
+ 			stackSize += 8;
+ 		}
+ 		for (Expression argument : stackArguments) {
+ 			String move = getOperandType(argument).equals(Type.FLOAT) && getRegister(argument) != null ? "movd" : "movl";
+ 			push += generateCodeForBinaryInstructionToRegister(move,argument,"eax");
+ 			push += "\t"+"pushq %rax"+"\n";
+ 		}
+ 		String pop = "";
+ 		if (stackSize > 0) {
+ 			pop = "\t"+"addq $"+stackSize+", %rsp"+"\n";
+ 		}
+
  		Location loc;
  		String call;
  		if (stmt instanceof OneAddressStatement) {
  			// The call does not return anything
  			loc = (Location)((OneAddressStatement)stmt).getExpression();
 			call = "\t"+"call "+loc.getId()+"\n";
- 			return call;
+ 			return push+registers+call+pop;
  		} else {
-			// The call stores the result in the eax register
+			// The call stores the result in the eax or xmm0 register
 			loc = (Location)((TwoAddressStatement)stmt).getExpression();
- 			call = "\tcall "+loc.getId()+"\n";
+ 			call = "\t"+"call "+loc.getId()+"\n";
  			Location result = (Location)((TwoAddressStatement)stmt).getResult();
- 			String mov = "\tmovl %eax, "+result.getOffset()+"(%ebp)"+"\n";
- 			return call+mov;
- 		
+ 			String mov;
+ 			if (getOperandType(result).equals(Type.FLOAT)) {
+ 				mov = generateCodeForBinaryInstructionFromRegister("movss","xmm0",result);
+ 			} else {
+ 				mov = generateCodeForBinaryInstructionFromRegister("movl","eax",result);
+ 			}
+ 			return push+registers+call+pop+mov;
  		}
  	}
 
+ 	/**
+ 	 * Check if a statement is a call whose result is returned by the next
+ 	 * statement, and whose arguments are all passed in registers, so the frame
+ 	 * of the current method can be dropped before the call
+ 	 */
+ 	private static boolean isTailCall(IntermediateCodeStatement stmt, IntermediateCodeStatement next) {
+ 		if (stmt.getInstruction() != IntermediateCodeInstruction.CALL || !(stmt instanceof TwoAddressStatement)
+ 				|| next.getInstruction() != IntermediateCodeInstruction.RET || !(next instanceof OneAddressStatement)) {
+ 			return false;
+ 		}
+ 		Expression result = ((TwoAddressStatement)stmt).getResult();
+ 		Expression returned = ((OneAddressStatement)next).getExpression();
+ 		if (!(result instanceof VarLocation) || !(returned instanceof VarLocation)
+ 				|| ((VarLocation)result).getDeclaration() != ((VarLocation)returned).getDeclaration()) {
+ 			return false;
+ 		}
+ 		int intArguments = 0;
+ 		int floatArguments = 0;
+ 		for (Expression argument : pushedArguments) {
+ 			if (getOperandType(argument).equals(Type.FLOAT)) {
+ 				floatArguments++;
+ 			} else {
+ 				intArguments++;
+ 			}
+ 		}
+ 		return intArguments <= int_argument_registers.length && floatArguments <= float_argument_registers.length;
+ 	}
+
+ 	/**
+ 	 * Generate the assembler code for a call in tail position. The arguments are
+ 	 * moved to their registers, the frame of the current method is dropped and
+ 	 * the called method is entered with a jump, so it returns to the caller of
+ 	 * the current method.
+ 	 */
+ 	private static String generateCodeForTailCall(TwoAddressStatement stmt) {
+ 		// The arguments were pushed from the last one to the first one
+ 		String registers = "";
+ 		int intArguments = 0;
+ 		int floatArguments = 0;
+ 		for (Iterator<Expression> arguments = pushedArguments.descendingIterator(); arguments.hasNext(); ) {
+ 			Expression argument = arguments.next();
+ 			if (getOperandType(argument).equals(Type.FLOAT)) {
+ 				registers += generateCodeForBinaryInstructionToRegister("movss",argument,float_argument_registers[floatArguments]);
+ 				floatArguments++;
+ 			} else {
+ 				registers += generateCodeForBinaryInstructionToRegister("movl",argument,int_argument_registers[intArguments]);
+ 				intArguments++;
+ 			}
+ 		}
+ 		pushedArguments.clear();
+ 		String leave = "\t"+"leave"+"\n";
+ 		String jmp = "\t"+"jmp "+((Location)stmt.getExpression()).getId()+"\n";
+ 		return registers+generateCodeForRestore()+leave+jmp;
+ 	}
+
  	/**
  	 * Generate the assebler code for global declarations
  	 */
@@ -214,87 +388,225 @@ public class AssemblerCodeGenerator {
 
  	/**
  	 * Generate the assembler code for a statement with an instruction for a logical
- 	 * operation (AND, OR) 
+ 	 * operation (AND, OR)
  	 */
  	private static String generateCodeForLogicalOperation(ThreeAddressStatement stmt,String instructionName) {
- 		Expression expression1 = stmt.getExpressionOne();
- 		Expression expression2 = stmt.getExpressionTwo();
-
- 		// Move the expression one to the ebx register
- 		String mov1 = generateCodeForBinaryInstructionToRegister("movl",expression1,"ebx","ebx");
-
- 		// Apply the instruction with the expression two to the ebx register in which
- 		String ins = generateCodeForBinaryInstructionToRegister(instructionName,expression2,"edx","ebx");
-
- 		Location result = (Location)stmt.getResult();
- 		String mov2 = "\t"+"movl %ebx, "+result.getOffset()+"(%ebp)"+"\n";
- 		return mov1+ins+mov2;
+ 		return generateCodeForOperation("movl",stmt.getExpressionOne(),instructionName,stmt.getExpressionTwo(),(Location)stmt.getResult(),"eax");
  	}
 
  	/**
  	 * Generate the assembler code for a statement with the instruction NOT
  	 */
  	private static String generateCodeForNot(TwoAddressStatement stmt) {
-		Expression expr = stmt.getExpression();
-
- 		// Move the expression to the ebx register
- 		String mov1 = generateCodeForBinaryInstructionToRegister("movl",expr,"ebx","ebx");
- 		
- 		Location result = (Location)stmt.getResult();
- 		String not = "\t"+"notl %ebx"+"\n";
- 		String shr = "\t"+"shr $1, %ebx"+"\n";
- 		String jcLabelName = generateLabel();
- 		String endLabelName = generateLabel();
- 		String jc = "\t"+"jc "+jcLabelName+"\n";
- 		String mov2 = "\t"+"movl $0, %ebx"+"\n";
- 		String jmp = "\t"+"jmp "+endLabelName+"\n";
- 		String label = jcLabelName+":"+"\n";
- 		String mov3 = "\t"+"movl $1, %ebx"+"\n";
- 		String labelEnd = endLabelName+":"+"\n";
- 		String mov4 = "\t"+"movl %ebx, "+result.getOffset()+"(%ebp)"+"\n";
- 		return mov1+not+shr+jc+mov2+jmp+label+mov3+labelEnd+mov4;	
+ 		return generateCodeForOperation("movl",stmt.getExpression(),"xorl $1,",null,(Location)stmt.getResult(),"eax");
  	}
 
  	/**
  	 * Generate the assembler code for a statement with an instruction for a relational
- 	 * opearation (EQ, LESS, LESSEQ, GREAT, GREATEQ )
+ 	 * opearation (EQ, NEQ, LESS, LESSEQ, GREAT, GREATEQ) with the given condition code
  	 */
- 	private static String generateCodeForRelationalOperation(ThreeAddressStatement stmt,String instructionName) {
- 		Expression expression1 = stmt.getExpressionOne();
- 		Expression expression2 = stmt.getExpressionTwo();
+ 	private static String generateCodeForRelationalOperation(ThreeAddressStatement stmt,String condition) {
+ 		String cmp = generateCodeForComparison(stmt.getExpressionOne(),stmt.getExpressionTwo(),condition);
+ 		String set;
 
- 		// Move the expression one to the ebx register
- 		String mov1 = generateCodeForBinaryInstructionToRegister("movl",expression1,"edx","ebx");
- 		
- 		// Apply a cmp with the expression two to the ebx register
- 		String cmp = generateCodeForBinaryInstructionToRegister("cmp",expression2,"edx","ebx");
+ 		if (getOperandType(stmt.getExpressionOne()).equals(Type.FLOAT)) {
+ 			if (condition.equals("e")) {
+ 				set = "\t"+"sete %al"+"\n"+"\t"+"setnp %cl"+"\n"+"\t"+"andb %cl, %al"+"\n";
+ 			} else if (condition.equals("ne")) {
+ 				set = "\t"+"setne %al"+"\n"+"\t"+"setp %cl"+"\n"+"\t"+"orb %cl, %al"+"\n";
+ 			} else if (condition.equals("l") || condition.equals("g")) {
+ 				set = "\t"+"seta %al"+"\n";
+ 			} else {
+ 				set = "\t"+"setae %al"+"\n";
+ 			}
+		} else {
+ 			set = "\t"+"set"+condition+" %al"+"\n";
+ 		}
 
  		Location result = (Location)stmt.getResult();
+ 		if (getRegister(result) != null) {
+ 			return cmp+set+"\t"+"movzbl %al, %"+getRegister(result)+"\n";
+ 		}
+ 		String movzbl = "\t"+"movzbl %al, %eax"+"\n";
+ 		String mov = generateCodeForBinaryInstructionFromRegister("movl","eax",result);
+ 		return cmp+set+movzbl+mov;
+ 	}
 
- 		String jgeLabelName = generateLabel();
- 		String endLabelName = generateLabel();
+ 	/**
+ 	 * Generate the assembler code that compares two operands and sets the flags
+ 	 * for the given condition code
+ 	 */
+ 	private static String generateCodeForComparison(Expression expression1, Expression expression2, String condition) {
+ 		String cmp;
+ 		if (getOperandType(expression1).equals(Type.FLOAT)) {
+ 			// Compare the floats with the greater operand in the xmm0 register, so
+ 			// the comparisons with NaN are false
+ 			if (condition.equals("l") || condition.equals("le")) {
+ 				cmp = generateCodeForBinaryInstructionToRegister("movss",expression2,"xmm0");
+ 				cmp += generateCodeForBinaryInstructionToRegister("ucomiss",expression1,"xmm0");
+ 			} else {
+ 				cmp = generateCodeForBinaryInstructionToRegister("movss",expression1,"xmm0");
+ 				cmp += generateCodeForBinaryInstructionToRegister("ucomiss",expression2,"xmm0");
+ 			}
+ 			return cmp;
+ 		}
+ 		String register = getRegister(expression1);
+ 		if (register != null) {
+ 			// Compare the register of the expression one with the expression two
+ 			return generateCodeForBinaryInstructionToRegister("cmpl",expression2,register);
+ 		}
+ 		// Move the expression one to the eax register and compare it with the expression two
+ 		cmp = generateCodeForBinaryInstructionToRegister("movl",expression1,"eax");
+ 		cmp += generateCodeForBinaryInstructionToRegister("cmpl",expression2,"eax");
+ 		return cmp;
+ 	}
 
-		String jge = "\t"+instructionName+" "+jgeLabelName+"\n";
-		String movFalse = "\t"+"movl $0, "+result.getOffset()+"(%ebp)"+"\n";
-		String jend = "\t"+"jmp "+endLabelName+"\n";
-		String jgeLabel = jgeLabelName+":\n";
-		String movTrue = "\t"+"movl $1, "+result.getOffset()+"(%ebp)"+"\n";
- 		String endLabel = endLabelName+":\n";	
+ 	/**
+ 	 * Check if a statement is a relational operation whose result is only read
+ 	 * by the next statement, a JUMPF, so the result is not needed
+ 	 */
+ 	private static boolean isCompareAndBranch(IntermediateCodeStatement stmt, IntermediateCodeStatement next) {
+ 		if (!(stmt instanceof ThreeAddressStatement) || getCondition(stmt.getInstruction()) == null
+ 				|| next.getInstruction() != IntermediateCodeInstruction.JUMPF) {
+ 			return false;
+ 		}
+ 		Expression result = ((ThreeAddressStatement)stmt).getResult();
+ 		Expression condition = ((OneAddressStatement)next).getExpression();
+ 		if (!(result instanceof VarLocation) || result instanceof VarArrayLocation || !(condition instanceof VarLocation)
+ 				|| condition instanceof VarArrayLocation) {
+ 			return false;
+ 		}
+ 		DeclarationIdentifier decl = ((VarLocation)result).getDeclaration();
+ 		return decl != null && !decl.isGlobal() && decl == ((VarLocation)condition).getDeclaration()
+ 			&& uses.get(decl) == 1;
+ 	}
+
+ 	/**
+ 	 * Generate the assembler code for a relational operation followed by a JUMPF
+ 	 * of its result: the operands are compared and the jump is taken when the
+ 	 * condition is false
+ 	 */
+ 	private static String generateCodeForCompareAndBranch(ThreeAddressStatement stmt, OneAddressStatement jumpF) {
+ 		String condition = getCondition(stmt.getInstruction());
+ 		String cmp = generateCodeForComparison(stmt.getExpressionOne(),stmt.getExpressionTwo(),condition);
+ 		String toJump = jumpF.getLabelToJump().toString();
+
+ 		if (!getOperandType(stmt.getExpressionOne()).equals(Type.FLOAT)) {
+ 			return cmp+"\t"+"j"+getInverse(condition)+" "+toJump+"\n";
+ 		}
+ 		// The floats are unordered when one of them is NaN, that sets the parity
+ 		// flag, and then the condition is false except for the non equality
+ 		if (condition.equals("e")) {
+ 			return cmp+"\t"+"jne "+toJump+"\n"+"\t"+"jp "+toJump+"\n";
+ 		}
+ 		if (condition.equals("ne")) {
+ 			String unordered = "."+generateLabel();
+ 			return cmp+"\t"+"jp "+unordered+"\n"+"\t"+"je "+toJump+"\n"+unordered+":\n";
+ 		}
+ 		if (condition.equals("l") || condition.equals("g")) {
+ 			return cmp+"\t"+"jbe "+toJump+"\n";
+ 		}
+ 		return cmp+"\t"+"jb "+toJump+"\n";
+ 	}
+
+ 	/**
+ 	 * Get the condition code of a relational instruction, or null if the
+ 	 * instruction is not relational
+ 	 */
+ 	private static String getCondition(IntermediateCodeInstruction instruction) {
+ 		switch (instruction) {
+ 			case EQ:
+ 				return "e";
+ 			case NEQ:
+ 				return "ne";
+ 			case LESS:
+ 				return "l";
+ 			case LESSEQ:
+ 				return "le";
+ 			case GREAT:
+ 				return "g";
+ 			case GREATEQ:
+ 				return "ge";
+ 			default:
+ 				return null;
+ 		}
+ 	}
 
- 		return mov1+cmp+jge+movFalse+jend+jgeLabel+movTrue+endLabel;
+ 	/**
+ 	 * Get the condition code that is true when the given one is false
+ 	 */
+ 	private static String getInverse(String condition) {
+ 		switch (condition) {
+ 			case "e":
+ 				return "ne";
+ 			case "ne":
+ 				return "e";
+ 			case "l":
+ 				return "ge";
+ 			case "le":
+ 				return "g";
+ 			case "g":
+ 				return "le";
+ 			default:
+ 				return "l";
+ 		}
  	}
 
  	/**
+ 	 * Count the reads of each variable in the statements of a method
+ 	 */
+ 	private static IdentityHashMap<DeclarationIdentifier,Integer> countUses(List<IntermediateCodeStatement> method) {
+ 		IdentityHashMap<DeclarationIdentifier,Integer> count = new IdentityHashMap<DeclarationIdentifier,Integer>();
+ 		for (IntermediateCodeStatement stmt : method) {
+ 			for (DeclarationIdentifier decl : SSAForm.getUsedVariables(stmt)) {
+ 				Integer previous = count.get(decl);
+ 				count.put(decl,previous == null ? 1 : previous+1);
+ 			}
+ 		}
+ 		return count;
+ 	}
+
+	/**
  	 * Generate the assembler code for the statement with instruction INITML
  	 */
  	private static String generateCodeForInitMl(OneAddressStatement stmt) {
- 		Location location = (Location)stmt.getExpression(); 
+ 		Location location = (Location)stmt.getExpression();
+ 		String end = generateCodeForMethodEnd();
  		String global = "\t"+".globl "+location.getId()+"\n";
  		String type = "\t"+".type "+location.getId()+", @function"+"\n";
  		String label = location.getId()+":\n";
- 		String push = "\t"+"pushl %ebp"+"\n";
- 		String mov = "\t"+"movl %esp, %ebp"+"\n";
- 		return global+type+label+push+mov;
+ 		String push = "\t"+"pushq %rbp"+"\n";
+ 		String mov = "\t"+"movq %rsp, %rbp"+"\n";
+ 		inMethod = true;
+ 		parameters.clear();
+ 		parameterOffsets.clear();
+ 		savedRegisters.clear();
+ 		savedOffsets.clear();
+ 		return end+global+type+label+push+mov;
+ 	}
+
+ 	/**
+ 	 * Generate the return of the current method, for the methods that end
+ 	 * without a return statement
+ 	 */
+ 	private static String generateCodeForMethodEnd() {
+ 		if (!inMethod) {
+ 			return "";
+ 		}
+ 		inMethod = false;
+ 		return "\t"+"xorl %eax, %eax"+"\n"+generateCodeForRestore()+"\t"+"leave"+"\n"+"\t"+"ret"+"\n";
+ 	}
+
+ 	/**
+ 	 * Generate the code that restores the callee saved registers used by the
+ 	 * current method
+ 	 */
+ 	private static String generateCodeForRestore() {
+ 		String restore = "";
+ 		for (int i = 0; i < savedRegisters.size(); i++) {
+ 			restore += "\t"+"movq "+savedOffsets.get(i)+"(%rbp), %"+savedRegisters.get(i)+"\n";
+ 		}
+ 		return restore;
  	}
 
  	/**
@@ -310,14 +622,18 @@ public class AssemblerCodeGenerator {
  	 * Generate the assembler code for the statement with instruction JUMPF
  	 */
  	private static String generateCodeForJumpF(OneAddressStatement stmt) {
- 		Expression expr = stmt.getExpression();
- 		// Move the expression to the ebx register
- 		String movl = generateCodeForBinaryInstructionToRegister("movl",(Expression)expr,"edx","ebx");
- 		// Compare 0 (false) with the expression result 
- 		String cmp = "\t"+"cmp $0, %ebx"+"\n";
+ 		String register = getRegister(stmt.getExpression());
+ 		String movl = "";
+ 		if (register == null) {
+ 			// Move the expression to the eax register
+ 			register = "eax";
+ 			movl = generateCodeForBinaryInstructionToRegister("movl",stmt.getExpression(),"eax");
+ 		}
+ 		// Compare 0 (false) with the expression result
+ 		String test = "\t"+"testl %"+register+", %"+register+"\n";
  		Label toJump = stmt.getLabelToJump();
  		String je = "\t"+"je "+toJump.toString()+"\n";
- 		return movl +cmp+je;
+ 		return movl+test+je;
  	}
 
  	/**
@@ -330,23 +646,257 @@ public class AssemblerCodeGenerator {
  	}
 
  	/**
- 	 * Generate the assembler code for the statement with instruction PUSH 
+ 	 * Generate the assembler code for the statement with instruction PARAM. The
+ 	 * parameters are stored in the frame by the RESERVE instruction.
  	 */
- 	private static String generateCodeForPush(OneAddressStatement stmt) {
+ 	private static String generateCodeForParam(OneAddressStatement stmt) {
+ 		parameters.add((Location)stmt.getExpression());
+ 		return "";
+ 	}
+
+ 	/**
+ 	 * Generate the assembler code for the statement with instruction PRINT
+ 	 */
+ 	private static String generateCodeForPrint(OneAddressStatement stmt) {
  		Expression expression = stmt.getExpression();
- 		// Push the expression
- 		String push = generateCodeForUnaryInstruction("pushl",expression,"ecx");
- 		return push;
+ 		Type type = getOperandType(expression);
+ 		if (type.equals(Type.FLOAT)) {
+ 			String movss = generateCodeForBinaryInstructionToRegister("movss",expression,"xmm0");
+ 			String call = "\t"+"call .printfloat"+"\n";
+ 			return movss+call;
+ 		} else if (type.equals(Type.BOOLEAN)) {
+ 			// Print true or false according to the value
+ 			String movl = generateCodeForBinaryInstructionToRegister("movl",expression,"eax");
+ 			String leaTrue = "\t"+"leaq .printtrue(%rip), %rdi"+"\n";
+ 			String leaFalse = "\t"+"leaq .printfalse(%rip), %rcx"+"\n";
+ 			String test = "\t"+"testl %eax, %eax"+"\n";
+ 			String cmov = "\t"+"cmove %rcx, %rdi"+"\n";
+ 			String call = "\t"+"call puts@PLT"+"\n";
+ 			return movl+leaTrue+leaFalse+test+cmov+call;
+ 		} else {
+ 			String movl = generateCodeForBinaryInstructionToRegister("movl",expression,"esi");
+ 			String lea = "\t"+"leaq .printint(%rip), %rdi"+"\n";
+ 			String xor = "\t"+"xorl %eax, %eax"+"\n";
+ 			String call = "\t"+"call printf@PLT"+"\n";
+ 			return movl+lea+xor+call;
+ 		}
  	}
- 					
+
  	/**
- 	 * Generate the assembler code for the statement with instruction RESERVE
+ 	 * Generate the function that prints the float in %xmm0 as Java does, with the
+ 	 * least amount of digits that represents it, in decimal notation from 10^-3
+ 	 * to 10^7 and in scientific notation otherwise
+ 	 */
+ 	private static String generateCodeForPrintFloat() {
+ 		String code = ".printfloat:\n";
+ 		code += "\t"+"pushq %rbx"+"\n";
+ 		code += "\t"+"pushq %r12"+"\n";
+ 		code += "\t"+"subq $40, %rsp"+"\n";
+ 		// The NaN, the infinities and the zeros are found by their bits
+ 		code += "\t"+"movd %xmm0, %eax"+"\n";
+ 		code += "\t"+"movl %eax, %ecx"+"\n";
+ 		code += "\t"+"andl $2147483647, %ecx"+"\n";
+ 		code += "\t"+"cmpl $2139095040, %ecx"+"\n";
+ 		code += "\t"+"ja .printfloatnan"+"\n";
+ 		code += "\t"+"je .printfloatinfinity"+"\n";
+ 		code += "\t"+"testl %ecx, %ecx"+"\n";
+ 		code += "\t"+"je .printfloatzero"+"\n";
+ 		// Print the sign and keep the absolute value
+ 		code += "\t"+"movl %ecx, 32(%rsp)"+"\n";
+ 		code += "\t"+"testl %eax, %eax"+"\n";
+ 		code += "\t"+"jns .printfloatpositive"+"\n";
+ 		code += "\t"+"movl $45, %edi"+"\n";
+ 		code += "\t"+"call putchar@PLT"+"\n";
+ 		code += ".printfloatpositive:\n";
+ 		code += "\t"+"xorl %ebx, %ebx"+"\n";
+ 		code += ".printfloatloop:\n";
+ 		// Write the float in scientific notation with the current amount of decimals
+ 		code += "\t"+"cvtss2sd 32(%rsp), %xmm0"+"\n";
+ 		code += "\t"+"movq %rsp, %rdi"+"\n";
+ 		code += "\t"+"movl $32, %esi"+"\n";
+ 		code += "\t"+"leaq .printfloatexponential(%rip), %rdx"+"\n";
+ 		code += "\t"+"movl %ebx, %ecx"+"\n";
+ 		code += "\t"+"movl $1, %eax"+"\n";
+ 		code += "\t"+"call snprintf@PLT"+"\n";
+ 		code += "\t"+"cmpl $8, %ebx"+"\n";
+ 		code += "\t"+"jge .printfloatdigits"+"\n";
+ 		// Stop when the buffer is read as the same float
+ 		code += "\t"+"movq %rsp, %rdi"+"\n";
+ 		code += "\t"+"xorl %esi, %esi"+"\n";
+ 		code += "\t"+"call strtof@PLT"+"\n";
+ 		code += "\t"+"ucomiss 32(%rsp), %xmm0"+"\n";
+ 		code += "\t"+"jp .printfloatnext"+"\n";
+ 		code += "\t"+"je .printfloatdigits"+"\n";
+ 		code += ".printfloatnext:\n";
+ 		code += "\t"+"incl %ebx"+"\n";
+ 		code += "\t"+"jmp .printfloatloop"+"\n";
+ 		// Split the buffer in the digits and the exponent
+ 		code += ".printfloatdigits:\n";
+ 		code += "\t"+"movq %rsp, %rdi"+"\n";
+ 		code += "\t"+"movl $101, %esi"+"\n";
+ 		code += "\t"+"call strchr@PLT"+"\n";
+ 		code += "\t"+"movb $0, (%rax)"+"\n";
+ 		code += "\t"+"leaq 1(%rax), %rdi"+"\n";
+ 		code += "\t"+"call atoi@PLT"+"\n";
+ 		code += "\t"+"movl %eax, %r12d"+"\n";
+ 		code += "\t"+"cmpl $-3, %r12d"+"\n";
+ 		code += "\t"+"jl .printfloatscientific"+"\n";
+ 		code += "\t"+"cmpl $7, %r12d"+"\n";
+ 		code += "\t"+"jge .printfloatscientific"+"\n";
+ 		// Print the decimal notation with the same digits, and at least one decimal
+ 		code += "\t"+"movl %ebx, %esi"+"\n";
+ 		code += "\t"+"subl %r12d, %esi"+"\n";
+ 		code += "\t"+"movl $1, %eax"+"\n";
+ 		code += "\t"+"cmpl %eax, %esi"+"\n";
+ 		code += "\t"+"cmovl %eax, %esi"+"\n";
+ 		code += "\t"+"cvtss2sd 32(%rsp), %xmm0"+"\n";
+ 		code += "\t"+"leaq .printfloatdecimal(%rip), %rdi"+"\n";
+ 		code += "\t"+"call printf@PLT"+"\n";
+ 		code += "\t"+"jmp .printfloatend"+"\n";
+ 		// Print the scientific notation, with a zero decimal for a single digit
+ 		code += ".printfloatscientific:\n";
+ 		code += "\t"+"leaq .printfloatsignificand(%rip), %rdi"+"\n";
+ 		code += "\t"+"movq %rsp, %rsi"+"\n";
+ 		code += "\t"+"movl %r12d, %edx"+"\n";
+ 		code += "\t"+"testl %ebx, %ebx"+"\n";
+ 		code += "\t"+"jne .printfloatcall"+"\n";
+ 		code += "\t"+"leaq .printfloatdigit(%rip), %rdi"+"\n";
+ 		code += "\t"+"movzbl (%rsp), %esi"+"\n";
+ 		code += ".printfloatcall:\n";
+ 		code += "\t"+"xorl %eax, %eax"+"\n";
+ 		code += "\t"+"call printf@PLT"+"\n";
+ 		code += "\t"+"jmp .printfloatend"+"\n";
+ 		code += ".printfloatnan:\n";
+ 		code += "\t"+"leaq .printfloatnanstring(%rip), %rdi"+"\n";
+ 		code += "\t"+"jmp .printfloatputs"+"\n";
+ 		// The strings of the infinity and the zero start with the minus sign,
+ 		// that is skipped for the positive values
+ 		code += ".printfloatinfinity:\n";
+ 		code += "\t"+"leaq .printfloatinfinitystring(%rip), %rdi"+"\n";
+ 		code += "\t"+"jmp .printfloatsign"+"\n";
+ 		code += ".printfloatzero:\n";
+ 		code += "\t"+"leaq .printfloatzerostring(%rip), %rdi"+"\n";
+ 		code += ".printfloatsign:\n";
+ 		code += "\t"+"testl %eax, %eax"+"\n";
+ 		code += "\t"+"js .printfloatputs"+"\n";
+ 		code += "\t"+"incq %rdi"+"\n";
+ 		code += ".printfloatputs:\n";
+ 		code += "\t"+"call puts@PLT"+"\n";
+ 		code += ".printfloatend:\n";
+ 		code += "\t"+"addq $40, %rsp"+"\n";
+ 		code += "\t"+"popq %r12"+"\n";
+ 		code += "\t"+"popq %rbx"+"\n";
+ 		code += "\t"+"ret"+"\n";
+ 		return code;
+ 	}
+
+ 	/**
+ 	 * Generate the format strings used by the print statements
+ 	 */
+ 	private static String generateCodeForPrintFormats() {
+ 		String printInt = ".printint:\n"+"\t"+".string \"%d\\n\""+"\n";
+ 		String printFloatExponential = ".printfloatexponential:\n"+"\t"+".string \"%.*e\""+"\n";
+ 		String printFloatDecimal = ".printfloatdecimal:\n"+"\t"+".string \"%.*f\\n\""+"\n";
+ 		String printFloatSignificand = ".printfloatsignificand:\n"+"\t"+".string \"%sE%d\\n\""+"\n";
+ 		String printFloatDigit = ".printfloatdigit:\n"+"\t"+".string \"%c.0E%d\\n\""+"\n";
+ 		String printFloatNaN = ".printfloatnanstring:\n"+"\t"+".string \"NaN\""+"\n";
+ 		String printFloatInfinity = ".printfloatinfinitystring:\n"+"\t"+".string \"-Infinity\""+"\n";
+ 		String printFloatZero = ".printfloatzerostring:\n"+"\t"+".string \"-0.0\""+"\n";
+ 		String printTrue = ".printtrue:\n"+"\t"+".string \"true\""+"\n";
+ 		String printFalse = ".printfalse:\n"+"\t"+".string \"false\""+"\n";
+ 		return printInt+printFloatExponential+printFloatDecimal+printFloatSignificand+printFloatDigit
+ 			+printFloatNaN+printFloatInfinity+printFloatZero+printTrue+printFalse;
+ 	}
+
+ 	/**
+ 	 * Get the type of an operand of an intermediate code statement
+ 	 */
+ 	private static Type getOperandType(Expression operand) {
+ 		if (operand instanceof Literal) {
+ 			return ((Literal)operand).getType();
+ 		}
+ 		return ((Location)operand).getDeclaration().getType();
+ 	}
+
+ 	/**
+ 	 * Generate the assembler code for the statement with instruction PUSH. The
+ 	 * arguments are passed when the CALL instruction is found.
+ 	 */
+ 	private static String generateCodeForPush(OneAddressStatement stmt) {
+ 		pushedArguments.add(stmt.getExpression());
+ 		return "";
+ 	}
+
+ 	/**
+ 	 * Generate the assembler code for the statement with instruction RESERVE. The
+ 	 * frame is aligned to 16 bytes, the parameters passed in registers are stored
+ 	 * below the local variables, or moved to their allocated register, the callee
+ 	 * saved registers used by the method are stored and the local variables are
+ 	 * initialized to zero.
  	 */
  	private static String generateCodeForReserve(OneAddressStatement stmt) {
  		VarLocation varLocation = (VarLocation)((OneAddressStatement)stmt).getExpression();
  		int amount = 4*((IntLiteral)varLocation.getValue()).getIntegerValue();
- 		String subl = "\t"+"subl $" + amount +", %esp"+"\n";
- 		return subl;
+
+ 		// Assign the offset of each parameter
+ 		String store = "";
+ 		int intParameters = 0;
+ 		int floatParameters = 0;
+ 		int stackParameters = 0;
+ 		int size = amount;
+ 		for (Location parameter : parameters) {
+ 			String register = getRegister(parameter);
+ 			String move = getOperandType(parameter).equals(Type.FLOAT) ? "movss" : "movl";
+ 			if (getOperandType(parameter).equals(Type.FLOAT) && floatParameters < float_argument_registers.length) {
+ 				size += 4;
+ 				parameterOffsets.add(-size);
+ 				store += "\t"+move+" %"+float_argument_registers[floatParameters]+", "+(register != null ? "%"+register : (-size)+"(%rbp)")+"\n";
+ 				floatParameters++;
+ 			} else if (!getOperandType(parameter).equals(Type.FLOAT) && intParameters < int_argument_registers.length) {
+ 				size += 4;
+ 				parameterOffsets.add(-size);
+ 				store += "\t"+move+" %"+int_argument_registers[intParameters]+", "+(register != null ? "%"+register : (-size)+"(%rbp)")+"\n";
+ 				intParameters++;
+ 			} else {
+ 				// The parameter was pushed by the caller, after the return address
+ 				parameterOffsets.add(16+8*stackParameters);
+ 				if (register != null) {
+ 					store += "\t"+move+" "+(16+8*stackParameters)+"(%rbp), %"+register+"\n";
+ 				}
+ 				stackParameters++;
+ 			}
+ 		}
+
+ 		// Store the callee saved registers used by the method
+ 		String save = "";
+ 		for (String register : allocator.getUsedCalleeSavedRegisters()) {
+ 			size += 8;
+ 			savedRegisters.add(register);
+ 			savedOffsets.add(-size);
+ 			save += "\t"+"movq %"+register+", "+(-size)+"(%rbp)"+"\n";
+ 		}
+ 		size = (size+15) / 16 * 16;
+
+ 		String sub = "";
+ 		if (size > 0) {
+ 			sub = "\t"+"subq $" + size +", %rsp"+"\n";
+ 		}
+ 		String clear = "";
+ 		if (amount > 0) {
+ 			clear += "\t"+"leaq "+(-amount)+"(%rbp), %rdi"+"\n";
+ 			clear += "\t"+"movl $"+(amount/4)+", %ecx"+"\n";
+ 			clear += "\t"+"xorl %eax, %eax"+"\n";
+ 			clear += "\t"+"rep stosl"+"\n";
+ 		}
+ 		// The registers of the local variables read before being written
+ 		for (DeclarationIdentifier decl : allocator.getVariablesLiveAtStart()) {
+ 			String register = allocator.getRegister(decl);
+ 			if (register != null && decl.getOffset() < 8) {
+ 				String xor = decl.getType().equals(Type.FLOAT) ? "xorps" : "xorl";
+ 				clear += "\t"+xor+" %"+register+", %"+register+"\n";
+ 			}
+ 		}
+ 		return sub+save+store+clear;
  	}
 
  	/**
@@ -355,177 +905,54 @@ public class AssemblerCodeGenerator {
  	private static String generateCodeForRet(IntermediateCodeStatement stmt) {
  		String leave = "\t"+"leave"+"\n";
  		String ret = "\t"+"ret"+"\n";
- 		String movl;
+ 		String mov;
  		if (stmt instanceof OneAddressStatement) {
  			// The return must return a value stored in a location
  			Expression expr = ((OneAddressStatement)stmt).getExpression();
- 			// Move the expression to the eax register
- 			movl = generateCodeForBinaryInstructionToRegister("movl",expr,"ecx","eax");
- 			return movl+leave+ret;
+ 			if (getOperandType(expr).equals(Type.FLOAT)) {
+ 				// Move the expression to the xmm0 register
+ 				mov = generateCodeForBinaryInstructionToRegister("movss",expr,"xmm0");
+ 			} else {
+ 				// Move the expression to the eax register
+ 				mov = generateCodeForBinaryInstructionToRegister("movl",expr,"eax");
+ 			}
+ 			return mov+generateCodeForRestore()+leave+ret;
  		} else {
- 			return leave+ret;
+ 			return "\t"+"xorl %eax, %eax"+"\n"+generateCodeForRestore()+leave+ret;
  		}
  	}
- 	
+
  	/**
  	 * Generate the assembler code for a statement with an instruction for an arithmetical
- 	 * opearation with integers (ADDI,SUBI,MULTI,DIVI)
+ 	 * opearation with integers (ADDI,SUBI,MULTI,DIVI,MOD)
  	 */
  	private static String generateCodeForIntegerArithmeticalOperation(IntermediateCodeStatement stmt,String instructionName) {
  		if (stmt instanceof ThreeAddressStatement) {
  			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
  			Expression expression1 = threeStmt.getExpressionOne();
  			Expression expression2 = threeStmt.getExpressionTwo();
- 			String stringExpr2 = "";
- 			String mov1;
- 			String registerToMove1 = "";
- 			if (needsMakeDivision(instructionName)) {
- 				registerToMove1="eax";
- 			} else {
- 				registerToMove1="ebx";
- 			}
- 			String ins = "\t"+instructionName+" ";
- 			String mov2 = "\t"+"movl ";
- 			boolean considerIns = false;
- 			if (expression1 instanceof Literal) {
- 				// The expression one is a literal, so move it to a register
- 				mov1 = generateCodeForBinaryInstructionToRegister("movl",(Literal)expression1,registerToMove1);
- 				if (expression2 instanceof Literal) {
- 					// The expression two is a literal
- 					stringExpr2 = "$"+expression2.toString();
- 				} else {
- 					// The expression two is not a literal
- 					Location location2 = (Location)expression2;
- 					DeclarationIdentifier locDeclaration2 = location2.getDeclaration();
- 					if (location2 instanceof VarLocation) {
- 						// The expression location is a var location
- 						if (locDeclaration2.isGlobal()) {
- 							stringExpr2 = locDeclaration2.getId();
- 						} else {
-							stringExpr2 = location2.getOffset()+"(%ebp)"; 
- 						}
- 					} else {
- 						// The expression location is a var array location
- 						VarArrayLocation arrayLocation2 = (VarArrayLocation)location2;
- 						Expression index2 = arrayLocation2.getExpression();
- 						String movIndex2= "";
- 						if (index2 instanceof Literal) {
- 							// The index is a literal
- 							movIndex2 = generateCodeForBinaryInstructionToRegister("movl",(Literal)index2,"edx");
- 						} else {
- 							// The index is stored in a location
- 							movIndex2 = generateCodeForBinaryInstructionToRegister("movl",(VarLocation)index2,"edx");
- 						}
- 						ins = movIndex2;
- 						if (locDeclaration2.isGlobal()) {
- 							ins += "\t"+"imull $4, %edx"+"\n";
- 							ins += "\t"+instructionName+" ";
- 							stringExpr2 = locDeclaration2.getId()+"+0(%edx)";
- 						} else {
-							Integer arraySize2 = locDeclaration2.getCapacity();
- 							Integer correctBase2 = locDeclaration2.getOffset()-(4*(arraySize2-1));
- 							ins += "\t"+instructionName+" ";
- 							stringExpr2 = correctBase2+"(%ebp,%edx,4)";
- 						}
- 					}
- 				}
- 		
- 			} else {
- 				// The expression one is not a literal
- 				Location location1 = (Location)expression1;
- 				DeclarationIdentifier locDeclaration1 = location1.getDeclaration();
- 				if (location1 instanceof VarLocation) {
- 					// The expression location is a var location
- 					mov1 = generateCodeForBinaryInstructionToRegister("movl",(VarLocation)location1,registerToMove1);
- 				} else {
- 					// The expression location is a var array location
- 					mov1 = generateCodeForBinaryInstructionToRegister("movl",(VarArrayLocation)location1,"ebx",registerToMove1);
- 				}
- 				if (expression2 instanceof Literal) {
- 					// The expression two is a literal
- 					stringExpr2 = "$"+expression2.toString(); 
- 				} else {
- 					// The expression two is not a literal
- 					Location location2 = (Location)expression2;
- 					DeclarationIdentifier locDeclaration2 = location2.getDeclaration();
- 					if (location2 instanceof VarLocation) {
- 						// The expression location is a var location
- 						if (locDeclaration2.isGlobal()) {
- 							stringExpr2 = locDeclaration2.getId();
- 						} else {
-							stringExpr2 = location2.getOffset()+"(%ebp)"; 
- 						}
- 					} else {
- 						// The expression location is a var array location
- 						VarArrayLocation arrayLocation2 = (VarArrayLocation)location2;
- 						Expression index2 = arrayLocation2.getExpression();
- 						String movIndex2= "";
- 						if (index2 instanceof Literal) {
- 							// The index is a literal
- 							movIndex2 = generateCodeForBinaryInstructionToRegister("movl",(Literal)index2,"edx");
- 						} else {
- 							// The index is stored in a location
- 							movIndex2 = generateCodeForBinaryInstructionToRegister("movl",(VarLocation)index2,"edx");
- 						}
- 						ins = movIndex2;
- 						if (locDeclaration2.isGlobal()) {
- 							ins += "\t"+"imull $4, %edx"+"\n";
- 							if (instructionName!="idivl"&&instructionName!="mod") {
- 								ins += "\t"+instructionName+" ";
- 							} else {
- 								considerIns = true;
- 							}
- 							stringExpr2 = locDeclaration2.getId()+"+0(%edx)";
- 						} else {
-							Integer arraySize2 = locDeclaration2.getCapacity();
- 							Integer correctBase2 = locDeclaration2.getOffset()-(4*(arraySize2-1));
- 							if (instructionName!="idivl"&&instructionName!="mod") {
- 								ins += "\t"+instructionName+" ";
- 							} else {
- 								considerIns = true;
- 							}
- 							stringExpr2 = correctBase2+"(%ebp,%edx,4)";
- 						}
- 					}
- 				}
- 			}
  			Location result = (Location)threeStmt.getResult();
- 			if (instructionName=="idivl"||instructionName=="mod") {
- 				String prevIns = "";
- 				if ((instructionName=="idivl")&&considerIns) {
- 					prevIns = ins;
- 				}
- 				String clearDiv = "\t"+"movl $0, %edx"+"\n";
- 				String movDiv = "\t"+"movl "+stringExpr2+", %ecx"+"\n";
- 				ins = "\t"+"idivl %ecx \n";
- 				if (instructionName=="idivl") {
- 					// Is div
- 					mov2 += "%eax, "+result.getOffset()+"(%ebp)"+"\n";
+ 			if (needsMakeDivision(instructionName)) {
+ 				// The dividend is extended to edx:eax, the quotient is left in eax
+ 				// and the remainder in edx
+ 				String movDiv = generateCodeForBinaryInstructionToRegister("movl",expression2,"ecx");
+ 				String mov1 = generateCodeForBinaryInstructionToRegister("movl",expression1,"eax");
+ 				String cltd = "\t"+"cltd"+"\n";
+ 				String ins = "\t"+"idivl %ecx"+"\n";
+ 				String mov2;
+ 				if (instructionName.equals("idivl")) {
+ 					mov2 = generateCodeForBinaryInstructionFromRegister("movl","eax",result);
  				} else {
- 					// Is mod
- 					mov2 += "%edx, "+result.getOffset()+"(%ebp)"+"\n";
+ 					mov2 = generateCodeForBinaryInstructionFromRegister("movl","edx",result);
  				}
- 				return mov1+prevIns+movDiv+clearDiv+ins+mov2;
+ 				return movDiv+mov1+cltd+ins+mov2;
  			} else {
- 				ins += stringExpr2+", %ebx"+"\n";
- 				mov2 += "%ebx, "+result.getOffset()+"(%ebp)"+"\n";
- 				return mov1+ins+mov2;
+ 				return generateCodeForOperation("movl",expression1,instructionName,expression2,result,"eax");
  			}
  		} else {
+ 			// The unary minus
  			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
- 			Expression expr = twoStmt.getExpression();
- 			String stringExpr;
- 			if (expr instanceof Literal) {
- 				// The expression is a literal
- 				stringExpr = "$"+expr.toString();
- 			} else {
- 				// The expression two is not a literal
- 				Location location = (Location)expr;
- 				stringExpr = location.getOffset()+"(%ebp)";
- 			}
- 			Location result = (Location)twoStmt.getResult();
- 			String ins = "\t"+instructionName+" "+stringExpr+", "+result.getOffset()+"(%ebp)"+"\n";
- 			return ins;	
+ 			return generateCodeForOperation("movl",twoStmt.getExpression(),"negl",null,(Location)twoStmt.getResult(),"eax");
  		}
  	}
 
@@ -533,258 +960,218 @@ public class AssemblerCodeGenerator {
  	 * Returns true if the given instruction needs to perform a div
  	 */
  	private static boolean needsMakeDivision(String instructionName) {
- 		return (instructionName=="idivl"||instructionName=="mod"); 
+ 		return (instructionName.equals("idivl")||instructionName.equals("mod"));
  	}
 
  	/**
  	 * Generate the assembler code for a statement with an instruction for an arithmetical
- 	 * opearation with floats (ADDF,SUBF,MULTF,DIVF)
+ 	 * opearation with floats (ADDF,SUBF,MULTF,DIVF), using the scalar SSE instructions
  	 */
  	private static String generateCodeForFloatArithmeticalOperation(IntermediateCodeStatement stmt,String instructionName) {
- 		String flds = "";
- 		String ins = "";
- 		String fstps = "";
  		if (stmt instanceof ThreeAddressStatement) {
  			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
- 			Expression expression1 = threeStmt.getExpressionOne();
- 			Expression expression2 = threeStmt.getExpressionTwo();
- 			
- 			// Load the expression one using the ebx register if it is necessary
- 			flds = generateCodeForUnaryInstruction("flds",expression1,"ebx");
-
- 			// Apply the instruction with the expression two using the edx register if it is necessary
- 			ins = generateCodeForUnaryInstruction(instructionName,expression2,"edx");
-
- 			Location result = (Location)threeStmt.getResult();
- 			fstps = generateCodeForUnaryInstruction("fstps",(VarLocation)result);
- 			return flds+ins+fstps;
-
+ 			return generateCodeForOperation("movss",threeStmt.getExpressionOne(),instructionName,threeStmt.getExpressionTwo(),(Location)threeStmt.getResult(),"xmm0");
  		} else {
+ 			// The unary minus flips the sign bit
  			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
- 			Expression expr = twoStmt.getExpression();
- 			String stringExpr;
- 			if (expr instanceof Literal) {
- 				// The expression is a literal
- 				flds = generateCodeForUnaryInstruction("flds",(Literal)expr);
- 			} else {
- 				// The expression two is not a literal
- 				if (expr instanceof VarLocation) {
- 					// The expression is a var location
- 					flds = generateCodeForUnaryInstruction(instructionName,(VarLocation)expr);
- 				} else {
- 					// The expression is a var array location
- 					Location location = (Location)expr;
- 					stringExpr = location.getOffset()+"(%ebp)";
- 					ins = "\t"+instructionName+" "+stringExpr+"\n";
- 				}
- 				
- 			}
-
- 			Location result = (Location)twoStmt.getResult();
- 			fstps = generateCodeForUnaryInstruction("fstps",(VarLocation)result);
- 			return flds+ins+fstps;	
+ 			return generateCodeForOperation("movss",twoStmt.getExpression(),"xorps .floatsign(%rip),",null,(Location)twoStmt.getResult(),"xmm0");
  		}
  	}
 
- 	/**
- 	 * Generate code for apply a unary instrction to an expression
+	/**
+ 	 * Generate code for an operation that moves the expression one to a register and
+ 	 * applies the instruction with the expression two, or alone if there is not
+ 	 * expression two. The register of the result is used if it is not the register of
+ 	 * the expression two, otherwise the operation is made in the given scratch
+ 	 * register and stored in the result.
  	 */
- 	private static String generateCodeForUnaryInstruction(String instructionName, Expression operand, String auxiliarRegister) {
+ 	private static String generateCodeForOperation(String move, Expression expression1, String instructionName, Expression expression2, Location result, String scratch) {
+ 		String target = getRegister(result);
+ 		if (target == null || target.equals(getRegister(expression2))) {
+ 			target = scratch;
+ 		}
+ 		String mov1 = "";
+ 		if (!target.equals(getRegister(expression1))) {
+ 			mov1 = generateCodeForBinaryInstructionToRegister(move,expression1,target);
+ 		}
  		String ins;
- 		if (operand instanceof Literal) {
- 			// The expression is a literal
- 			ins = generateCodeForUnaryInstruction(instructionName,(Literal)operand);
+ 		if (expression2 == null) {
+ 			ins = "\t"+instructionName+" %"+target+"\n";
  		} else {
- 			// The expression is stored in a location
- 			Location loc = (Location)operand;
- 			if (loc instanceof VarLocation) {
- 				// The location is a var location
- 				ins = generateCodeForUnaryInstruction(instructionName,(VarLocation)loc);
- 			} else {
- 				// The location is a var array location 
- 				ins = generateCodeForUnaryInstruction(instructionName,(VarArrayLocation)loc,auxiliarRegister);
- 			}
+ 			ins = generateCodeForBinaryInstructionToRegister(instructionName,expression2,target);
+ 		}
+ 		String mov2 = "";
+ 		if (target.equals(scratch)) {
+ 			mov2 = generateCodeForBinaryInstructionFromRegister(move,scratch,result);
  		}
- 		return ins;
+ 		return mov1+ins+mov2;
+ 	}
+
+	/**
+ 	 * Generate code for apply a unary instruction to an expression
+ 	 */
+ 	private static String generateCodeForUnaryInstruction(String instructionName, Expression operand) {
+ 		String address = generateCodeForAddress(operand);
+ 		return address+"\t"+instructionName+" "+getOperand(operand)+"\n";
  	}
 
  	/**
- 	 * Generate code for apply a unary instruction to a given literal
+ 	 * Generate code for apply a binary instruction with an expression as operand to a
+ 	 * given register
  	 */
- 	private static String generateCodeForUnaryInstruction(String instructionName, Literal literal) {
- 		String ins = "\t"+instructionName+" ";
- 		if (literal instanceof IntLiteral) {
- 			// The literal is an int literal
- 			IntLiteral intLiteral = (IntLiteral)literal;
- 			ins += "$"+ intLiteral.getIntegerValue()+"\n";
- 		} else if (literal instanceof BooleanLiteral) {
- 			// The literal is a boolean literal
- 			BooleanLiteral boolLiteral = (BooleanLiteral)literal;
- 			if (boolLiteral.getBooleanValue()) {
- 				// Is true
- 				ins += "$1"+"\n";
- 			} else {
- 				// Is false
- 				ins += "$0"+"\n";
- 			}
- 		} else {
- 			// The literal is a float literal
- 			FloatLiteral floatLiteral = (FloatLiteral)literal;
- 			Integer integer = Float.floatToRawIntBits(floatLiteral.getFloatValue());
- 			String labelName = "."+generateLabel();
- 			String floatLabel = labelName+":\n";
- 			floatLabel += "\t"+".long "+integer+"\n";
- 			floatLabels.add(floatLabel);
- 			ins += labelName+"\n";
- 		}
- 		return ins;
+ 	private static String generateCodeForBinaryInstructionToRegister(String instructionName, Expression operand, String registerName) {
+ 		String address = generateCodeForAddress(operand);
+ 		return address+"\t"+instructionName+" "+getOperand(operand)+", %"+registerName+"\n";
  	}
 
  	/**
- 	 * Generate code for apply a unary instruction to a given var location
+ 	 * Generate code for apply a binary instruction with a given register as operand
+ 	 * to a location
  	 */
- 	private static String generateCodeForUnaryInstruction(String instructionName, VarLocation loc) {
- 		String ins = "\t"+instructionName+" ";
- 		DeclarationIdentifier declIdentifier = loc.getDeclaration();
- 		if (declIdentifier.isGlobal()) {
- 			// The declaration is global		
- 			ins += declIdentifier.getId()+" "+"\n";
- 		} else {
- 			// The declaration is local
-			ins += loc.getOffset()+"(%ebp)"+"\n";
- 		}
-		return ins;
+ 	private static String generateCodeForBinaryInstructionFromRegister(String instructionName, String registerName, Location loc) {
+ 		String address = generateCodeForAddress(loc);
+ 		return address+"\t"+instructionName+" %"+registerName+", "+getOperand(loc)+"\n";
  	}
 
  	/**
- 	 * Generate the code for apply a unary instruction to a given var array location
+ 	 * Generate the code that computes the address of an operand before using it,
+ 	 * that is needed by the elements of an array with a variable index
  	 */
- 	private static String generateCodeForUnaryInstruction(String instructionName, VarArrayLocation loc,String auxiliarRegister) {
- 		DeclarationIdentifier declIdentifier = loc.getDeclaration();
+ 	private static String generateCodeForAddress(Expression operand) {
+ 		if (!(operand instanceof VarArrayLocation)) {
+ 			return "";
+ 		}
+ 		VarArrayLocation loc = (VarArrayLocation)operand;
  		Expression index = loc.getExpression();
- 		String ins;
- 		String movIndex = "";
+ 		int capacity = loc.getDeclaration().getCapacity();
  		if (index instanceof Literal) {
- 			// The index is a literal
- 			movIndex = generateCodeForBinaryInstructionToRegister("movl",(Literal)index,auxiliarRegister);
- 		} else {
- 			// The index is stored in a location
- 			movIndex = generateCodeForBinaryInstructionToRegister("movl",(VarLocation)index,auxiliarRegister);
+ 			// The address of the element is constant
+ 			int value = ((IntLiteral)index).getIntegerValue();
+ 			if (value < 0 || value >= capacity) {
+ 				return "\t"+"jmp "+generateCodeForInvalidIndex(loc,"$"+value)+"\n";
+ 			}
+ 			return "";
  		}
- 		if (declIdentifier.isGlobal()) {
- 			String mult = "\t"+"imull $4, %"+auxiliarRegister+"\n";
- 			ins = "\t"+instructionName+" "+declIdentifier.getId()+"+0(%"+auxiliarRegister+")"+"\n";
- 			return movIndex+mult+ins;
- 		} else {
- 			Integer arraySize = declIdentifier.getCapacity();
- 			Integer correctBase = loc.getOffset()-(4*(arraySize-1));
- 			ins = "\t"+instructionName+" "+correctBase+"(%ebp,%"+auxiliarRegister+",4)"+"\n";
- 			return movIndex+ins;
+ 		String movIndex = generateCodeForAddress(index)+"\t"+"movslq "+getOperand(index)+", %"+index_register+"\n";
+ 		if (!loc.isInBounds()) {
+ 			// The negative indexes are greater than the capacity as unsigned
+ 			movIndex += "\t"+"cmpq $"+capacity+", %"+index_register+"\n";
+ 			movIndex += "\t"+"jae "+generateCodeForInvalidIndex(loc,"%"+index_register+"d")+"\n";
  		}
+ 		if (loc.getDeclaration().isGlobal()) {
+ 			String lea = "\t"+"leaq "+loc.getDeclaration().getId()+"(%rip), %"+base_register+"\n";
+ 			return movIndex+lea;
+ 		}
+ 		return movIndex;
  	}
 
  	/**
- 	 * Generate code for apply a unary instruction to a given register
+ 	 * Generate the code that reports the invalid index of an array element, held
+ 	 * by the given operand. Returns its label.
  	 */
- 	private static String generateCodeForUnaryInstruction(String instructionName, String registerName) {
- 		return "\t"+instructionName+" %"+registerName+"\n";
+ 	private static String generateCodeForInvalidIndex(VarArrayLocation loc, String index) {
+ 		String label = "."+generateLabel();
+ 		String code = label+":\n";
+ 		code += "\t"+"movl "+index+", %esi"+"\n";
+ 		code += "\t"+"leaq "+label+"format(%rip), %rdi"+"\n";
+ 		code += "\t"+"jmp .indexerror"+"\n";
+ 		indexErrors.add(code);
+ 		indexFormats.add(label+"format:\n"+"\t"+".string \""+loc.getInvalidIndexErrorPrefix()+"%d"+loc.getInvalidIndexErrorSuffix()+"\\n\""+"\n");
+ 		return label;
  	}
 
  	/**
- 	 * Generate code for apply a binary instruction with an expression as operand to a 
- 	 * given register 
+ 	 * Generate the function that prints the error message of an invalid index,
+ 	 * with the index in %esi, and exits with status 1
  	 */
- 	private static String generateCodeForBinaryInstructionToRegister(String instructionName,Expression operand, String auxiliarRegister, String registerToApply) {
- 		String ins;
- 		if (operand instanceof Literal) {
- 			// The expression is a literal
- 			ins = generateCodeForBinaryInstructionToRegister(instructionName,(Literal)operand,registerToApply);
- 		} else {
- 			// The expression is not a literal
- 			Location loc = (Location)operand;
- 			if (loc instanceof VarLocation) {
- 				// The location is a var location
- 				ins = generateCodeForBinaryInstructionToRegister(instructionName,(VarLocation)loc,registerToApply);
- 			} else {
- 				// The location is a var array location
- 				ins = generateCodeForBinaryInstructionToRegister(instructionName,(VarArrayLocation)loc,auxiliarRegister,registerToApply);
- 			}
- 		}
- 		return ins;
+ 	private static String generateCodeForIndexError() {
+ 		String code = ".indexerror:\n";
+ 		// The stack could be unaligned in the middle of a call
+ 		code += "\t"+"andq $-16, %rsp"+"\n";
+ 		code += "\t"+"xorl %eax, %eax"+"\n";
+ 		code += "\t"+"call printf@PLT"+"\n";
+ 		code += "\t"+"movl $1, %edi"+"\n";
+ 		code += "\t"+"call exit@PLT"+"\n";
+ 		return code;
  	}
 
- 	/**
- 	 * Generate code for apply a binary instruction with a literal as operand
- 	 * to a given register
+	/**
+ 	 * Get the operand of an instruction for a given expression. The address of an
+ 	 * element of an array must be computed before by generateCodeForAddress
  	 */
- 	private static String generateCodeForBinaryInstructionToRegister(String instructionName, Literal operand, String registerName) {
- 		String ins;
-		if (operand instanceof IntLiteral) {
-			// The literal is an int literal
- 			ins = "\t"+instructionName+" $"+((IntLiteral)operand).getIntegerValue()+", %"+registerName+"\n";
- 		} else if (operand instanceof BooleanLiteral){
+ 	private static String getOperand(Expression operand) {
+ 		if (operand instanceof IntLiteral) {
+ 			// The literal is an int literal
+ 			return "$"+((IntLiteral)operand).getIntegerValue();
+ 		} else if (operand instanceof BooleanLiteral) {
  			// The literal is a boolean literal
- 			BooleanLiteral boolLiteral = (BooleanLiteral)operand;
- 			if (boolLiteral.getBooleanValue()) {
- 				ins = "\t"+instructionName+" $1, %"+registerName+"\n";
+ 			if (((BooleanLiteral)operand).getBooleanValue()) {
+ 				return "$1";
  			} else {
- 				ins = "\t"+instructionName+" $0, %"+registerName+"\n";
+ 				return "$0";
  			}
- 		} else {
-			// The literal is a float literal
+ 		} else if (operand instanceof FloatLiteral) {
+ 			// The literal is a float literal, that is stored at the end of the file
  			FloatLiteral floatLiteral = (FloatLiteral)operand;
  			Integer integer = Float.floatToRawIntBits(floatLiteral.getFloatValue());
  			String labelName = "."+generateLabel();
  			String floatLabel = labelName+":\n";
  			floatLabel += "\t"+".long "+integer+"\n";
  			floatLabels.add(floatLabel);
- 			ins = "\t"+instructionName+" "+labelName+", %"+registerName+"\n";
+ 			return labelName+"(%rip)";
+ 		}
+ 		Location loc = (Location)operand;
+ 		DeclarationIdentifier declIdentifier = loc.getDeclaration();
+ 		if (loc instanceof VarLocation) {
+ 			if (getRegister(loc) != null) {
+ 				// The variable is kept in a register
+ 				return "%"+getRegister(loc);
+ 			}
+ 			if (declIdentifier.isGlobal()) {
+ 				// The declaration is global
+ 				return declIdentifier.getId()+"(%rip)";
+ 			}
+ 			// The declaration is local
+ 			return getOffset(loc)+"(%rbp)";
+ 		}
+ 		// The location is a var array location
+ 		Expression index = ((VarArrayLocation)loc).getExpression();
+ 		if (declIdentifier.isGlobal()) {
+ 			if (index instanceof IntLiteral) {
+ 				return declIdentifier.getId()+"+"+(4*((IntLiteral)index).getIntegerValue())+"(%rip)";
+ 			}
+ 			return "(%"+base_register+",%"+index_register+",4)";
  		}
- 		return ins;
+ 		Integer arraySize = declIdentifier.getCapacity();
+ 		Integer correctBase = loc.getOffset()-(4*(arraySize-1));
+ 		if (index instanceof IntLiteral) {
+ 			return (correctBase+4*((IntLiteral)index).getIntegerValue())+"(%rbp)";
+ 		}
+ 		return correctBase+"(%rbp,%"+index_register+",4)";
  	}
 
  	/**
- 	 * Generate code for apply a binary instruction with a var location as operand
- 	 * to a given register
+ 	 * Get the register of an operand, or null if it is not a variable kept in a
+ 	 * register
  	 */
- 	private static String generateCodeForBinaryInstructionToRegister(String instructionName, VarLocation operand, String registerName) {
- 		DeclarationIdentifier locDeclaration = operand.getDeclaration();
- 		String ins = "\t"+instructionName+" ";
- 		if (locDeclaration.isGlobal()) {
- 			ins += locDeclaration.getId()+", %"+registerName+"\n";
- 		} else {
-			ins += operand.getOffset()+"(%ebp), %"+registerName+"\n";
+ 	private static String getRegister(Expression operand) {
+ 		if (operand instanceof VarLocation && ((VarLocation)operand).getDeclaration() != null) {
+ 			return allocator.getRegister(((VarLocation)operand).getDeclaration());
  		}
- 		return ins;
+ 		return null;
  	}
 
  	/**
- 	 * Generate code for apply a binary instruction with a var array location as operand
- 	 * to a given register
+ 	 * Get the offset from %rbp of a local location. The parameters have positive
+ 	 * offsets in the intermediate code, and are stored where the RESERVE
+ 	 * instruction said.
  	 */
- 	private static String generateCodeForBinaryInstructionToRegister(String instructionName, VarArrayLocation operand, String registerForIndex,String registerName) {
- 		DeclarationIdentifier locDeclaration = operand.getDeclaration();
- 		Expression index = operand.getExpression();
- 		String movIndex;
- 		String ins;
- 		if (index instanceof Literal) {
- 			// The index is a literal
- 			movIndex = generateCodeForBinaryInstructionToRegister("movl",(Literal)index,registerForIndex);
- 		} else {
- 			// The index is stored in a location
- 			movIndex = generateCodeForBinaryInstructionToRegister("movl",(VarLocation)index,registerForIndex);
- 		}
- 		if (locDeclaration.isGlobal()) {
- 			// The declaration is global
- 			ins = "\t"+"imull $4, %"+registerForIndex+"\n";
- 			ins += "\t"+instructionName+" "+locDeclaration.getId()+"+0(%"+registerForIndex+"), %"+registerName+"\n";
- 		} else {
- 			// The declaration is local
-			Integer arraySize = locDeclaration.getCapacity();
- 			Integer correctBase = locDeclaration.getOffset()-(4*(arraySize-1));
- 			ins = "\t"+instructionName+" "+correctBase+"(%ebp,%"+registerForIndex+",4), %"+registerName+"\n";
+ 	private static int getOffset(Location loc) {
+ 		int offset = loc.getOffset();
+ 		if (offset >= 8) {
+ 			return parameterOffsets.get((offset-8)/4);
  		}
- 		return movIndex+ins;
+ 		return offset;
  	}
 
-}
\ No newline at end of file
+}
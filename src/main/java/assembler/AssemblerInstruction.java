@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents a line of the x86-64 assembler code: a label, a directive
+ * or an instruction with its opcode and operands, in AT&T syntax, so the source
+ * operands come first and the destination is the last one.
+ * @author Facundo Molina
+ */
+public class AssemblerInstruction {
+
+	private String label;					// Name of the label, or null if the line is not a label
+	private String opcode;					// Opcode of the instruction or name of the directive
+	private List<String> operands;			// Operands of the instruction
+	private String text;					// Text after the name of a directive
+
+	/**
+	 * Constructor for an instruction with the given opcode and operands
+	 */
+	public AssemblerInstruction(String opcode, List<String> operands) {
+		this.opcode = opcode;
+		this.operands = operands;
+	}
+
+	/**
+	 * Constructor for a label with the given name
+	 */
+	public AssemblerInstruction(String label) {
+		this.label = label;
+		operands = new ArrayList<String>();
+	}
+
+	/**
+	 * Parse the lines of the given assembler code
+	 */
+	public static List<AssemblerInstruction> parse(String code) {
+		List<AssemblerInstruction> instructions = new LinkedList<AssemblerInstruction>();
+		for (String line : code.split("\n")) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			if (line.endsWith(":")) {
+				instructions.add(new AssemblerInstruction(line.substring(0,line.length()-1)));
+				continue;
+			}
+			int space = line.indexOf(' ');
+			String opcode = space < 0 ? line : line.substring(0,space);
+			String rest = space < 0 ? "" : line.substring(space+1).trim();
+			if (opcode.startsWith(".")) {
+				AssemblerInstruction directive = new AssemblerInstruction(opcode,new ArrayList<String>());
+				directive.text = rest;
+				instructions.add(directive);
+			} else {
+				instructions.add(new AssemblerInstruction(opcode,splitOperands(rest)));
+			}
+		}
+		return instructions;
+	}
+
+	/**
+	 * Split the operands of an instruction, keeping the commas of the memory
+	 * operands
+	 */
+	private static List<String> splitOperands(String text) {
+		List<String> operands = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				operands.add(text.substring(start,i).trim());
+				start = i+1;
+			}
+		}
+		if (start < text.length()) {
+			operands.add(text.substring(start).trim());
+		}
+		return operands;
+	}
+
+	/**
+	 * Returns true if the line is a label
+	 */
+	public boolean isLabel() {
+		return label != null;
+	}
+
+	/**
+	 * Returns true if the line is a directive
+	 */
+	public boolean isDirective() {
+		return text != null;
+	}
+
+	/**
+	 * Get the name of the label
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * Get the opcode
+	 */
+	public String getOpcode() {
+		return opcode;
+	}
+
+	/**
+	 * Get the operands
+	 */
+	public List<String> getOperands() {
+		return operands;
+	}
+
+	/**
+	 * Get the last operand, that is the destination of the instruction, or null
+	 * if it has no operands
+	 */
+	public String getDestination() {
+		return operands.isEmpty() ? null : operands.get(operands.size()-1);
+	}
+
+	/**
+	 * Returns true if the instruction is an unconditional or conditional jump
+	 */
+	public boolean isJump() {
+		return opcode != null && opcode.startsWith("j");
+	}
+
+	/**
+	 * Returns true if the instruction is a conditional jump
+	 */
+	public boolean isConditionalJump() {
+		return isJump() && !opcode.equals("jmp");
+	}
+
+	/**
+	 * Returns true if the instruction reads the flags set by the previous one
+	 */
+	public boolean readsFlags() {
+		if (opcode == null) {
+			return false;
+		}
+		return isConditionalJump() || opcode.startsWith("set") || opcode.startsWith("cmov")
+			|| opcode.equals("adcl") || opcode.equals("sbbl");
+	}
+
+	/**
+	 * Returns true if the control never continues with the next line
+	 */
+	public boolean endsFlow() {
+		return opcode != null && (opcode.equals("jmp") || opcode.equals("ret"));
+	}
+
+	/**
+	 * Returns true if an operand is a register
+	 */
+	public static boolean isRegister(String operand) {
+		return operand.startsWith("%");
+	}
+
+	/**
+	 * Returns true if an operand is in memory
+	 */
+	public static boolean isMemory(String operand) {
+		return !operand.startsWith("%") && !operand.startsWith("$");
+	}
+
+	/**
+	 * Get the 64 bits name of a register, so the names of the parts of a register
+	 * are the same
+	 */
+	public static String getRegisterName(String operand) {
+		String name = operand.substring(1);
+		if (name.startsWith("xmm")) {
+			return name;
+		}
+		if (name.matches("r[0-9]+[bwd]?")) {
+			return name.replaceAll("[bwd]$","");
+		}
+		if (name.length() == 3 && (name.startsWith("e") || name.startsWith("r"))) {
+			return "r"+name.substring(1);
+		}
+		if (name.length() == 3) {
+			// The low byte of rsi, rdi, rbp or rsp
+			return "r"+name.substring(0,2);
+		}
+		if (name.endsWith("l") || name.endsWith("h")) {
+			return "r"+name.charAt(0)+"x";
+		}
+		return "r"+name;
+	}
+
+	/**
+	 * Get the registers that appear in the operands of the instruction
+	 */
+	public List<String> getRegisters() {
+		List<String> registers = new LinkedList<String>();
+		for (String operand : operands) {
+			int start = operand.indexOf('%');
+			while (start >= 0) {
+				int end = start+1;
+				while (end < operand.length() && Character.isLetterOrDigit(operand.charAt(end))) {
+					end++;
+				}
+				registers.add(getRegisterName(operand.substring(start,end)));
+				start = operand.indexOf('%',end);
+			}
+		}
+		return registers;
+	}
+
+	/**
+	 * Get the line of assembler code
+	 */
+	public String toString() {
+		if (label != null) {
+			return label+":\n";
+		}
+		if (text != null) {
+			return "\t"+opcode+(text.isEmpty() ? "" : " "+text)+"\n";
+		}
+		String line = "\t"+opcode;
+		for (int i = 0; i < operands.size(); i++) {
+			line += (i == 0 ? " " : ", ")+operands.get(i);
+		}
+		return line+"\n";
+	}
+
+}
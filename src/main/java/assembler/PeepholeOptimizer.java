@@ -0,0 +1,422 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the peephole optimizer of the x86-64 assembler code. The
+ * lines of the code are parsed to a list of instructions, and the following
+ * patterns are applied until none of them changes the code:
+ * - The jumps to a jump are redirected to the target of the second jump
+ * - The jumps to the next line are deleted
+ * - A conditional jump over an unconditional jump is replaced by the inverted
+ *   conditional jump to the target of the second one
+ * - The lines after an unconditional jump or a return are deleted until the next label
+ * - The moves of a register to itself are deleted
+ * - A load of the location just stored is deleted, or replaced by a move between registers
+ * - An instruction that moves a value already moved by a previous one, with no
+ *   change to its operands in between, is deleted
+ * - The additions and subtractions of zero and the products by one are deleted,
+ *   and the products by a power of two are replaced by shifts
+ * The instructions that change the flags are only deleted or replaced when the
+ * next instruction does not read them. A 32-bit instruction that writes a
+ * register clears its upper half, so it is never deleted as a no-op.
+ * @author Facundo Molina
+ */
+public class PeepholeOptimizer {
+
+	private static final String[][] inverse_conditions = {{"e","ne"},{"z","nz"},{"l","ge"},{"le","g"},
+		{"b","ae"},{"be","a"},{"p","np"},{"s","ns"}};
+
+	private List<AssemblerInstruction> instructions;	// Instructions of the code
+
+	/**
+	 * Constructor with the instructions of the code
+	 */
+	private PeepholeOptimizer(List<AssemblerInstruction> instructions) {
+		this.instructions = new ArrayList<AssemblerInstruction>(instructions);
+	}
+
+	/**
+	 * Optimize the given assembler code
+	 */
+	public static String optimize(String code) {
+		List<AssemblerInstruction> instructions = optimize(AssemblerInstruction.parse(code));
+		StringBuilder result = new StringBuilder();
+		for (AssemblerInstruction instruction : instructions) {
+			result.append(instruction);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Optimize the given list of instructions
+	 */
+	public static List<AssemblerInstruction> optimize(List<AssemblerInstruction> instructions) {
+		PeepholeOptimizer optimizer = new PeepholeOptimizer(instructions);
+		boolean changed = true;
+		while (changed) {
+			changed = optimizer.redirectJumps();
+			changed |= optimizer.removeJumpsToNext();
+			changed |= optimizer.invertJumps();
+			changed |= optimizer.removeUnreachable();
+			changed |= optimizer.removeMoves();
+			changed |= optimizer.removeRepeated();
+			changed |= optimizer.simplifyArithmetic();
+		}
+		return optimizer.instructions;
+	}
+
+	/**
+	 * Redirect the jumps to a label followed by an unconditional jump to the
+	 * target of that jump
+	 */
+	private boolean redirectJumps() {
+		HashMap<String,Integer> labels = getLabels();
+		boolean changed = false;
+		for (int i = 0; i < instructions.size(); i++) {
+			AssemblerInstruction instruction = instructions.get(i);
+			if (!instruction.isJump() || instruction.getOperands().size() != 1) {
+				continue;
+			}
+			String target = instruction.getDestination();
+			HashSet<String> visited = new HashSet<String>();
+			boolean cycle = false;
+			while (labels.containsKey(target)) {
+				if (!visited.add(target)) {
+					// The jumps form a cycle that never leaves
+					cycle = true;
+					break;
+				}
+				AssemblerInstruction next = getInstructionAfter(labels.get(target));
+				if (next == null || !next.getOpcode().equals("jmp") || next.getOperands().size() != 1) {
+					break;
+				}
+				target = next.getDestination();
+			}
+			if (!cycle && !target.equals(instruction.getDestination())) {
+				instructions.set(i,newInstruction(instruction.getOpcode(),target));
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Delete the jumps to a label that follows them, with only labels in between
+	 */
+	private boolean removeJumpsToNext() {
+		boolean changed = false;
+		for (int i = 0; i < instructions.size(); i++) {
+			AssemblerInstruction instruction = instructions.get(i);
+			if (!instruction.isJump() || instruction.getOperands().size() != 1) {
+				continue;
+			}
+			for (int j = i+1; j < instructions.size() && instructions.get(j).isLabel(); j++) {
+				if (instructions.get(j).getLabel().equals(instruction.getDestination())) {
+					instructions.remove(i--);
+					changed = true;
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Replace a conditional jump over the unconditional jump that follows it by
+	 * the inverted conditional jump to the target of the unconditional one
+	 */
+	private boolean invertJumps() {
+		boolean changed = false;
+		for (int i = 0; i+1 < instructions.size(); i++) {
+			AssemblerInstruction instruction = instructions.get(i);
+			AssemblerInstruction next = instructions.get(i+1);
+			if (!instruction.isConditionalJump() || instruction.getOperands().size() != 1
+					|| next.isLabel() || !next.getOpcode().equals("jmp") || next.getOperands().size() != 1) {
+				continue;
+			}
+			String inverse = getInverse(instruction.getOpcode().substring(1));
+			for (int j = i+2; inverse != null && j < instructions.size() && instructions.get(j).isLabel(); j++) {
+				if (instructions.get(j).getLabel().equals(instruction.getDestination())) {
+					instructions.set(i,newInstruction("j"+inverse,next.getDestination()));
+					instructions.remove(i+1);
+					changed = true;
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Delete the instructions after an unconditional jump or a return, until the
+	 * next label or directive
+	 */
+	private boolean removeUnreachable() {
+		boolean changed = false;
+		for (int i = 0; i < instructions.size(); i++) {
+			if (!instructions.get(i).endsFlow()) {
+				continue;
+			}
+			while (i+1 < instructions.size() && !instructions.get(i+1).isLabel() && !instructions.get(i+1).isDirective()) {
+				instructions.remove(i+1);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Delete the moves of a register to itself, and the loads of the location
+	 * stored by the previous instruction
+	 */
+	private boolean removeMoves() {
+		boolean changed = false;
+		for (int i = 0; i < instructions.size(); i++) {
+			AssemblerInstruction instruction = instructions.get(i);
+			if (!isMove(instruction)) {
+				continue;
+			}
+			String source = instruction.getOperands().get(0);
+			String destination = instruction.getDestination();
+			if (source.equals(destination) && AssemblerInstruction.isRegister(source) && !instruction.getOpcode().equals("movl")) {
+				instructions.remove(i--);
+				changed = true;
+				continue;
+			}
+			if (i == 0 || !instruction.getOpcode().equals(instructions.get(i-1).getOpcode())) {
+				continue;
+			}
+			AssemblerInstruction previous = instructions.get(i-1);
+			if (!previous.getDestination().equals(source) || !AssemblerInstruction.isRegister(previous.getOperands().get(0))) {
+				continue;
+			}
+			// The location was just stored from a register
+			String register = previous.getOperands().get(0);
+			if (register.equals(destination) && instruction.getOpcode().equals("movq")) {
+				instructions.remove(i--);
+			} else if (AssemblerInstruction.isRegister(destination)) {
+				instructions.set(i,newInstruction(instruction.getOpcode(),register,destination));
+			} else {
+				continue;
+			}
+			changed = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * Delete the moves that repeat a previous move of the same straight code,
+	 * when neither the registers nor the memory they read have changed since
+	 */
+	private boolean removeRepeated() {
+		boolean changed = false;
+		LinkedList<AssemblerInstruction> available = new LinkedList<AssemblerInstruction>();
+		for (int i = 0; i < instructions.size(); i++) {
+			AssemblerInstruction instruction = instructions.get(i);
+			if (isPure(instruction)) {
+				boolean repeated = false;
+				for (AssemblerInstruction previous : available) {
+					if (previous.toString().equals(instruction.toString())) {
+						repeated = true;
+					}
+				}
+				if (repeated) {
+					instructions.remove(i--);
+					changed = true;
+					continue;
+				}
+			}
+			List<String> written = getWrittenRegisters(instruction);
+			if (written == null) {
+				available.clear();
+				continue;
+			}
+			boolean storesMemory = writesMemory(instruction);
+			for (int j = 0; j < available.size(); j++) {
+				AssemblerInstruction previous = available.get(j);
+				boolean killed = storesMemory && readsMemory(previous);
+				for (String register : previous.getRegisters()) {
+					killed = killed || written.contains(register);
+				}
+				if (killed) {
+					available.remove(j--);
+				}
+			}
+			if (isPure(instruction)) {
+				available.add(instruction);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Delete the additions and subtractions of zero and the products by one, and
+	 * replace the products by a power of two with shifts
+	 */
+	private boolean simplifyArithmetic() {
+		boolean changed = false;
+		for (int i = 0; i < instructions.size(); i++) {
+			AssemblerInstruction instruction = instructions.get(i);
+			String opcode = instruction.getOpcode();
+			if (instruction.isLabel() || instruction.getOperands().size() != 2 || !instruction.getOperands().get(0).matches("\\$-?[0-9]+")) {
+				continue;
+			}
+			if (i+1 < instructions.size() && instructions.get(i+1).readsFlags()) {
+				continue;
+			}
+			long value = Long.parseLong(instruction.getOperands().get(0).substring(1));
+			if ((opcode.equals("addq") || opcode.equals("subq")) && value == 0 || opcode.equals("imulq") && value == 1) {
+				instructions.remove(i--);
+				changed = true;
+			} else if (opcode.equals("imull") && value > 1 && Long.bitCount(value) == 1
+					&& AssemblerInstruction.isRegister(instruction.getDestination())) {
+				instructions.set(i,newInstruction("shll","$"+Long.numberOfTrailingZeros(value),instruction.getDestination()));
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Get the position of each label
+	 */
+	private HashMap<String,Integer> getLabels() {
+		HashMap<String,Integer> labels = new HashMap<String,Integer>();
+		for (int i = 0; i < instructions.size(); i++) {
+			if (instructions.get(i).isLabel()) {
+				labels.put(instructions.get(i).getLabel(),i);
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Get the first instruction after the given position that is not a label,
+	 * or null if there is none
+	 */
+	private AssemblerInstruction getInstructionAfter(int position) {
+		for (int i = position+1; i < instructions.size(); i++) {
+			if (!instructions.get(i).isLabel()) {
+				return instructions.get(i).isDirective() ? null : instructions.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the condition code that is true when the given one is false, or null
+	 * if it is unknown
+	 */
+	private static String getInverse(String condition) {
+		for (String[] pair : inverse_conditions) {
+			if (pair[0].equals(condition)) {
+				return pair[1];
+			}
+			if (pair[1].equals(condition)) {
+				return pair[0];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the instruction copies its first operand to the second one
+	 */
+	private static boolean isMove(AssemblerInstruction instruction) {
+		String opcode = instruction.getOpcode();
+		return !instruction.isLabel() && instruction.getOperands().size() == 2
+			&& (opcode.equals("movl") || opcode.equals("movq") || opcode.equals("movss"));
+	}
+
+	/**
+	 * Returns true if the only effect of the instruction is to write a register
+	 * that it does not read
+	 */
+	private static boolean isPure(AssemblerInstruction instruction) {
+		String opcode = instruction.getOpcode();
+		if (instruction.isLabel() || instruction.getOperands().size() != 2
+				|| !(isMove(instruction) || opcode.equals("movslq") || opcode.equals("leaq"))) {
+			return false;
+		}
+		String destination = instruction.getDestination();
+		if (!AssemblerInstruction.isRegister(destination)) {
+			return false;
+		}
+		List<String> registers = instruction.getRegisters();
+		registers.remove(registers.size()-1);
+		return !registers.contains(AssemblerInstruction.getRegisterName(destination));
+	}
+
+	/**
+	 * Get the registers written by an instruction, or null if it can change any
+	 * register or it ends the straight code
+	 */
+	private static List<String> getWrittenRegisters(AssemblerInstruction instruction) {
+		List<String> written = new LinkedList<String>();
+		if (instruction.isLabel() || instruction.isDirective() || instruction.isJump()) {
+			return null;
+		}
+		String opcode = instruction.getOpcode();
+		if (opcode.startsWith("cmp") || opcode.startsWith("test") || opcode.startsWith("ucomi") || opcode.startsWith("comi")) {
+			return written;
+		}
+		if (opcode.equals("cltd")) {
+			written.add("rdx");
+			return written;
+		}
+		if (opcode.equals("idivl")) {
+			written.add("rax");
+			written.add("rdx");
+			return written;
+		}
+		if (instruction.getOperands().isEmpty() || opcode.equals("call") || opcode.equals("rep")
+				|| opcode.startsWith("push") || opcode.startsWith("pop")) {
+			return null;
+		}
+		if (AssemblerInstruction.isRegister(instruction.getDestination())) {
+			written.add(AssemblerInstruction.getRegisterName(instruction.getDestination()));
+		}
+		return written;
+	}
+
+	/**
+	 * Returns true if an instruction writes to memory
+	 */
+	private static boolean writesMemory(AssemblerInstruction instruction) {
+		String opcode = instruction.getOpcode();
+		if (opcode.startsWith("cmp") || opcode.startsWith("test") || opcode.startsWith("ucomi") || opcode.startsWith("comi")) {
+			return false;
+		}
+		return instruction.getDestination() != null && AssemblerInstruction.isMemory(instruction.getDestination());
+	}
+
+	/**
+	 * Returns true if an instruction reads memory
+	 */
+	private static boolean readsMemory(AssemblerInstruction instruction) {
+		if (instruction.getOpcode().equals("leaq")) {
+			return false;
+		}
+		for (String operand : instruction.getOperands()) {
+			if (AssemblerInstruction.isMemory(operand)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create an instruction with the given opcode and operands
+	 */
+	private static AssemblerInstruction newInstruction(String opcode, String... operands) {
+		List<String> list = new ArrayList<String>();
+		for (String operand : operands) {
+			list.add(operand);
+		}
+		return new AssemblerInstruction(opcode,list);
+	}
+
+}
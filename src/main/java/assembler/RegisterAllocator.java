@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the linear scan register allocator of the x86-64 code of
+ * a method. The live interval of each local variable and temporal is computed from
+ * the liveness analysis of the intermediate code, and the intervals are assigned
+ * to registers in the order in which they start, spilling the interval that ends
+ * last when there are no free registers. The spilled variables keep their slot in
+ * the frame.
+ * The int and boolean variables live across a call are kept in the callee saved
+ * registers, and the float variables live across a call are kept in memory, since
+ * the System V convention does not preserve any xmm register.
+ * @author Facundo Molina
+ */
+public class RegisterAllocator {
+
+	private static final String[] callee_saved_registers = {"ebx","r12d","r13d","r14d","r15d"};
+	private static final String[] caller_saved_registers = {"esi","edi","r8d","r9d"};
+	private static final String[] float_registers = {"xmm8","xmm9","xmm10","xmm11","xmm12","xmm13","xmm14","xmm15"};
+
+	private LivenessAnalysis liveness;								// Liveness of the method
+	private IdentityHashMap<DeclarationIdentifier,String> registers;	// Register of each variable
+	private LinkedList<String> usedCalleeSavedRegisters;			// Callee saved registers to preserve
+	private int reserve;											// Position of the RESERVE statement
+
+	/**
+	 * This class represents the live interval of a variable
+	 */
+	private static class Interval {
+
+		DeclarationIdentifier variable;		// Variable
+		int start;							// First statement in which the variable is live
+		int end;							// Last statement in which the variable is live
+		boolean isFloat;					// True if the variable is kept in a xmm register
+		boolean acrossCall;					// True if the variable must be preserved by a call
+		String register;					// Assigned register
+
+		Interval(DeclarationIdentifier variable, int start, boolean isFloat) {
+			this.variable = variable;
+			this.start = start;
+			this.end = start;
+			this.isFloat = isFloat;
+		}
+
+	}
+
+	/**
+	 * Constructor with the statements of a method, that allocates the registers
+	 */
+	public RegisterAllocator(List<IntermediateCodeStatement> statements) {
+		liveness = new LivenessAnalysis(statements);
+		registers = new IdentityHashMap<DeclarationIdentifier,String>();
+		usedCalleeSavedRegisters = new LinkedList<String>();
+		allocate(computeIntervals(statements));
+	}
+
+	/**
+	 * Get the register assigned to a variable, or null if it is kept in memory
+	 */
+	public String getRegister(DeclarationIdentifier decl) {
+		return registers.get(decl);
+	}
+
+	/**
+	 * Get the callee saved registers used by the method, with their 64 bits name
+	 */
+	public List<String> getUsedCalleeSavedRegisters() {
+		return usedCalleeSavedRegisters;
+	}
+
+	/**
+	 * Get the variables that are live after the RESERVE statement, that are the
+	 * parameters and the variables read before being written, whose register must
+	 * be initialized to zero
+	 */
+	public List<DeclarationIdentifier> getVariablesLiveAtStart() {
+		List<DeclarationIdentifier> live = new LinkedList<DeclarationIdentifier>();
+		if (reserve >= 0) {
+			BitSet liveOut = liveness.getLiveOut(reserve);
+			for (int i = liveOut.nextSetBit(0); i >= 0; i = liveOut.nextSetBit(i+1)) {
+				live.add(liveness.getVariables().get(i));
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Compute the live interval of each variable. A variable is live at a statement
+	 * if it is live before it or it is defined by it.
+	 */
+	private List<Interval> computeIntervals(List<IntermediateCodeStatement> statements) {
+		List<DeclarationIdentifier> variables = liveness.getVariables();
+		Interval[] intervals = new Interval[variables.size()];
+		LinkedList<Integer> calls = new LinkedList<Integer>();
+		reserve = -1;
+		for (int i = 0; i < statements.size(); i++) {
+			BitSet live = (BitSet)liveness.getLiveIn(i).clone();
+			live.or(liveness.getDefinitions(i));
+			for (int v = live.nextSetBit(0); v >= 0; v = live.nextSetBit(v+1)) {
+				if (intervals[v] == null) {
+					intervals[v] = new Interval(variables.get(v),i,variables.get(v).getType().equals(Type.FLOAT));
+				}
+				intervals[v].end = i;
+			}
+			IntermediateCodeInstruction instruction = statements.get(i).getInstruction();
+			if (instruction == IntermediateCodeInstruction.CALL || instruction == IntermediateCodeInstruction.PRINT) {
+				calls.add(i);
+			} else if (instruction == IntermediateCodeInstruction.RESERVE) {
+				reserve = i;
+			}
+		}
+		List<Interval> result = new ArrayList<Interval>();
+		for (Interval interval : intervals) {
+			if (interval == null) {
+				continue;
+			}
+			// The caller saved registers are used to pass the arguments of a call and
+			// the parameters of the method
+			for (int call : calls) {
+				boolean isArgument = !interval.isFloat && interval.end == call
+					&& statements.get(call).getInstruction() == IntermediateCodeInstruction.CALL;
+				if (interval.start < call && (call < interval.end || isArgument)) {
+					interval.acrossCall = true;
+				}
+			}
+			if (!interval.isFloat && interval.start <= reserve) {
+				interval.acrossCall = true;
+			}
+			result.add(interval);
+		}
+		Collections.sort(result,new Comparator<Interval>() {
+			public int compare(Interval a, Interval b) {
+				return a.start - b.start;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Assign a register to each interval, in the order in which they start
+	 */
+	private void allocate(List<Interval> intervals) {
+		LinkedList<Interval> active = new LinkedList<Interval>();
+		LinkedList<String> free = new LinkedList<String>();
+		Collections.addAll(free,caller_saved_registers);
+		Collections.addAll(free,callee_saved_registers);
+		Collections.addAll(free,float_registers);
+		for (Interval interval : intervals) {
+			// Release the registers of the intervals that already ended
+			for (Interval activeInterval : new ArrayList<Interval>(active)) {
+				if (activeInterval.end < interval.start) {
+					active.remove(activeInterval);
+					free.add(activeInterval.register);
+				}
+			}
+			String register = null;
+			for (String candidate : free) {
+				if (isSuitable(candidate,interval)) {
+					register = candidate;
+					break;
+				}
+			}
+			if (register != null) {
+				free.remove(register);
+			} else {
+				// Spill the interval that ends last
+				Interval spilled = null;
+				for (Interval activeInterval : active) {
+					if (isSuitable(activeInterval.register,interval) && (spilled == null || activeInterval.end > spilled.end)) {
+						spilled = activeInterval;
+					}
+				}
+				if (spilled == null || spilled.end <= interval.end) {
+					continue;
+				}
+				register = spilled.register;
+				spilled.register = null;
+				active.remove(spilled);
+			}
+			interval.register = register;
+			active.add(interval);
+		}
+		for (Interval interval : intervals) {
+			if (interval.register != null) {
+				registers.put(interval.variable,interval.register);
+				String name = getQuadName(interval.register);
+				if (isCalleeSaved(interval.register) && !usedCalleeSavedRegisters.contains(name)) {
+					usedCalleeSavedRegisters.add(name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the register can keep the variable of the interval
+	 */
+	private boolean isSuitable(String register, Interval interval) {
+		if (register.startsWith("xmm")) {
+			return interval.isFloat && !interval.acrossCall;
+		}
+		return !interval.isFloat && (isCalleeSaved(register) || !interval.acrossCall);
+	}
+
+	/**
+	 * Returns true if the register is preserved by the calls
+	 */
+	private boolean isCalleeSaved(String register) {
+		for (String calleeSaved : callee_saved_registers) {
+			if (calleeSaved.equals(register)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the 64 bits name of a 32 bits register
+	 */
+	public static String getQuadName(String register) {
+		if (register.startsWith("r")) {
+			return register.substring(0,register.length()-1);
+		}
+		return "r"+register.substring(1);
+	}
+
+}
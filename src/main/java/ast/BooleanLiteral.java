@@ -18,6 +18,15 @@ public class BooleanLiteral extends Literal {
 		value = this;
 	}
 
+	/**
+	 * Constructor with a given boolean
+	 */
+	public BooleanLiteral(Boolean b) {
+		booleanValue = b;
+		rawValue = b.toString();
+		value = this;
+	}
+
 	/**
 	 * Default constructor
 	 */
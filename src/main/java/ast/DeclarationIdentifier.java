@@ -11,6 +11,7 @@ public class DeclarationIdentifier extends Identifiable {
 	private ArrayList<Literal> listOfValues;	// List of values. 
 	private boolean global;						// Is global
 	private int offset;							// Offset
+	private int slot;							// First slot in the activation frame
 
 	/**
 	 * Constructor for declarations identifiers: id
@@ -86,6 +87,20 @@ public class DeclarationIdentifier extends Identifiable {
 		this.offset = offset;
 	}
 
+	/**
+	 * Get the first slot in the activation frame
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Set the first slot in the activation frame
+	 */
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
 	/**
 	 * Return true is the declaration is global
 	 */
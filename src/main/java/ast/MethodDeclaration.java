@@ -13,6 +13,9 @@ public class MethodDeclaration extends Identifiable {
 	private boolean isExtern;					// IsExtern
 	private Type type;							// Return type
 	private Literal value;						// Return value
+	private int intSlots;						// Int slots of the activation frame
+	private int floatSlots;						// Float slots of the activation frame
+	private int booleanSlots;					// Boolean slots of the activation frame
 	
 	/**
 	 * Constructor
@@ -142,6 +145,36 @@ public class MethodDeclaration extends Identifiable {
 		
 	}
 
+	/**
+	 * Set the amount of slots of each type in the activation frame
+	 */
+	public void setSlots(int intSlots, int floatSlots, int booleanSlots) {
+		this.intSlots = intSlots;
+		this.floatSlots = floatSlots;
+		this.booleanSlots = booleanSlots;
+	}
+
+	/**
+	 * Get the amount of int slots of the activation frame
+	 */
+	public int getIntSlots() {
+		return intSlots;
+	}
+
+	/**
+	 * Get the amount of float slots of the activation frame
+	 */
+	public int getFloatSlots() {
+		return floatSlots;
+	}
+
+	/**
+	 * Get the amount of boolean slots of the activation frame
+	 */
+	public int getBooleanSlots() {
+		return booleanSlots;
+	}
+
 	/**
 	 * Get amount of field declarations
 	 */
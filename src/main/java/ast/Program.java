@@ -8,6 +8,9 @@ import java.util.LinkedList;
 public class Program extends AST {
 	
 	private List<ClassDeclaration> classDeclarations; 		// List of class declarations
+	private int intSlots;									// Int slots of the global frame
+	private int floatSlots;									// Float slots of the global frame
+	private int booleanSlots;								// Boolean slots of the global frame
 
 	/**
 	 * Constructor
@@ -44,6 +47,36 @@ public class Program extends AST {
 		classDeclarations.add(0,cd);
 	}
 	
+	/**
+	 * Set the amount of slots of each type in the global frame
+	 */
+	public void setSlots(int intSlots, int floatSlots, int booleanSlots) {
+		this.intSlots = intSlots;
+		this.floatSlots = floatSlots;
+		this.booleanSlots = booleanSlots;
+	}
+
+	/**
+	 * Get the amount of int slots of the global frame
+	 */
+	public int getIntSlots() {
+		return intSlots;
+	}
+
+	/**
+	 * Get the amount of float slots of the global frame
+	 */
+	public int getFloatSlots() {
+		return floatSlots;
+	}
+
+	/**
+	 * Get the amount of boolean slots of the global frame
+	 */
+	public int getBooleanSlots() {
+		return booleanSlots;
+	}
+
 	@Override
 	public String toString() {
 		String programString = "";
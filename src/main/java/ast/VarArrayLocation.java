@@ -10,6 +10,7 @@ public class VarArrayLocation extends Location {
 	private int blockId; 				// Block id
 	private List<String> listIds;		// List of identifiers
 	private Expression expr;			// Expression
+	private boolean inBounds;			// True if the index is known to be in the bounds of the array
 
 	/**
 	 * Constructor for a simple var array location (ID [expr])
@@ -63,6 +64,21 @@ public class VarArrayLocation extends Location {
 		expr = e;
 	}
 
+	/**
+	 * Returns true if the index is known to be in the bounds of the array, so
+	 * it does not need to be checked
+	 */
+	public boolean isInBounds() {
+		return inBounds;
+	}
+
+	/**
+	 * Set if the index is known to be in the bounds of the array
+	 */
+	public void setInBounds(boolean inBounds) {
+		this.inBounds = inBounds;
+	}
+
 	/**
 	 * Get the list of identifiers
 	 */
@@ -129,11 +145,30 @@ public class VarArrayLocation extends Location {
 	 * Get invalid index error message
 	 */
 	public String getInvalidIndexError() {
-		String lineAndColumn = getLineNumber() + ":" + getColumnNumber() + ": " ;
 		IntLiteral value = (IntLiteral)expr.getValue();
-		String error = "Error: the index expression value is " + value.getIntegerValue()
-			+ " and must be greater or equal than 0 and less than " + decl.getCapacity();
-		return lineAndColumn + error;
+		return getInvalidIndexError(value.getIntegerValue());
+	}
+
+	/**
+	 * Get invalid index error message for a given index value
+	 */
+	public String getInvalidIndexError(int index) {
+		return getInvalidIndexErrorPrefix() + index + getInvalidIndexErrorSuffix();
+	}
+
+	/**
+	 * Get the part of the invalid index error message before the index value
+	 */
+	public String getInvalidIndexErrorPrefix() {
+		String lineAndColumn = getLineNumber() + ":" + getColumnNumber() + ": " ;
+		return lineAndColumn + "Error: the index expression value is ";
+	}
+
+	/**
+	 * Get the part of the invalid index error message after the index value
+	 */
+	public String getInvalidIndexErrorSuffix() {
+		return " and must be greater or equal than 0 and less than " + decl.getCapacity();
 	}
 
 	@Override
@@ -0,0 +1,574 @@
+import java.util.List;
+import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Arrays;
+
+/**
+ * This class lowers a list of intermediate code statements to a BytecodeProgram.
+ * The labels are resolved to positions of the code array and every variable
+ * is assigned to a register of the int or float frames.
+ * @author Facundo Molina
+ */
+public class BytecodeGenerator {
+
+	private static final int scratch_registers = 2;		// Registers used for array values
+
+	private int[] code;														// Generated code
+	private int codeSize;													// Used positions of the code
+	private ArrayList<VarArrayLocation> arrayLocations;						// Array location of each instruction
+	private ArrayList<BytecodeMethod> methods;								// Methods
+	private HashMap<String,BytecodeMethod> methodsByName;					// Methods by name
+	private IdentityHashMap<DeclarationIdentifier,Integer> globalRegisters;	// Global register of each global
+	private HashMap<Integer,Integer> intConstants;							// Global register of each int constant
+	private HashMap<Integer,Integer> floatConstants;						// Global register of each float constant (raw bits)
+	private ArrayList<Integer> intGlobals;									// Initial values of the int globals
+	private ArrayList<Float> floatGlobals;									// Initial values of the float globals
+	private ArrayList<IdentityHashMap<DeclarationIdentifier,Integer>> localRegisters; // Registers of each method
+	private HashMap<Integer,Integer> labelPositions;						// Position of each label
+	private LinkedList<Integer> jumpsToResolve;								// Positions of the jump targets
+	private LinkedList<OneAddressStatement> pushedArguments;				// Arguments of the next call
+	private BytecodeMethod currentMethod;									// Method being generated
+	private IdentityHashMap<DeclarationIdentifier,Integer> currentRegisters;// Registers of the current method
+
+	/**
+	 * Constructor
+	 */
+	public BytecodeGenerator() {
+		code = new int[256];
+		codeSize = 0;
+		arrayLocations = new ArrayList<VarArrayLocation>();
+		methods = new ArrayList<BytecodeMethod>();
+		methodsByName = new HashMap<String,BytecodeMethod>();
+		globalRegisters = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		intConstants = new HashMap<Integer,Integer>();
+		floatConstants = new HashMap<Integer,Integer>();
+		intGlobals = new ArrayList<Integer>();
+		floatGlobals = new ArrayList<Float>();
+		localRegisters = new ArrayList<IdentityHashMap<DeclarationIdentifier,Integer>>();
+		labelPositions = new HashMap<Integer,Integer>();
+		jumpsToResolve = new LinkedList<Integer>();
+		pushedArguments = new LinkedList<OneAddressStatement>();
+	}
+
+	/**
+	 * Generate the bytecode program for a given list of intermediate code statements
+	 */
+	public BytecodeProgram generate(List<IntermediateCodeStatement> iCodeStatements) {
+		assignRegisters(iCodeStatements);
+		int methodIndex = -1;
+		for (IntermediateCodeStatement stmt : iCodeStatements) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.INITML) {
+				if (currentMethod != null) {
+					// The previous method could end without a return statement
+					emit(BytecodeInstruction.RET,0,0,0,0);
+				}
+				methodIndex++;
+				currentMethod = methods.get(methodIndex);
+				currentRegisters = localRegisters.get(methodIndex);
+				currentMethod.setEntry(codeSize);
+			} else if (currentMethod != null) {
+				generateStatement(stmt);
+			}
+		}
+		if (currentMethod != null) {
+			emit(BytecodeInstruction.RET,0,0,0,0);
+		}
+		for (int position : jumpsToResolve) {
+			Integer target = labelPositions.get(code[position]);
+			if (target == null) {
+				throw new IllegalStateException("Undefined label L" + code[position]);
+			}
+			code[position] = target;
+		}
+		BytecodeMethod main = methodsByName.get("main");
+		if (main == null) {
+			throw new IllegalStateException("There is no main method");
+		}
+		int[] intGlobalValues = new int[intGlobals.size()];
+		for (int i = 0; i < intGlobalValues.length; i++) {
+			intGlobalValues[i] = intGlobals.get(i);
+		}
+		float[] floatGlobalValues = new float[floatGlobals.size()];
+		for (int i = 0; i < floatGlobalValues.length; i++) {
+			floatGlobalValues[i] = floatGlobals.get(i);
+		}
+		return new BytecodeProgram(Arrays.copyOf(code,codeSize),methods,main,intGlobalValues,
+			floatGlobalValues,arrayLocations.toArray(new VarArrayLocation[0]));
+	}
+
+	/**
+	 * Assign a register to every global, every constant and every variable
+	 * used by each method. The arguments take the first registers of the frame.
+	 */
+	private void assignRegisters(List<IntermediateCodeStatement> iCodeStatements) {
+		LinkedList<DeclarationIdentifier> methodDeclarations = null;
+		for (IntermediateCodeStatement stmt : iCodeStatements) {
+			switch (stmt.getInstruction()) {
+				case GLOBAL:
+					DeclarationIdentifier global = ((Location)((OneAddressStatement)stmt).getExpression()).getDeclaration();
+					globalRegisters.put(global,newGlobal(isFloat(global.getType()),size(global)));
+					break;
+				case INITML:
+					if (methodDeclarations != null) {
+						layoutFrame(methodDeclarations);
+					}
+					String name = ((Location)((OneAddressStatement)stmt).getExpression()).getId();
+					BytecodeMethod method = new BytecodeMethod(name,methods.size());
+					methods.add(method);
+					if (methodsByName.containsKey(name)) {
+						throw new IllegalStateException("The label " + name + " names more than one method");
+					}
+					methodsByName.put(name,method);
+					methodDeclarations = new LinkedList<DeclarationIdentifier>();
+					break;
+				case RESERVE:
+					break;
+				default:
+					if (methodDeclarations != null) {
+						for (Expression operand : getOperands(stmt)) {
+							collectDeclarations(operand,methodDeclarations);
+						}
+					}
+					break;
+			}
+		}
+		if (methodDeclarations != null) {
+			layoutFrame(methodDeclarations);
+		}
+	}
+
+	/**
+	 * Assign the registers of the last created method for the given declarations
+	 */
+	private void layoutFrame(LinkedList<DeclarationIdentifier> declarations) {
+		BytecodeMethod method = methods.get(methods.size()-1);
+		IdentityHashMap<DeclarationIdentifier,Integer> registers = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		int intRegisters = 0;
+		int floatRegisters = 0;
+
+		// The arguments have positive offsets, and they take the first registers
+		int amountOfArguments = 0;
+		for (DeclarationIdentifier decl : declarations) {
+			if (isArgument(decl)) {
+				amountOfArguments = Math.max(amountOfArguments,argumentPosition(decl)+1);
+			}
+		}
+		int[] argumentSlots = new int[amountOfArguments];
+		Arrays.fill(argumentSlots,-1);
+		for (DeclarationIdentifier decl : declarations) {
+			if (isArgument(decl) && !registers.containsKey(decl)) {
+				if (isFloat(decl.getType())) {
+					registers.put(decl,floatRegisters);
+					argumentSlots[argumentPosition(decl)] = floatRegisters++;
+				} else {
+					registers.put(decl,intRegisters);
+					argumentSlots[argumentPosition(decl)] = intRegisters++;
+				}
+			}
+		}
+		method.setArgumentSlots(argumentSlots);
+		method.setIntArguments(intRegisters);
+		method.setFloatArguments(floatRegisters);
+
+		// Local and temporal variables
+		for (DeclarationIdentifier decl : declarations) {
+			if (!registers.containsKey(decl)) {
+				if (isFloat(decl.getType())) {
+					registers.put(decl,floatRegisters);
+					floatRegisters += size(decl);
+				} else {
+					registers.put(decl,intRegisters);
+					intRegisters += size(decl);
+				}
+			}
+		}
+		method.setIntFrameSize(intRegisters + scratch_registers);
+		method.setFloatFrameSize(floatRegisters + scratch_registers);
+		localRegisters.add(registers);
+	}
+
+	/**
+	 * Add to the list the non global declarations used by the given operand
+	 */
+	private void collectDeclarations(Expression operand, List<DeclarationIdentifier> declarations) {
+		if (operand instanceof Location) {
+			Location location = (Location)operand;
+			if (!location.getDeclaration().isGlobal()) {
+				declarations.add(location.getDeclaration());
+			}
+			if (location instanceof VarArrayLocation) {
+				collectDeclarations(((VarArrayLocation)location).getExpression(),declarations);
+			}
+		}
+	}
+
+	/**
+	 * Get the operands of a statement
+	 */
+	private List<Expression> getOperands(IntermediateCodeStatement stmt) {
+		LinkedList<Expression> operands = new LinkedList<Expression>();
+		if (stmt instanceof ThreeAddressStatement) {
+			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+			operands.add(threeStmt.getExpressionOne());
+			operands.add(threeStmt.getExpressionTwo());
+			operands.add(threeStmt.getResult());
+		} else if (stmt instanceof TwoAddressStatement) {
+			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+			if (stmt.getInstruction() != IntermediateCodeInstruction.CALL) {
+				operands.add(twoStmt.getExpression());
+			}
+			operands.add(twoStmt.getResult());
+		} else if (stmt instanceof OneAddressStatement) {
+			OneAddressStatement oneStmt = (OneAddressStatement)stmt;
+			if (oneStmt.getExpression() != null && stmt.getInstruction() != IntermediateCodeInstruction.CALL
+					&& stmt.getInstruction() != IntermediateCodeInstruction.LABEL) {
+				operands.add(oneStmt.getExpression());
+			}
+		}
+		return operands;
+	}
+
+	/**
+	 * Generate the bytecode of an intermediate code statement
+	 */
+	private void generateStatement(IntermediateCodeStatement stmt) {
+		switch (stmt.getInstruction()) {
+			case ADDI: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.ADDI); break;
+			case ADDF: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.ADDF); break;
+			case SUBI:
+				if (stmt instanceof ThreeAddressStatement) {
+					generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.SUBI);
+				} else {
+					generateUnary((TwoAddressStatement)stmt,BytecodeInstruction.NEGI);
+				}
+				break;
+			case SUBF:
+				if (stmt instanceof ThreeAddressStatement) {
+					generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.SUBF);
+				} else {
+					generateUnary((TwoAddressStatement)stmt,BytecodeInstruction.NEGF);
+				}
+				break;
+			case MULTI: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.MULTI); break;
+			case MULTF: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.MULTF); break;
+			case DIVI: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.DIVI); break;
+			case DIVF: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.DIVF); break;
+			case MOD: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.MOD); break;
+			case LESS: generateRelational((ThreeAddressStatement)stmt,BytecodeInstruction.LESSI,BytecodeInstruction.LESSF); break;
+			case LESSEQ: generateRelational((ThreeAddressStatement)stmt,BytecodeInstruction.LESSEQI,BytecodeInstruction.LESSEQF); break;
+			case GREAT: generateRelational((ThreeAddressStatement)stmt,BytecodeInstruction.GREATI,BytecodeInstruction.GREATF); break;
+			case GREATEQ: generateRelational((ThreeAddressStatement)stmt,BytecodeInstruction.GREATEQI,BytecodeInstruction.GREATEQF); break;
+			case EQ: generateRelational((ThreeAddressStatement)stmt,BytecodeInstruction.EQI,BytecodeInstruction.EQF); break;
+			case NEQ: generateRelational((ThreeAddressStatement)stmt,BytecodeInstruction.NEQI,BytecodeInstruction.NEQF); break;
+			case AND: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.AND); break;
+			case OR: generateBinary((ThreeAddressStatement)stmt,BytecodeInstruction.OR); break;
+			case NOT: generateUnary((TwoAddressStatement)stmt,BytecodeInstruction.NOT); break;
+			case ASSIGN:
+				TwoAddressStatement assignStmt = (TwoAddressStatement)stmt;
+				if (isFloat(operandType(assignStmt.getResult()))) {
+					generateUnary(assignStmt,BytecodeInstruction.MOVF);
+				} else {
+					generateUnary(assignStmt,BytecodeInstruction.MOVI);
+				}
+				break;
+			case LABEL:
+				labelPositions.put(((OneAddressStatement)stmt).getLabelToJump().getNumber(),codeSize);
+				break;
+			case JUMP:
+				emit(BytecodeInstruction.JUMP,0,((OneAddressStatement)stmt).getLabelToJump().getNumber(),0,0);
+				jumpsToResolve.add(codeSize-3);
+				break;
+			case JUMPF:
+				OneAddressStatement jumpStmt = (OneAddressStatement)stmt;
+				int condition = loadOperand(jumpStmt.getExpression(),0);
+				emit(BytecodeInstruction.JUMPF,0,condition,jumpStmt.getLabelToJump().getNumber(),0);
+				jumpsToResolve.add(codeSize-2);
+				break;
+			case PUSH:
+				pushedArguments.add((OneAddressStatement)stmt);
+				break;
+			case CALL: generateCall(stmt); break;
+			case RET: generateReturn(stmt); break;
+			case PRINT: generatePrint((OneAddressStatement)stmt); break;
+			default: break;
+		}
+	}
+
+	/**
+	 * Generate an instruction with two operands and a result
+	 */
+	private void generateBinary(ThreeAddressStatement stmt, int opcode) {
+		int one = loadOperand(stmt.getExpressionOne(),0);
+		int two = loadOperand(stmt.getExpressionTwo(),1);
+		Expression result = stmt.getResult();
+		emit(opcode,0,destination(result),one,two);
+		storeResult(result);
+	}
+
+	/**
+	 * Generate a relational instruction choosing the int or float version according
+	 * to the operands type
+	 */
+	private void generateRelational(ThreeAddressStatement stmt, int intOpcode, int floatOpcode) {
+		if (isFloat(operandType(stmt.getExpressionOne()))) {
+			generateBinary(stmt,floatOpcode);
+		} else {
+			generateBinary(stmt,intOpcode);
+		}
+	}
+
+	/**
+	 * Generate an instruction with an operand and a result
+	 */
+	private void generateUnary(TwoAddressStatement stmt, int opcode) {
+		int operand = loadOperand(stmt.getExpression(),0);
+		Expression result = stmt.getResult();
+		emit(opcode,0,destination(result),operand,0);
+		storeResult(result);
+	}
+
+	/**
+	 * Generate a call, passing the pushed arguments to the callee frame
+	 */
+	private void generateCall(IntermediateCodeStatement stmt) {
+		Location methodLocation;
+		int resultRegister = 0;
+		if (stmt instanceof TwoAddressStatement) {
+			methodLocation = (Location)((TwoAddressStatement)stmt).getExpression();
+			resultRegister = register(((Location)((TwoAddressStatement)stmt).getResult()).getDeclaration());
+		} else {
+			methodLocation = (Location)((OneAddressStatement)stmt).getExpression();
+		}
+		BytecodeMethod callee = methodsByName.get(methodLocation.getId());
+		if (callee == null) {
+			throw new IllegalStateException(methodLocation.getLineNumber() + ":" + methodLocation.getColumnNumber()
+				+ ": Error: the extern method " + methodLocation.getId() + " can not be executed");
+		}
+		// The arguments were pushed from the last one to the first one
+		int position = pushedArguments.size()-1;
+		for (OneAddressStatement push : pushedArguments) {
+			int slot = callee.getArgumentSlot(position);
+			if (slot >= 0) {
+				Expression argument = push.getExpression();
+				int value = loadOperand(argument,0);
+				if (isFloat(operandType(argument))) {
+					emit(BytecodeInstruction.ARGF,0,currentMethod.getFloatFrameSize()+slot,value,0);
+				} else {
+					emit(BytecodeInstruction.ARGI,0,currentMethod.getIntFrameSize()+slot,value,0);
+				}
+			}
+			position--;
+		}
+		pushedArguments.clear();
+		emit(BytecodeInstruction.CALL,callee.getIndex(),resultRegister,0,0);
+	}
+
+	/**
+	 * Generate a return
+	 */
+	private void generateReturn(IntermediateCodeStatement stmt) {
+		if (stmt instanceof OneAddressStatement) {
+			Expression expression = ((OneAddressStatement)stmt).getExpression();
+			int value = loadOperand(expression,0);
+			if (isFloat(operandType(expression))) {
+				emit(BytecodeInstruction.RETF,0,value,0,0);
+			} else {
+				emit(BytecodeInstruction.RETI,0,value,0,0);
+			}
+		} else {
+			emit(BytecodeInstruction.RET,0,0,0,0);
+		}
+	}
+
+	/**
+	 * Generate a print according to the expression type
+	 */
+	private void generatePrint(OneAddressStatement stmt) {
+		Expression expression = stmt.getExpression();
+		int value = loadOperand(expression,0);
+		Type type = operandType(expression);
+		if (isFloat(type)) {
+			emit(BytecodeInstruction.PRINTF,0,value,0,0);
+		} else if (type.equals(Type.BOOLEAN)) {
+			emit(BytecodeInstruction.PRINTB,0,value,0,0);
+		} else {
+			emit(BytecodeInstruction.PRINTI,0,value,0,0);
+		}
+	}
+
+	/**
+	 * Get the register that holds the value of the given operand. The array
+	 * elements are loaded into the scratch register with the given number
+	 */
+	private int loadOperand(Expression operand, int scratch) {
+		if (operand instanceof Literal) {
+			return constant((Literal)operand);
+		}
+		Location location = (Location)operand;
+		if (location instanceof VarArrayLocation) {
+			VarArrayLocation arrayLocation = (VarArrayLocation)location;
+			DeclarationIdentifier decl = arrayLocation.getDeclaration();
+			int index = loadOperand(arrayLocation.getExpression(),scratch);
+			int target = scratchRegister(decl.getType(),scratch);
+			int opcode = isFloat(decl.getType())?BytecodeInstruction.LOADF:BytecodeInstruction.LOADI;
+			emit(opcode,decl.getCapacity(),target,register(decl),index);
+			arrayLocations.set(arrayLocations.size()-1,arrayLocation);
+			return target;
+		}
+		return register(location.getDeclaration());
+	}
+
+	/**
+	 * Get the register where the result must be written. The array elements
+	 * are written first into a scratch register
+	 */
+	private int destination(Expression result) {
+		Location location = (Location)result;
+		if (location instanceof VarArrayLocation) {
+			return scratchRegister(location.getDeclaration().getType(),1);
+		}
+		return register(location.getDeclaration());
+	}
+
+	/**
+	 * Store the scratch register in the array element if the result is an array location
+	 */
+	private void storeResult(Expression result) {
+		if (result instanceof VarArrayLocation) {
+			VarArrayLocation arrayLocation = (VarArrayLocation)result;
+			DeclarationIdentifier decl = arrayLocation.getDeclaration();
+			int index = loadOperand(arrayLocation.getExpression(),0);
+			int opcode = isFloat(decl.getType())?BytecodeInstruction.STOREF:BytecodeInstruction.STOREI;
+			emit(opcode,decl.getCapacity(),register(decl),index,scratchRegister(decl.getType(),1));
+			arrayLocations.set(arrayLocations.size()-1,arrayLocation);
+		}
+	}
+
+	/**
+	 * Get the register of a declaration
+	 */
+	private int register(DeclarationIdentifier decl) {
+		Integer global = globalRegisters.get(decl);
+		if (global != null) {
+			return global;
+		}
+		return currentRegisters.get(decl);
+	}
+
+	/**
+	 * Get the scratch register with the given number of the current method
+	 */
+	private int scratchRegister(Type type, int number) {
+		if (isFloat(type)) {
+			return currentMethod.getFloatFrameSize() - scratch_registers + number;
+		}
+		return currentMethod.getIntFrameSize() - scratch_registers + number;
+	}
+
+	/**
+	 * Get the global register that holds the given constant
+	 */
+	private int constant(Literal literal) {
+		if (literal instanceof FloatLiteral) {
+			float value = ((FloatLiteral)literal).getFloatValue();
+			Integer global = floatConstants.get(Float.floatToRawIntBits(value));
+			if (global == null) {
+				global = newGlobal(true,1);
+				floatGlobals.set(~global,value);
+				floatConstants.put(Float.floatToRawIntBits(value),global);
+			}
+			return global;
+		}
+		int value;
+		if (literal instanceof IntLiteral) {
+			value = ((IntLiteral)literal).getIntegerValue();
+		} else {
+			value = ((BooleanLiteral)literal).getBooleanValue()?1:0;
+		}
+		Integer global = intConstants.get(value);
+		if (global == null) {
+			global = newGlobal(false,1);
+			intGlobals.set(~global,value);
+			intConstants.put(value,global);
+		}
+		return global;
+	}
+
+	/**
+	 * Create a global register of the given size, returning its operand
+	 */
+	private int newGlobal(boolean isFloat, int size) {
+		int position;
+		if (isFloat) {
+			position = floatGlobals.size();
+			for (int i = 0; i < size; i++) {
+				floatGlobals.add(0.0f);
+			}
+		} else {
+			position = intGlobals.size();
+			for (int i = 0; i < size; i++) {
+				intGlobals.add(0);
+			}
+		}
+		return ~position;
+	}
+
+	/**
+	 * Add an instruction to the code
+	 */
+	private void emit(int opcode, int extra, int a, int b, int c) {
+		if (codeSize + BytecodeInstruction.SIZE > code.length) {
+			code = Arrays.copyOf(code,code.length*2);
+		}
+		code[codeSize] = BytecodeInstruction.encode(opcode,extra);
+		code[codeSize+1] = a;
+		code[codeSize+2] = b;
+		code[codeSize+3] = c;
+		codeSize += BytecodeInstruction.SIZE;
+		arrayLocations.add(null);
+	}
+
+	/**
+	 * Get the type of an operand
+	 */
+	private Type operandType(Expression operand) {
+		if (operand instanceof Literal) {
+			return ((Literal)operand).getType();
+		}
+		return ((Location)operand).getDeclaration().getType();
+	}
+
+	/**
+	 * Returns true if the values of the type are stored in float registers
+	 */
+	private boolean isFloat(Type type) {
+		return type == Type.FLOAT;
+	}
+
+	/**
+	 * Returns true if the declaration is an argument of the method
+	 */
+	private boolean isArgument(DeclarationIdentifier decl) {
+		return decl.getOffset() >= 8;
+	}
+
+	/**
+	 * Get the position of an argument in the method declaration
+	 */
+	private int argumentPosition(DeclarationIdentifier decl) {
+		return (decl.getOffset() - 8) / 4;
+	}
+
+	/**
+	 * Get the amount of registers needed by a declaration
+	 */
+	private int size(DeclarationIdentifier decl) {
+		if (decl.isArrayDeclarationId()) {
+			return decl.getCapacity();
+		}
+		return 1;
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ * This class defines the instructions of the bytecode executed by the BytecodeVM.
+ * Every instruction takes four ints of the code array: the first one holds the
+ * opcode in the low 8 bits and an extra value (method index or array capacity)
+ * in the remaining bits, and the other three hold the operands.
+ * @author Facundo Molina
+ */
+public final class BytecodeInstruction {
+
+	public static final int SIZE = 4;			// Ints taken by each instruction
+
+	public static final int MOVI = 0;			// a = b (int or boolean)
+	public static final int MOVF = 1;			// a = b (float)
+	public static final int ADDI = 2;			// Integer addition
+	public static final int SUBI = 3;			// Integer substraction
+	public static final int MULTI = 4;			// Integer multiplication
+	public static final int DIVI = 5;			// Integer division
+	public static final int MOD = 6;			// Mod
+	public static final int NEGI = 7;			// Integer negation
+	public static final int ADDF = 8;			// Float addition
+	public static final int SUBF = 9;			// Float substraction
+	public static final int MULTF = 10;			// Float multiplication
+	public static final int DIVF = 11;			// Float division
+	public static final int NEGF = 12;			// Float negation
+	public static final int LESSI = 13;			// Integer less
+	public static final int LESSEQI = 14;		// Integer less or equal
+	public static final int GREATI = 15;		// Integer great
+	public static final int GREATEQI = 16;		// Integer great or equal
+	public static final int EQI = 17;			// Integer or boolean equality
+	public static final int NEQI = 18;			// Integer or boolean non equality
+	public static final int LESSF = 19;			// Float less
+	public static final int LESSEQF = 20;		// Float less or equal
+	public static final int GREATF = 21;		// Float great
+	public static final int GREATEQF = 22;		// Float great or equal
+	public static final int EQF = 23;			// Float equality
+	public static final int NEQF = 24;			// Float non equality
+	public static final int AND = 25;			// Conjunction
+	public static final int OR = 26;			// Disyunction
+	public static final int NOT = 27;			// Negator
+	public static final int JUMP = 28;			// Jump to a
+	public static final int JUMPF = 29;			// Jump to b if a is false
+	public static final int LOADI = 30;			// a = b[c] (int), extra is the capacity
+	public static final int LOADF = 31;			// a = b[c] (float), extra is the capacity
+	public static final int STOREI = 32;		// a[b] = c (int), extra is the capacity
+	public static final int STOREF = 33;		// a[b] = c (float), extra is the capacity
+	public static final int ARGI = 34;			// Callee frame slot a = b (int)
+	public static final int ARGF = 35;			// Callee frame slot a = b (float)
+	public static final int CALL = 36;			// Call the method extra storing the result in a
+	public static final int RETI = 37;			// Return the int a
+	public static final int RETF = 38;			// Return the float a
+	public static final int RET = 39;			// Return without value
+	public static final int PRINTI = 40;		// Print the int a
+	public static final int PRINTF = 41;		// Print the float a
+	public static final int PRINTB = 42;		// Print the boolean a
+
+	private static final String[] names = {
+		"MOVI","MOVF","ADDI","SUBI","MULTI","DIVI","MOD","NEGI","ADDF","SUBF","MULTF",
+		"DIVF","NEGF","LESSI","LESSEQI","GREATI","GREATEQI","EQI","NEQI","LESSF","LESSEQF",
+		"GREATF","GREATEQF","EQF","NEQF","AND","OR","NOT","JUMP","JUMPF","LOADI","LOADF",
+		"STOREI","STOREF","ARGI","ARGF","CALL","RETI","RETF","RET","PRINTI","PRINTF","PRINTB"
+	};
+
+	/**
+	 * Constructor
+	 */
+	private BytecodeInstruction() {
+	}
+
+	/**
+	 * Get the name of the given opcode
+	 */
+	public static String getName(int opcode) {
+		return names[opcode];
+	}
+
+	/**
+	 * Encode the first word of an instruction
+	 */
+	public static int encode(int opcode, int extra) {
+		return opcode | (extra << 8);
+	}
+
+	/**
+	 * Get the opcode of the first word of an instruction
+	 */
+	public static int opcode(int word) {
+		return word & 0xFF;
+	}
+
+	/**
+	 * Get the extra value of the first word of an instruction
+	 */
+	public static int extra(int word) {
+		return word >>> 8;
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ * This class represents a method lowered to bytecode, with the layout
+ * of its int and float register frames.
+ * @author Facundo Molina
+ */
+public class BytecodeMethod {
+
+	private String name;				// Method name
+	private int index;					// Index in the program
+	private int entry;					// Position of the first instruction
+	private int intFrameSize;			// Amount of int registers
+	private int floatFrameSize;			// Amount of float registers
+	private int intArguments;			// Amount of int registers used by the arguments
+	private int floatArguments;			// Amount of float registers used by the arguments
+	private int[] argumentSlots;		// Register of each argument, -1 if it is never used
+
+	/**
+	 * Constructor
+	 */
+	public BytecodeMethod(String name, int index) {
+		this.name = name;
+		this.index = index;
+		argumentSlots = new int[0];
+	}
+
+	/**
+	 * Get the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the entry
+	 */
+	public int getEntry() {
+		return entry;
+	}
+
+	/**
+	 * Set the entry
+	 */
+	public void setEntry(int entry) {
+		this.entry = entry;
+	}
+
+	/**
+	 * Get the int frame size
+	 */
+	public int getIntFrameSize() {
+		return intFrameSize;
+	}
+
+	/**
+	 * Set the int frame size
+	 */
+	public void setIntFrameSize(int size) {
+		intFrameSize = size;
+	}
+
+	/**
+	 * Get the float frame size
+	 */
+	public int getFloatFrameSize() {
+		return floatFrameSize;
+	}
+
+	/**
+	 * Set the float frame size
+	 */
+	public void setFloatFrameSize(int size) {
+		floatFrameSize = size;
+	}
+
+	/**
+	 * Get the amount of int registers used by the arguments. They are
+	 * always the first registers of the frame
+	 */
+	public int getIntArguments() {
+		return intArguments;
+	}
+
+	/**
+	 * Set the amount of int registers used by the arguments
+	 */
+	public void setIntArguments(int amount) {
+		intArguments = amount;
+	}
+
+	/**
+	 * Get the amount of float registers used by the arguments. They are
+	 * always the first registers of the frame
+	 */
+	public int getFloatArguments() {
+		return floatArguments;
+	}
+
+	/**
+	 * Set the amount of float registers used by the arguments
+	 */
+	public void setFloatArguments(int amount) {
+		floatArguments = amount;
+	}
+
+	/**
+	 * Set the registers of the arguments, -1 for the arguments never used
+	 */
+	public void setArgumentSlots(int[] slots) {
+		argumentSlots = slots;
+	}
+
+	/**
+	 * Get the register of the argument at the given position, or -1 if the
+	 * argument is never used
+	 */
+	public int getArgumentSlot(int position) {
+		if (position < argumentSlots.length) {
+			return argumentSlots[position];
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (entry: " + entry + ", int registers: " + intFrameSize 
+			+ ", float registers: " + floatFrameSize + ")";
+	}
+
+}
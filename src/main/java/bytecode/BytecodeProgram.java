@@ -0,0 +1,116 @@
+import java.util.List;
+
+/**
+ * This class represents a program lowered to bytecode. The operands of the
+ * instructions are registers: a non negative operand n is the register n of the
+ * current frame, and a negative operand n is the global register ~n. The
+ * constants are stored as global registers.
+ * @author Facundo Molina
+ */
+public class BytecodeProgram {
+
+	private int[] code;							// Instructions
+	private List<BytecodeMethod> methods;		// Methods
+	private BytecodeMethod mainMethod;			// Main method
+	private int[] intGlobals;					// Initial values of the int global registers
+	private float[] floatGlobals;				// Initial values of the float global registers
+	private VarArrayLocation[] arrayLocations;	// Array location of each instruction, for errors
+	private int maxIntFrameSize;				// Biggest int frame 
+	private int maxFloatFrameSize;				// Biggest float frame
+
+	/**
+	 * Constructor
+	 */
+	public BytecodeProgram(int[] code, List<BytecodeMethod> methods, BytecodeMethod mainMethod, 
+			int[] intGlobals, float[] floatGlobals, VarArrayLocation[] arrayLocations) {
+		this.code = code;
+		this.methods = methods;
+		this.mainMethod = mainMethod;
+		this.intGlobals = intGlobals;
+		this.floatGlobals = floatGlobals;
+		this.arrayLocations = arrayLocations;
+		for (BytecodeMethod method : methods) {
+			maxIntFrameSize = Math.max(maxIntFrameSize,method.getIntFrameSize());
+			maxFloatFrameSize = Math.max(maxFloatFrameSize,method.getFloatFrameSize());
+		}
+	}
+
+	/**
+	 * Get the code
+	 */
+	public int[] getCode() {
+		return code;
+	}
+
+	/**
+	 * Get the methods
+	 */
+	public List<BytecodeMethod> getMethods() {
+		return methods;
+	}
+
+	/**
+	 * Get the main method
+	 */
+	public BytecodeMethod getMainMethod() {
+		return mainMethod;
+	}
+
+	/**
+	 * Get the initial values of the int global registers
+	 */
+	public int[] getIntGlobals() {
+		return intGlobals;
+	}
+
+	/**
+	 * Get the initial values of the float global registers
+	 */
+	public float[] getFloatGlobals() {
+		return floatGlobals;
+	}
+
+	/**
+	 * Get the array location accessed by the instruction at the given position
+	 */
+	public VarArrayLocation getArrayLocation(int position) {
+		return arrayLocations[position / BytecodeInstruction.SIZE];
+	}
+
+	/**
+	 * Get the biggest int frame size
+	 */
+	public int getMaxIntFrameSize() {
+		return maxIntFrameSize;
+	}
+
+	/**
+	 * Get the biggest float frame size
+	 */
+	public int getMaxFloatFrameSize() {
+		return maxFloatFrameSize;
+	}
+
+	@Override
+	public String toString() {
+		String programString = "";
+		for (BytecodeMethod method : methods) {
+			programString += method.toString() + "\n";
+			int end = code.length;
+			if (method.getIndex()+1 < methods.size()) {
+				end = methods.get(method.getIndex()+1).getEntry();
+			}
+			for (int pc = method.getEntry(); pc < end; pc += BytecodeInstruction.SIZE) {
+				int word = code[pc];
+				programString += "\t" + pc + ": " + BytecodeInstruction.getName(BytecodeInstruction.opcode(word))
+					+ " " + code[pc+1] + " " + code[pc+2] + " " + code[pc+3];
+				if (BytecodeInstruction.extra(word) != 0) {
+					programString += " [" + BytecodeInstruction.extra(word) + "]";
+				}
+				programString += "\n";
+			}
+		}
+		return programString;
+	}
+
+}
@@ -0,0 +1,270 @@
+import java.io.PrintStream;
+import java.util.List;
+import java.util.LinkedList;
+import java.util.Arrays;
+
+/**
+ * This class represents the virtual machine that executes a BytecodeProgram.
+ * The frames of the calls are windows of two register stacks, one for the int
+ * (and boolean) values and other for the float values, so a call does not
+ * allocate objects.
+ * @author Facundo Molina
+ */
+public class BytecodeVM {
+
+	private static final int default_max_depth = 10000;	// Default maximum amount of nested calls
+	private static final int call_size = 4;				// Ints taken by each call in the call stack
+
+	private BytecodeProgram program;		// Program
+	private PrintStream out;				// Output of the print statements
+	private int maxDepth;					// Maximum amount of nested calls
+	private LinkedList<String> errorsList;	// Errors
+
+	private int[] intRegisters;				// Int register stack
+	private float[] floatRegisters;			// Float register stack
+	private int[] intGlobals;				// Int global registers
+	private float[] floatGlobals;			// Float global registers
+	private int intFrame;					// Base of the current int frame
+	private int floatFrame;					// Base of the current float frame
+
+	/**
+	 * Constructor
+	 */
+	public BytecodeVM(BytecodeProgram program) {
+		this(program,System.out,default_max_depth);
+	}
+
+	/**
+	 * Constructor with a given output and maximum amount of nested calls
+	 */
+	public BytecodeVM(BytecodeProgram program, PrintStream out, int maxDepth) {
+		this.program = program;
+		this.out = out;
+		this.maxDepth = maxDepth;
+		errorsList = new LinkedList<String>();
+	}
+
+	/**
+	 * Execute the program from the main method and returns the errors
+	 */
+	public List<String> run() {
+		int[] code = program.getCode();
+		List<BytecodeMethod> methods = program.getMethods();
+		int maxIntFrame = program.getMaxIntFrameSize();
+		int maxFloatFrame = program.getMaxFloatFrameSize();
+		BytecodeMethod method = program.getMainMethod();
+
+		intGlobals = Arrays.copyOf(program.getIntGlobals(),program.getIntGlobals().length);
+		floatGlobals = Arrays.copyOf(program.getFloatGlobals(),program.getFloatGlobals().length);
+		intRegisters = new int[Math.max(256,2*maxIntFrame)];
+		floatRegisters = new float[Math.max(256,2*maxFloatFrame)];
+		intFrame = 0;
+		floatFrame = 0;
+
+		int[] calls = new int[call_size*16];
+		int depth = 0;
+		int pc = method.getEntry();
+		int returnInt = 0;
+		float returnFloat = 0;
+
+		while (true) {
+			int word = code[pc];
+			int a = code[pc+1];
+			int b = code[pc+2];
+			int c = code[pc+3];
+			switch (word & 0xFF) {
+				case BytecodeInstruction.MOVI: setInt(a,getInt(b)); break;
+				case BytecodeInstruction.MOVF: setFloat(a,getFloat(b)); break;
+				case BytecodeInstruction.ADDI: setInt(a,getInt(b)+getInt(c)); break;
+				case BytecodeInstruction.SUBI: setInt(a,getInt(b)-getInt(c)); break;
+				case BytecodeInstruction.MULTI: setInt(a,getInt(b)*getInt(c)); break;
+				case BytecodeInstruction.DIVI: setInt(a,getInt(b)/getInt(c)); break;
+				case BytecodeInstruction.MOD: setInt(a,getInt(b)%getInt(c)); break;
+				case BytecodeInstruction.NEGI: setInt(a,-getInt(b)); break;
+				case BytecodeInstruction.ADDF: setFloat(a,getFloat(b)+getFloat(c)); break;
+				case BytecodeInstruction.SUBF: setFloat(a,getFloat(b)-getFloat(c)); break;
+				case BytecodeInstruction.MULTF: setFloat(a,getFloat(b)*getFloat(c)); break;
+				case BytecodeInstruction.DIVF: setFloat(a,getFloat(b)/getFloat(c)); break;
+				case BytecodeInstruction.NEGF: setFloat(a,-getFloat(b)); break;
+				case BytecodeInstruction.LESSI: setInt(a,getInt(b)<getInt(c)?1:0); break;
+				case BytecodeInstruction.LESSEQI: setInt(a,getInt(b)<=getInt(c)?1:0); break;
+				case BytecodeInstruction.GREATI: setInt(a,getInt(b)>getInt(c)?1:0); break;
+				case BytecodeInstruction.GREATEQI: setInt(a,getInt(b)>=getInt(c)?1:0); break;
+				case BytecodeInstruction.EQI: setInt(a,getInt(b)==getInt(c)?1:0); break;
+				case BytecodeInstruction.NEQI: setInt(a,getInt(b)!=getInt(c)?1:0); break;
+				case BytecodeInstruction.LESSF: setInt(a,getFloat(b)<getFloat(c)?1:0); break;
+				case BytecodeInstruction.LESSEQF: setInt(a,getFloat(b)<=getFloat(c)?1:0); break;
+				case BytecodeInstruction.GREATF: setInt(a,getFloat(b)>getFloat(c)?1:0); break;
+				case BytecodeInstruction.GREATEQF: setInt(a,getFloat(b)>=getFloat(c)?1:0); break;
+				case BytecodeInstruction.EQF: setInt(a,getFloat(b)==getFloat(c)?1:0); break;
+				case BytecodeInstruction.NEQF: setInt(a,getFloat(b)!=getFloat(c)?1:0); break;
+				case BytecodeInstruction.AND: setInt(a,getInt(b)&getInt(c)); break;
+				case BytecodeInstruction.OR: setInt(a,getInt(b)|getInt(c)); break;
+				case BytecodeInstruction.NOT: setInt(a,getInt(b)^1); break;
+				case BytecodeInstruction.JUMP:
+					pc = a;
+					continue;
+				case BytecodeInstruction.JUMPF:
+					if (getInt(a)==0) {
+						pc = b;
+						continue;
+					}
+					break;
+				case BytecodeInstruction.LOADI: {
+					int index = getInt(c);
+					if (index < 0 || index >= (word >>> 8)) {
+						return indexError(pc,index);
+					}
+					setInt(a,b>=0?intRegisters[intFrame+b+index]:intGlobals[~b+index]);
+					break;
+				}
+				case BytecodeInstruction.LOADF: {
+					int index = getInt(c);
+					if (index < 0 || index >= (word >>> 8)) {
+						return indexError(pc,index);
+					}
+					setFloat(a,b>=0?floatRegisters[floatFrame+b+index]:floatGlobals[~b+index]);
+					break;
+				}
+				case BytecodeInstruction.STOREI: {
+					int index = getInt(b);
+					if (index < 0 || index >= (word >>> 8)) {
+						return indexError(pc,index);
+					}
+					if (a>=0) {
+						intRegisters[intFrame+a+index] = getInt(c);
+					} else {
+						intGlobals[~a+index] = getInt(c);
+					}
+					break;
+				}
+				case BytecodeInstruction.STOREF: {
+					int index = getInt(b);
+					if (index < 0 || index >= (word >>> 8)) {
+						return indexError(pc,index);
+					}
+					if (a>=0) {
+						floatRegisters[floatFrame+a+index] = getFloat(c);
+					} else {
+						floatGlobals[~a+index] = getFloat(c);
+					}
+					break;
+				}
+				case BytecodeInstruction.ARGI: intRegisters[intFrame+a] = getInt(b); break;
+				case BytecodeInstruction.ARGF: floatRegisters[floatFrame+a] = getFloat(b); break;
+				case BytecodeInstruction.CALL: {
+					if (depth == maxDepth) {
+						errorsList.add("Error: the maximum amount of nested calls (" + maxDepth + ") was exceeded");
+						return errorsList;
+					}
+					if (call_size*(depth+1) > calls.length) {
+						calls = Arrays.copyOf(calls,calls.length*2);
+					}
+					calls[call_size*depth] = pc;
+					calls[call_size*depth+1] = intFrame;
+					calls[call_size*depth+2] = floatFrame;
+					calls[call_size*depth+3] = method.getIndex();
+					depth++;
+					intFrame += method.getIntFrameSize();
+					floatFrame += method.getFloatFrameSize();
+					method = methods.get(word >>> 8);
+					ensureCapacity(maxIntFrame,maxFloatFrame);
+					// The arguments were already written, the other registers start in zero
+					Arrays.fill(intRegisters,intFrame+method.getIntArguments(),intFrame+method.getIntFrameSize(),0);
+					Arrays.fill(floatRegisters,floatFrame+method.getFloatArguments(),floatFrame+method.getFloatFrameSize(),0.0f);
+					pc = method.getEntry();
+					continue;
+				}
+				case BytecodeInstruction.RETI:
+				case BytecodeInstruction.RETF:
+				case BytecodeInstruction.RET: {
+					int opcode = word & 0xFF;
+					if (opcode == BytecodeInstruction.RETI) {
+						returnInt = getInt(a);
+					} else if (opcode == BytecodeInstruction.RETF) {
+						returnFloat = getFloat(a);
+					}
+					if (depth == 0) {
+						// Return of the main method
+						return errorsList;
+					}
+					depth--;
+					pc = calls[call_size*depth];
+					intFrame = calls[call_size*depth+1];
+					floatFrame = calls[call_size*depth+2];
+					method = methods.get(calls[call_size*depth+3]);
+					if (opcode == BytecodeInstruction.RETI) {
+						setInt(code[pc+1],returnInt);
+					} else if (opcode == BytecodeInstruction.RETF) {
+						setFloat(code[pc+1],returnFloat);
+					}
+					break;
+				}
+				case BytecodeInstruction.PRINTI: out.println(getInt(a)); break;
+				case BytecodeInstruction.PRINTF: out.println(getFloat(a)); break;
+				case BytecodeInstruction.PRINTB: out.println(getInt(a)!=0); break;
+				default:
+					throw new IllegalStateException("Unknown opcode " + (word & 0xFF) + " at " + pc);
+			}
+			pc += BytecodeInstruction.SIZE;
+		}
+	}
+
+	/**
+	 * Get the value of an int register
+	 */
+	private int getInt(int register) {
+		return register>=0?intRegisters[intFrame+register]:intGlobals[~register];
+	}
+
+	/**
+	 * Set the value of an int register
+	 */
+	private void setInt(int register, int value) {
+		if (register>=0) {
+			intRegisters[intFrame+register] = value;
+		} else {
+			intGlobals[~register] = value;
+		}
+	}
+
+	/**
+	 * Get the value of a float register
+	 */
+	private float getFloat(int register) {
+		return register>=0?floatRegisters[floatFrame+register]:floatGlobals[~register];
+	}
+
+	/**
+	 * Set the value of a float register
+	 */
+	private void setFloat(int register, float value) {
+		if (register>=0) {
+			floatRegisters[floatFrame+register] = value;
+		} else {
+			floatGlobals[~register] = value;
+		}
+	}
+
+	/**
+	 * Grow the register stacks so the current frame and the frame of a
+	 * future call fit in them
+	 */
+	private void ensureCapacity(int maxIntFrame, int maxFloatFrame) {
+		if (intFrame + 2*maxIntFrame > intRegisters.length) {
+			intRegisters = Arrays.copyOf(intRegisters,2*(intFrame+2*maxIntFrame));
+		}
+		if (floatFrame + 2*maxFloatFrame > floatRegisters.length) {
+			floatRegisters = Arrays.copyOf(floatRegisters,2*(floatFrame+2*maxFloatFrame));
+		}
+	}
+
+	/**
+	 * Add the invalid index error of the array access at the given position
+	 */
+	private List<String> indexError(int pc, int index) {
+		errorsList.add(program.getArrayLocation(pc).getInvalidIndexError(index));
+		return errorsList;
+	}
+
+}
@@ -0,0 +1,10 @@
+/**
+ * Compiled expression that evaluates to a boolean
+ * @author Facundo Molina
+ */
+public interface BoolNode {
+
+	/* Evaluate the expression in the given frame */
+	boolean execute(ClosureFrame frame);
+
+}
@@ -0,0 +1,16 @@
+/**
+ * This class represents an error found while executing the compiled program
+ * @author Facundo Molina
+ */
+public class ClosureException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 */
+	public ClosureException(String error) {
+		super(error);
+	}
+
+}
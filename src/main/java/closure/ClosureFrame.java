@@ -0,0 +1,25 @@
+/**
+ * This class represents the activation frame of a compiled method. The int and
+ * boolean variables are stored in the int slots (a boolean is 0 or 1) and the
+ * float variables in the float slots. The arrays take consecutive slots.
+ * @author Facundo Molina
+ */
+public class ClosureFrame {
+
+	public final int[] ints;			// Int and boolean slots
+	public final float[] floats;		// Float slots
+	public int returnInt;				// Int or boolean returned value
+	public float returnFloat;			// Float returned value
+	public int depth;					// Amount of nested calls of the method
+	public ClosureMethod tailMethod;	// Method of the tail call to execute after this one, null if none
+	public ClosureFrame tailFrame;		// Frame of the tail call, with its arguments
+
+	/**
+	 * Constructor
+	 */
+	public ClosureFrame(int intSlots, int floatSlots) {
+		ints = new int[intSlots];
+		floats = new float[floatSlots];
+	}
+
+}
@@ -0,0 +1,47 @@
+import java.util.List;
+import java.util.LinkedList;
+
+/**
+ * This class represents the interpreter that executes the closures compiled
+ * by the ClosureCompilerVisitor.
+ * @author Facundo Molina
+ */
+public class ClosureInterpreter {
+
+	private static final int default_max_depth = 10000;	// Default maximum amount of nested calls
+
+	private LinkedList<String> errorsList;	// Errors
+	private int maxDepth;					// Maximum amount of nested calls
+
+	/**
+	 * Constructor
+	 */
+	public ClosureInterpreter() {
+		this(default_max_depth);
+	}
+
+	/**
+	 * Constructor with a given maximum amount of nested calls
+	 */
+	public ClosureInterpreter(int maxDepth) {
+		errorsList = new LinkedList<String>();
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Compile the program and execute the main method. Returns the errors
+	 */
+	public List<String> run(Program p) {
+		ClosureCompilerVisitor compiler = new ClosureCompilerVisitor(maxDepth);
+		ClosureMethod mainMethod = (ClosureMethod)compiler.visit(p);
+		try {
+			mainMethod.execute(mainMethod.newFrame());
+		} catch (ClosureException e) {
+			errorsList.add(e.getMessage());
+		} catch (StackOverflowError e) {
+			errorsList.add("Error: the java stack was exhausted before the maximum amount of nested calls (" + maxDepth + ")");
+		}
+		return errorsList;
+	}
+
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * This class represents a method compiled to closures. The slots of the
+ * arguments are stored so the calls can write them in the new frame.
+ * @author Facundo Molina
+ */
+public class ClosureMethod {
+
+	private String name;			// Method name
+	private StatementNode body;		// Compiled block
+	private int intSlots;			// Amount of int slots of the frame
+	private int floatSlots;			// Amount of float slots of the frame
+	private int[] argumentSlots;	// Slot of each argument
+	private boolean[] floatArguments;	// Argument stored in the float slots
+	private ClosureFrame freeFrame;	// Frame left by a tail call, taken by the next one
+
+	/**
+	 * Constructor
+	 */
+	public ClosureMethod(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Get the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the compiled block
+	 */
+	public StatementNode getBody() {
+		return body;
+	}
+
+	/**
+	 * Set the compiled block
+	 */
+	public void setBody(StatementNode body) {
+		this.body = body;
+	}
+
+	/**
+	 * Set the size of the frame
+	 */
+	public void setSlots(int intSlots, int floatSlots) {
+		this.intSlots = intSlots;
+		this.floatSlots = floatSlots;
+	}
+
+	/**
+	 * Set the slots of the arguments
+	 */
+	public void setArgumentSlots(int[] argumentSlots, boolean[] floatArguments) {
+		this.argumentSlots = argumentSlots;
+		this.floatArguments = floatArguments;
+	}
+
+	/**
+	 * Get the slot of the argument in the given position
+	 */
+	public int getArgumentSlot(int position) {
+		return argumentSlots[position];
+	}
+
+	/**
+	 * Returns true if the argument in the given position is a float
+	 */
+	public boolean isFloatArgument(int position) {
+		return floatArguments[position];
+	}
+
+	/**
+	 * Create a new frame for an execution of the method
+	 */
+	public ClosureFrame newFrame() {
+		return new ClosureFrame(intSlots,floatSlots);
+	}
+
+	/**
+	 * Take a frame for a tail call of the method, reusing the frame left by
+	 * the previous one if any
+	 */
+	public ClosureFrame newTailFrame() {
+		ClosureFrame frame = freeFrame;
+		if (frame == null) {
+			return newFrame();
+		}
+		freeFrame = null;
+		Arrays.fill(frame.ints,0);
+		Arrays.fill(frame.floats,0.0f);
+		return frame;
+	}
+
+	/**
+	 * Execute the method in the given frame and then the tail calls left by
+	 * it, one after the other, so they do not take java stack. The frame of
+	 * a method that leaves a tail call is kept for the next tail call of the
+	 * method. Returns the frame of the last executed method, with the
+	 * returned value.
+	 */
+	public ClosureFrame execute(ClosureFrame frame) {
+		ClosureMethod method = this;
+		method.body.execute(frame);
+		while (frame.tailMethod != null) {
+			ClosureMethod tailMethod = frame.tailMethod;
+			ClosureFrame tailFrame = frame.tailFrame;
+			frame.tailMethod = null;
+			frame.tailFrame = null;
+			method.freeFrame = frame;
+			tailMethod.body.execute(tailFrame);
+			method = tailMethod;
+			frame = tailFrame;
+		}
+		return frame;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (int slots: " + intSlots + ", float slots: " + floatSlots + ")";
+	}
+
+}
@@ -0,0 +1,10 @@
+/**
+ * Compiled expression that evaluates to a float
+ * @author Facundo Molina
+ */
+public interface FloatNode {
+
+	/* Evaluate the expression in the given frame */
+	float execute(ClosureFrame frame);
+
+}
@@ -0,0 +1,10 @@
+/**
+ * Compiled expression that evaluates to an int
+ * @author Facundo Molina
+ */
+public interface IntNode {
+
+	/* Evaluate the expression in the given frame */
+	int execute(ClosureFrame frame);
+
+}
@@ -0,0 +1,15 @@
+/**
+ * Compiled statement. The execution returns how the control flow continues.
+ * @author Facundo Molina
+ */
+public interface StatementNode {
+
+	int NORMAL = 0;			// Continue with the next statement
+	int BREAK = 1;			// Exit the innermost cycle
+	int CONTINUE = 2;		// Go to the next iteration of the innermost cycle
+	int RETURN = 3;			// Exit the method
+
+	/* Execute the statement in the given frame */
+	int execute(ClosureFrame frame);
+
+}
@@ -13,9 +13,14 @@ public class CTdsCompiler {
 	private static CTdsParser parser;			// Parser
 	private static LinkedList<String> errors; 	// Errors
 	private static LinkedList<IntermediateCodeStatement> iCodeStatements; // Intermediate code statements
+	private static boolean jvmMode;				// Generate a jar instead of the assembler code
+	private static boolean cMode;				// Generate C code instead of the assembler code
 
 	/* 
- 	 * Main method for run the compiler with an input file 
+ 	 * Main method for run the compiler with an input file. The option -jvm
+ 	 * generates the runnable jar exec.jar instead of the assembler code, and
+ 	 * the option -c generates the C code program.c and compiles it with
+ 	 * gcc -O2.
  	 */
  	public static void main(String[] argv) {
  		
@@ -23,6 +28,17 @@ public class CTdsCompiler {
 
  			errors = new LinkedList<String>();
  			iCodeStatements = new LinkedList<IntermediateCodeStatement>();
+ 			jvmMode = false;
+ 			cMode = false;
+ 			for (int i = 1; i < argv.length; i++) {
+ 				if (argv[i].equals("-jvm")) {
+ 					jvmMode = true;
+ 				} else if (argv[i].equals("-c")) {
+ 					cMode = true;
+ 				} else {
+ 					errors.add("Error: unknown option " + argv[i]);
+ 				}
+ 			}
 
  			// Read file
  			FileReader file = new FileReader(argv[0]);
@@ -40,10 +56,21 @@ public class CTdsCompiler {
  				checkTypes(program); 			
  			}
  			
- 			if (errors.size()==0) {
+ 			if (errors.size()==0 && jvmMode) {
+
+ 				// Only generate the jar if there are no type errors
+ 				generateJar(program);
+
+ 			} else if (errors.size()==0 && cMode) {
+
+ 				// Only generate the C code if there are no type errors
+ 				generateCCode(program);
+
+ 			} else if (errors.size()==0) {
  				
  				// Only generate the intermedite code if there are no type errors
  				generateIntermediateCode(program);
+ 				optimizeIntermediateCode();
  				for (IntermediateCodeStatement i : iCodeStatements) {
  					System.out.println(i.toString());
  				}
@@ -53,8 +80,13 @@ public class CTdsCompiler {
  			}
 
  			if (errors.size()==0) {
- 				// Compile the assembler
- 				compileAssemblerCode();
+ 				if (cMode) {
+ 					// Compile the C code
+ 					runGcc("gcc -O2 -fwrapv program.c -o exec");
+ 				} else if (!jvmMode) {
+ 					// Compile the assembler
+ 					compileAssemblerCode();
+ 				}
  				System.out.println("Compilation completed");
  			} else {
  				for (String error : errors) {
@@ -106,21 +138,57 @@ public class CTdsCompiler {
  	}
 
  	/**
- 	 * Generate assembler code
+ 	 * Optimize the intermediate code
+ 	 */
+ 	private static void optimizeIntermediateCode() {
+ 		iCodeStatements = IntermediateCodeOptimizer.optimize(iCodeStatements);
+ 	}
+
+	/**
+ 	 * Generate the x86-64 assembler code
  	 */
  	private static void generateAssemblerCode() {
- 		AssemblerCodeGenerator.generateAssemblerCode(iCodeStatements);
+ 		AssemblerCodeGenerator.generateAssemblerCode(iCodeStatements,new File(System.getProperty("user.dir"),"assembler.s").getPath());
+ 	}
+
+ 	/**
+ 	 * Generate the runnable jar with a JVM class for each class
+ 	 */
+ 	private static void generateJar(Program p) throws IOException {
+ 		try {
+ 			JvmCodeGenerator.generateJar(p,new File(System.getProperty("user.dir"),"exec.jar").getPath());
+ 		} catch (IllegalStateException e) {
+ 			// The program calls an extern method
+ 			errors.add("Error: " + e.getMessage());
+ 		}
+ 	}
+
+ 	/**
+ 	 * Generate the C code of the program
+ 	 */
+ 	private static void generateCCode(Program p) throws IOException {
+ 		CCodeGeneratorVisitor cCodeGenerator = new CCodeGeneratorVisitor();
+ 		PrintWriter writer = new PrintWriter(new File(System.getProperty("user.dir"),"program.c"),"UTF-8");
+ 		writer.print(cCodeGenerator.visit(p));
+ 		writer.close();
  	}
 
  	/**
  	 * Compile the generated assembler code
   	 */
  	private static void compileAssemblerCode() {
+ 		runGcc("gcc assembler.s -o exec");
+ 	}
+
+ 	/**
+ 	 * Run gcc with the given command and print its output
+  	 */
+ 	private static void runGcc(String command) {
  		StringBuffer output = new StringBuffer();
  		Process p;
  		try {
  			String[] envs;	
- 			p = Runtime.getRuntime().exec("gcc assembler.s -o exec",null,new File(System.getProperty("user.dir")));
+ 			p = Runtime.getRuntime().exec(command,null,new File(System.getProperty("user.dir")));
  			p.waitFor();
 			BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
 			String line = "";			
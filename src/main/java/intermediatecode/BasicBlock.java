@@ -0,0 +1,185 @@
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents a basic block of the control flow graph of a method: a
+ * sequence of intermediate code statements that is only entered by its first
+ * statement and only left by its last statement
+ * @author Facundo Molina
+ */
+public class BasicBlock {
+
+	private int index;								// Index of the block in the graph
+	private int first;								// Position of the first statement in the method
+	private int last;								// Position of the last statement in the method
+	private List<IntermediateCodeStatement> statements;	// Statements of the block
+	private LinkedList<BasicBlock> predecessors;	// Blocks that can be executed before this block
+	private LinkedList<BasicBlock> successors;		// Blocks that can be executed after this block
+	private BasicBlock dominator;					// Immediate dominator
+	private LinkedList<BasicBlock> dominated;		// Blocks immediately dominated by this block
+	private int order;								// Position in the reverse postorder, -1 if unreachable
+	private int preorder;							// Entry time in the dominator tree
+	private int postorder;							// Exit time in the dominator tree
+	private Loop loop;								// Innermost loop that contains the block
+
+	/**
+	 * Constructor with the statements of the block, from the first to the last position
+	 */
+	public BasicBlock(int index, int first, int last, List<IntermediateCodeStatement> statements) {
+		this.index = index;
+		this.first = first;
+		this.last = last;
+		this.statements = statements;
+		predecessors = new LinkedList<BasicBlock>();
+		successors = new LinkedList<BasicBlock>();
+		dominated = new LinkedList<BasicBlock>();
+		order = -1;
+	}
+
+	/**
+	 * Get the index of the block in the graph
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the position of the first statement in the method
+	 */
+	public int getFirst() {
+		return first;
+	}
+
+	/**
+	 * Get the position of the last statement in the method
+	 */
+	public int getLast() {
+		return last;
+	}
+
+	/**
+	 * Get the statements of the block
+	 */
+	public List<IntermediateCodeStatement> getStatements() {
+		return statements;
+	}
+
+	/**
+	 * Get the last statement of the block
+	 */
+	public IntermediateCodeStatement getLastStatement() {
+		return statements.get(statements.size()-1);
+	}
+
+	/**
+	 * Get the predecessors
+	 */
+	public List<BasicBlock> getPredecessors() {
+		return predecessors;
+	}
+
+	/**
+	 * Get the successors
+	 */
+	public List<BasicBlock> getSuccessors() {
+		return successors;
+	}
+
+	/**
+	 * Add an edge from this block to the given block
+	 */
+	public void addSuccessor(BasicBlock block) {
+		successors.add(block);
+		block.predecessors.add(this);
+	}
+
+	/**
+	 * Get the immediate dominator, or null if this is the entry or is unreachable
+	 */
+	public BasicBlock getDominator() {
+		return dominator;
+	}
+
+	/**
+	 * Set the immediate dominator
+	 */
+	public void setDominator(BasicBlock dominator) {
+		this.dominator = dominator;
+		if (dominator != null) {
+			dominator.dominated.add(this);
+		}
+	}
+
+	/**
+	 * Get the blocks immediately dominated by this block, its children in the
+	 * dominator tree
+	 */
+	public List<BasicBlock> getDominated() {
+		return dominated;
+	}
+
+	/**
+	 * Returns true if every path from the entry to the given block passes through
+	 * this block. A block dominates itself.
+	 */
+	public boolean dominates(BasicBlock block) {
+		return isReachable() && block.isReachable()
+			&& preorder <= block.preorder && block.postorder <= postorder;
+	}
+
+	/**
+	 * Get the position in the reverse postorder of the graph
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Set the position in the reverse postorder of the graph
+	 */
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	/**
+	 * Returns true if the block can be reached from the entry
+	 */
+	public boolean isReachable() {
+		return order >= 0;
+	}
+
+	/**
+	 * Set the entry and exit times of the block in the dominator tree
+	 */
+	public void setDominatorTreeTimes(int preorder, int postorder) {
+		this.preorder = preorder;
+		this.postorder = postorder;
+	}
+
+	/**
+	 * Get the innermost loop that contains the block, or null if it is not in a loop
+	 */
+	public Loop getLoop() {
+		return loop;
+	}
+
+	/**
+	 * Set the innermost loop that contains the block
+	 */
+	public void setLoop(Loop loop) {
+		this.loop = loop;
+	}
+
+	/**
+	 * Get the number of loops that contain the block
+	 */
+	public int getLoopDepth() {
+		return loop == null ? 0 : loop.getDepth();
+	}
+
+	@Override
+	public String toString() {
+		return "B"+index;
+	}
+
+}
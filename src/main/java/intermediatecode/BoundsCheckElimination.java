@@ -0,0 +1,468 @@
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the elimination of the checks of the indexes of the
+ * array elements of a method in SSA form. The range of values of each int
+ * variable is computed from its definition: the constants, the sums, differences,
+ * products, divisions and remainders of operands with known ranges, the copies,
+ * and the phi statements of the basic induction variables, that only grow or only
+ * decrease from the values that enter the loop. Where a variable is read, its
+ * range is narrowed by the comparisons of the JUMPF statements that decide the
+ * execution of the dominating blocks, like the condition of a for statement in
+ * its body. The array elements whose index is always in the bounds of the array
+ * are marked, so the native code does not check them, and so are the ones whose
+ * index was already checked against an array that is not bigger by a statement
+ * that dominates them, since an invalid index ends the program.
+ * @author Facundo Molina
+ */
+public class BoundsCheckElimination {
+
+	private static final long[] unknown = {Integer.MIN_VALUE,Integer.MAX_VALUE};	// Range of any int
+
+	private SSAForm ssa;														// Method in SSA form
+	private IdentityHashMap<DeclarationIdentifier,BasicBlock> blocks;			// Block that assigns each variable
+	private IdentityHashMap<DeclarationIdentifier,IntermediateCodeStatement> definitions;	// Statement that assigns each variable
+	private IdentityHashMap<DeclarationIdentifier,long[]> ranges;				// Range of each variable, null while it is computed
+	private IdentityHashMap<DeclarationIdentifier,Integer> checked;				// Smallest capacity that each index was checked against
+
+	/**
+	 * Constructor with a method in SSA form
+	 */
+	private BoundsCheckElimination(SSAForm ssa) {
+		this.ssa = ssa;
+		blocks = new IdentityHashMap<DeclarationIdentifier,BasicBlock>();
+		definitions = new IdentityHashMap<DeclarationIdentifier,IntermediateCodeStatement>();
+		ranges = new IdentityHashMap<DeclarationIdentifier,long[]>();
+		checked = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (PhiStatement phi : ssa.getPhis(block)) {
+				blocks.put(phi.getResult().getDeclaration(),block);
+				definitions.put(phi.getResult().getDeclaration(),phi);
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null) {
+					blocks.put(decl,block);
+					definitions.put(decl,stmt);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mark the array elements of a method in SSA form whose index is always in
+	 * the bounds of the array
+	 */
+	public static void optimize(SSAForm ssa) {
+		if (ssa.getGraph().getEntry() != null) {
+			BoundsCheckElimination elimination = new BoundsCheckElimination(ssa);
+			elimination.computeRanges();
+			elimination.mark();
+		}
+	}
+
+	/**
+	 * Compute the range of each variable in reverse postorder, so the operands
+	 * of a definition, that dominate it, already have their range and the
+	 * computation does not go through the whole chain of definitions
+	 */
+	private void computeRanges() {
+		for (BasicBlock block : ssa.getGraph().getReversePostorder()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (PhiStatement phi : ssa.getPhis(block)) {
+				getRange(phi.getResult().getDeclaration());
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null) {
+					getRange(decl);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mark the array elements of the blocks walking the dominator tree from the
+	 * entry. The checks of a block are removed from the table when leaving it.
+	 */
+	private void mark() {
+		LinkedList<BasicBlock> blocks = new LinkedList<BasicBlock>();
+		LinkedList<IdentityHashMap<DeclarationIdentifier,Integer>> replaced = new LinkedList<IdentityHashMap<DeclarationIdentifier,Integer>>();
+		blocks.push(ssa.getGraph().getEntry());
+		replaced.push(null);
+		while (!blocks.isEmpty()) {
+			BasicBlock current = blocks.pop();
+			IdentityHashMap<DeclarationIdentifier,Integer> blockReplaced = replaced.pop();
+			if (blockReplaced != null) {
+				// Leaving the block, restore the checks of its dominator
+				for (DeclarationIdentifier index : blockReplaced.keySet()) {
+					Integer capacity = blockReplaced.get(index);
+					if (capacity == null) {
+						checked.remove(index);
+					} else {
+						checked.put(index,capacity);
+					}
+				}
+				continue;
+			}
+			if (!ssa.isExecutable(current)) {
+				continue;
+			}
+			blockReplaced = new IdentityHashMap<DeclarationIdentifier,Integer>();
+			mark(current,blockReplaced);
+			blocks.push(current);
+			replaced.push(blockReplaced);
+			for (BasicBlock dominated : current.getDominated()) {
+				blocks.push(dominated);
+				replaced.push(null);
+			}
+		}
+	}
+
+	/**
+	 * Mark the array elements of a block, given the smallest capacity that each
+	 * index was checked against before the statement, and add its checks to the
+	 * table keeping the capacity they replace
+	 */
+	private void mark(BasicBlock block, IdentityHashMap<DeclarationIdentifier,Integer> blockReplaced) {
+		for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+			List<VarArrayLocation> locations = new LinkedList<VarArrayLocation>();
+			for (Expression operand : SSAForm.getOperands(stmt)) {
+				collect(operand,locations);
+			}
+			// The checks of a statement are not ordered, so they only help the
+			// next statements
+			for (VarArrayLocation location : locations) {
+				long[] range = getRange(location.getExpression(),block);
+				Integer capacity = checked.get(getVariable(location.getExpression()));
+				location.setInBounds(range[0] >= 0 && range[1] < location.getDeclaration().getCapacity()
+					|| capacity != null && capacity <= location.getDeclaration().getCapacity());
+			}
+			for (VarArrayLocation location : locations) {
+				DeclarationIdentifier index = getVariable(location.getExpression());
+				Integer capacity = checked.get(index);
+				if (!location.isInBounds() && index != null && (capacity == null || capacity > location.getDeclaration().getCapacity())) {
+					if (!blockReplaced.containsKey(index)) {
+						blockReplaced.put(index,capacity);
+					}
+					checked.put(index,location.getDeclaration().getCapacity());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add an operand and the indexes it reads to the given array elements, if
+	 * they are array elements
+	 */
+	private static void collect(Expression operand, List<VarArrayLocation> locations) {
+		if (operand instanceof VarArrayLocation) {
+			collect(((VarArrayLocation)operand).getExpression(),locations);
+			locations.add((VarArrayLocation)operand);
+		}
+	}
+
+	/**
+	 * Get the range of the values of an int operand read in the given block
+	 */
+	private long[] getRange(Expression operand, BasicBlock block) {
+		if (operand instanceof IntLiteral) {
+			long value = ((IntLiteral)operand).getIntegerValue();
+			return new long[] {value,value};
+		}
+		DeclarationIdentifier decl = getVariable(operand);
+		if (decl == null) {
+			return unknown;
+		}
+		return narrow(getRange(decl),decl,block);
+	}
+
+	/**
+	 * Get the range of the values assigned to a variable
+	 */
+	private long[] getRange(DeclarationIdentifier decl) {
+		if (ranges.containsKey(decl)) {
+			// The variable depends on itself through a cycle that is not an
+			// induction variable
+			long[] range = ranges.get(decl);
+			return range == null ? unknown : range;
+		}
+		ranges.put(decl,null);
+		long[] range = computeRange(decl);
+		ranges.put(decl,range);
+		return range;
+	}
+
+	/**
+	 * Compute the range of the values assigned to a variable by its definition
+	 */
+	private long[] computeRange(DeclarationIdentifier decl) {
+		IntermediateCodeStatement definition = definitions.get(decl);
+		BasicBlock block = blocks.get(decl);
+		if (decl.getType() != Type.INT || definition == null) {
+			// The parameters can have any value
+			return unknown;
+		}
+		if (definition instanceof PhiStatement) {
+			return getPhiRange((PhiStatement)definition,block);
+		}
+		if (definition instanceof TwoAddressStatement) {
+			if (definition.getInstruction() == IntermediateCodeInstruction.ASSIGN) {
+				return getRange(((TwoAddressStatement)definition).getExpression(),block);
+			}
+			return unknown;
+		}
+		if (!(definition instanceof ThreeAddressStatement)) {
+			return unknown;
+		}
+		ThreeAddressStatement threeStmt = (ThreeAddressStatement)definition;
+		long[] a = getRange(threeStmt.getExpressionOne(),block);
+		long[] b = getRange(threeStmt.getExpressionTwo(),block);
+		switch (definition.getInstruction()) {
+			case ADDI:
+				return newRange(a[0]+b[0],a[1]+b[1]);
+			case SUBI:
+				return newRange(a[0]-b[1],a[1]-b[0]);
+			case MULTI:
+				return newRange(Math.min(Math.min(a[0]*b[0],a[0]*b[1]),Math.min(a[1]*b[0],a[1]*b[1])),
+					Math.max(Math.max(a[0]*b[0],a[0]*b[1]),Math.max(a[1]*b[0],a[1]*b[1])));
+			case DIVI:
+				if (b[0] <= 0) {
+					return unknown;
+				}
+				return newRange(Math.min(a[0]/b[0],a[0]/b[1]),Math.max(a[1]/b[0],a[1]/b[1]));
+			case MOD:
+				if (b[0] <= 0) {
+					return unknown;
+				}
+				// The remainder has the sign of the dividend
+				if (a[0] >= 0) {
+					return newRange(0,Math.min(a[1],b[1]-1));
+				} else if (a[1] <= 0) {
+					return newRange(Math.max(a[0],1-b[1]),0);
+				}
+				return newRange(1-b[1],b[1]-1);
+			default:
+				return unknown;
+		}
+	}
+
+	/**
+	 * Get the range of a phi statement. The values that come from the variable
+	 * itself plus a positive constant only make it greater, and the values minus
+	 * a positive constant only make it smaller, when they do not overflow.
+	 */
+	private long[] getPhiRange(PhiStatement phi, BasicBlock block) {
+		DeclarationIdentifier decl = phi.getResult().getDeclaration();
+		List<BasicBlock> predecessors = block.getPredecessors();
+		long low = Long.MAX_VALUE;
+		long high = Long.MIN_VALUE;
+		boolean grows = false;
+		boolean decreases = false;
+		for (int i = 0; i < predecessors.size(); i++) {
+			Expression operand = phi.getOperand(i);
+			if (operand == null || !ssa.isExecutable(predecessors.get(i))) {
+				continue;
+			}
+			Integer step = getStep(operand,decl);
+			if (step == null) {
+				long[] range = getRange(operand,predecessors.get(i));
+				low = Math.min(low,range[0]);
+				high = Math.max(high,range[1]);
+			} else if (step != 0) {
+				// The range of the variable where the step is added must leave
+				// room for it
+				long[] before = narrow(unknown,decl,blocks.get(getVariable(operand)));
+				if (step > 0 && before[1]+step > Integer.MAX_VALUE || step < 0 && before[0]+step < Integer.MIN_VALUE) {
+					return unknown;
+				}
+				grows = grows || step > 0;
+				decreases = decreases || step < 0;
+			}
+		}
+		if (low > high) {
+			return unknown;
+		}
+		return new long[] {decreases ? Integer.MIN_VALUE : low,grows ? Integer.MAX_VALUE : high};
+	}
+
+	/**
+	 * Get the constant added to a variable by an operand of its phi statement,
+	 * or null if the operand is not the variable plus or minus a constant
+	 */
+	private Integer getStep(Expression operand, DeclarationIdentifier decl) {
+		DeclarationIdentifier variable = getVariable(operand);
+		if (variable == decl) {
+			return 0;
+		}
+		IntermediateCodeStatement update = definitions.get(variable);
+		if (variable == null || !(update instanceof ThreeAddressStatement)) {
+			return null;
+		}
+		ThreeAddressStatement threeStmt = (ThreeAddressStatement)update;
+		Expression operand1 = threeStmt.getExpressionOne();
+		Expression operand2 = threeStmt.getExpressionTwo();
+		if (update.getInstruction() == IntermediateCodeInstruction.ADDI) {
+			if (getVariable(operand1) == decl && operand2 instanceof IntLiteral) {
+				return ((IntLiteral)operand2).getIntegerValue();
+			} else if (getVariable(operand2) == decl && operand1 instanceof IntLiteral) {
+				return ((IntLiteral)operand1).getIntegerValue();
+			}
+		} else if (update.getInstruction() == IntermediateCodeInstruction.SUBI) {
+			if (getVariable(operand1) == decl && operand2 instanceof IntLiteral) {
+				return -((IntLiteral)operand2).getIntegerValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Narrow the range of a variable read in the given block with the conditions
+	 * of the JUMPF statements that lead to the blocks that dominate it
+	 */
+	private long[] narrow(long[] range, DeclarationIdentifier decl, BasicBlock block) {
+		long low = range[0];
+		long high = range[1];
+		for (BasicBlock dominated = block; dominated != null; dominated = dominated.getDominator()) {
+			BasicBlock predecessor = getOnlyPredecessor(dominated);
+			if (predecessor == null || predecessor.getSuccessors().size() != 2
+					|| predecessor.getSuccessors().get(0) == predecessor.getSuccessors().get(1)) {
+				continue;
+			}
+			List<IntermediateCodeStatement> statements = ssa.getStatements(predecessor);
+			if (statements.isEmpty() || statements.get(statements.size()-1).getInstruction() != IntermediateCodeInstruction.JUMPF) {
+				continue;
+			}
+			// The first successor is the target of the jump, when the condition
+			// is false
+			boolean value = predecessor.getSuccessors().get(1) == dominated;
+			IntermediateCodeStatement condition = definitions.get(getVariable(((OneAddressStatement)statements.get(statements.size()-1)).getExpression()));
+			if (!(condition instanceof ThreeAddressStatement)) {
+				continue;
+			}
+			ThreeAddressStatement comparison = (ThreeAddressStatement)condition;
+			IntermediateCodeInstruction instruction = comparison.getInstruction();
+			Expression other;
+			if (getVariable(comparison.getExpressionOne()) == decl) {
+				other = comparison.getExpressionTwo();
+			} else if (getVariable(comparison.getExpressionTwo()) == decl) {
+				other = comparison.getExpressionOne();
+				instruction = getSwapped(instruction);
+			} else {
+				continue;
+			}
+			if (!value) {
+				instruction = getNegated(instruction);
+			}
+			if (instruction == null || !(other instanceof IntLiteral || getVariable(other) != null)) {
+				continue;
+			}
+			long[] bound = other instanceof IntLiteral ? getRange(other,predecessor) : getRange(getVariable(other));
+			switch (instruction) {
+				case LESS:
+					high = Math.min(high,bound[1]-1);
+					break;
+				case LESSEQ:
+					high = Math.min(high,bound[1]);
+					break;
+				case GREAT:
+					low = Math.max(low,bound[0]+1);
+					break;
+				case GREATEQ:
+					low = Math.max(low,bound[0]);
+					break;
+				case EQ:
+					low = Math.max(low,bound[0]);
+					high = Math.min(high,bound[1]);
+					break;
+				default:
+					break;
+			}
+		}
+		return new long[] {low,high};
+	}
+
+	/**
+	 * Get the only executable predecessor of a block, or null if it has more
+	 * than one
+	 */
+	private BasicBlock getOnlyPredecessor(BasicBlock block) {
+		BasicBlock only = null;
+		for (BasicBlock predecessor : block.getPredecessors()) {
+			if (!ssa.isExecutable(predecessor)) {
+				continue;
+			}
+			if (only != null) {
+				return null;
+			}
+			only = predecessor;
+		}
+		return only;
+	}
+
+	/**
+	 * Get the relational instruction that gives the same result with the
+	 * operands swapped, or null if the instruction is not relational
+	 */
+	private static IntermediateCodeInstruction getSwapped(IntermediateCodeInstruction instruction) {
+		switch (instruction) {
+			case LESS: return IntermediateCodeInstruction.GREAT;
+			case LESSEQ: return IntermediateCodeInstruction.GREATEQ;
+			case GREAT: return IntermediateCodeInstruction.LESS;
+			case GREATEQ: return IntermediateCodeInstruction.LESSEQ;
+			case EQ: return IntermediateCodeInstruction.EQ;
+			case NEQ: return IntermediateCodeInstruction.NEQ;
+			default: return null;
+		}
+	}
+
+	/**
+	 * Get the relational instruction that gives the opposite result, or null
+	 * if the instruction is not relational
+	 */
+	private static IntermediateCodeInstruction getNegated(IntermediateCodeInstruction instruction) {
+		if (instruction == null) {
+			return null;
+		}
+		switch (instruction) {
+			case LESS: return IntermediateCodeInstruction.GREATEQ;
+			case LESSEQ: return IntermediateCodeInstruction.GREAT;
+			case GREAT: return IntermediateCodeInstruction.LESSEQ;
+			case GREATEQ: return IntermediateCodeInstruction.LESS;
+			case EQ: return IntermediateCodeInstruction.NEQ;
+			case NEQ: return IntermediateCodeInstruction.EQ;
+			default: return null;
+		}
+	}
+
+	/**
+	 * Create a range, or get the range of any int if it overflows
+	 */
+	private static long[] newRange(long low, long high) {
+		if (low < Integer.MIN_VALUE || high > Integer.MAX_VALUE) {
+			return unknown;
+		}
+		return new long[] {low,high};
+	}
+
+	/**
+	 * Get the local variable of an operand that is not an array element, or null
+	 */
+	private static DeclarationIdentifier getVariable(Expression operand) {
+		if (operand instanceof VarLocation) {
+			DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+			if (decl != null && !decl.isGlobal()) {
+				return decl;
+			}
+		}
+		return null;
+	}
+
+}
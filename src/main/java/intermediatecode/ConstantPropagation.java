@@ -0,0 +1,420 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the sparse conditional constant propagation of a method
+ * in SSA form, following Wegman and Zadeck. The value of each variable starts as
+ * undefined and can only go down to a constant and to unknown, and only the blocks
+ * reached by an executed edge are evaluated, so a JUMPF with a constant condition
+ * only executes one of its successors.
+ * Then the variables with a constant value are replaced by it, the statements
+ * that assign them are deleted, the JUMPF with a constant condition are replaced
+ * by a JUMP or deleted, and the blocks that are never executed are removed.
+ * The arithmetical, relational and logical operations with INT, FLOAT and BOOLEAN
+ * constants are folded with the semantics of the interpreter. The divisions by
+ * zero are not folded, so they still fail at run time.
+ * @author Facundo Molina
+ */
+public class ConstantPropagation {
+
+	private static final Object unknown = new Object();		// Value of a variable that is not constant
+
+	private SSAForm ssa;													// Method in SSA form
+	private List<BasicBlock> blocks;										// Blocks of the method
+	private IdentityHashMap<DeclarationIdentifier,Object> values;			// Value of each variable, null if undefined
+	private IdentityHashMap<DeclarationIdentifier,List<IntermediateCodeStatement>> uses;	// Statements that read each variable
+	private IdentityHashMap<IntermediateCodeStatement,BasicBlock> blockOf;	// Block of each statement
+	private boolean[] executed;												// True for the blocks reached by an executed edge
+	private boolean[][] executedEdges;										// Executed edges from each predecessor of each block
+	private HashMap<Integer,BasicBlock> labelBlocks;						// Block of each label
+
+	/**
+	 * Constructor with a method in SSA form
+	 */
+	private ConstantPropagation(SSAForm ssa) {
+		this.ssa = ssa;
+		blocks = ssa.getGraph().getBlocks();
+		values = new IdentityHashMap<DeclarationIdentifier,Object>();
+		uses = new IdentityHashMap<DeclarationIdentifier,List<IntermediateCodeStatement>>();
+		blockOf = new IdentityHashMap<IntermediateCodeStatement,BasicBlock>();
+		executed = new boolean[blocks.size()];
+		executedEdges = new boolean[blocks.size()][];
+		labelBlocks = new HashMap<Integer,BasicBlock>();
+		for (BasicBlock block : blocks) {
+			executedEdges[block.getIndex()] = new boolean[block.getPredecessors().size()];
+			for (IntermediateCodeStatement stmt : getCode(block)) {
+				blockOf.put(stmt,block);
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null) {
+					// The variables assigned in the method start undefined
+					values.put(decl,null);
+				}
+				for (DeclarationIdentifier used : SSAForm.getUsedVariables(stmt)) {
+					List<IntermediateCodeStatement> statements = uses.get(used);
+					if (statements == null) {
+						statements = new LinkedList<IntermediateCodeStatement>();
+						uses.put(used,statements);
+					}
+					statements.add(stmt);
+				}
+				if (stmt.getInstruction() == IntermediateCodeInstruction.LABEL) {
+					labelBlocks.put(((OneAddressStatement)stmt).getLabelToJump().getNumber(),block);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Propagate the constants of a method in SSA form and simplify its code
+	 */
+	public static void optimize(SSAForm ssa) {
+		if (ssa.getGraph().getEntry() != null) {
+			ConstantPropagation propagation = new ConstantPropagation(ssa);
+			propagation.propagate();
+			propagation.rewrite();
+		}
+	}
+
+	/**
+	 * Get the phi statements and the statements of a block
+	 */
+	private List<IntermediateCodeStatement> getCode(BasicBlock block) {
+		List<IntermediateCodeStatement> code = new ArrayList<IntermediateCodeStatement>(ssa.getPhis(block));
+		code.addAll(ssa.getStatements(block));
+		return code;
+	}
+
+	/**
+	 * Evaluate the statements of the executed blocks until the values do not change
+	 */
+	private void propagate() {
+		LinkedList<BasicBlock[]> edges = new LinkedList<BasicBlock[]>();
+		LinkedList<IntermediateCodeStatement> statements = new LinkedList<IntermediateCodeStatement>();
+		edges.add(new BasicBlock[] {null,ssa.getGraph().getEntry()});
+		while (!edges.isEmpty() || !statements.isEmpty()) {
+			if (!edges.isEmpty()) {
+				BasicBlock[] edge = edges.removeFirst();
+				BasicBlock block = edge[1];
+				if (edge[0] != null) {
+					List<BasicBlock> predecessors = block.getPredecessors();
+					boolean first = true;
+					for (int p = 0; p < predecessors.size(); p++) {
+						if (predecessors.get(p) == edge[0]) {
+							first = first && !executedEdges[block.getIndex()][p];
+							executedEdges[block.getIndex()][p] = true;
+						}
+					}
+					if (!first) {
+						continue;
+					}
+				}
+				for (PhiStatement phi : ssa.getPhis(block)) {
+					evaluate(phi,statements,edges);
+				}
+				if (!executed[block.getIndex()]) {
+					executed[block.getIndex()] = true;
+					for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+						evaluate(stmt,statements,edges);
+					}
+					IntermediateCodeStatement last = getLast(block);
+					if (last == null || last.getInstruction() != IntermediateCodeInstruction.JUMPF) {
+						for (BasicBlock successor : block.getSuccessors()) {
+							edges.add(new BasicBlock[] {block,successor});
+						}
+					}
+				}
+			} else {
+				IntermediateCodeStatement stmt = statements.removeFirst();
+				if (executed[blockOf.get(stmt).getIndex()]) {
+					evaluate(stmt,statements,edges);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the last statement of a block, or null if it is empty
+	 */
+	private IntermediateCodeStatement getLast(BasicBlock block) {
+		List<IntermediateCodeStatement> statements = ssa.getStatements(block);
+		return statements.isEmpty() ? null : statements.get(statements.size()-1);
+	}
+
+	/**
+	 * Evaluate a statement of an executed block. When the value of the assigned
+	 * variable changes its uses are evaluated again, and the successors executed
+	 * by a JUMPF are added to the edges.
+	 */
+	private void evaluate(IntermediateCodeStatement stmt, List<IntermediateCodeStatement> statements, List<BasicBlock[]> edges) {
+		BasicBlock block = blockOf.get(stmt);
+		if (stmt.getInstruction() == IntermediateCodeInstruction.JUMPF) {
+			Object condition = valueOf(((OneAddressStatement)stmt).getExpression());
+			if (condition == null) {
+				return;
+			}
+			BasicBlock target = labelBlocks.get(((OneAddressStatement)stmt).getLabelToJump().getNumber());
+			BasicBlock next = block.getIndex()+1 < blocks.size() ? blocks.get(block.getIndex()+1) : null;
+			if (condition == unknown || !((BooleanLiteral)condition).getBooleanValue()) {
+				edges.add(new BasicBlock[] {block,target});
+			}
+			if (next != null && (condition == unknown || ((BooleanLiteral)condition).getBooleanValue())) {
+				edges.add(new BasicBlock[] {block,next});
+			}
+			return;
+		}
+		DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+		if (decl == null) {
+			return;
+		}
+		Object value = values.get(decl);
+		if (value == unknown) {
+			return;
+		}
+		Object newValue;
+		if (stmt instanceof PhiStatement) {
+			newValue = evaluatePhi((PhiStatement)stmt,block);
+		} else if (stmt instanceof ThreeAddressStatement) {
+			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+			newValue = evaluate(stmt.getInstruction(),valueOf(threeStmt.getExpressionOne()),valueOf(threeStmt.getExpressionTwo()));
+		} else if (stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+			newValue = unknown;
+		} else {
+			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+			newValue = evaluate(stmt.getInstruction(),valueOf(twoStmt.getExpression()));
+		}
+		if (newValue == null || (value != null && newValue != unknown && sameValue(value,newValue))) {
+			return;
+		}
+		// A variable that had a different constant value is unknown
+		values.put(decl,value == null ? newValue : unknown);
+		if (uses.containsKey(decl)) {
+			statements.addAll(uses.get(decl));
+		}
+	}
+
+	/**
+	 * Evaluate a phi statement with the values of the executed edges
+	 */
+	private Object evaluatePhi(PhiStatement phi, BasicBlock block) {
+		Object value = null;
+		for (int p = 0; p < phi.getOperands().size(); p++) {
+			if (!executedEdges[block.getIndex()][p]) {
+				continue;
+			}
+			Object operand = valueOf(phi.getOperand(p));
+			if (operand == null) {
+				continue;
+			}
+			if (operand == unknown || (value != null && !sameValue(value,operand))) {
+				return unknown;
+			}
+			value = operand;
+		}
+		return value;
+	}
+
+	/**
+	 * Get the value of an operand: a literal, the value of a variable assigned in
+	 * the method, or unknown
+	 */
+	private Object valueOf(Expression operand) {
+		if (operand instanceof Literal) {
+			return operand;
+		}
+		if (operand instanceof VarLocation && !(operand instanceof VarArrayLocation)) {
+			DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+			if (values.containsKey(decl)) {
+				return values.get(decl);
+			}
+		}
+		return unknown;
+	}
+
+	/**
+	 * Returns true if two literals have the same value
+	 */
+	private static boolean sameValue(Object value1, Object value2) {
+		if (value1 instanceof IntLiteral && value2 instanceof IntLiteral) {
+			return ((IntLiteral)value1).getIntegerValue().equals(((IntLiteral)value2).getIntegerValue());
+		} else if (value1 instanceof FloatLiteral && value2 instanceof FloatLiteral) {
+			return Float.floatToIntBits(((FloatLiteral)value1).getFloatValue()) == Float.floatToIntBits(((FloatLiteral)value2).getFloatValue());
+		} else if (value1 instanceof BooleanLiteral && value2 instanceof BooleanLiteral) {
+			return ((BooleanLiteral)value1).getBooleanValue().equals(((BooleanLiteral)value2).getBooleanValue());
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluate a binary operation with the values of its operands
+	 */
+	private static Object evaluate(IntermediateCodeInstruction instruction, Object value1, Object value2) {
+		// A conjunction with false and a disjunction with true do not depend on the other operand
+		for (Object value : new Object[] {value1,value2}) {
+			if (value instanceof BooleanLiteral) {
+				boolean b = ((BooleanLiteral)value).getBooleanValue();
+				if (instruction == IntermediateCodeInstruction.AND && !b) {
+					return new BooleanLiteral(false);
+				} else if (instruction == IntermediateCodeInstruction.OR && b) {
+					return new BooleanLiteral(true);
+				}
+			}
+		}
+		if (value1 == unknown || value2 == unknown) {
+			return unknown;
+		}
+		if (value1 == null || value2 == null) {
+			return null;
+		}
+		Literal result = fold(instruction,(Literal)value1,(Literal)value2);
+		return result == null ? unknown : result;
+	}
+
+	/**
+	 * Evaluate a unary operation or an assignment with the value of its operand
+	 */
+	private static Object evaluate(IntermediateCodeInstruction instruction, Object value) {
+		if (value == null || value == unknown) {
+			return value;
+		}
+		Literal literal = (Literal)value;
+		switch (instruction) {
+			case ASSIGN:
+				return literal;
+			case NOT:
+				return new BooleanLiteral(!((BooleanLiteral)literal).getBooleanValue());
+			case SUBI:
+				return new IntLiteral(-((IntLiteral)literal).getIntegerValue());
+			case SUBF:
+				return new FloatLiteral(-((FloatLiteral)literal).getFloatValue());
+			default:
+				return unknown;
+		}
+	}
+
+	/**
+	 * Fold a binary operation with two literals. Returns null if it can not be
+	 * folded.
+	 */
+	public static Literal fold(IntermediateCodeInstruction instruction, Literal literal1, Literal literal2) {
+		if (literal1 instanceof IntLiteral && literal2 instanceof IntLiteral) {
+			int a = ((IntLiteral)literal1).getIntegerValue();
+			int b = ((IntLiteral)literal2).getIntegerValue();
+			switch (instruction) {
+				case ADDI: return new IntLiteral(a + b);
+				case SUBI: return new IntLiteral(a - b);
+				case MULTI: return new IntLiteral(a * b);
+				case DIVI: return b == 0 ? null : new IntLiteral(a / b);
+				case MOD: return b == 0 ? null : new IntLiteral(a % b);
+				case LESS: return new BooleanLiteral(a < b);
+				case LESSEQ: return new BooleanLiteral(a <= b);
+				case GREAT: return new BooleanLiteral(a > b);
+				case GREATEQ: return new BooleanLiteral(a >= b);
+				case EQ: return new BooleanLiteral(a == b);
+				case NEQ: return new BooleanLiteral(a != b);
+				default: return null;
+			}
+		} else if (literal1 instanceof FloatLiteral && literal2 instanceof FloatLiteral) {
+			float a = ((FloatLiteral)literal1).getFloatValue();
+			float b = ((FloatLiteral)literal2).getFloatValue();
+			switch (instruction) {
+				case ADDF: return new FloatLiteral(a + b);
+				case SUBF: return new FloatLiteral(a - b);
+				case MULTF: return new FloatLiteral(a * b);
+				case DIVF: return new FloatLiteral(a / b);
+				case LESS: return new BooleanLiteral(a < b);
+				case LESSEQ: return new BooleanLiteral(a <= b);
+				case GREAT: return new BooleanLiteral(a > b);
+				case GREATEQ: return new BooleanLiteral(a >= b);
+				case EQ: return new BooleanLiteral(a == b);
+				case NEQ: return new BooleanLiteral(a != b);
+				default: return null;
+			}
+		} else if (literal1 instanceof BooleanLiteral && literal2 instanceof BooleanLiteral) {
+			boolean a = ((BooleanLiteral)literal1).getBooleanValue();
+			boolean b = ((BooleanLiteral)literal2).getBooleanValue();
+			switch (instruction) {
+				case AND: return new BooleanLiteral(a && b);
+				case OR: return new BooleanLiteral(a || b);
+				case EQ: return new BooleanLiteral(a == b);
+				case NEQ: return new BooleanLiteral(a != b);
+				default: return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Replace the constant variables by their values, remove the statements that
+	 * assign them, simplify the JUMPF with a constant condition and remove the
+	 * blocks that are never executed
+	 */
+	private void rewrite() {
+		for (BasicBlock block : blocks) {
+			if (!executed[block.getIndex()]) {
+				ssa.removeBlock(block);
+				continue;
+			}
+			for (PhiStatement phi : new ArrayList<PhiStatement>(ssa.getPhis(block))) {
+				if (values.get(phi.getResult().getDeclaration()) instanceof Literal) {
+					ssa.getPhis(block).remove(phi);
+					continue;
+				}
+				for (int p = 0; p < phi.getOperands().size(); p++) {
+					if (!executedEdges[block.getIndex()][p]) {
+						// The edge is never executed
+						phi.setOperand(p,null);
+					}
+				}
+				replaceConstants(phi);
+			}
+			List<IntermediateCodeStatement> statements = ssa.getStatements(block);
+			for (int i = 0; i < statements.size(); i++) {
+				IntermediateCodeStatement stmt = statements.get(i);
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null && values.get(decl) instanceof Literal) {
+					statements.remove(i--);
+					continue;
+				}
+				replaceConstants(stmt);
+				if (stmt.getInstruction() == IntermediateCodeInstruction.JUMPF) {
+					OneAddressStatement jump = (OneAddressStatement)stmt;
+					if (jump.getExpression() instanceof BooleanLiteral) {
+						if (((BooleanLiteral)jump.getExpression()).getBooleanValue()) {
+							statements.remove(i--);
+						} else {
+							statements.set(i,new OneAddressStatement(IntermediateCodeInstruction.JUMP,jump.getLabel(),jump.getLabelToJump()));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replace the reads of the constant variables of a statement by their values
+	 */
+	private void replaceConstants(IntermediateCodeStatement stmt) {
+		for (DeclarationIdentifier used : SSAForm.getUsedVariables(stmt)) {
+			Object value = values.get(used);
+			if (value instanceof Literal) {
+				SSAForm.replaceUses(stmt,used,copy((Literal)value));
+			}
+		}
+	}
+
+	/**
+	 * Get a new literal with the value of the given literal
+	 */
+	private static Literal copy(Literal literal) {
+		if (literal instanceof IntLiteral) {
+			return new IntLiteral(((IntLiteral)literal).getIntegerValue());
+		} else if (literal instanceof FloatLiteral) {
+			return new FloatLiteral(((FloatLiteral)literal).getFloatValue());
+		}
+		return new BooleanLiteral(((BooleanLiteral)literal).getBooleanValue());
+	}
+
+}
@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the control flow graph of the intermediate code of a
+ * method, from its INITML statement to its last statement. The statements are
+ * partitioned in basic blocks: a block starts at the first statement, at each
+ * LABEL and after each JUMP, JUMPF and RET, and its successors are the blocks of
+ * the labels it jumps to and the next block if it can fall through.
+ * The graph also computes the dominator tree, with the algorithm of Cooper, Harvey
+ * and Kennedy over the reverse postorder, and the natural loops with their nesting.
+ * The blocks and edges are built in linear time, and the dominators and the loops
+ * visit each block a number of times bounded by the loop nesting depth, so the
+ * graph can be built for methods with thousands of statements.
+ * @author Facundo Molina
+ */
+public class ControlFlowGraph {
+
+	private List<IntermediateCodeStatement> statements;	// Statements of the method
+	private ArrayList<BasicBlock> blocks;				// Blocks in the order of the statements
+	private BasicBlock[] blockOf;						// Block of each statement
+	private ArrayList<BasicBlock> reversePostorder;		// Reachable blocks in reverse postorder
+	private ArrayList<Loop> loops;						// Loops, each one after its enclosing loop
+
+	/**
+	 * Constructor with the statements of a method
+	 */
+	public ControlFlowGraph(List<IntermediateCodeStatement> statements) {
+		this.statements = new ArrayList<IntermediateCodeStatement>(statements);
+		blocks = new ArrayList<BasicBlock>();
+		blockOf = new BasicBlock[this.statements.size()];
+		reversePostorder = new ArrayList<BasicBlock>();
+		loops = new ArrayList<Loop>();
+		buildBlocks();
+		if (!blocks.isEmpty()) {
+			computeReversePostorder();
+			computeDominators();
+			computeLoops();
+		}
+	}
+
+	/**
+	 * Split the intermediate code of a program in the statements of each method,
+	 * from each INITML statement until the next method or global declaration
+	 */
+	public static List<List<IntermediateCodeStatement>> getMethods(List<IntermediateCodeStatement> iCodeStatements) {
+		List<List<IntermediateCodeStatement>> methods = new LinkedList<List<IntermediateCodeStatement>>();
+		List<IntermediateCodeStatement> statements = new ArrayList<IntermediateCodeStatement>(iCodeStatements);
+		int start = 0;
+		while (start < statements.size()) {
+			if (statements.get(start).getInstruction() != IntermediateCodeInstruction.INITML) {
+				start++;
+				continue;
+			}
+			int end = start+1;
+			while (end < statements.size()
+					&& statements.get(end).getInstruction() != IntermediateCodeInstruction.INITML
+					&& statements.get(end).getInstruction() != IntermediateCodeInstruction.GLOBAL) {
+				end++;
+			}
+			methods.add(statements.subList(start,end));
+			start = end;
+		}
+		return methods;
+	}
+
+	/**
+	 * Get the statements of the method
+	 */
+	public List<IntermediateCodeStatement> getStatements() {
+		return statements;
+	}
+
+	/**
+	 * Get the blocks, in the order of their statements
+	 */
+	public List<BasicBlock> getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 * Get the entry block, or null if the method has no statements
+	 */
+	public BasicBlock getEntry() {
+		return blocks.isEmpty() ? null : blocks.get(0);
+	}
+
+	/**
+	 * Get the block that contains the statement at the given position
+	 */
+	public BasicBlock getBlock(int position) {
+		return blockOf[position];
+	}
+
+	/**
+	 * Get the blocks reachable from the entry, in reverse postorder: each block
+	 * comes before its successors, except along the back edges
+	 */
+	public List<BasicBlock> getReversePostorder() {
+		return reversePostorder;
+	}
+
+	/**
+	 * Get the loops, each one after the loop that contains it
+	 */
+	public List<Loop> getLoops() {
+		return loops;
+	}
+
+	/**
+	 * Get the positions of the statements that can be executed after the statement
+	 * at the given position
+	 */
+	public List<Integer> getSuccessors(int position) {
+		LinkedList<Integer> successors = new LinkedList<Integer>();
+		BasicBlock block = blockOf[position];
+		if (position < block.getLast()) {
+			successors.add(position+1);
+		} else {
+			for (BasicBlock successor : block.getSuccessors()) {
+				successors.add(successor.getFirst());
+			}
+		}
+		return successors;
+	}
+
+	/**
+	 * Partition the statements in basic blocks and add the edges between them
+	 */
+	private void buildBlocks() {
+		HashMap<Integer,BasicBlock> labelBlocks = new HashMap<Integer,BasicBlock>();
+		int first = 0;
+		for (int i = 0; i < statements.size(); i++) {
+			boolean endsBlock = i+1 == statements.size() || isLeader(i+1) || isTerminator(i);
+			if (endsBlock) {
+				BasicBlock block = new BasicBlock(blocks.size(),first,i,statements.subList(first,i+1));
+				for (int j = first; j <= i; j++) {
+					blockOf[j] = block;
+				}
+				IntermediateCodeStatement stmt = statements.get(first);
+				if (stmt.getInstruction() == IntermediateCodeInstruction.LABEL) {
+					labelBlocks.put(((OneAddressStatement)stmt).getLabelToJump().getNumber(),block);
+				}
+				blocks.add(block);
+				first = i+1;
+			}
+		}
+		for (BasicBlock block : blocks) {
+			IntermediateCodeStatement last = block.getLastStatement();
+			switch (last.getInstruction()) {
+				case RET:
+					break;
+				case JUMP:
+					block.addSuccessor(labelBlocks.get(((OneAddressStatement)last).getLabelToJump().getNumber()));
+					break;
+				case JUMPF:
+					block.addSuccessor(labelBlocks.get(((OneAddressStatement)last).getLabelToJump().getNumber()));
+					if (block.getIndex()+1 < blocks.size()) {
+						block.addSuccessor(blocks.get(block.getIndex()+1));
+					}
+					break;
+				default:
+					if (block.getIndex()+1 < blocks.size()) {
+						block.addSuccessor(blocks.get(block.getIndex()+1));
+					}
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the statement at the given position starts a block
+	 */
+	private boolean isLeader(int position) {
+		return statements.get(position).getInstruction() == IntermediateCodeInstruction.LABEL;
+	}
+
+	/**
+	 * Returns true if the statement at the given position ends a block
+	 */
+	private boolean isTerminator(int position) {
+		switch (statements.get(position).getInstruction()) {
+			case JUMP:
+			case JUMPF:
+			case RET:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Compute the reverse postorder of the blocks reachable from the entry, with
+	 * a depth first search that uses an explicit stack
+	 */
+	private void computeReversePostorder() {
+		boolean[] visited = new boolean[blocks.size()];
+		LinkedList<BasicBlock> postorder = new LinkedList<BasicBlock>();
+		LinkedList<BasicBlock> stack = new LinkedList<BasicBlock>();
+		LinkedList<Integer> nextSuccessor = new LinkedList<Integer>();
+		stack.push(getEntry());
+		nextSuccessor.push(0);
+		visited[0] = true;
+		while (!stack.isEmpty()) {
+			BasicBlock block = stack.peek();
+			int next = nextSuccessor.pop();
+			if (next < block.getSuccessors().size()) {
+				nextSuccessor.push(next+1);
+				BasicBlock successor = block.getSuccessors().get(next);
+				if (!visited[successor.getIndex()]) {
+					visited[successor.getIndex()] = true;
+					stack.push(successor);
+					nextSuccessor.push(0);
+				}
+			} else {
+				stack.pop();
+				postorder.addFirst(block);
+			}
+		}
+		reversePostorder.addAll(postorder);
+		for (int i = 0; i < reversePostorder.size(); i++) {
+			reversePostorder.get(i).setOrder(i);
+		}
+	}
+
+	/**
+	 * Compute the immediate dominator of each reachable block, iterating over the
+	 * reverse postorder until a fixed point is reached, and number the dominator
+	 * tree so that the dominance between two blocks is checked in constant time
+	 */
+	private void computeDominators() {
+		BasicBlock[] dominators = new BasicBlock[blocks.size()];
+		BasicBlock entry = getEntry();
+		dominators[entry.getIndex()] = entry;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (BasicBlock block : reversePostorder) {
+				if (block == entry) {
+					continue;
+				}
+				BasicBlock dominator = null;
+				for (BasicBlock predecessor : block.getPredecessors()) {
+					if (dominators[predecessor.getIndex()] == null) {
+						continue;
+					}
+					dominator = dominator == null ? predecessor : intersect(dominators,predecessor,dominator);
+				}
+				if (dominators[block.getIndex()] != dominator) {
+					dominators[block.getIndex()] = dominator;
+					changed = true;
+				}
+			}
+		}
+		for (BasicBlock block : reversePostorder) {
+			if (block != entry) {
+				block.setDominator(dominators[block.getIndex()]);
+			}
+		}
+
+		// Number the dominator tree with a depth first search
+		int time = 0;
+		int[] preorder = new int[blocks.size()];
+		LinkedList<BasicBlock> stack = new LinkedList<BasicBlock>();
+		LinkedList<Boolean> exiting = new LinkedList<Boolean>();
+		stack.push(entry);
+		exiting.push(false);
+		while (!stack.isEmpty()) {
+			BasicBlock block = stack.pop();
+			if (exiting.pop()) {
+				block.setDominatorTreeTimes(preorder[block.getIndex()],time++);
+			} else {
+				preorder[block.getIndex()] = time++;
+				stack.push(block);
+				exiting.push(true);
+				for (BasicBlock dominated : block.getDominated()) {
+					stack.push(dominated);
+					exiting.push(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the nearest common dominator of two blocks, walking up the dominators
+	 * computed so far
+	 */
+	private BasicBlock intersect(BasicBlock[] dominators, BasicBlock block1, BasicBlock block2) {
+		while (block1 != block2) {
+			while (block1.getOrder() > block2.getOrder()) {
+				block1 = dominators[block1.getIndex()];
+			}
+			while (block2.getOrder() > block1.getOrder()) {
+				block2 = dominators[block2.getIndex()];
+			}
+		}
+		return block1;
+	}
+
+	/**
+	 * Compute the natural loops. The headers are visited in reverse postorder, so
+	 * each loop is built after the loops that contain it, and the blocks of a loop
+	 * are found walking backwards from the latches until the header.
+	 */
+	private void computeLoops() {
+		int[] mark = new int[blocks.size()];
+		for (BasicBlock header : reversePostorder) {
+			Loop loop = null;
+			for (BasicBlock predecessor : header.getPredecessors()) {
+				if (header.dominates(predecessor)) {
+					if (loop == null) {
+						loop = new Loop(header,header.getLoop());
+					}
+					loop.getLatches().add(predecessor);
+				}
+			}
+			if (loop == null) {
+				continue;
+			}
+			int stamp = loops.size()+1;
+			List<BasicBlock> body = loop.getBlocks();
+			mark[header.getIndex()] = stamp;
+			body.add(header);
+			LinkedList<BasicBlock> worklist = new LinkedList<BasicBlock>();
+			for (BasicBlock latch : loop.getLatches()) {
+				if (mark[latch.getIndex()] != stamp) {
+					mark[latch.getIndex()] = stamp;
+					body.add(latch);
+					worklist.add(latch);
+				}
+			}
+			while (!worklist.isEmpty()) {
+				BasicBlock block = worklist.removeFirst();
+				for (BasicBlock predecessor : block.getPredecessors()) {
+					if (predecessor.isReachable() && mark[predecessor.getIndex()] != stamp) {
+						mark[predecessor.getIndex()] = stamp;
+						body.add(predecessor);
+						worklist.add(predecessor);
+					}
+				}
+			}
+			Collections.sort(body,new Comparator<BasicBlock>() {
+				public int compare(BasicBlock a, BasicBlock b) {
+					return a.getOrder() - b.getOrder();
+				}
+			});
+			for (BasicBlock block : body) {
+				block.setLoop(loop);
+			}
+			loops.add(loop);
+		}
+	}
+
+	@Override
+	public String toString() {
+		String s = "";
+		for (BasicBlock block : blocks) {
+			s += block + " " + block.getPredecessors() + " -> " + block.getSuccessors();
+			if (block.getDominator() != null) {
+				s += " idom " + block.getDominator();
+			}
+			s += " depth " + block.getLoopDepth() + "\n";
+		}
+		return s;
+	}
+
+}
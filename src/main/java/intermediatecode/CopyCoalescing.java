@@ -0,0 +1,160 @@
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the coalescing of the copies of a method, after it is
+ * converted back from the SSA form. The source and the destination of a copy
+ * between variables of the same type that do not interfere are merged into one
+ * variable, so the copy is deleted and the statement that computes the source
+ * writes its result directly to the destination. The classes of merged variables
+ * interfere with the variables that interfere with any of their members, and a
+ * class keeps at most one parameter, whose name is kept.
+ * @author Facundo Molina
+ */
+public class CopyCoalescing {
+
+	private InterferenceGraph graph;					// Interference graph of the method
+	private List<DeclarationIdentifier> variables;		// Variables of the method
+	private int[] classes;								// Class of each variable, as the index of a member
+	private BitSet[] members;							// Members of each class
+	private BitSet[] neighbours;						// Variables that interfere with each class
+
+	/**
+	 * Constructor with the statements of a method
+	 */
+	private CopyCoalescing(List<IntermediateCodeStatement> method) {
+		graph = new InterferenceGraph(method);
+		variables = graph.getVariables();
+		classes = new int[variables.size()];
+		members = new BitSet[variables.size()];
+		neighbours = new BitSet[variables.size()];
+		for (int v = 0; v < variables.size(); v++) {
+			classes[v] = v;
+			members[v] = new BitSet();
+			members[v].set(v);
+			neighbours[v] = (BitSet)graph.getNeighbours(v).clone();
+		}
+	}
+
+	/**
+	 * Coalesce the copies of the statements of a method, and get the resulting
+	 * statements
+	 */
+	public static List<IntermediateCodeStatement> optimize(List<IntermediateCodeStatement> method) {
+		CopyCoalescing coalescing = new CopyCoalescing(method);
+		coalescing.coalesce(method);
+		return coalescing.rename(method);
+	}
+
+	/**
+	 * Merge the classes of the source and the destination of each copy, when they
+	 * do not interfere
+	 */
+	private void coalesce(List<IntermediateCodeStatement> method) {
+		for (IntermediateCodeStatement stmt : method) {
+			int source = graph.getCopySource(stmt);
+			Expression result = stmt.getInstruction() == IntermediateCodeInstruction.ASSIGN ? ((TwoAddressStatement)stmt).getResult() : null;
+			if (source < 0 || !(result instanceof VarLocation)) {
+				continue;
+			}
+			int destination = graph.getIndex(((VarLocation)result).getDeclaration());
+			if (destination < 0) {
+				continue;
+			}
+			int class1 = find(source);
+			int class2 = find(destination);
+			if (class1 == class2 || neighbours[class1].intersects(members[class2])
+					|| variables.get(source).getType() != variables.get(destination).getType()
+					|| (getParameter(class1) >= 0 && getParameter(class2) >= 0)) {
+				continue;
+			}
+			classes[class2] = class1;
+			members[class1].or(members[class2]);
+			neighbours[class1].or(neighbours[class2]);
+		}
+	}
+
+	/**
+	 * Get the statements with each variable replaced by the name of its class,
+	 * deleting the copies of a variable to itself
+	 */
+	private List<IntermediateCodeStatement> rename(List<IntermediateCodeStatement> method) {
+		DeclarationIdentifier[] names = new DeclarationIdentifier[variables.size()];
+		for (int v = 0; v < variables.size(); v++) {
+			int c = find(v);
+			if (names[c] == null) {
+				names[c] = getName(c);
+			}
+		}
+		LinkedList<IntermediateCodeStatement> result = new LinkedList<IntermediateCodeStatement>();
+		for (IntermediateCodeStatement stmt : method) {
+			for (DeclarationIdentifier used : SSAForm.getUsedVariables(stmt)) {
+				int v = graph.getIndex(used);
+				if (v >= 0 && names[find(v)] != used) {
+					SSAForm.replaceUses(stmt,used,SSAForm.newLocation(names[find(v)]));
+				}
+			}
+			DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+			int v = graph.getIndex(decl);
+			if (v >= 0 && names[find(v)] != decl) {
+				Location location = SSAForm.newLocation(names[find(v)]);
+				if (stmt instanceof ThreeAddressStatement) {
+					((ThreeAddressStatement)stmt).setResult(location);
+				} else {
+					((TwoAddressStatement)stmt).setResult(location);
+				}
+			}
+			if (stmt.getInstruction() == IntermediateCodeInstruction.ASSIGN) {
+				TwoAddressStatement copy = (TwoAddressStatement)stmt;
+				if (copy.getExpression() instanceof VarLocation && copy.getResult() instanceof VarLocation
+						&& ((VarLocation)copy.getExpression()).getDeclaration() == ((VarLocation)copy.getResult()).getDeclaration()) {
+					continue;
+				}
+			}
+			result.add(stmt);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the variable that names a class: its parameter, or else a member that is
+	 * not a temporal, or else its first member
+	 */
+	private DeclarationIdentifier getName(int c) {
+		int parameter = getParameter(c);
+		if (parameter >= 0) {
+			return variables.get(parameter);
+		}
+		for (int v = members[c].nextSetBit(0); v >= 0; v = members[c].nextSetBit(v+1)) {
+			if (!variables.get(v).getId().matches("t[0-9]+(_[0-9]+)?")) {
+				return variables.get(v);
+			}
+		}
+		return variables.get(members[c].nextSetBit(0));
+	}
+
+	/**
+	 * Get the index of the parameter of a class, or -1 if it has none
+	 */
+	private int getParameter(int c) {
+		for (int v = members[c].nextSetBit(0); v >= 0; v = members[c].nextSetBit(v+1)) {
+			if (variables.get(v).getOffset() >= 8) {
+				return v;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the class of a variable
+	 */
+	private int find(int v) {
+		while (classes[v] != v) {
+			classes[v] = classes[classes[v]];
+			v = classes[v];
+		}
+		return v;
+	}
+
+}
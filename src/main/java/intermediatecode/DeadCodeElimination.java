@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the dead code elimination of a method in SSA form. The
+ * statements with effects outside the method (stores to globals and arrays,
+ * calls, pushes, prints, returns and jumps) are live, and so are the statements
+ * that assign the variables read by a live statement. Every other assignment
+ * and phi statement is deleted, and the blocks that can not be reached from the
+ * entry of the method are removed.
+ * The divisions are only deleted when the divisor is a constant other than zero,
+ * so a division by zero still fails at run time.
+ * @author Facundo Molina
+ */
+public class DeadCodeElimination {
+
+	private SSAForm ssa;													// Method in SSA form
+	private IdentityHashMap<DeclarationIdentifier,IntermediateCodeStatement> definitions;	// Statement that assigns each variable
+	private IdentityHashMap<IntermediateCodeStatement,Boolean> live;		// Statements that are live
+
+	/**
+	 * Constructor with a method in SSA form
+	 */
+	private DeadCodeElimination(SSAForm ssa) {
+		this.ssa = ssa;
+		definitions = new IdentityHashMap<DeclarationIdentifier,IntermediateCodeStatement>();
+		live = new IdentityHashMap<IntermediateCodeStatement,Boolean>();
+	}
+
+	/**
+	 * Remove the dead statements and the unreachable blocks of a method in SSA form
+	 */
+	public static void optimize(SSAForm ssa) {
+		if (ssa.getGraph().getEntry() != null) {
+			DeadCodeElimination elimination = new DeadCodeElimination(ssa);
+			elimination.mark();
+			elimination.sweep();
+		}
+	}
+
+	/**
+	 * Mark the live statements, starting from the ones with effects and following
+	 * the definitions of the variables they read
+	 */
+	private void mark() {
+		LinkedList<IntermediateCodeStatement> worklist = new LinkedList<IntermediateCodeStatement>();
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (PhiStatement phi : ssa.getPhis(block)) {
+				definitions.put(phi.getResult().getDeclaration(),phi);
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null) {
+					definitions.put(decl,stmt);
+				}
+				if (hasEffects(stmt)) {
+					live.put(stmt,true);
+					worklist.add(stmt);
+				}
+			}
+		}
+		while (!worklist.isEmpty()) {
+			IntermediateCodeStatement stmt = worklist.removeFirst();
+			for (DeclarationIdentifier used : SSAForm.getUsedVariables(stmt)) {
+				IntermediateCodeStatement definition = definitions.get(used);
+				if (definition != null && live.put(definition,true) == null) {
+					worklist.add(definition);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delete the statements that are not live and remove the unreachable blocks
+	 */
+	private void sweep() {
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			if (!block.isReachable()) {
+				ssa.removeBlock(block);
+				continue;
+			}
+			for (PhiStatement phi : new ArrayList<PhiStatement>(ssa.getPhis(block))) {
+				if (!live.containsKey(phi)) {
+					ssa.getPhis(block).remove(phi);
+				}
+			}
+			List<IntermediateCodeStatement> statements = ssa.getStatements(block);
+			for (int i = 0; i < statements.size(); i++) {
+				if (SSAForm.getDefinition(statements.get(i)) != null && !live.containsKey(statements.get(i))) {
+					statements.remove(i--);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a statement has effects besides assigning a local variable
+	 */
+	private static boolean hasEffects(IntermediateCodeStatement stmt) {
+		if (SSAForm.getDefinition(stmt) == null || stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+			return true;
+		}
+		switch (stmt.getInstruction()) {
+			case DIVI:
+			case MOD:
+				Expression divisor = ((ThreeAddressStatement)stmt).getExpressionTwo();
+				return !(divisor instanceof IntLiteral) || ((IntLiteral)divisor).getIntegerValue() == 0;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Assign slots of the frame to the local variables used by the statements of
+	 * a method, in the order they are first used, and update the amount of the
+	 * RESERVE statement. The slots of the deleted variables are dropped, and the
+	 * variables that do not interfere share the first slot that is not taken by
+	 * the ones they interfere with. Each array gets its own slots. Returns the new
+	 * amount of slots.
+	 */
+	public static int compactFrame(List<IntermediateCodeStatement> method) {
+		InterferenceGraph graph = new InterferenceGraph(method);
+		int[] slots = new int[graph.getVariables().size()];
+		BitSet arraySlots = new BitSet();
+		IdentityHashMap<DeclarationIdentifier,Boolean> placed = new IdentityHashMap<DeclarationIdentifier,Boolean>();
+		OneAddressStatement reserve = null;
+		int amount = 0;
+		for (IntermediateCodeStatement stmt : method) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.RESERVE) {
+				reserve = (OneAddressStatement)stmt;
+			}
+			List<Expression> locations = new LinkedList<Expression>(SSAForm.getOperands(stmt));
+			if (stmt instanceof ThreeAddressStatement) {
+				locations.add(((ThreeAddressStatement)stmt).getResult());
+			} else if (stmt instanceof TwoAddressStatement) {
+				locations.add(((TwoAddressStatement)stmt).getResult());
+			}
+			for (Expression location : locations) {
+				if (location instanceof VarArrayLocation) {
+					DeclarationIdentifier array = ((VarArrayLocation)location).getDeclaration();
+					if (isLocal(array) && placed.put(array,true) == null) {
+						array.setOffset(-4*(amount+1));
+						arraySlots.set(amount+1,amount+1+array.getCapacity());
+						amount += array.getCapacity();
+					}
+					location = ((VarArrayLocation)location).getExpression();
+				}
+				if (location instanceof VarLocation) {
+					DeclarationIdentifier decl = ((VarLocation)location).getDeclaration();
+					if (isLocal(decl) && placed.put(decl,true) == null) {
+						int v = graph.getIndex(decl);
+						BitSet taken = (BitSet)arraySlots.clone();
+						BitSet neighbours = graph.getNeighbours(v);
+						for (int n = neighbours.nextSetBit(0); n >= 0; n = neighbours.nextSetBit(n+1)) {
+							taken.set(slots[n]);
+						}
+						slots[v] = taken.nextClearBit(1);
+						decl.setOffset(-4*slots[v]);
+						amount = Math.max(amount,slots[v]);
+					}
+				}
+			}
+		}
+		if (reserve == null) {
+			return 0;
+		}
+		((Location)reserve.getExpression()).setValue(new IntLiteral(amount));
+		return amount;
+	}
+
+	/**
+	 * Check if a declaration is a local variable that is not a parameter
+	 */
+	private static boolean isLocal(DeclarationIdentifier decl) {
+		return decl != null && !decl.isGlobal() && decl.getOffset() < 8;
+	}
+
+}
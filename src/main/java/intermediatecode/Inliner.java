@@ -0,0 +1,286 @@
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the inlining of the calls of a method. The PUSH and CALL
+ * statements of a call are replaced by a copy of the statements of the called
+ * method, with its parameters and local variables renamed to new variables of
+ * the caller: the arguments are assigned to the parameters, the local variables
+ * start with their default value, and each RET statement assigns the returned
+ * value to the result of the call and jumps to the end of the copy.
+ * Only the methods that do not call any method are inlined, so a recursive
+ * method is never inlined, and neither are the methods with local arrays. The
+ * methods are inlined when they are small, and a bigger size is allowed for the
+ * calls inside a loop, where the cost of the call is paid in each iteration.
+ * @author Facundo Molina
+ */
+public class Inliner {
+
+	private static final int MAX_SIZE = 8;					// Size of the methods inlined at any call
+	private static final int MAX_LOOP_SIZE = 32;			// Size of the methods inlined at the calls inside a loop
+
+	private int amount;										// Amount of slots of the frame of the caller
+	private int nextLabel;									// Number of the next new label
+	private IdentityHashMap<DeclarationIdentifier,DeclarationIdentifier> renamed;	// New variable of each variable of the copy
+	private HashMap<Integer,Label> labels;					// New label of each label of the copy
+
+	/**
+	 * Constructor with the amount of slots of the frame of the caller
+	 */
+	private Inliner(int amount, int nextLabel) {
+		this.amount = amount;
+		this.nextLabel = nextLabel;
+		renamed = new IdentityHashMap<DeclarationIdentifier,DeclarationIdentifier>();
+		labels = new HashMap<Integer,Label>();
+	}
+
+	/**
+	 * Inline the calls of a method to the given methods, found by name, when they
+	 * are small enough. Returns the number of the next new label.
+	 */
+	public static int inline(List<IntermediateCodeStatement> method, Map<String,List<IntermediateCodeStatement>> methods, int nextLabel) {
+		OneAddressStatement reserve = null;
+		for (IntermediateCodeStatement stmt : method) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.RESERVE) {
+				reserve = (OneAddressStatement)stmt;
+			}
+		}
+		if (reserve == null) {
+			return nextLabel;
+		}
+		ControlFlowGraph graph = new ControlFlowGraph(method);
+		Inliner inliner = new Inliner(((IntLiteral)((Location)reserve.getExpression()).getValue()).getIntegerValue(),nextLabel);
+		for (int position = method.size()-1; position >= 0; position--) {
+			IntermediateCodeStatement call = method.get(position);
+			if (call.getInstruction() != IntermediateCodeInstruction.CALL) {
+				continue;
+			}
+			List<IntermediateCodeStatement> callee = methods.get(getName(call));
+			BasicBlock block = graph.getBlock(position);
+			int maxSize = block != null && block.getLoopDepth() > 0 ? MAX_LOOP_SIZE : MAX_SIZE;
+			if (callee != null && canInline(callee,maxSize)) {
+				inliner.inline(method,position,callee);
+			}
+		}
+		((Location)reserve.getExpression()).setValue(new IntLiteral(inliner.amount));
+		return inliner.nextLabel;
+	}
+
+	/**
+	 * Replace the call at the given position, and the PUSH statements of its
+	 * arguments, by a copy of the statements of the called method
+	 */
+	private void inline(List<IntermediateCodeStatement> method, int position, List<IntermediateCodeStatement> callee) {
+		LinkedList<DeclarationIdentifier> parameters = new LinkedList<DeclarationIdentifier>();
+		for (IntermediateCodeStatement stmt : callee) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.PARAM) {
+				parameters.add(((Location)((OneAddressStatement)stmt).getExpression()).getDeclaration());
+			}
+		}
+		// The arguments are pushed from the last one to the first one, just
+		// before the call
+		int first = position-parameters.size();
+		if (first < 0) {
+			return;
+		}
+		for (int i = 0; i < parameters.size(); i++) {
+			IntermediateCodeStatement push = method.get(position-1-i);
+			if (push.getInstruction() != IntermediateCodeInstruction.PUSH
+					|| getType(((OneAddressStatement)push).getExpression()) != parameters.get(i).getType()) {
+				return;
+			}
+		}
+		renamed.clear();
+		labels.clear();
+		Location result = method.get(position) instanceof TwoAddressStatement ? (Location)((TwoAddressStatement)method.get(position)).getResult() : null;
+		Label end = newLabel();
+		LinkedList<IntermediateCodeStatement> copy = new LinkedList<IntermediateCodeStatement>();
+		for (int i = 0; i < parameters.size(); i++) {
+			Expression argument = ((OneAddressStatement)method.get(position-1-i)).getExpression();
+			copy.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,newLabel(),argument,SSAForm.newLocation(rename(parameters.get(i)))));
+		}
+		for (DeclarationIdentifier decl : getLocals(callee)) {
+			if (decl.getOffset() < 8) {
+				copy.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,newLabel(),decl.getType().getDefaultValue(),SSAForm.newLocation(rename(decl))));
+			}
+		}
+		for (IntermediateCodeStatement stmt : callee) {
+			switch (stmt.getInstruction()) {
+				case INITML:
+				case PARAM:
+				case RESERVE:
+					break;
+				case RET:
+					if (stmt instanceof OneAddressStatement && result != null) {
+						Expression value = copy(((OneAddressStatement)stmt).getExpression());
+						copy.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,newLabel(),value,SSAForm.newLocation(result.getDeclaration())));
+					}
+					copy.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,newLabel(),new Label(end.getNumber())));
+					break;
+				default:
+					copy.add(copy(stmt));
+					break;
+			}
+		}
+		copy.add(new OneAddressStatement(IntermediateCodeInstruction.LABEL,end,new Label(end.getNumber())));
+		for (int i = first; i <= position; i++) {
+			method.remove(first);
+		}
+		method.addAll(first,copy);
+	}
+
+	/**
+	 * Check if a method can be inlined: it does not call any method nor has local
+	 * arrays, and it has at most the given amount of statements besides its
+	 * declarations and labels
+	 */
+	private static boolean canInline(List<IntermediateCodeStatement> callee, int maxSize) {
+		int size = 0;
+		for (IntermediateCodeStatement stmt : callee) {
+			switch (stmt.getInstruction()) {
+				case CALL:
+				case PUSH:
+					return false;
+				case INITML:
+				case PARAM:
+				case RESERVE:
+				case LABEL:
+					break;
+				default:
+					size++;
+					break;
+			}
+		}
+		for (DeclarationIdentifier decl : getLocals(callee)) {
+			if (decl.isArrayDeclarationId()) {
+				return false;
+			}
+		}
+		return size <= maxSize;
+	}
+
+	/**
+	 * Get the local variables and parameters used by the statements of a method
+	 */
+	private static List<DeclarationIdentifier> getLocals(List<IntermediateCodeStatement> callee) {
+		IdentityHashMap<DeclarationIdentifier,Boolean> found = new IdentityHashMap<DeclarationIdentifier,Boolean>();
+		LinkedList<DeclarationIdentifier> locals = new LinkedList<DeclarationIdentifier>();
+		for (IntermediateCodeStatement stmt : callee) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.INITML || stmt.getInstruction() == IntermediateCodeInstruction.RESERVE) {
+				continue;
+			}
+			List<Expression> locations = new LinkedList<Expression>(SSAForm.getOperands(stmt));
+			if (stmt instanceof ThreeAddressStatement) {
+				locations.add(((ThreeAddressStatement)stmt).getResult());
+			} else if (stmt instanceof TwoAddressStatement) {
+				locations.add(((TwoAddressStatement)stmt).getResult());
+			}
+			for (Expression location : locations) {
+				if (location instanceof Location) {
+					DeclarationIdentifier decl = ((Location)location).getDeclaration();
+					if (decl != null && !decl.isGlobal() && found.put(decl,true) == null) {
+						locals.add(decl);
+					}
+				}
+			}
+		}
+		return locals;
+	}
+
+	/**
+	 * Create a copy of a statement of the called method, with its variables and
+	 * labels renamed
+	 */
+	private IntermediateCodeStatement copy(IntermediateCodeStatement stmt) {
+		if (stmt instanceof ThreeAddressStatement) {
+			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+			return new ThreeAddressStatement(stmt.getInstruction(),newLabel(),copy(threeStmt.getExpressionOne()),
+				copy(threeStmt.getExpressionTwo()),(Location)copy(threeStmt.getResult()));
+		}
+		if (stmt instanceof TwoAddressStatement) {
+			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+			return new TwoAddressStatement(stmt.getInstruction(),newLabel(),copy(twoStmt.getExpression()),(Location)copy(twoStmt.getResult()));
+		}
+		if (stmt instanceof OneAddressStatement) {
+			OneAddressStatement oneStmt = (OneAddressStatement)stmt;
+			Label toJump = oneStmt.getLabelToJump() == null ? null : new Label(getLabel(oneStmt.getLabelToJump()).getNumber());
+			Label label = stmt.getInstruction() == IntermediateCodeInstruction.LABEL ? new Label(toJump.getNumber()) : newLabel();
+			return new OneAddressStatement(stmt.getInstruction(),label,copy(oneStmt.getExpression()),toJump);
+		}
+		return new IntermediateCodeStatement(stmt.getInstruction(),newLabel());
+	}
+
+	/**
+	 * Create a copy of an operand of the called method, with its local variables
+	 * renamed
+	 */
+	private Expression copy(Expression operand) {
+		if (operand instanceof VarArrayLocation) {
+			VarArrayLocation arrayLocation = (VarArrayLocation)operand;
+			return SSAForm.newArrayLocation(arrayLocation,copy(arrayLocation.getExpression()));
+		}
+		if (operand instanceof VarLocation && ((VarLocation)operand).getDeclaration() != null) {
+			DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+			return SSAForm.newLocation(decl.isGlobal() ? decl : rename(decl));
+		}
+		return operand;
+	}
+
+	/**
+	 * Get the new variable of the caller for a variable of the called method
+	 */
+	private DeclarationIdentifier rename(DeclarationIdentifier decl) {
+		DeclarationIdentifier variable = renamed.get(decl);
+		if (variable == null) {
+			amount++;
+			variable = new DeclarationIdentifier(decl.getId()+"_"+amount,decl.getLineNumber(),decl.getColumnNumber());
+			variable.setType(decl.getType());
+			variable.setOffset(-4*amount);
+			renamed.put(decl,variable);
+		}
+		return variable;
+	}
+
+	/**
+	 * Get the new label of a label of the called method
+	 */
+	private Label getLabel(Label label) {
+		Label newLabel = labels.get(label.getNumber());
+		if (newLabel == null) {
+			newLabel = newLabel();
+			labels.put(label.getNumber(),newLabel);
+		}
+		return newLabel;
+	}
+
+	/**
+	 * Create a new label for a statement
+	 */
+	private Label newLabel() {
+		return new Label(nextLabel++);
+	}
+
+	/**
+	 * Get the name of the method called by a CALL statement
+	 */
+	private static String getName(IntermediateCodeStatement call) {
+		if (call instanceof TwoAddressStatement) {
+			return ((Location)((TwoAddressStatement)call).getExpression()).getId();
+		}
+		return ((Location)((OneAddressStatement)call).getExpression()).getId();
+	}
+
+	/**
+	 * Get the type of an operand
+	 */
+	private static Type getType(Expression operand) {
+		if (operand instanceof Literal) {
+			return ((Literal)operand).getType();
+		}
+		return ((Location)operand).getDeclaration().getType();
+	}
+
+}
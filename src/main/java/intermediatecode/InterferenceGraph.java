@@ -0,0 +1,95 @@
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class represents the interference graph of the variables of a method,
+ * built from its liveness analysis. Two variables interfere when one of them is
+ * assigned while the other is live, so they can not share a location. The source
+ * of a copy does not interfere with the variable it is copied to, since both
+ * hold the same value.
+ * @author Facundo Molina
+ */
+public class InterferenceGraph {
+
+	private LivenessAnalysis liveness;			// Liveness of the variables of the method
+	private BitSet[] edges;						// Variables that interfere with each variable
+
+	/**
+	 * Constructor with the statements of a method
+	 */
+	public InterferenceGraph(List<IntermediateCodeStatement> method) {
+		liveness = new LivenessAnalysis(method);
+		edges = new BitSet[liveness.getVariables().size()];
+		for (int v = 0; v < edges.length; v++) {
+			edges[v] = new BitSet();
+		}
+		int position = 0;
+		for (IntermediateCodeStatement stmt : method) {
+			BitSet definitions = liveness.getDefinitions(position);
+			for (int d = definitions.nextSetBit(0); d >= 0; d = definitions.nextSetBit(d+1)) {
+				BitSet live = (BitSet)liveness.getLiveOut(position).clone();
+				live.clear(d);
+				int source = getCopySource(stmt);
+				if (source >= 0) {
+					live.clear(source);
+				}
+				for (int v = live.nextSetBit(0); v >= 0; v = live.nextSetBit(v+1)) {
+					edges[d].set(v);
+					edges[v].set(d);
+				}
+			}
+			position++;
+		}
+	}
+
+	/**
+	 * Get the liveness of the variables of the method
+	 */
+	public LivenessAnalysis getLiveness() {
+		return liveness;
+	}
+
+	/**
+	 * Get the variables of the method
+	 */
+	public List<DeclarationIdentifier> getVariables() {
+		return liveness.getVariables();
+	}
+
+	/**
+	 * Get the index of a variable, or -1 if it is not in the graph
+	 */
+	public int getIndex(DeclarationIdentifier decl) {
+		return liveness.getIndex(decl);
+	}
+
+	/**
+	 * Get the variables that interfere with the variable of the given index
+	 */
+	public BitSet getNeighbours(int variable) {
+		return edges[variable];
+	}
+
+	/**
+	 * Check if the variables of the given indexes interfere
+	 */
+	public boolean interferes(int variable1, int variable2) {
+		return edges[variable1].get(variable2);
+	}
+
+	/**
+	 * Get the index of the variable copied by a statement, or -1 if it is not a
+	 * copy of a variable of the graph
+	 */
+	public int getCopySource(IntermediateCodeStatement stmt) {
+		if (stmt.getInstruction() != IntermediateCodeInstruction.ASSIGN) {
+			return -1;
+		}
+		Expression source = ((TwoAddressStatement)stmt).getExpression();
+		if (source instanceof VarLocation) {
+			return liveness.getIndex(((VarLocation)source).getDeclaration());
+		}
+		return -1;
+	}
+
+}
@@ -26,12 +26,15 @@ public enum IntermediateCodeInstruction {
 	RESERVE,		// Reserve space
 	JUMPF,			// Jump for false
 	INITML,			// Init method label
+	PARAM,			// Method parameter
 	LABEL,			// Label
 	RET,			// Return
 	PUSH,			// Push arguments
 	CALL,			// Call
 	GLOBAL,			// Global declarations
-	ASSIGN;			// Assignment
+	ASSIGN,			// Assignment
+	PRINT,			// Print
+	PHI;			// Phi function of the SSA form
 
 	@Override
 	public String toString() {
@@ -78,6 +81,8 @@ public enum IntermediateCodeInstruction {
 				return "RESERVE";
 			case INITML:
 				return "INITML";
+			case PARAM:
+				return "PARAM";
 			case LABEL:
 				return "LABEL";
 			case RET:
@@ -90,6 +95,10 @@ public enum IntermediateCodeInstruction {
 				return "GLOBAL";
 			case ASSIGN:
 				return "ASSIGN";
+			case PRINT:
+				return "PRINT";
+			case PHI:
+				return "PHI";
 		}
 		return null;		
 	}
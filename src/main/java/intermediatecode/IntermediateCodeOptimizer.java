@@ -0,0 +1,94 @@
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class provides the optimization of the intermediate code of a program. The
+ * code of each method is converted to SSA form, optimized and converted back, and
+ * the statements outside the methods are kept as they are. First the calls to the
+ * small methods optimized before are inlined, then the optimizations are:
+ * - Sparse conditional constant propagation
+ * - Dominator based value numbering
+ * - Loop invariant code motion
+ * - Strength reduction of the induction variables
+ * - Elimination of the checks of the array indexes that are always in bounds
+ * - Dead code elimination
+ * - Coalescing of the copies, once the code is converted back
+ * Finally the slots of the frame of each method are compacted, sharing the slots
+ * of the variables that are not live at the same time.
+ * @author Facundo Molina
+ */
+public class IntermediateCodeOptimizer {
+
+	/**
+	 * Optimize the given list of intermediate code statements
+	 */
+	public static LinkedList<IntermediateCodeStatement> optimize(List<IntermediateCodeStatement> iCodeStatements) {
+		LinkedList<IntermediateCodeStatement> result = new LinkedList<IntermediateCodeStatement>();
+		int nextLabel = getFirstFreeLabel(iCodeStatements);
+		HashMap<String,List<IntermediateCodeStatement>> methods = new HashMap<String,List<IntermediateCodeStatement>>();
+		LinkedList<IntermediateCodeStatement> method = null;
+		for (IntermediateCodeStatement stmt : iCodeStatements) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.INITML
+					|| stmt.getInstruction() == IntermediateCodeInstruction.GLOBAL) {
+				if (method != null) {
+					nextLabel = optimizeMethod(method,methods,result,nextLabel);
+					method = null;
+				}
+				if (stmt.getInstruction() == IntermediateCodeInstruction.INITML) {
+					method = new LinkedList<IntermediateCodeStatement>();
+				}
+			}
+			if (method != null) {
+				method.add(stmt);
+			} else {
+				result.add(stmt);
+			}
+		}
+		if (method != null) {
+			optimizeMethod(method,methods,result,nextLabel);
+		}
+		return result;
+	}
+
+	/**
+	 * Optimize the statements of a method, adding them to the result and to the
+	 * optimized methods by name. Returns the number of the next new label.
+	 */
+	private static int optimizeMethod(List<IntermediateCodeStatement> method, HashMap<String,List<IntermediateCodeStatement>> methods,
+			List<IntermediateCodeStatement> result, int nextLabel) {
+		nextLabel = Inliner.inline(method,methods,nextLabel);
+		nextLabel = LoopInvariantCodeMotion.insertPreheaders(method,nextLabel);
+		SSAForm ssa = new SSAForm(method,nextLabel);
+		ConstantPropagation.optimize(ssa);
+		ValueNumbering.optimize(ssa);
+		LoopInvariantCodeMotion.optimize(ssa);
+		StrengthReduction.optimize(ssa);
+		BoundsCheckElimination.optimize(ssa);
+		DeadCodeElimination.optimize(ssa);
+		List<IntermediateCodeStatement> statements = CopyCoalescing.optimize(ssa.toStatements());
+		DeadCodeElimination.compactFrame(statements);
+		result.addAll(statements);
+		String name = ((Location)((OneAddressStatement)method.get(0)).getExpression()).getId();
+		if (methods.containsKey(name)) {
+			throw new IllegalStateException("The label " + name + " names more than one method");
+		}
+		methods.put(name,statements);
+		return ssa.getNextLabel();
+	}
+
+	/**
+	 * Get a label number greater than the numbers of every statement and label
+	 */
+	private static int getFirstFreeLabel(List<IntermediateCodeStatement> iCodeStatements) {
+		int max = 0;
+		for (IntermediateCodeStatement stmt : iCodeStatements) {
+			max = Math.max(max,stmt.getLabel().getNumber());
+			if (stmt instanceof OneAddressStatement && ((OneAddressStatement)stmt).getLabelToJump() != null) {
+				max = Math.max(max,((OneAddressStatement)stmt).getLabelToJump().getNumber());
+			}
+		}
+		return max+1;
+	}
+
+}
@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the liveness analysis of the intermediate code of a
+ * method, from its INITML statement to its last statement. It computes the
+ * local variables and temporals that are live before and after each statement,
+ * over the basic blocks of the control flow graph of the method.
+ * Only the local variables that are not arrays are considered, since the globals
+ * and the arrays are always kept in memory. The arguments pushed for a call are
+ * used by the CALL statement.
+ * @author Facundo Molina
+ */
+public class LivenessAnalysis {
+
+	private List<IntermediateCodeStatement> statements;			// Statements of the method
+	private ControlFlowGraph graph;									// Control flow graph of the method
+	private ArrayList<DeclarationIdentifier> variables;				// Variables of the method
+	private IdentityHashMap<DeclarationIdentifier,Integer> indexes;	// Index of each variable
+	private BitSet[] uses;											// Variables used by each statement
+	private BitSet[] definitions;									// Variables defined by each statement
+	private BitSet[] liveIn;										// Variables live before each statement
+	private BitSet[] liveOut;										// Variables live after each statement
+
+	/**
+	 * Constructor with the statements of a method
+	 */
+	public LivenessAnalysis(List<IntermediateCodeStatement> statements) {
+		this(new ControlFlowGraph(statements));
+	}
+
+	/**
+	 * Constructor with the control flow graph of a method
+	 */
+	public LivenessAnalysis(ControlFlowGraph graph) {
+		this.graph = graph;
+		this.statements = graph.getStatements();
+		variables = new ArrayList<DeclarationIdentifier>();
+		indexes = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		int size = this.statements.size();
+		uses = new BitSet[size];
+		definitions = new BitSet[size];
+		liveIn = new BitSet[size];
+		liveOut = new BitSet[size];
+		computeUsesAndDefinitions();
+		computeLiveness();
+	}
+
+	/**
+	 * Get the variables of the method
+	 */
+	public List<DeclarationIdentifier> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Get the index of a variable, or -1 if it is not considered by the analysis
+	 */
+	public int getIndex(DeclarationIdentifier decl) {
+		Integer index = indexes.get(decl);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Get the variables used by the statement at the given position
+	 */
+	public BitSet getUses(int position) {
+		return uses[position];
+	}
+
+	/**
+	 * Get the variables defined by the statement at the given position
+	 */
+	public BitSet getDefinitions(int position) {
+		return definitions[position];
+	}
+
+	/**
+	 * Get the variables live before the statement at the given position
+	 */
+	public BitSet getLiveIn(int position) {
+		return liveIn[position];
+	}
+
+	/**
+	 * Get the variables live after the statement at the given position
+	 */
+	public BitSet getLiveOut(int position) {
+		return liveOut[position];
+	}
+
+	/**
+	 * Compute the variables used and defined by each statement
+	 */
+	private void computeUsesAndDefinitions() {
+		LinkedList<Expression> pushedArguments = new LinkedList<Expression>();
+		for (int i = 0; i < statements.size(); i++) {
+			IntermediateCodeStatement stmt = statements.get(i);
+			uses[i] = new BitSet();
+			definitions[i] = new BitSet();
+			if (stmt instanceof ThreeAddressStatement) {
+				ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+				addUse(i,threeStmt.getExpressionOne());
+				addUse(i,threeStmt.getExpressionTwo());
+				addDefinition(i,threeStmt.getResult());
+			} else if (stmt instanceof TwoAddressStatement) {
+				TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+				if (stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+					for (Expression argument : pushedArguments) {
+						addUse(i,argument);
+					}
+					pushedArguments.clear();
+				} else {
+					addUse(i,twoStmt.getExpression());
+				}
+				addDefinition(i,twoStmt.getResult());
+			} else if (stmt instanceof OneAddressStatement) {
+				OneAddressStatement oneStmt = (OneAddressStatement)stmt;
+				switch (stmt.getInstruction()) {
+					case PUSH:
+						// The argument is used by the call
+						pushedArguments.add(oneStmt.getExpression());
+						break;
+					case CALL:
+						for (Expression argument : pushedArguments) {
+							addUse(i,argument);
+						}
+						pushedArguments.clear();
+						break;
+					case PARAM:
+						addDefinition(i,oneStmt.getExpression());
+						break;
+					case JUMPF:
+					case PRINT:
+					case RET:
+						addUse(i,oneStmt.getExpression());
+						break;
+					default:
+						break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the variables read by an operand to the uses of a statement
+	 */
+	private void addUse(int position, Expression operand) {
+		if (operand instanceof VarArrayLocation) {
+			addUse(position,((VarArrayLocation)operand).getExpression());
+		} else if (operand instanceof VarLocation) {
+			int index = variable(((VarLocation)operand).getDeclaration());
+			if (index >= 0) {
+				uses[position].set(index);
+			}
+		}
+	}
+
+	/**
+	 * Add the variable written by a result to the definitions of a statement. The
+	 * index of an array element is used.
+	 */
+	private void addDefinition(int position, Expression result) {
+		if (result instanceof VarArrayLocation) {
+			addUse(position,((VarArrayLocation)result).getExpression());
+		} else if (result instanceof VarLocation) {
+			int index = variable(((VarLocation)result).getDeclaration());
+			if (index >= 0) {
+				definitions[position].set(index);
+			}
+		}
+	}
+
+	/**
+	 * Get the index of the variable of a declaration, adding it if it is a local
+	 * variable that is not an array. Returns -1 if it is not considered.
+	 */
+	private int variable(DeclarationIdentifier decl) {
+		if (decl == null || decl.isGlobal() || decl.isArrayDeclarationId()) {
+			return -1;
+		}
+		Integer index = indexes.get(decl);
+		if (index == null) {
+			index = variables.size();
+			variables.add(decl);
+			indexes.put(decl,index);
+		}
+		return index;
+	}
+
+	/**
+	 * Compute the live variables before and after each statement. The variables
+	 * live at the start of each block are computed first, visiting the blocks in
+	 * postorder until a fixed point is reached, and then each block is walked
+	 * backwards from the variables live at its end.
+	 */
+	private void computeLiveness() {
+		List<BasicBlock> blocks = graph.getBlocks();
+		BitSet[] blockUses = new BitSet[blocks.size()];
+		BitSet[] blockDefinitions = new BitSet[blocks.size()];
+		BitSet[] blockLiveIn = new BitSet[blocks.size()];
+		for (BasicBlock block : blocks) {
+			BitSet use = new BitSet();
+			BitSet def = new BitSet();
+			for (int i = block.getLast(); i >= block.getFirst(); i--) {
+				use.andNot(definitions[i]);
+				def.or(definitions[i]);
+				use.or(uses[i]);
+			}
+			blockUses[block.getIndex()] = use;
+			blockDefinitions[block.getIndex()] = def;
+			blockLiveIn[block.getIndex()] = new BitSet();
+		}
+
+		// The reachable blocks in postorder, followed by the unreachable ones
+		LinkedList<BasicBlock> order = new LinkedList<BasicBlock>();
+		for (BasicBlock block : graph.getReversePostorder()) {
+			order.addFirst(block);
+		}
+		for (BasicBlock block : blocks) {
+			if (!block.isReachable()) {
+				order.add(block);
+			}
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (BasicBlock block : order) {
+				BitSet in = liveAtEnd(block,blockLiveIn);
+				in.andNot(blockDefinitions[block.getIndex()]);
+				in.or(blockUses[block.getIndex()]);
+				if (!in.equals(blockLiveIn[block.getIndex()])) {
+					blockLiveIn[block.getIndex()] = in;
+					changed = true;
+				}
+			}
+		}
+
+		for (BasicBlock block : blocks) {
+			BitSet out = liveAtEnd(block,blockLiveIn);
+			for (int i = block.getLast(); i >= block.getFirst(); i--) {
+				liveOut[i] = out;
+				BitSet in = (BitSet)out.clone();
+				in.andNot(definitions[i]);
+				in.or(uses[i]);
+				liveIn[i] = in;
+				out = in;
+			}
+		}
+	}
+
+	/**
+	 * Get the variables live at the end of a block, that are the variables live at
+	 * the start of its successors
+	 */
+	private BitSet liveAtEnd(BasicBlock block, BitSet[] blockLiveIn) {
+		BitSet out = new BitSet();
+		for (BasicBlock successor : block.getSuccessors()) {
+			out.or(blockLiveIn[successor.getIndex()]);
+		}
+		return out;
+	}
+
+}
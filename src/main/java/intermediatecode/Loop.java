@@ -0,0 +1,110 @@
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents a natural loop of the control flow graph: the header, that
+ * dominates every block of the loop, and the blocks that can reach a back edge to
+ * the header without passing through it
+ * @author Facundo Molina
+ */
+public class Loop {
+
+	private BasicBlock header;					// Block that dominates the loop
+	private LinkedList<BasicBlock> blocks;		// Blocks of the loop, including the inner loops
+	private LinkedList<BasicBlock> latches;		// Blocks with a back edge to the header
+	private Loop parent;						// Innermost loop that contains this loop
+	private LinkedList<Loop> children;			// Loops immediately contained in this loop
+	private int depth;							// Number of loops that contain this loop, plus one
+
+	/**
+	 * Constructor with the header and the enclosing loop
+	 */
+	public Loop(BasicBlock header, Loop parent) {
+		this.header = header;
+		this.parent = parent;
+		blocks = new LinkedList<BasicBlock>();
+		latches = new LinkedList<BasicBlock>();
+		children = new LinkedList<Loop>();
+		if (parent == null) {
+			depth = 1;
+		} else {
+			depth = parent.depth + 1;
+			parent.children.add(this);
+		}
+	}
+
+	/**
+	 * Get the header
+	 */
+	public BasicBlock getHeader() {
+		return header;
+	}
+
+	/**
+	 * Get the blocks of the loop, including the blocks of the inner loops
+	 */
+	public List<BasicBlock> getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 * Get the blocks with a back edge to the header
+	 */
+	public List<BasicBlock> getLatches() {
+		return latches;
+	}
+
+	/**
+	 * Get the innermost loop that contains this loop, or null if it is outermost
+	 */
+	public Loop getParent() {
+		return parent;
+	}
+
+	/**
+	 * Get the loops immediately contained in this loop
+	 */
+	public List<Loop> getChildren() {
+		return children;
+	}
+
+	/**
+	 * Get the nesting depth, 1 for an outermost loop
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns true if the block belongs to this loop or to one of its inner loops
+	 */
+	public boolean contains(BasicBlock block) {
+		for (Loop loop = block.getLoop(); loop != null; loop = loop.parent) {
+			if (loop == this) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the blocks outside the loop that are successors of a block of the loop
+	 */
+	public List<BasicBlock> getExits() {
+		LinkedList<BasicBlock> exits = new LinkedList<BasicBlock>();
+		for (BasicBlock block : blocks) {
+			for (BasicBlock successor : block.getSuccessors()) {
+				if (!contains(successor) && !exits.contains(successor)) {
+					exits.add(successor);
+				}
+			}
+		}
+		return exits;
+	}
+
+	@Override
+	public String toString() {
+		return "Loop "+header+" "+blocks;
+	}
+
+}
@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the loop invariant code motion of a method in SSA form.
+ * The statements of a loop whose operands do not change inside it are moved to
+ * the preheader of the loop, the only block that enters the header from outside
+ * the loop, starting from the innermost loops so a statement can be moved out of
+ * several loops.
+ * The elements of an array and the global variables are invariant when the loop
+ * does not store to them, and a global is not invariant either when the loop
+ * calls a method. The statements that can fail, the divisions by a variable and
+ * the reads of an array element with a variable index, are only moved from the
+ * start of the header, where they are executed whenever the loop is entered and
+ * before any effect of the loop, so they fail at the same point.
+ * @author Facundo Molina
+ */
+public class LoopInvariantCodeMotion {
+
+	private SSAForm ssa;														// Method in SSA form
+	private IdentityHashMap<DeclarationIdentifier,BasicBlock> definitions;		// Block that assigns each variable
+	private IdentityHashMap<DeclarationIdentifier,Boolean> stored;				// Arrays and globals stored by the current loop
+	private boolean calls;														// True if the current loop calls a method
+
+	/**
+	 * Constructor with a method in SSA form
+	 */
+	private LoopInvariantCodeMotion(SSAForm ssa) {
+		this.ssa = ssa;
+		definitions = new IdentityHashMap<DeclarationIdentifier,BasicBlock>();
+		stored = new IdentityHashMap<DeclarationIdentifier,Boolean>();
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (PhiStatement phi : ssa.getPhis(block)) {
+				definitions.put(phi.getResult().getDeclaration(),block);
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null) {
+					definitions.put(decl,block);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Move the invariant statements of the loops of a method in SSA form to their
+	 * preheaders
+	 */
+	public static void optimize(SSAForm ssa) {
+		if (ssa.getGraph().getEntry() != null) {
+			LoopInvariantCodeMotion motion = new LoopInvariantCodeMotion(ssa);
+			List<Loop> loops = ssa.getGraph().getLoops();
+			for (int i = loops.size()-1; i >= 0; i--) {
+				motion.hoist(loops.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Insert an empty block before the header of each loop that is entered by the
+	 * fall through of a JUMPF, so the loop has a preheader. Returns the number of
+	 * the next new label.
+	 */
+	public static int insertPreheaders(List<IntermediateCodeStatement> method, int nextLabel) {
+		ControlFlowGraph graph = new ControlFlowGraph(method);
+		LinkedList<Integer> positions = new LinkedList<Integer>();
+		for (Loop loop : graph.getLoops()) {
+			BasicBlock header = loop.getHeader();
+			BasicBlock previous = graph.getBlocks().get(header.getIndex()-1);
+			List<BasicBlock> entries = getEntries(loop);
+			if (entries.size() == 1 && entries.get(0) == previous && previous.getSuccessors().size() > 1) {
+				positions.add(header.getFirst());
+			}
+		}
+		Collections.sort(positions);
+		while (!positions.isEmpty()) {
+			Label label = new Label(nextLabel++);
+			method.add(positions.removeLast(),new OneAddressStatement(IntermediateCodeInstruction.LABEL,label,new Label(label.getNumber())));
+		}
+		return nextLabel;
+	}
+
+	/**
+	 * Move the invariant statements of a loop to its preheader
+	 */
+	private void hoist(Loop loop) {
+		BasicBlock preheader = getPreheader(ssa,loop);
+		if (preheader == null) {
+			return;
+		}
+		stored.clear();
+		calls = false;
+		for (BasicBlock block : loop.getBlocks()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				if (stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+					calls = true;
+				} else if (SSAForm.getDefinition(stmt) == null) {
+					Location result = getResult(stmt);
+					if (result != null && result.getDeclaration() != null) {
+						stored.put(result.getDeclaration(),true);
+					}
+				}
+			}
+		}
+
+		List<IntermediateCodeStatement> target = ssa.getStatements(preheader);
+		for (BasicBlock block : ssa.getGraph().getReversePostorder()) {
+			if (!loop.contains(block) || !ssa.isExecutable(block)) {
+				continue;
+			}
+			// The statements at the start of the header are executed whenever the
+			// loop is entered, before any effect of the loop
+			boolean first = block == loop.getHeader();
+			List<IntermediateCodeStatement> statements = ssa.getStatements(block);
+			for (int i = 0; i < statements.size(); i++) {
+				IntermediateCodeStatement stmt = statements.get(i);
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl == null || stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+					first = first && !hasEffects(stmt);
+					continue;
+				}
+				if (!isInvariant(stmt,loop) || (!first && canFail(stmt))) {
+					continue;
+				}
+				statements.remove(i--);
+				int position = target.size();
+				if (position > 0 && target.get(position-1).getInstruction() == IntermediateCodeInstruction.JUMP) {
+					position--;
+				}
+				target.add(position,stmt);
+				definitions.put(decl,preheader);
+			}
+		}
+	}
+
+	/**
+	 * Check if the operands of a statement do not change inside a loop
+	 */
+	private boolean isInvariant(IntermediateCodeStatement stmt, Loop loop) {
+		for (Expression operand : SSAForm.getOperands(stmt)) {
+			if (!isInvariant(operand,loop)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check if an operand does not change inside a loop
+	 */
+	private boolean isInvariant(Expression operand, Loop loop) {
+		if (!(operand instanceof Location)) {
+			return true;
+		}
+		DeclarationIdentifier decl = ((Location)operand).getDeclaration();
+		if (operand instanceof VarArrayLocation) {
+			return !stored.containsKey(decl) && !(decl.isGlobal() && calls)
+				&& isInvariant(((VarArrayLocation)operand).getExpression(),loop);
+		}
+		if (decl.isGlobal()) {
+			return !stored.containsKey(decl) && !calls;
+		}
+		BasicBlock block = definitions.get(decl);
+		return block == null || !loop.contains(block);
+	}
+
+	/**
+	 * Check if a statement that does not assign a local variable has effects
+	 * outside the method
+	 */
+	private static boolean hasEffects(IntermediateCodeStatement stmt) {
+		switch (stmt.getInstruction()) {
+			case LABEL:
+			case JUMP:
+			case JUMPF:
+				return false;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Check if a statement can fail at run time
+	 */
+	private static boolean canFail(IntermediateCodeStatement stmt) {
+		if (stmt.getInstruction() == IntermediateCodeInstruction.DIVI || stmt.getInstruction() == IntermediateCodeInstruction.MOD) {
+			Expression divisor = ((ThreeAddressStatement)stmt).getExpressionTwo();
+			if (!(divisor instanceof IntLiteral) || ((IntLiteral)divisor).getIntegerValue() == 0) {
+				return true;
+			}
+		}
+		for (Expression operand : SSAForm.getOperands(stmt)) {
+			if (operand instanceof VarArrayLocation) {
+				Expression index = ((VarArrayLocation)operand).getExpression();
+				if (!(index instanceof IntLiteral) || ((IntLiteral)index).getIntegerValue() < 0
+						|| ((IntLiteral)index).getIntegerValue() >= ((VarArrayLocation)operand).getDeclaration().getCapacity()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the preheader of a loop, the only block outside the loop that enters its
+	 * header, if it has no other successor. Returns null if there is none.
+	 */
+	public static BasicBlock getPreheader(SSAForm ssa, Loop loop) {
+		List<BasicBlock> entries = getEntries(loop);
+		if (entries.size() != 1 || entries.get(0).getSuccessors().size() != 1 || !ssa.isExecutable(entries.get(0))) {
+			return null;
+		}
+		return entries.get(0);
+	}
+
+	/**
+	 * Get the blocks outside a loop that enter its header
+	 */
+	private static List<BasicBlock> getEntries(Loop loop) {
+		ArrayList<BasicBlock> entries = new ArrayList<BasicBlock>();
+		for (BasicBlock predecessor : loop.getHeader().getPredecessors()) {
+			if (!loop.contains(predecessor) && predecessor.isReachable() && !entries.contains(predecessor)) {
+				entries.add(predecessor);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Get the location assigned by a statement, or null
+	 */
+	private static Location getResult(IntermediateCodeStatement stmt) {
+		Expression result = null;
+		if (stmt instanceof ThreeAddressStatement) {
+			result = ((ThreeAddressStatement)stmt).getResult();
+		} else if (stmt instanceof TwoAddressStatement) {
+			result = ((TwoAddressStatement)stmt).getResult();
+		}
+		return result instanceof Location ? (Location)result : null;
+	}
+
+}
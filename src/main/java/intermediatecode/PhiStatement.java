@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a phi statement of the SSA form: result = PHI(operands),
+ * with an operand for each predecessor of its block, in the same order
+ * @author Facundo Molina
+ */
+public class PhiStatement extends IntermediateCodeStatement {
+
+	private Location result;					// Result
+	private ArrayList<Expression> operands;		// Value for each predecessor
+
+	/**
+	 * Constructor with the result and the amount of predecessors
+	 */
+	public PhiStatement(Label label, Location result, int amountOfPredecessors) {
+		super(IntermediateCodeInstruction.PHI,label);
+		this.result = result;
+		operands = new ArrayList<Expression>(amountOfPredecessors);
+		for (int i = 0; i < amountOfPredecessors; i++) {
+			operands.add(null);
+		}
+	}
+
+	/**
+	 * Get result
+	 */
+	public Location getResult() {
+		return result;
+	}
+
+	/**
+	 * Set result
+	 */
+	public void setResult(Location result) {
+		this.result = result;
+	}
+
+	/**
+	 * Get the operands
+	 */
+	public List<Expression> getOperands() {
+		return operands;
+	}
+
+	/**
+	 * Get the operand for the predecessor at the given position
+	 */
+	public Expression getOperand(int predecessor) {
+		return operands.get(predecessor);
+	}
+
+	/**
+	 * Set the operand for the predecessor at the given position
+	 */
+	public void setOperand(int predecessor, Expression operand) {
+		operands.set(predecessor,operand);
+	}
+
+	@Override
+	public String toString() {
+		return label.toString() + ": " + instruction.toString() + " " + operands + " " + result.toString();
+	}
+
+}
@@ -0,0 +1,667 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the SSA form of the intermediate code of a method. Each
+ * local variable and temporal that is not an array is split in versions that are
+ * assigned only once: the phi statements are placed in the iterated dominance
+ * frontiers of the assignments, only where the variable is live, and the uses are
+ * renamed walking the dominator tree.
+ * The first assignment of a variable keeps its declaration and the others get a
+ * new declaration with a new slot in the frame. The parameters keep their
+ * declaration for the value received, and the reads of a local variable before
+ * any assignment are replaced by its default value.
+ * The code is converted back by replacing each phi statement with copies at the
+ * end of its predecessors. The copies of a JUMPF to a block with phi statements
+ * are made in a new block before it, so the edge from the other successor does
+ * not execute them.
+ * @author Facundo Molina
+ */
+public class SSAForm {
+
+	private ControlFlowGraph graph;										// Control flow graph of the method
+	private LivenessAnalysis liveness;									// Liveness of the original code
+	private ArrayList<List<IntermediateCodeStatement>> statements;		// Statements of each block
+	private ArrayList<List<PhiStatement>> phis;							// Phi statements of each block
+	private boolean[] removed;											// True for the blocks removed from the code
+	private IdentityHashMap<DeclarationIdentifier,DeclarationIdentifier> originals;	// Original declaration of each version
+	private OneAddressStatement reserve;								// RESERVE statement of the method
+	private int amount;													// Amount of slots of the frame
+	private int nextLabel;												// Number of the next new label
+
+	/**
+	 * Constructor that converts the statements of a method to SSA form. The new
+	 * statements and labels are numbered from the given number.
+	 */
+	public SSAForm(List<IntermediateCodeStatement> method, int firstLabel) {
+		graph = new ControlFlowGraph(method);
+		liveness = new LivenessAnalysis(graph);
+		nextLabel = firstLabel;
+		statements = new ArrayList<List<IntermediateCodeStatement>>();
+		phis = new ArrayList<List<PhiStatement>>();
+		for (BasicBlock block : graph.getBlocks()) {
+			statements.add(new ArrayList<IntermediateCodeStatement>(block.getStatements()));
+			phis.add(new ArrayList<PhiStatement>());
+		}
+		removed = new boolean[graph.getBlocks().size()];
+		originals = new IdentityHashMap<DeclarationIdentifier,DeclarationIdentifier>();
+		for (IntermediateCodeStatement stmt : graph.getStatements()) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.RESERVE) {
+				reserve = (OneAddressStatement)stmt;
+				amount = ((IntLiteral)((Location)reserve.getExpression()).getValue()).getIntegerValue();
+			}
+		}
+		if (graph.getEntry() != null) {
+			placePhis();
+			rename();
+		}
+	}
+
+	/**
+	 * Get the control flow graph of the method
+	 */
+	public ControlFlowGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get the statements of a block, without its phi statements
+	 */
+	public List<IntermediateCodeStatement> getStatements(BasicBlock block) {
+		return statements.get(block.getIndex());
+	}
+
+	/**
+	 * Get the phi statements at the start of a block
+	 */
+	public List<PhiStatement> getPhis(BasicBlock block) {
+		return phis.get(block.getIndex());
+	}
+
+	/**
+	 * Remove a block that is never executed from the code
+	 */
+	public void removeBlock(BasicBlock block) {
+		removed[block.getIndex()] = true;
+		getStatements(block).clear();
+		getPhis(block).clear();
+	}
+
+	/**
+	 * Returns true if the block can be executed: it is reachable from the entry
+	 * and it was not removed
+	 */
+	public boolean isExecutable(BasicBlock block) {
+		return block.isReachable() && !removed[block.getIndex()];
+	}
+
+	/**
+	 * Get the declaration of the original variable of a version
+	 */
+	public DeclarationIdentifier getOriginal(DeclarationIdentifier version) {
+		DeclarationIdentifier original = originals.get(version);
+		return original == null ? version : original;
+	}
+
+	/**
+	 * Get the number of the next new label
+	 */
+	public int getNextLabel() {
+		return nextLabel;
+	}
+
+	/**
+	 * Create a new variable of the method with the type and name of the given
+	 * declaration, with a new slot in the frame
+	 */
+	public DeclarationIdentifier newVariable(DeclarationIdentifier decl) {
+		amount++;
+		DeclarationIdentifier version = new DeclarationIdentifier(decl.getId()+"_"+amount,decl.getLineNumber(),decl.getColumnNumber());
+		version.setType(decl.getType());
+		version.setOffset(-4*amount);
+		originals.put(version,getOriginal(decl));
+		return version;
+	}
+
+	/**
+	 * Create a new location for a declaration
+	 */
+	public static VarLocation newLocation(DeclarationIdentifier decl) {
+		VarLocation location = new VarLocation(decl.getId(),decl.getLineNumber(),decl.getColumnNumber());
+		location.setDeclaration(decl);
+		return location;
+	}
+
+	/**
+	 * Create a new label for a statement
+	 */
+	public Label newLabel() {
+		return new Label(nextLabel++);
+	}
+
+	/**
+	 * Place the phi statements of each variable in the iterated dominance frontier
+	 * of the blocks that assign it, when the variable is live at the start of the block
+	 */
+	private void placePhis() {
+		List<BasicBlock> blocks = graph.getBlocks();
+		List<List<BasicBlock>> frontiers = computeDominanceFrontiers();
+		List<DeclarationIdentifier> variables = liveness.getVariables();
+		int[] hasPhi = new int[blocks.size()];
+		int[] inWorklist = new int[blocks.size()];
+		List<List<BasicBlock>> definitionBlocks = new ArrayList<List<BasicBlock>>();
+		for (int v = 0; v < variables.size(); v++) {
+			definitionBlocks.add(new LinkedList<BasicBlock>());
+		}
+		for (BasicBlock block : graph.getReversePostorder()) {
+			BitSet defined = new BitSet();
+			for (int i = block.getFirst(); i <= block.getLast(); i++) {
+				defined.or(liveness.getDefinitions(i));
+			}
+			for (int v = defined.nextSetBit(0); v >= 0; v = defined.nextSetBit(v+1)) {
+				definitionBlocks.get(v).add(block);
+			}
+		}
+		for (int v = 0; v < variables.size(); v++) {
+			int stamp = v+1;
+			LinkedList<BasicBlock> worklist = new LinkedList<BasicBlock>();
+			for (BasicBlock block : definitionBlocks.get(v)) {
+				inWorklist[block.getIndex()] = stamp;
+				worklist.add(block);
+			}
+			while (!worklist.isEmpty()) {
+				BasicBlock block = worklist.removeFirst();
+				for (BasicBlock frontier : frontiers.get(block.getIndex())) {
+					if (hasPhi[frontier.getIndex()] == stamp
+							|| !liveness.getLiveIn(frontier.getFirst()).get(v)) {
+						continue;
+					}
+					hasPhi[frontier.getIndex()] = stamp;
+					PhiStatement phi = new PhiStatement(newLabel(),newLocation(variables.get(v)),frontier.getPredecessors().size());
+					getPhis(frontier).add(phi);
+					if (inWorklist[frontier.getIndex()] != stamp) {
+						inWorklist[frontier.getIndex()] = stamp;
+						worklist.add(frontier);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the dominance frontier of each block: the blocks with a predecessor
+	 * dominated by it that are not strictly dominated by it
+	 */
+	private List<List<BasicBlock>> computeDominanceFrontiers() {
+		List<List<BasicBlock>> frontiers = new ArrayList<List<BasicBlock>>();
+		for (int i = 0; i < graph.getBlocks().size(); i++) {
+			frontiers.add(new LinkedList<BasicBlock>());
+		}
+		for (BasicBlock block : graph.getReversePostorder()) {
+			if (block.getPredecessors().size() < 2) {
+				continue;
+			}
+			for (BasicBlock predecessor : block.getPredecessors()) {
+				if (!predecessor.isReachable()) {
+					continue;
+				}
+				BasicBlock runner = predecessor;
+				while (runner != block.getDominator()) {
+					List<BasicBlock> frontier = frontiers.get(runner.getIndex());
+					if (frontier.isEmpty() || frontier.get(frontier.size()-1) != block) {
+						frontier.add(block);
+					}
+					runner = runner.getDominator();
+				}
+			}
+		}
+		return frontiers;
+	}
+
+	/**
+	 * Rename the variables walking the dominator tree from the entry, with a stack
+	 * of the current versions of each variable
+	 */
+	private void rename() {
+		List<DeclarationIdentifier> variables = liveness.getVariables();
+		ArrayList<LinkedList<DeclarationIdentifier>> versions = new ArrayList<LinkedList<DeclarationIdentifier>>();
+		boolean[] assigned = new boolean[variables.size()];
+		for (DeclarationIdentifier variable : variables) {
+			LinkedList<DeclarationIdentifier> stack = new LinkedList<DeclarationIdentifier>();
+			if (variable.getOffset() >= 8) {
+				// The parameters are assigned by the caller
+				stack.push(variable);
+			}
+			versions.add(stack);
+		}
+
+		LinkedList<BasicBlock> blocks = new LinkedList<BasicBlock>();
+		LinkedList<LinkedList<Integer>> pushed = new LinkedList<LinkedList<Integer>>();
+		blocks.push(graph.getEntry());
+		pushed.push(null);
+		while (!blocks.isEmpty()) {
+			BasicBlock block = blocks.pop();
+			LinkedList<Integer> blockPushed = pushed.pop();
+			if (blockPushed != null) {
+				// Leaving the block, restore the versions of its dominator
+				for (int v : blockPushed) {
+					versions.get(v).pop();
+				}
+				continue;
+			}
+			blockPushed = new LinkedList<Integer>();
+			for (PhiStatement phi : getPhis(block)) {
+				phi.setResult(define(phi.getResult(),versions,assigned,blockPushed));
+			}
+			for (IntermediateCodeStatement stmt : getStatements(block)) {
+				if (stmt instanceof ThreeAddressStatement) {
+					ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+					threeStmt.setExpressionOne(use(threeStmt.getExpressionOne(),versions));
+					threeStmt.setExpressionTwo(use(threeStmt.getExpressionTwo(),versions));
+					threeStmt.setResult(define(threeStmt.getResult(),versions,assigned,blockPushed));
+				} else if (stmt instanceof TwoAddressStatement) {
+					TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+					if (stmt.getInstruction() != IntermediateCodeInstruction.CALL) {
+						twoStmt.setExpression(use(twoStmt.getExpression(),versions));
+					}
+					twoStmt.setResult(define(twoStmt.getResult(),versions,assigned,blockPushed));
+				} else if (stmt instanceof OneAddressStatement) {
+					OneAddressStatement oneStmt = (OneAddressStatement)stmt;
+					switch (stmt.getInstruction()) {
+						case PUSH:
+						case JUMPF:
+						case PRINT:
+						case RET:
+							oneStmt.setExpression(use(oneStmt.getExpression(),versions));
+							break;
+						default:
+							break;
+					}
+				}
+			}
+			for (BasicBlock successor : block.getSuccessors()) {
+				List<BasicBlock> predecessors = successor.getPredecessors();
+				for (int p = 0; p < predecessors.size(); p++) {
+					if (predecessors.get(p) != block) {
+						continue;
+					}
+					for (PhiStatement phi : getPhis(successor)) {
+						Location original = newLocation(getOriginal(phi.getResult().getDeclaration()));
+						phi.setOperand(p,use(original,versions));
+					}
+				}
+			}
+			blocks.push(block);
+			pushed.push(blockPushed);
+			for (BasicBlock dominated : block.getDominated()) {
+				blocks.push(dominated);
+				pushed.push(null);
+			}
+		}
+	}
+
+	/**
+	 * Get the operand that reads the current version of the variables of an operand
+	 */
+	private Expression use(Expression operand, List<LinkedList<DeclarationIdentifier>> versions) {
+		if (operand instanceof VarArrayLocation) {
+			VarArrayLocation arrayLocation = (VarArrayLocation)operand;
+			Expression index = use(arrayLocation.getExpression(),versions);
+			if (index == arrayLocation.getExpression()) {
+				return operand;
+			}
+			return newArrayLocation(arrayLocation,index);
+		} else if (operand instanceof VarLocation) {
+			DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+			int v = decl == null ? -1 : liveness.getIndex(decl);
+			if (v < 0) {
+				return operand;
+			}
+			LinkedList<DeclarationIdentifier> stack = versions.get(v);
+			if (stack.isEmpty()) {
+				// The variable was not assigned yet
+				return decl.getType().getDefaultValue();
+			}
+			return stack.peek() == decl ? operand : newLocation(stack.peek());
+		}
+		return operand;
+	}
+
+	/**
+	 * Get the result that assigns a new version of the variable of a result
+	 */
+	private Location define(Expression result, List<LinkedList<DeclarationIdentifier>> versions, boolean[] assigned, List<Integer> pushed) {
+		if (result instanceof VarArrayLocation) {
+			return (Location)use(result,versions);
+		}
+		if (!(result instanceof VarLocation)) {
+			return (Location)result;
+		}
+		DeclarationIdentifier decl = ((VarLocation)result).getDeclaration();
+		int v = decl == null ? -1 : liveness.getIndex(decl);
+		if (v < 0) {
+			return (Location)result;
+		}
+		DeclarationIdentifier version;
+		if (!assigned[v] && decl.getOffset() < 8) {
+			version = decl;
+		} else {
+			version = newVariable(decl);
+		}
+		assigned[v] = true;
+		versions.get(v).push(version);
+		pushed.add(v);
+		return version == decl ? (Location)result : newLocation(version);
+	}
+
+	/**
+	 * Convert the code back from the SSA form, replacing the phi statements with
+	 * copies, and get the statements of the method. The RESERVE statement is
+	 * updated with the slots of the new versions.
+	 */
+	public List<IntermediateCodeStatement> toStatements() {
+		List<BasicBlock> blocks = graph.getBlocks();
+		HashMap<Integer,BasicBlock> labelBlocks = new HashMap<Integer,BasicBlock>();
+		for (BasicBlock block : blocks) {
+			List<IntermediateCodeStatement> blockStatements = getStatements(block);
+			if (!blockStatements.isEmpty() && blockStatements.get(0).getInstruction() == IntermediateCodeInstruction.LABEL) {
+				labelBlocks.put(((OneAddressStatement)blockStatements.get(0)).getLabelToJump().getNumber(),block);
+			}
+		}
+
+		// The copies of the jumps to a block are made in new blocks before it
+		ArrayList<List<IntermediateCodeStatement>> splitEdges = new ArrayList<List<IntermediateCodeStatement>>();
+		for (BasicBlock block : blocks) {
+			splitEdges.add(new LinkedList<IntermediateCodeStatement>());
+		}
+		for (BasicBlock block : blocks) {
+			IntermediateCodeStatement last = getLastStatement(block);
+			if (isExecutable(block) && last != null && last.getInstruction() == IntermediateCodeInstruction.JUMPF) {
+				OneAddressStatement jump = (OneAddressStatement)last;
+				BasicBlock target = labelBlocks.get(jump.getLabelToJump().getNumber());
+				List<IntermediateCodeStatement> copies = getCopies(block,target);
+				if (!copies.isEmpty()) {
+					List<IntermediateCodeStatement> split = splitEdges.get(target.getIndex());
+					if (!split.isEmpty()) {
+						split.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,newLabel(),jump.getLabelToJump()));
+					}
+					Label label = newLabel();
+					split.add(new OneAddressStatement(IntermediateCodeInstruction.LABEL,label,new Label(label.getNumber())));
+					split.addAll(copies);
+					jump.setLabelToJump(new Label(label.getNumber()));
+				}
+			}
+		}
+
+		LinkedList<IntermediateCodeStatement> result = new LinkedList<IntermediateCodeStatement>();
+		for (BasicBlock block : blocks) {
+			if (removed[block.getIndex()]) {
+				continue;
+			}
+			List<IntermediateCodeStatement> split = splitEdges.get(block.getIndex());
+			if (!split.isEmpty()) {
+				if (!result.isEmpty() && canFallThrough(result.getLast())) {
+					Label target = ((OneAddressStatement)getStatements(block).get(0)).getLabelToJump();
+					result.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,newLabel(),new Label(target.getNumber())));
+				}
+				result.addAll(split);
+			}
+			List<IntermediateCodeStatement> blockStatements = getStatements(block);
+			IntermediateCodeStatement last = getLastStatement(block);
+			if (last == null || canFallThrough(last)) {
+				result.addAll(blockStatements);
+				if (isExecutable(block) && block.getIndex()+1 < blocks.size()) {
+					result.addAll(getCopies(block,blocks.get(block.getIndex()+1)));
+				}
+			} else if (last.getInstruction() == IntermediateCodeInstruction.JUMP) {
+				result.addAll(blockStatements.subList(0,blockStatements.size()-1));
+				if (isExecutable(block)) {
+					BasicBlock target = labelBlocks.get(((OneAddressStatement)last).getLabelToJump().getNumber());
+					result.addAll(getCopies(block,target));
+				}
+				result.add(last);
+			} else {
+				result.addAll(blockStatements);
+				if (last.getInstruction() == IntermediateCodeInstruction.JUMPF && isExecutable(block)
+						&& block.getIndex()+1 < blocks.size()) {
+					// The copies of the fall through are only executed by that edge
+					result.addAll(getCopies(block,blocks.get(block.getIndex()+1)));
+				}
+			}
+		}
+		if (reserve != null) {
+			((Location)reserve.getExpression()).setValue(new IntLiteral(amount));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the last statement of a block, or null if it is empty
+	 */
+	private IntermediateCodeStatement getLastStatement(BasicBlock block) {
+		List<IntermediateCodeStatement> blockStatements = getStatements(block);
+		return blockStatements.isEmpty() ? null : blockStatements.get(blockStatements.size()-1);
+	}
+
+	/**
+	 * Returns true if the next statement can be executed after the given statement
+	 */
+	private static boolean canFallThrough(IntermediateCodeStatement stmt) {
+		IntermediateCodeInstruction instruction = stmt.getInstruction();
+		return instruction != IntermediateCodeInstruction.JUMP
+			&& instruction != IntermediateCodeInstruction.JUMPF
+			&& instruction != IntermediateCodeInstruction.RET;
+	}
+
+	/**
+	 * Get the copies that replace the phi statements of a block for the edge from
+	 * the given predecessor. The copies are executed at the same time, so they are
+	 * ordered to not overwrite a value that is copied later, and a cycle of copies
+	 * is broken with a new variable.
+	 */
+	private List<IntermediateCodeStatement> getCopies(BasicBlock predecessor, BasicBlock block) {
+		LinkedList<IntermediateCodeStatement> copies = new LinkedList<IntermediateCodeStatement>();
+		int p = block.getPredecessors().indexOf(predecessor);
+		if (p < 0) {
+			return copies;
+		}
+		LinkedList<Location> destinations = new LinkedList<Location>();
+		LinkedList<Expression> sources = new LinkedList<Expression>();
+		for (PhiStatement phi : getPhis(block)) {
+			Expression source = phi.getOperand(p);
+			if (source != null && getDeclaration(source) != phi.getResult().getDeclaration()) {
+				destinations.add(phi.getResult());
+				sources.add(source);
+			}
+		}
+		while (!destinations.isEmpty()) {
+			int ready = -1;
+			for (int i = 0; i < destinations.size() && ready < 0; i++) {
+				ready = i;
+				for (int j = 0; j < sources.size(); j++) {
+					if (j != i && getDeclaration(sources.get(j)) == destinations.get(i).getDeclaration()) {
+						ready = -1;
+						break;
+					}
+				}
+			}
+			if (ready < 0) {
+				// Every destination is read by another copy, so save the first one
+				Location destination = destinations.getFirst();
+				VarLocation saved = newLocation(newVariable(destination.getDeclaration()));
+				copies.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,newLabel(),destination,saved));
+				for (int j = 0; j < sources.size(); j++) {
+					if (getDeclaration(sources.get(j)) == destination.getDeclaration()) {
+						sources.set(j,saved);
+					}
+				}
+				ready = 0;
+			}
+			copies.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,newLabel(),sources.remove(ready),destinations.remove(ready)));
+		}
+		return copies;
+	}
+
+	/**
+	 * Get the local variable assigned by a statement, or null if it does not
+	 * assign a local variable that is not an array
+	 */
+	public static DeclarationIdentifier getDefinition(IntermediateCodeStatement stmt) {
+		Expression result = null;
+		if (stmt instanceof PhiStatement) {
+			result = ((PhiStatement)stmt).getResult();
+		} else if (stmt instanceof ThreeAddressStatement) {
+			result = ((ThreeAddressStatement)stmt).getResult();
+		} else if (stmt instanceof TwoAddressStatement) {
+			result = ((TwoAddressStatement)stmt).getResult();
+		}
+		DeclarationIdentifier decl = getDeclaration(result);
+		if (result instanceof VarArrayLocation || decl == null || decl.isGlobal()) {
+			return null;
+		}
+		return decl;
+	}
+
+	/**
+	 * Get the operands read by a statement. The result is included when it is an
+	 * array element, since its index is read.
+	 */
+	public static List<Expression> getOperands(IntermediateCodeStatement stmt) {
+		LinkedList<Expression> operands = new LinkedList<Expression>();
+		if (stmt instanceof PhiStatement) {
+			for (Expression operand : ((PhiStatement)stmt).getOperands()) {
+				if (operand != null) {
+					operands.add(operand);
+				}
+			}
+		} else if (stmt instanceof ThreeAddressStatement) {
+			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+			operands.add(threeStmt.getExpressionOne());
+			operands.add(threeStmt.getExpressionTwo());
+			if (threeStmt.getResult() instanceof VarArrayLocation) {
+				operands.add(threeStmt.getResult());
+			}
+		} else if (stmt instanceof TwoAddressStatement) {
+			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+			if (stmt.getInstruction() != IntermediateCodeInstruction.CALL) {
+				operands.add(twoStmt.getExpression());
+			}
+			if (twoStmt.getResult() instanceof VarArrayLocation) {
+				operands.add(twoStmt.getResult());
+			}
+		} else if (stmt instanceof OneAddressStatement) {
+			switch (stmt.getInstruction()) {
+				case PUSH:
+				case JUMPF:
+				case PRINT:
+				case RET:
+					operands.add(((OneAddressStatement)stmt).getExpression());
+					break;
+				default:
+					break;
+			}
+		}
+		return operands;
+	}
+
+	/**
+	 * Get the variables read by a statement, including the indexes of the arrays
+	 */
+	public static List<DeclarationIdentifier> getUsedVariables(IntermediateCodeStatement stmt) {
+		LinkedList<DeclarationIdentifier> used = new LinkedList<DeclarationIdentifier>();
+		for (Expression operand : getOperands(stmt)) {
+			if (operand instanceof VarArrayLocation) {
+				operand = ((VarArrayLocation)operand).getExpression();
+			}
+			if (operand instanceof VarLocation && getDeclaration(operand) != null) {
+				used.add(getDeclaration(operand));
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Replace the reads of a variable in a statement with the given value
+	 */
+	public static void replaceUses(IntermediateCodeStatement stmt, DeclarationIdentifier decl, Expression value) {
+		if (stmt instanceof PhiStatement) {
+			PhiStatement phi = (PhiStatement)stmt;
+			for (int i = 0; i < phi.getOperands().size(); i++) {
+				phi.setOperand(i,replace(phi.getOperand(i),decl,value));
+			}
+		} else if (stmt instanceof ThreeAddressStatement) {
+			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+			threeStmt.setExpressionOne(replace(threeStmt.getExpressionOne(),decl,value));
+			threeStmt.setExpressionTwo(replace(threeStmt.getExpressionTwo(),decl,value));
+			if (threeStmt.getResult() instanceof VarArrayLocation) {
+				threeStmt.setResult(replace(threeStmt.getResult(),decl,value));
+			}
+		} else if (stmt instanceof TwoAddressStatement) {
+			TwoAddressStatement twoStmt = (TwoAddressStatement)stmt;
+			if (stmt.getInstruction() != IntermediateCodeInstruction.CALL) {
+				twoStmt.setExpression(replace(twoStmt.getExpression(),decl,value));
+			}
+			if (twoStmt.getResult() instanceof VarArrayLocation) {
+				twoStmt.setResult(replace(twoStmt.getResult(),decl,value));
+			}
+		} else if (stmt instanceof OneAddressStatement) {
+			OneAddressStatement oneStmt = (OneAddressStatement)stmt;
+			switch (stmt.getInstruction()) {
+				case PUSH:
+				case JUMPF:
+				case PRINT:
+				case RET:
+					oneStmt.setExpression(replace(oneStmt.getExpression(),decl,value));
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Get the operand with the reads of a variable replaced by the given value. An
+	 * array element gets a new location with the replaced index.
+	 */
+	private static Expression replace(Expression operand, DeclarationIdentifier decl, Expression value) {
+		if (operand instanceof VarArrayLocation) {
+			VarArrayLocation arrayLocation = (VarArrayLocation)operand;
+			Expression index = replace(arrayLocation.getExpression(),decl,value);
+			if (index == arrayLocation.getExpression()) {
+				return operand;
+			}
+			return newArrayLocation(arrayLocation,index);
+		}
+		if (operand instanceof VarLocation && getDeclaration(operand) == decl) {
+			return value;
+		}
+		return operand;
+	}
+
+	/**
+	 * Create a new location for an element of the array of the given location,
+	 * with an index that has the same value
+	 */
+	public static VarArrayLocation newArrayLocation(VarArrayLocation arrayLocation, Expression index) {
+		VarArrayLocation location = new VarArrayLocation(arrayLocation.getId(),index,arrayLocation.getListIds(),arrayLocation.getLineNumber(),arrayLocation.getColumnNumber());
+		location.setDeclaration(arrayLocation.getDeclaration());
+		location.setBlockId(arrayLocation.getBlockId());
+		location.setInBounds(arrayLocation.isInBounds());
+		return location;
+	}
+
+	/**
+	 * Get the declaration of an operand that is a variable, or null
+	 */
+	private static DeclarationIdentifier getDeclaration(Expression operand) {
+		if (operand instanceof VarLocation) {
+			return ((VarLocation)operand).getDeclaration();
+		}
+		return null;
+	}
+
+}
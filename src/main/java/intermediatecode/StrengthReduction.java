@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * This class represents the strength reduction of the induction variables of
+ * the loops of a method in SSA form. A basic induction variable is a phi
+ * statement of the header of a loop whose value from the latch is its own value
+ * plus or minus a constant, like the counter of a for statement or of a simple
+ * while statement, and the variables assigned with a basic induction variable
+ * plus or minus a constant are induction variables too. The products of an
+ * induction variable by a value that does not change inside the loop, like the
+ * indexes of the rows of a matrix, are replaced by a new induction variable that
+ * starts with the product of the initial value and is increased by the product
+ * of the step at the latch, so the multiplication is done once before the loop.
+ * Only the loops with a preheader and a single latch are reduced, and a global
+ * factor must not be stored or changed by a call inside the loop.
+ * @author Facundo Molina
+ */
+public class StrengthReduction {
+
+	private SSAForm ssa;														// Method in SSA form
+	private IdentityHashMap<DeclarationIdentifier,BasicBlock> blocks;			// Block that assigns each variable
+	private IdentityHashMap<DeclarationIdentifier,IntermediateCodeStatement> definitions;	// Statement that assigns each variable
+
+	/**
+	 * Constructor with a method in SSA form
+	 */
+	private StrengthReduction(SSAForm ssa) {
+		this.ssa = ssa;
+		blocks = new IdentityHashMap<DeclarationIdentifier,BasicBlock>();
+		definitions = new IdentityHashMap<DeclarationIdentifier,IntermediateCodeStatement>();
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (PhiStatement phi : ssa.getPhis(block)) {
+				blocks.put(phi.getResult().getDeclaration(),block);
+				definitions.put(phi.getResult().getDeclaration(),phi);
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+				if (decl != null) {
+					blocks.put(decl,block);
+					definitions.put(decl,stmt);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reduce the strength of the products of the induction variables of the loops
+	 * of a method in SSA form
+	 */
+	public static void optimize(SSAForm ssa) {
+		if (ssa.getGraph().getEntry() != null) {
+			StrengthReduction reduction = new StrengthReduction(ssa);
+			List<Loop> loops = ssa.getGraph().getLoops();
+			for (int i = loops.size()-1; i >= 0; i--) {
+				reduction.reduce(loops.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Replace the products of the basic induction variables of a loop
+	 */
+	private void reduce(Loop loop) {
+		BasicBlock preheader = LoopInvariantCodeMotion.getPreheader(ssa,loop);
+		BasicBlock header = loop.getHeader();
+		if (preheader == null || loop.getLatches().size() != 1 || header.getPredecessors().size() != 2
+				|| !ssa.isExecutable(loop.getLatches().get(0))) {
+			return;
+		}
+		int entry = header.getPredecessors().indexOf(preheader);
+		int back = 1 - entry;
+		BasicBlock latch = header.getPredecessors().get(back);
+
+		IdentityHashMap<DeclarationIdentifier,PhiStatement> inductions = new IdentityHashMap<DeclarationIdentifier,PhiStatement>();
+		IdentityHashMap<DeclarationIdentifier,Integer> steps = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		IdentityHashMap<DeclarationIdentifier,Integer> offsets = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		for (PhiStatement phi : ssa.getPhis(header)) {
+			Integer step = getStep(phi,back);
+			if (step != null && phi.getOperand(entry) != null) {
+				inductions.put(phi.getResult().getDeclaration(),phi);
+				offsets.put(phi.getResult().getDeclaration(),0);
+				steps.put(phi.getResult().getDeclaration(),step);
+			}
+		}
+		if (inductions.isEmpty()) {
+			return;
+		}
+
+		for (BasicBlock block : ssa.getGraph().getReversePostorder()) {
+			if (!loop.contains(block) || !ssa.isExecutable(block)) {
+				continue;
+			}
+			List<IntermediateCodeStatement> statements = ssa.getStatements(block);
+			for (int i = 0; i < statements.size(); i++) {
+				IntermediateCodeStatement stmt = statements.get(i);
+				DeclarationIdentifier result = SSAForm.getDefinition(stmt);
+				if (result == null || !(stmt instanceof ThreeAddressStatement)) {
+					continue;
+				}
+				ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+				Expression variable = threeStmt.getExpressionOne();
+				Expression other = threeStmt.getExpressionTwo();
+				if (!inductions.containsKey(getVariable(variable)) && stmt.getInstruction() != IntermediateCodeInstruction.SUBI) {
+					variable = threeStmt.getExpressionTwo();
+					other = threeStmt.getExpressionOne();
+				}
+				DeclarationIdentifier decl = getVariable(variable);
+				if (!inductions.containsKey(decl)) {
+					continue;
+				}
+				if ((stmt.getInstruction() == IntermediateCodeInstruction.ADDI || stmt.getInstruction() == IntermediateCodeInstruction.SUBI)
+						&& other instanceof IntLiteral) {
+					// The variable is the induction variable plus a constant
+					int constant = ((IntLiteral)other).getIntegerValue();
+					inductions.put(result,inductions.get(decl));
+					offsets.put(result,offsets.get(decl) + (stmt.getInstruction() == IntermediateCodeInstruction.ADDI ? constant : -constant));
+				} else if (stmt.getInstruction() == IntermediateCodeInstruction.MULTI && isInvariant(other,loop)) {
+					statements.remove(i--);
+					PhiStatement induction = inductions.get(decl);
+					int step = steps.get(induction.getResult().getDeclaration());
+					replace(threeStmt,induction,step,offsets.get(decl),other,preheader,latch,entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replace the product of a basic induction variable plus an offset by a new
+	 * induction variable of the header
+	 */
+	private void replace(ThreeAddressStatement product, PhiStatement induction, int step, int offset, Expression factor, BasicBlock preheader, BasicBlock latch, int entry) {
+		DeclarationIdentifier decl = SSAForm.getDefinition(product);
+		List<IntermediateCodeStatement> before = ssa.getStatements(preheader);
+
+		// The initial value and the increment are computed in the preheader
+		Expression initial = induction.getOperand(entry);
+		if (initial instanceof IntLiteral) {
+			initial = new IntLiteral(((IntLiteral)initial).getIntegerValue()+offset);
+		} else if (offset != 0) {
+			Expression sum = SSAForm.newLocation(ssa.newVariable(decl));
+			append(before,new ThreeAddressStatement(IntermediateCodeInstruction.ADDI,ssa.newLabel(),initial,new IntLiteral(offset),sum));
+			initial = sum;
+		}
+		Expression start;
+		if (initial instanceof IntLiteral && factor instanceof IntLiteral) {
+			start = new IntLiteral(((IntLiteral)initial).getIntegerValue()*((IntLiteral)factor).getIntegerValue());
+		} else if (initial instanceof IntLiteral && ((IntLiteral)initial).getIntegerValue() == 0) {
+			start = new IntLiteral(0);
+		} else if (initial instanceof IntLiteral && ((IntLiteral)initial).getIntegerValue() == 1) {
+			start = copy(factor);
+		} else {
+			start = SSAForm.newLocation(ssa.newVariable(decl));
+			append(before,new ThreeAddressStatement(IntermediateCodeInstruction.MULTI,ssa.newLabel(),initial,copy(factor),start));
+		}
+		Expression increment;
+		if (factor instanceof IntLiteral) {
+			increment = new IntLiteral(step*((IntLiteral)factor).getIntegerValue());
+		} else if (step == 1) {
+			increment = copy(factor);
+		} else {
+			increment = SSAForm.newLocation(ssa.newVariable(decl));
+			append(before,new ThreeAddressStatement(IntermediateCodeInstruction.MULTI,ssa.newLabel(),copy(factor),new IntLiteral(step),increment));
+		}
+
+		// The new induction variable is increased at the latch
+		DeclarationIdentifier current = ssa.newVariable(decl);
+		DeclarationIdentifier next = ssa.newVariable(decl);
+		PhiStatement phi = new PhiStatement(ssa.newLabel(),SSAForm.newLocation(current),2);
+		phi.setOperand(entry,start);
+		phi.setOperand(1-entry,SSAForm.newLocation(next));
+		ssa.getPhis(blocks.get(induction.getResult().getDeclaration())).add(phi);
+		blocks.put(current,blocks.get(induction.getResult().getDeclaration()));
+		blocks.put(next,latch);
+		append(ssa.getStatements(latch),new ThreeAddressStatement(IntermediateCodeInstruction.ADDI,ssa.newLabel(),SSAForm.newLocation(current),increment,SSAForm.newLocation(next)));
+
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			List<IntermediateCodeStatement> code = new ArrayList<IntermediateCodeStatement>(ssa.getPhis(block));
+			code.addAll(ssa.getStatements(block));
+			for (IntermediateCodeStatement stmt : code) {
+				SSAForm.replaceUses(stmt,decl,SSAForm.newLocation(current));
+			}
+		}
+	}
+
+	/**
+	 * Get the constant added to a phi statement by the value that comes from the
+	 * latch, or null if it is not a basic induction variable
+	 */
+	private Integer getStep(PhiStatement phi, int back) {
+		DeclarationIdentifier decl = phi.getResult().getDeclaration();
+		IntermediateCodeStatement update = definitions.get(getVariable(phi.getOperand(back)));
+		if (decl.getType() != Type.INT || !(update instanceof ThreeAddressStatement)) {
+			return null;
+		}
+		ThreeAddressStatement threeStmt = (ThreeAddressStatement)update;
+		Expression operand1 = threeStmt.getExpressionOne();
+		Expression operand2 = threeStmt.getExpressionTwo();
+		if (update.getInstruction() == IntermediateCodeInstruction.ADDI) {
+			if (getVariable(operand1) == decl && operand2 instanceof IntLiteral) {
+				return ((IntLiteral)operand2).getIntegerValue();
+			} else if (getVariable(operand2) == decl && operand1 instanceof IntLiteral) {
+				return ((IntLiteral)operand1).getIntegerValue();
+			}
+		} else if (update.getInstruction() == IntermediateCodeInstruction.SUBI) {
+			if (getVariable(operand1) == decl && operand2 instanceof IntLiteral) {
+				return -((IntLiteral)operand2).getIntegerValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if an operand is a constant, a local variable assigned outside a loop,
+	 * or a global that is not stored by the loop and the loop does not call a method
+	 */
+	private boolean isInvariant(Expression operand, Loop loop) {
+		if (operand instanceof IntLiteral) {
+			return true;
+		} else if (!(operand instanceof VarLocation) || ((VarLocation)operand).getDeclaration() == null) {
+			return false;
+		}
+		DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+		if (!decl.isGlobal()) {
+			return blocks.get(decl) == null || !loop.contains(blocks.get(decl));
+		}
+		for (BasicBlock block : loop.getBlocks()) {
+			if (!ssa.isExecutable(block)) {
+				continue;
+			}
+			for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+				Expression result = null;
+				if (stmt instanceof ThreeAddressStatement) {
+					result = ((ThreeAddressStatement)stmt).getResult();
+				} else if (stmt instanceof TwoAddressStatement) {
+					result = ((TwoAddressStatement)stmt).getResult();
+				}
+				if (stmt.getInstruction() == IntermediateCodeInstruction.CALL
+						|| (result instanceof VarLocation && ((VarLocation)result).getDeclaration() == decl)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add a statement at the end of a block, before its last jump
+	 */
+	private static void append(List<IntermediateCodeStatement> statements, IntermediateCodeStatement stmt) {
+		int position = statements.size();
+		if (position > 0) {
+			IntermediateCodeInstruction last = statements.get(position-1).getInstruction();
+			if (last == IntermediateCodeInstruction.JUMP || last == IntermediateCodeInstruction.JUMPF) {
+				position--;
+			}
+		}
+		statements.add(position,stmt);
+	}
+
+	/**
+	 * Get a new operand with the value of an operand that is a constant or a
+	 * variable
+	 */
+	private static Expression copy(Expression operand) {
+		if (operand instanceof IntLiteral) {
+			return new IntLiteral(((IntLiteral)operand).getIntegerValue());
+		}
+		return SSAForm.newLocation(((VarLocation)operand).getDeclaration());
+	}
+
+	/**
+	 * Get the local variable of an operand that is not an array element, or null
+	 */
+	private static DeclarationIdentifier getVariable(Expression operand) {
+		if (operand instanceof VarLocation) {
+			DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+			if (decl != null && !decl.isGlobal()) {
+				return decl;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,322 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents the dominator based value numbering of a method in SSA
+ * form. The blocks are visited walking the dominator tree, with a table of the
+ * values computed by the blocks that dominate the current one. When a statement
+ * computes a value that is already in the table, it is deleted and its variable
+ * is replaced by the one that computed the value first. The copies give their
+ * variable the value of the copied operand, and the commutative operations give
+ * the same value for both orders of their operands.
+ * The elements of the arrays and the global variables can change between blocks,
+ * so their values are only numbered inside a block: a store to an array or a
+ * global variable gives a new value to its elements, a call gives a new value to
+ * every global, and the stored value is reused by the next reads.
+ * @author Facundo Molina
+ */
+public class ValueNumbering {
+
+	private SSAForm ssa;													// Method in SSA form
+	private IdentityHashMap<DeclarationIdentifier,String> numbers;			// Value number of each variable
+	private IdentityHashMap<DeclarationIdentifier,DeclarationIdentifier> replacements;	// Variable that replaces each redundant variable
+	private HashMap<String,DeclarationIdentifier> available;				// Variable that holds each computed value
+	private IdentityHashMap<DeclarationIdentifier,Integer> stores;			// Stores to each array or global in the current block
+	private int calls;														// Calls in the current block
+	private int block;														// Index of the current block
+
+	/**
+	 * Constructor with a method in SSA form
+	 */
+	private ValueNumbering(SSAForm ssa) {
+		this.ssa = ssa;
+		numbers = new IdentityHashMap<DeclarationIdentifier,String>();
+		replacements = new IdentityHashMap<DeclarationIdentifier,DeclarationIdentifier>();
+		available = new HashMap<String,DeclarationIdentifier>();
+		stores = new IdentityHashMap<DeclarationIdentifier,Integer>();
+	}
+
+	/**
+	 * Remove the redundant computations of a method in SSA form
+	 */
+	public static void optimize(SSAForm ssa) {
+		if (ssa.getGraph().getEntry() != null) {
+			ValueNumbering numbering = new ValueNumbering(ssa);
+			numbering.number();
+			numbering.replace();
+		}
+	}
+
+	/**
+	 * Number the values of the blocks walking the dominator tree from the entry.
+	 * The values of a block are removed from the table when leaving it.
+	 */
+	private void number() {
+		LinkedList<BasicBlock> blocks = new LinkedList<BasicBlock>();
+		LinkedList<List<String>> added = new LinkedList<List<String>>();
+		blocks.push(ssa.getGraph().getEntry());
+		added.push(null);
+		while (!blocks.isEmpty()) {
+			BasicBlock current = blocks.pop();
+			List<String> blockAdded = added.pop();
+			if (blockAdded != null) {
+				// Leaving the block, restore the values of its dominator
+				for (String value : blockAdded) {
+					available.remove(value);
+				}
+				continue;
+			}
+			blockAdded = new LinkedList<String>();
+			if (ssa.isExecutable(current)) {
+				number(current,blockAdded);
+			}
+			blocks.push(current);
+			added.push(blockAdded);
+			for (BasicBlock dominated : current.getDominated()) {
+				blocks.push(dominated);
+				added.push(null);
+			}
+		}
+	}
+
+	/**
+	 * Number the values of the phi statements and the statements of a block,
+	 * deleting the redundant ones
+	 */
+	private void number(BasicBlock current, List<String> blockAdded) {
+		block = current.getIndex();
+		stores.clear();
+		calls = 0;
+		for (PhiStatement phi : new ArrayList<PhiStatement>(ssa.getPhis(current))) {
+			String value = getValue(phi);
+			DeclarationIdentifier decl = phi.getResult().getDeclaration();
+			if (value != null && available.containsKey(value)) {
+				ssa.getPhis(current).remove(phi);
+				replacements.put(decl,available.get(value));
+				numbers.put(decl,getNumber(available.get(value)));
+			} else {
+				define(decl,value,blockAdded);
+			}
+		}
+		List<IntermediateCodeStatement> statements = ssa.getStatements(current);
+		for (int i = 0; i < statements.size(); i++) {
+			IntermediateCodeStatement stmt = statements.get(i);
+			DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+			if (stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+				calls++;
+				if (decl != null) {
+					define(decl,null,blockAdded);
+				}
+				continue;
+			}
+			if (decl == null) {
+				store(stmt,blockAdded);
+				continue;
+			}
+			String value = getValue(stmt);
+			if (available.containsKey(value)) {
+				// The value was already computed
+				statements.remove(i--);
+				replacements.put(decl,available.get(value));
+				numbers.put(decl,getNumber(available.get(value)));
+			} else {
+				define(decl,value,blockAdded);
+			}
+		}
+	}
+
+	/**
+	 * Give a variable the value computed by its definition, or a new value if it
+	 * is null, and make it the variable that holds that value
+	 */
+	private void define(DeclarationIdentifier decl, String value, List<String> blockAdded) {
+		String number = getNumber(decl);
+		if (value != null && !value.equals(number)) {
+			if (value.startsWith("v")) {
+				// A copy of a variable has its value number
+				numbers.put(decl,value);
+				number = value;
+			} else {
+				available.put(value,decl);
+				blockAdded.add(value);
+			}
+		}
+		if (!available.containsKey(number)) {
+			available.put(number,decl);
+			blockAdded.add(number);
+		}
+	}
+
+	/**
+	 * Give a new value to the elements of the array or the global variable stored
+	 * by a statement, and make the stored variable the one that holds it
+	 */
+	private void store(IntermediateCodeStatement stmt, List<String> blockAdded) {
+		Expression result = null;
+		Expression stored = null;
+		if (stmt instanceof ThreeAddressStatement) {
+			result = ((ThreeAddressStatement)stmt).getResult();
+		} else if (stmt instanceof TwoAddressStatement) {
+			result = ((TwoAddressStatement)stmt).getResult();
+			if (stmt.getInstruction() == IntermediateCodeInstruction.ASSIGN) {
+				stored = ((TwoAddressStatement)stmt).getExpression();
+			}
+		}
+		if (!(result instanceof Location) || ((Location)result).getDeclaration() == null) {
+			return;
+		}
+		DeclarationIdentifier decl = ((Location)result).getDeclaration();
+		Integer amount = stores.get(decl);
+		stores.put(decl,amount == null ? 1 : amount+1);
+		DeclarationIdentifier storedDecl = getVariable(stored);
+		if (storedDecl != null) {
+			String value = getValue(result);
+			available.put(value,storedDecl);
+			blockAdded.add(value);
+		}
+	}
+
+	/**
+	 * Get the value computed by a phi statement, or null if it is a new value. A
+	 * phi statement whose operands have the same value gets that value.
+	 */
+	private String getValue(PhiStatement phi) {
+		String value = null;
+		for (Expression operand : phi.getOperands()) {
+			DeclarationIdentifier decl = getVariable(operand);
+			if (operand == null) {
+				continue;
+			}
+			if (decl == null || !numbers.containsKey(decl)) {
+				// The operand is a constant or is assigned later
+				return null;
+			}
+			if (value != null && !value.equals(numbers.get(decl))) {
+				return null;
+			}
+			value = numbers.get(decl);
+		}
+		return value;
+	}
+
+	/**
+	 * Get the value computed by a statement that assigns a local variable
+	 */
+	private String getValue(IntermediateCodeStatement stmt) {
+		if (stmt instanceof ThreeAddressStatement) {
+			ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+			String value1 = getValue(threeStmt.getExpressionOne());
+			String value2 = getValue(threeStmt.getExpressionTwo());
+			if (isCommutative(stmt.getInstruction()) && value1.compareTo(value2) > 0) {
+				String value = value1;
+				value1 = value2;
+				value2 = value;
+			}
+			return stmt.getInstruction()+"("+value1+","+value2+")";
+		}
+		String value = getValue(((TwoAddressStatement)stmt).getExpression());
+		if (stmt.getInstruction() == IntermediateCodeInstruction.ASSIGN) {
+			return value;
+		}
+		return stmt.getInstruction()+"("+value+")";
+	}
+
+	/**
+	 * Get the value of an operand. The values of the array elements and the global
+	 * variables only last until the next store to them or the next call.
+	 */
+	private String getValue(Expression operand) {
+		if (operand instanceof IntLiteral) {
+			return "i"+((IntLiteral)operand).getIntegerValue();
+		} else if (operand instanceof FloatLiteral) {
+			return "f"+((FloatLiteral)operand).getFloatValue();
+		} else if (operand instanceof BooleanLiteral) {
+			return "b"+((BooleanLiteral)operand).getBooleanValue();
+		}
+		DeclarationIdentifier decl = ((Location)operand).getDeclaration();
+		Integer amount = stores.get(decl);
+		String memory = "m"+block+"."+getNumber(decl)+"."+(amount == null ? 0 : amount);
+		if (decl.isGlobal()) {
+			memory += "."+calls;
+		}
+		if (operand instanceof VarArrayLocation) {
+			return memory+"["+getValue(((VarArrayLocation)operand).getExpression())+"]";
+		} else if (decl.isGlobal()) {
+			return memory;
+		}
+		return getNumber(decl);
+	}
+
+	/**
+	 * Get the value number of a variable, giving it a new one if it has none
+	 */
+	private String getNumber(DeclarationIdentifier decl) {
+		String number = numbers.get(decl);
+		if (number == null) {
+			number = "v"+numbers.size();
+			numbers.put(decl,number);
+		}
+		return number;
+	}
+
+	/**
+	 * Replace the reads of the redundant variables by the variables that hold
+	 * their values
+	 */
+	private void replace() {
+		if (replacements.isEmpty()) {
+			return;
+		}
+		for (BasicBlock current : ssa.getGraph().getBlocks()) {
+			List<IntermediateCodeStatement> code = new ArrayList<IntermediateCodeStatement>(ssa.getPhis(current));
+			code.addAll(ssa.getStatements(current));
+			for (IntermediateCodeStatement stmt : code) {
+				for (DeclarationIdentifier used : SSAForm.getUsedVariables(stmt)) {
+					DeclarationIdentifier replacement = replacements.get(used);
+					while (replacement != null && replacements.containsKey(replacement)) {
+						replacement = replacements.get(replacement);
+					}
+					if (replacement != null) {
+						SSAForm.replaceUses(stmt,used,SSAForm.newLocation(replacement));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the local variable of an operand that is not an array element, or null
+	 */
+	private static DeclarationIdentifier getVariable(Expression operand) {
+		if (operand instanceof VarLocation && !(operand instanceof VarArrayLocation)) {
+			DeclarationIdentifier decl = ((VarLocation)operand).getDeclaration();
+			if (decl != null && !decl.isGlobal()) {
+				return decl;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if the order of the operands of an instruction does not matter
+	 */
+	private static boolean isCommutative(IntermediateCodeInstruction instruction) {
+		switch (instruction) {
+			case ADDI:
+			case ADDF:
+			case MULTI:
+			case MULTF:
+			case EQ:
+			case NEQ:
+			case AND:
+			case OR:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+}
@@ -10,15 +10,49 @@ public class CTdsInterpreter {
 	
 	private static CTdsParser parser;			// Parser
 	private static LinkedList<String> errors; 	// Errors
+	private static boolean bytecodeMode;		// Execute the program with the bytecode vm
+	private static boolean closureMode;			// Execute the program compiled to closures
+	private static boolean tieredMode;			// Compile the hot methods to JVM bytecode
+	private static int threshold;				// Counter of a hot method in the tiered mode
+	private static int maxDepth;				// Maximum amount of nested calls
+
+	private static final int default_max_depth = 10000;		// Default maximum amount of nested calls
+	private static final long stack_size_per_call = 8192;	// Bytes of the java stack used by each call
 	
 	/* 
- 	 * Main method for run the interpreter with an input file 
+ 	 * Main method for run the interpreter with an input file. The option -vm
+ 	 * executes the program with the bytecode virtual machine and the option
+ 	 * -closure executes the program compiled to closures, instead of the
+ 	 * interpreter visitor. The option -tiered interprets the cold methods and
+ 	 * compiles the hot methods to JVM bytecode, the option -threshold=N sets
+ 	 * the calls and cycle iterations that make a method hot. The option
+ 	 * -maxdepth=N sets the maximum amount of nested calls.
  	 */
  	public static void main(String[] argv) {
  		
  		try {
 
  			errors = new LinkedList<String>();
+ 			bytecodeMode = false;
+ 			closureMode = false;
+ 			tieredMode = false;
+ 			threshold = JvmTieredCompiler.default_threshold;
+ 			maxDepth = default_max_depth;
+ 			for (int i = 1; i < argv.length; i++) {
+ 				if (argv[i].equals("-vm")) {
+ 					bytecodeMode = true;
+ 				} else if (argv[i].equals("-closure")) {
+ 					closureMode = true;
+ 				} else if (argv[i].equals("-tiered")) {
+ 					tieredMode = true;
+ 				} else if (argv[i].startsWith("-threshold=")) {
+ 					threshold = Integer.parseInt(argv[i].substring("-threshold=".length()));
+ 				} else if (argv[i].startsWith("-maxdepth=")) {
+ 					maxDepth = Integer.parseInt(argv[i].substring("-maxdepth=".length()));
+ 				} else {
+ 					errors.add("Error: unknown option " + argv[i]);
+ 				}
+ 			}
 
  			// Read file
  			parser = new CTdsParser(new CTdsScanner(new FileReader(argv[0])));
@@ -39,7 +73,13 @@ public class CTdsInterpreter {
  			if (errors.size()==0) {
  				// Only interpret the program if there are no previous errors.
  				System.out.println("Executing..");
- 				interpret(program);
+ 				if (bytecodeMode) {
+ 					interpretBytecode(program);
+ 				} else if (closureMode) {
+ 					interpretClosures(program);
+ 				} else {
+ 					interpret(program);
+ 				}
  			}
  			
  			if (errors.size()==0) {
@@ -85,11 +125,73 @@ public class CTdsInterpreter {
  	}
 
  	/**
- 	 * Interpret the program
+ 	 * Interpret the program. The interpreter visitor runs in a thread whose
+ 	 * stack is big enough for the maximum amount of nested calls.
  	 */
- 	public static void interpret(Program p) {
- 		InterpreterVisitor interpreterVisitor = new InterpreterVisitor();
- 		errors.addAll(interpreterVisitor.visit(p));
+ 	public static void interpret(Program p) throws Exception {
+ 		JvmTieredCompiler tieredCompiler = tieredMode?new JvmTieredCompiler(threshold):null;
+ 		final InterpreterVisitor interpreterVisitor = new InterpreterVisitor(maxDepth,tieredCompiler);
+ 		final Program program = p;
+ 		runWithCallStack(new Runnable() {
+ 			public void run() {
+ 				errors.addAll(interpreterVisitor.visit(program));
+ 			}
+ 		});
+ 	}
+
+ 	/**
+ 	 * Run the given execution in a thread whose stack is big enough for the
+ 	 * maximum amount of nested calls. An exception of the thread is thrown
+ 	 * again once it ends, so the execution fails.
+ 	 */
+ 	private static void runWithCallStack(Runnable execution) throws Exception {
+ 		final Runnable body = execution;
+ 		final Throwable[] failure = new Throwable[1];
+ 		Runnable guardedExecution = new Runnable() {
+ 			public void run() {
+ 				try {
+ 					body.run();
+ 				} catch (StackOverflowError e) {
+ 					errors.add("Error: the java stack was exhausted before the maximum amount of nested calls (" + maxDepth + ")");
+ 				} catch (Throwable e) {
+ 					failure[0] = e;
+ 				}
+ 			}
+ 		};
+ 		Thread thread = new Thread(null,guardedExecution,"interpreter",stack_size_per_call*maxDepth);
+ 		thread.start();
+ 		thread.join();
+ 		if (failure[0] instanceof Exception) {
+ 			throw (Exception)failure[0];
+ 		} else if (failure[0] != null) {
+ 			throw new Exception(failure[0]);
+ 		}
+ 	}
+
+ 	/**
+ 	 * Interpret the program lowering the intermediate code to bytecode
+ 	 */
+ 	public static void interpretBytecode(Program p) {
+ 		IntermediateCodeGeneratorVisitor iCGVisitor = new IntermediateCodeGeneratorVisitor();
+ 		iCGVisitor.visit(p);
+ 		BytecodeProgram bytecodeProgram = new BytecodeGenerator().generate(iCGVisitor.getIntermediateCodeList());
+ 		BytecodeVM vm = new BytecodeVM(bytecodeProgram,System.out,maxDepth);
+ 		errors.addAll(vm.run());
+ 	}
+
+ 	/**
+ 	 * Interpret the program compiling each node to a closure. As the
+ 	 * interpreter visitor, the closures run in a thread whose stack is big
+ 	 * enough for the maximum amount of nested calls.
+ 	 */
+ 	public static void interpretClosures(Program p) throws Exception {
+ 		final ClosureInterpreter closureInterpreter = new ClosureInterpreter(maxDepth);
+ 		final Program program = p;
+ 		runWithCallStack(new Runnable() {
+ 			public void run() {
+ 				errors.addAll(closureInterpreter.run(program));
+ 			}
+ 		});
  	}
 
 }
\ No newline at end of file
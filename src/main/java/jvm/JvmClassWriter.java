@@ -0,0 +1,270 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class writes a JVM class file. The classes are written with the version
+ * 49 of the format, so the methods do not need the StackMapTable attribute and
+ * they are checked by the type inference verifier.
+ * @author Facundo Molina
+ */
+public class JvmClassWriter {
+
+	private static final int class_file_version = 49;
+
+	private String name;								// Internal name of the class
+	private String superName;							// Internal name of the super class
+	private ArrayList<byte[]> constantPool;				// Entries of the constant pool
+	private HashMap<String,Integer> constants;			// Index of each constant already added
+	private int constantPoolSize;						// Next index of the constant pool
+	private ArrayList<String> interfaces;				// Internal names of the implemented interfaces
+	private ByteArrayOutputStream fields;				// Written fields
+	private int fieldsCount;							// Amount of fields
+	private ByteArrayOutputStream methods;				// Written methods
+	private int methodsCount;							// Amount of methods
+
+	/**
+	 * Constructor with the internal names of the class and of its super class
+	 */
+	public JvmClassWriter(String name, String superName) {
+		this.name = name;
+		this.superName = superName;
+		constantPool = new ArrayList<byte[]>();
+		constants = new HashMap<String,Integer>();
+		constantPoolSize = 1;
+		interfaces = new ArrayList<String>();
+		fields = new ByteArrayOutputStream();
+		fieldsCount = 0;
+		methods = new ByteArrayOutputStream();
+		methodsCount = 0;
+	}
+
+	/**
+	 * Get the internal name of the class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Add an interface implemented by the class
+	 */
+	public void addInterface(String interfaceName) {
+		interfaces.add(interfaceName);
+	}
+
+	/**
+	 * Add a field
+	 */
+	public void addField(int access, String fieldName, String descriptor) {
+		DataOutputStream out = new DataOutputStream(fields);
+		try {
+			out.writeShort(access);
+			out.writeShort(utf8Constant(fieldName));
+			out.writeShort(utf8Constant(descriptor));
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		fieldsCount++;
+	}
+
+	/**
+	 * Add a method with the code written by the given code writer
+	 */
+	public void addMethod(int access, String methodName, String descriptor, JvmCodeWriter codeWriter) {
+		byte[] code = codeWriter.toByteArray();
+		byte[] exceptionTable = codeWriter.getExceptionTable();
+		DataOutputStream out = new DataOutputStream(methods);
+		try {
+			out.writeShort(access);
+			out.writeShort(utf8Constant(methodName));
+			out.writeShort(utf8Constant(descriptor));
+			out.writeShort(1);
+			// Code attribute
+			out.writeShort(utf8Constant("Code"));
+			out.writeInt(10 + code.length + exceptionTable.length);
+			out.writeShort(codeWriter.getMaxStack());
+			out.writeShort(codeWriter.getMaxLocals());
+			out.writeInt(code.length);
+			out.write(code);
+			out.write(exceptionTable);
+			out.writeShort(0);	// Attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		methodsCount++;
+	}
+
+	/**
+	 * Returns the bytes of the class file
+	 */
+	public byte[] toByteArray() {
+		int thisClass = classConstant(name);
+		int superClass = classConstant(superName);
+		int[] interfaceClasses = new int[interfaces.size()];
+		for (int i = 0; i < interfaceClasses.length; i++) {
+			interfaceClasses[i] = classConstant(interfaces.get(i));
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(class_file_version);
+			out.writeShort(constantPoolSize);
+			for (byte[] entry : constantPool) {
+				out.write(entry);
+			}
+			out.writeShort(JvmOpcodes.ACC_PUBLIC | JvmOpcodes.ACC_FINAL | JvmOpcodes.ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaceClasses.length);
+			for (int interfaceClass : interfaceClasses) {
+				out.writeShort(interfaceClass);
+			}
+			out.writeShort(fieldsCount);
+			fields.writeTo(out);
+			out.writeShort(methodsCount);
+			methods.writeTo(out);
+			out.writeShort(0);	// Attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Get the index of an utf8 constant
+	 */
+	public int utf8Constant(String value) {
+		String key = "Utf8 " + value;
+		Integer index = constants.get(key);
+		if (index == null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			try {
+				out.writeByte(1);
+				out.writeUTF(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			index = addConstant(key,bytes.toByteArray());
+		}
+		return index;
+	}
+
+	/**
+	 * Get the index of a class constant
+	 */
+	public int classConstant(String className) {
+		String key = "Class " + className;
+		Integer index = constants.get(key);
+		if (index == null) {
+			index = addConstant(key,reference(7,utf8Constant(className)));
+		}
+		return index;
+	}
+
+	/**
+	 * Get the index of a string constant
+	 */
+	public int stringConstant(String value) {
+		String key = "String " + value;
+		Integer index = constants.get(key);
+		if (index == null) {
+			index = addConstant(key,reference(8,utf8Constant(value)));
+		}
+		return index;
+	}
+
+	/**
+	 * Get the index of an int constant
+	 */
+	public int integerConstant(int value) {
+		String key = "Integer " + value;
+		Integer index = constants.get(key);
+		if (index == null) {
+			index = addConstant(key,new byte[] {3,(byte)(value>>24),(byte)(value>>16),(byte)(value>>8),(byte)value});
+		}
+		return index;
+	}
+
+	/**
+	 * Get the index of a float constant
+	 */
+	public int floatConstant(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		String key = "Float " + bits;
+		Integer index = constants.get(key);
+		if (index == null) {
+			index = addConstant(key,new byte[] {4,(byte)(bits>>24),(byte)(bits>>16),(byte)(bits>>8),(byte)bits});
+		}
+		return index;
+	}
+
+	/**
+	 * Get the index of a field reference constant
+	 */
+	public int fieldConstant(String owner, String fieldName, String descriptor) {
+		return memberConstant(9,owner,fieldName,descriptor);
+	}
+
+	/**
+	 * Get the index of a method reference constant
+	 */
+	public int methodConstant(String owner, String methodName, String descriptor) {
+		return memberConstant(10,owner,methodName,descriptor);
+	}
+
+	/**
+	 * Get the index of a member reference constant with the given tag
+	 */
+	private int memberConstant(int tag, String owner, String memberName, String descriptor) {
+		String key = "Member" + tag + " " + owner + "." + memberName + ":" + descriptor;
+		Integer index = constants.get(key);
+		if (index == null) {
+			int classIndex = classConstant(owner);
+			String nameAndTypeKey = "NameAndType " + memberName + ":" + descriptor;
+			Integer nameAndType = constants.get(nameAndTypeKey);
+			if (nameAndType == null) {
+				byte[] entry = new byte[5];
+				entry[0] = 12;
+				int nameIndex = utf8Constant(memberName);
+				int descriptorIndex = utf8Constant(descriptor);
+				entry[1] = (byte)(nameIndex>>8);
+				entry[2] = (byte)nameIndex;
+				entry[3] = (byte)(descriptorIndex>>8);
+				entry[4] = (byte)descriptorIndex;
+				nameAndType = addConstant(nameAndTypeKey,entry);
+			}
+			byte[] entry = reference(tag,classIndex);
+			entry = java.util.Arrays.copyOf(entry,5);
+			entry[3] = (byte)(nameAndType>>8);
+			entry[4] = (byte)(int)nameAndType;
+			index = addConstant(key,entry);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns an entry with the given tag and a reference to other entry
+	 */
+	private byte[] reference(int tag, int index) {
+		return new byte[] {(byte)tag,(byte)(index>>8),(byte)index};
+	}
+
+	/**
+	 * Add an entry to the constant pool
+	 */
+	private int addConstant(String key, byte[] entry) {
+		int index = constantPoolSize;
+		constantPool.add(entry);
+		constants.put(key,index);
+		constantPoolSize++;
+		return index;
+	}
+
+}
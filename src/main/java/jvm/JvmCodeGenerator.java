@@ -0,0 +1,187 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * This class provides some methods for generate JVM classes for the CTds
+ * language. Each class of the program becomes a JVM class and each method a
+ * static method compiled by the JvmCompilerVisitor. The class of the main
+ * method also gets a java main method that runs the program in a thread whose
+ * stack is big enough for the maximum amount of nested calls. The thread
+ * creates the slots of the class fields, calls the main method and prints
+ * the invalid index and nested calls errors, as the interpreter does.
+ * @author Facundo Molina
+ */
+public class JvmCodeGenerator {
+
+	private static final String exception_class = "java/lang/IndexOutOfBoundsException";	// Invalid index and nested calls errors
+	private static final int max_depth = 10000;					// Maximum amount of nested calls, as in the interpreter
+	private static final int stack_size_per_call = 8192;		// Bytes of the java stack used by each call
+
+	/**
+	 * Generate the classes of the program. Returns the bytes of each class
+	 * by its name.
+	 */
+	public static Map<String,byte[]> generateClasses(Program p) {
+		JvmCompilerVisitor compiler = new JvmCompilerVisitor(null,exception_class);
+		compiler.countNestedCalls(getMainClass(p));
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				compiler.setMethod(methodDeclaration,classDeclaration.getId(),methodDeclaration.getId());
+			}
+		}
+		Map<String,byte[]> classes = new LinkedHashMap<String,byte[]>();
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			JvmClassWriter classWriter = new JvmClassWriter(classDeclaration.getId(),"java/lang/Object");
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				if (!methodDeclaration.isExtern()) {
+					compiler.compile(methodDeclaration,classWriter);
+				}
+				if (methodDeclaration.getId().equals("main")) {
+					addMain(classWriter,p,methodDeclaration);
+					addDepthCounter(classWriter);
+				}
+			}
+			classes.put(classDeclaration.getId(),classWriter.toByteArray());
+		}
+		return classes;
+	}
+
+	/**
+	 * Generate a runnable jar with the classes of the program
+	 */
+	public static void generateJar(Program p, String fileName) throws IOException {
+		Map<String,byte[]> classes = generateClasses(p);
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,"1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS,getMainClass(p));
+		JarOutputStream jar = new JarOutputStream(new FileOutputStream(fileName),manifest);
+		try {
+			for (Map.Entry<String,byte[]> entry : classes.entrySet()) {
+				jar.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+				jar.write(entry.getValue());
+				jar.closeEntry();
+			}
+		} finally {
+			jar.close();
+		}
+	}
+
+	/**
+	 * Returns the name of the class with the main method
+	 */
+	public static String getMainClass(Program p) {
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				if (methodDeclaration.getId().equals("main")) {
+					return classDeclaration.getId();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add the java main method, that runs an instance of the class in a thread
+	 * with room for the maximum amount of nested calls, and the run method,
+	 * that calls the main method with the slots of the class fields and prints
+	 * the message of an invalid index or nested calls error
+	 */
+	private static void addMain(JvmClassWriter classWriter, Program p, MethodDeclaration main) {
+		classWriter.addInterface("java/lang/Runnable");
+		// Constructor
+		JvmCodeWriter code = new JvmCodeWriter(classWriter,1);
+		code.emitLocal(JvmOpcodes.ALOAD,0);
+		code.emitInvoke(JvmOpcodes.INVOKESPECIAL,"java/lang/Object","<init>","()V");
+		code.emit(JvmOpcodes.RETURN);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC,"<init>","()V",code);
+		// Java main method
+		code = new JvmCodeWriter(classWriter,1);
+		code.emitNew("java/lang/Thread");
+		code.emit(JvmOpcodes.DUP);
+		code.emit(JvmOpcodes.ACONST_NULL);
+		code.emitNew(classWriter.getName());
+		code.emit(JvmOpcodes.DUP);
+		code.emitInvoke(JvmOpcodes.INVOKESPECIAL,classWriter.getName(),"<init>","()V");
+		code.emitString("main");
+		code.emitInt(stack_size_per_call*max_depth);
+		code.emit(JvmOpcodes.I2L);
+		code.emitInvoke(JvmOpcodes.INVOKESPECIAL,"java/lang/Thread","<init>","(Ljava/lang/ThreadGroup;Ljava/lang/Runnable;Ljava/lang/String;J)V");
+		code.emit(JvmOpcodes.DUP);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/lang/Thread","start","()V");
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/lang/Thread","join","()V");
+		code.emit(JvmOpcodes.RETURN);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC | JvmOpcodes.ACC_STATIC,"main","([Ljava/lang/String;)V",code);
+		// Run method
+		code = new JvmCodeWriter(classWriter,1);
+		JvmLabel start = new JvmLabel();
+		JvmLabel end = new JvmLabel();
+		JvmLabel handler = new JvmLabel();
+		JvmLabel overflowHandler = new JvmLabel();
+		code.placeLabel(start);
+		code.emitInt(p.getIntSlots());
+		code.emitNewArray(JvmOpcodes.T_INT);
+		code.emitInt(p.getFloatSlots());
+		code.emitNewArray(JvmOpcodes.T_FLOAT);
+		code.emitInt(p.getBooleanSlots());
+		code.emitNewArray(JvmOpcodes.T_BOOLEAN);
+		code.emitInvoke(JvmOpcodes.INVOKESTATIC,classWriter.getName(),main.getId(),JvmCompilerVisitor.getDescriptor(main));
+		code.placeLabel(end);
+		code.emit(JvmOpcodes.RETURN);
+		code.addExceptionHandler(start,end,handler,exception_class);
+		code.addExceptionHandler(start,end,overflowHandler,"java/lang/StackOverflowError");
+		code.placeLabel(handler);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/lang/Throwable","getMessage","()Ljava/lang/String;");
+		code.emitField(JvmOpcodes.GETSTATIC,"java/lang/System","out","Ljava/io/PrintStream;");
+		code.emit(JvmOpcodes.SWAP);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/io/PrintStream","println","(Ljava/lang/String;)V");
+		code.emit(JvmOpcodes.RETURN);
+		// The stack is exhausted by calls with many locals before the maximum
+		code.placeLabel(overflowHandler);
+		code.emit(JvmOpcodes.POP);
+		code.emitField(JvmOpcodes.GETSTATIC,"java/lang/System","out","Ljava/io/PrintStream;");
+		code.emitString("Error: the java stack was exhausted before the maximum amount of nested calls (" + max_depth + ")");
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/io/PrintStream","println","(Ljava/lang/String;)V");
+		code.emit(JvmOpcodes.RETURN);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC,"run","()V",code);
+	}
+
+	/**
+	 * Add the depth field with the amount of nested calls, the enter method,
+	 * that fails if there is no room for a new call, and the leave method
+	 */
+	private static void addDepthCounter(JvmClassWriter classWriter) {
+		String name = classWriter.getName();
+		classWriter.addField(JvmOpcodes.ACC_PRIVATE | JvmOpcodes.ACC_STATIC,"depth","I");
+		JvmCodeWriter code = new JvmCodeWriter(classWriter,0);
+		JvmLabel room = new JvmLabel();
+		code.emitField(JvmOpcodes.GETSTATIC,name,"depth","I");
+		code.emitInt(max_depth);
+		code.emitJump(JvmOpcodes.IF_ICMPLT,room);
+		code.emitNew(exception_class);
+		code.emit(JvmOpcodes.DUP);
+		code.emitString("Error: the maximum amount of nested calls (" + max_depth + ") was exceeded");
+		code.emitInvoke(JvmOpcodes.INVOKESPECIAL,exception_class,"<init>","(Ljava/lang/String;)V");
+		code.emit(JvmOpcodes.ATHROW);
+		code.placeLabel(room);
+		code.emitField(JvmOpcodes.GETSTATIC,name,"depth","I");
+		code.emitInt(1);
+		code.emit(JvmOpcodes.IADD);
+		code.emitField(JvmOpcodes.PUTSTATIC,name,"depth","I");
+		code.emit(JvmOpcodes.RETURN);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC | JvmOpcodes.ACC_STATIC,"enter","()V",code);
+		code = new JvmCodeWriter(classWriter,0);
+		code.emitField(JvmOpcodes.GETSTATIC,name,"depth","I");
+		code.emitInt(1);
+		code.emit(JvmOpcodes.ISUB);
+		code.emitField(JvmOpcodes.PUTSTATIC,name,"depth","I");
+		code.emit(JvmOpcodes.RETURN);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC | JvmOpcodes.ACC_STATIC,"leave","()V",code);
+	}
+
+}
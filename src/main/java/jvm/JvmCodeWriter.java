@@ -0,0 +1,381 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * This class writes the code of a JVM method. It keeps track of the depth of
+ * the operand stack and of the local variables used, so the max_stack and
+ * max_locals of the Code attribute are computed while emitting.
+ * @author Facundo Molina
+ */
+public class JvmCodeWriter {
+
+	private JvmClassWriter classWriter;		// Class of the method, owner of the constant pool
+	private byte[] code;					// Code
+	private int length;						// Length of the code
+	private int stack;						// Current depth of the operand stack
+	private int maxStack;					// Maximum depth of the operand stack
+	private int maxLocals;					// Amount of local variables
+	private LinkedList<Integer> freeLocals;	// Released local variables to take again
+	private ArrayList<JvmLabel> labels;		// Labels used
+	private ArrayList<JvmLabel> handlers;	// Start, end and handler labels of each exception handler
+	private ArrayList<String> handlerTypes;	// Class of the exceptions caught by each exception handler
+
+	/**
+	 * Constructor with the amount of local variables taken by the arguments
+	 */
+	public JvmCodeWriter(JvmClassWriter classWriter, int argumentLocals) {
+		this.classWriter = classWriter;
+		code = new byte[256];
+		length = 0;
+		stack = 0;
+		maxStack = 0;
+		maxLocals = argumentLocals;
+		freeLocals = new LinkedList<Integer>();
+		labels = new ArrayList<JvmLabel>();
+		handlers = new ArrayList<JvmLabel>();
+		handlerTypes = new ArrayList<String>();
+	}
+
+	/**
+	 * Take a new local variable, reusing a released one if any
+	 */
+	public int newLocal() {
+		if (!freeLocals.isEmpty()) {
+			return freeLocals.pop();
+		}
+		return maxLocals++;
+	}
+
+	/**
+	 * Release a local variable whose scope has ended, so that a later
+	 * newLocal can take it again. Without a StackMapTable the verifier
+	 * infers the type of each use, so the local can change its type.
+	 */
+	public void freeLocal(int local) {
+		freeLocals.push(local);
+	}
+
+	/**
+	 * Get the amount of local variables
+	 */
+	public int getMaxLocals() {
+		return maxLocals;
+	}
+
+	/**
+	 * Get the maximum depth of the operand stack
+	 */
+	public int getMaxStack() {
+		return maxStack;
+	}
+
+	/**
+	 * Emit an instruction without operands
+	 */
+	public void emit(int opcode) {
+		writeByte(opcode);
+		switch (opcode) {
+			case JvmOpcodes.ACONST_NULL: case JvmOpcodes.FCONST_0: case JvmOpcodes.FCONST_1:
+			case JvmOpcodes.FCONST_2: case JvmOpcodes.DUP: case JvmOpcodes.I2L:
+				push(1); break;
+			case JvmOpcodes.DUP2:
+				push(2); break;
+			case JvmOpcodes.IALOAD: case JvmOpcodes.FALOAD: case JvmOpcodes.AALOAD: case JvmOpcodes.BALOAD:
+			case JvmOpcodes.POP: case JvmOpcodes.IADD: case JvmOpcodes.FADD: case JvmOpcodes.ISUB:
+			case JvmOpcodes.FSUB: case JvmOpcodes.IMUL: case JvmOpcodes.FMUL: case JvmOpcodes.IDIV:
+			case JvmOpcodes.FDIV: case JvmOpcodes.IREM: case JvmOpcodes.IAND: case JvmOpcodes.IOR:
+			case JvmOpcodes.IXOR: case JvmOpcodes.FCMPL: case JvmOpcodes.FCMPG: case JvmOpcodes.IRETURN:
+			case JvmOpcodes.FRETURN: case JvmOpcodes.ARETURN: case JvmOpcodes.ATHROW:
+				push(-1); break;
+			case JvmOpcodes.IASTORE: case JvmOpcodes.FASTORE: case JvmOpcodes.BASTORE:
+				push(-3); break;
+			default:
+				// INEG, FNEG, SWAP, ARRAYLENGTH and RETURN do not change the depth
+				if (opcode >= JvmOpcodes.ICONST_M1 && opcode < JvmOpcodes.FCONST_0) {
+					push(1);
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Emit the push of an int constant
+	 */
+	public void emitInt(int value) {
+		if (value >= -1 && value <= 5) {
+			emit(JvmOpcodes.ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			writeByte(JvmOpcodes.BIPUSH);
+			writeByte(value);
+			push(1);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			writeByte(JvmOpcodes.SIPUSH);
+			writeShort(value);
+			push(1);
+		} else {
+			emitConstant(classWriter.integerConstant(value));
+		}
+	}
+
+	/**
+	 * Emit the push of a float constant
+	 */
+	public void emitFloat(float value) {
+		if (value == 0.0f && Float.floatToRawIntBits(value) == 0) {
+			emit(JvmOpcodes.FCONST_0);
+		} else if (value == 1.0f) {
+			emit(JvmOpcodes.FCONST_1);
+		} else if (value == 2.0f) {
+			emit(JvmOpcodes.FCONST_2);
+		} else {
+			emitConstant(classWriter.floatConstant(value));
+		}
+	}
+
+	/**
+	 * Emit the push of a string constant
+	 */
+	public void emitString(String value) {
+		emitConstant(classWriter.stringConstant(value));
+	}
+
+	/**
+	 * Emit a ldc of the given constant pool index
+	 */
+	private void emitConstant(int index) {
+		if (index <= 255) {
+			writeByte(JvmOpcodes.LDC);
+			writeByte(index);
+		} else {
+			writeByte(JvmOpcodes.LDC_W);
+			writeShort(index);
+		}
+		push(1);
+	}
+
+	/**
+	 * Emit a load or a store of a local variable, with the wide form if its
+	 * index does not fit in a byte
+	 */
+	public void emitLocal(int opcode, int local) {
+		if (local > 65535) {
+			throw new IllegalStateException("Too many local variables");
+		}
+		if (local > 255) {
+			writeByte(JvmOpcodes.WIDE);
+			writeByte(opcode);
+			writeShort(local);
+		} else {
+			writeByte(opcode);
+			writeByte(local);
+		}
+		if (opcode == JvmOpcodes.ISTORE || opcode == JvmOpcodes.FSTORE || opcode == JvmOpcodes.ASTORE) {
+			push(-1);
+		} else {
+			push(1);
+		}
+	}
+
+	/**
+	 * Emit the increment of an int local variable, with the wide form if the
+	 * index or the increment does not fit in a byte
+	 */
+	public void emitIinc(int local, int increment) {
+		if (local > 65535 || increment < Short.MIN_VALUE || increment > Short.MAX_VALUE) {
+			throw new IllegalStateException("Invalid iinc operands");
+		}
+		if (local > 255 || increment < Byte.MIN_VALUE || increment > Byte.MAX_VALUE) {
+			writeByte(JvmOpcodes.WIDE);
+			writeByte(JvmOpcodes.IINC);
+			writeShort(local);
+			writeShort(increment);
+		} else {
+			writeByte(JvmOpcodes.IINC);
+			writeByte(local);
+			writeByte(increment);
+		}
+	}
+
+	/**
+	 * Emit the creation of an array of a primitive type
+	 */
+	public void emitNewArray(int type) {
+		writeByte(JvmOpcodes.NEWARRAY);
+		writeByte(type);
+	}
+
+	/**
+	 * Emit the creation of an object of the given class
+	 */
+	public void emitNew(String className) {
+		writeByte(JvmOpcodes.NEW);
+		writeShort(classWriter.classConstant(className));
+		push(1);
+	}
+
+	/**
+	 * Emit a field access
+	 */
+	public void emitField(int opcode, String owner, String name, String descriptor) {
+		writeByte(opcode);
+		writeShort(classWriter.fieldConstant(owner,name,descriptor));
+		push(opcode == JvmOpcodes.GETSTATIC?1:-1);
+	}
+
+	/**
+	 * Emit a method invocation
+	 */
+	public void emitInvoke(int opcode, String owner, String name, String descriptor) {
+		writeByte(opcode);
+		writeShort(classWriter.methodConstant(owner,name,descriptor));
+		int arguments = argumentsSize(descriptor);
+		if (opcode != JvmOpcodes.INVOKESTATIC) {
+			// The receiver
+			arguments++;
+		}
+		push(-arguments);
+		if (descriptor.charAt(descriptor.length()-1) != 'V') {
+			push(1);
+		}
+	}
+
+	/**
+	 * Emit a jump to the given label
+	 */
+	public void emitJump(int opcode, JvmLabel label) {
+		if (opcode >= JvmOpcodes.IF_ICMPEQ && opcode <= JvmOpcodes.IF_ICMPLE) {
+			push(-2);
+		} else if (opcode != JvmOpcodes.GOTO) {
+			push(-1);
+		}
+		label.setStack(stack);
+		label.getJumps().add(length);
+		if (!labels.contains(label)) {
+			labels.add(label);
+		}
+		writeByte(opcode);
+		writeShort(0);
+	}
+
+	/**
+	 * Place the label in the current position. If the label was reached by
+	 * a jump the depth of the stack is taken from it.
+	 */
+	public void placeLabel(JvmLabel label) {
+		label.setPosition(length);
+		if (label.getStack() >= 0) {
+			stack = label.getStack();
+		}
+		if (!labels.contains(label)) {
+			labels.add(label);
+		}
+	}
+
+	/**
+	 * Add a handler of the exceptions of the given class thrown between the
+	 * start and the end labels. The handler starts with the exception in the
+	 * stack.
+	 */
+	public void addExceptionHandler(JvmLabel start, JvmLabel end, JvmLabel handler, String type) {
+		handler.setStack(1);
+		handlers.add(start);
+		handlers.add(end);
+		handlers.add(handler);
+		handlerTypes.add(type);
+	}
+
+	/**
+	 * Returns the exception table, with the amount of handlers and an entry
+	 * for each handler
+	 */
+	public byte[] getExceptionTable() {
+		byte[] table = new byte[2 + 8*handlerTypes.size()];
+		table[0] = (byte)(handlerTypes.size() >> 8);
+		table[1] = (byte)handlerTypes.size();
+		for (int i = 0; i < handlerTypes.size(); i++) {
+			int[] entry = {handlers.get(3*i).getPosition(),handlers.get(3*i+1).getPosition(),
+				handlers.get(3*i+2).getPosition(),classWriter.classConstant(handlerTypes.get(i))};
+			for (int j = 0; j < entry.length; j++) {
+				table[2+8*i+2*j] = (byte)(entry[j] >> 8);
+				table[2+8*i+2*j+1] = (byte)entry[j];
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the code with the jumps resolved
+	 */
+	public byte[] toByteArray() {
+		if (length > 65535) {
+			throw new IllegalStateException("Method too long");
+		}
+		for (JvmLabel label : labels) {
+			for (int jump : label.getJumps()) {
+				if (label.getPosition() < 0) {
+					throw new IllegalStateException("Jump to a label that was not placed");
+				}
+				int offset = label.getPosition() - jump;
+				if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+					throw new IllegalStateException("Method too long");
+				}
+				code[jump+1] = (byte)(offset >> 8);
+				code[jump+2] = (byte)offset;
+			}
+		}
+		return Arrays.copyOf(code,length);
+	}
+
+	/**
+	 * Returns the amount of stack slots taken by the arguments of the
+	 * given method descriptor
+	 */
+	private static int argumentsSize(String descriptor) {
+		int size = 0;
+		int i = 1;
+		while (descriptor.charAt(i) != ')') {
+			boolean array = false;
+			while (descriptor.charAt(i) == '[') {
+				array = true;
+				i++;
+			}
+			char c = descriptor.charAt(i);
+			if (c == 'L') {
+				i = descriptor.indexOf(';',i);
+			}
+			size += (!array && (c == 'J' || c == 'D'))?2:1;
+			i++;
+		}
+		return size;
+	}
+
+	/**
+	 * Update the depth of the stack
+	 */
+	private void push(int amount) {
+		stack += amount;
+		if (stack > maxStack) {
+			maxStack = stack;
+		}
+	}
+
+	/**
+	 * Write a byte of code
+	 */
+	private void writeByte(int value) {
+		if (length == code.length) {
+			code = Arrays.copyOf(code,2*code.length);
+		}
+		code[length++] = (byte)value;
+	}
+
+	/**
+	 * Write two bytes of code
+	 */
+	private void writeShort(int value) {
+		writeByte(value >> 8);
+		writeByte(value);
+	}
+
+}
@@ -0,0 +1,23 @@
+/**
+ * This class represents a ctds method compiled to JVM bytecode by the tiered
+ * compiler. The generated subclass reads the arguments from the frame prepared
+ * by the interpreter and calls the compiled static method.
+ * @author Facundo Molina
+ */
+public abstract class JvmCompiledMethod {
+
+	/**
+	 * Invoke a method that returns an int, a boolean (as 0 or 1) or nothing
+	 */
+	public int invokeInt(InterpreterFrame arguments, InterpreterFrame globals) {
+		return 0;
+	}
+
+	/**
+	 * Invoke a method that returns a float
+	 */
+	public float invokeFloat(InterpreterFrame arguments, InterpreterFrame globals) {
+		return 0.0f;
+	}
+
+}
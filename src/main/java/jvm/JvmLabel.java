@@ -0,0 +1,59 @@
+import java.util.ArrayList;
+
+/**
+ * This class represents a position in the code of a JVM method used as target
+ * of the jumps. The jumps emitted before the label is placed are patched when
+ * the code is finished.
+ * @author Facundo Molina
+ */
+public class JvmLabel {
+
+	private int position;					// Position in the code, -1 while not placed
+	private int stack;						// Depth of the operand stack in the label, -1 if unknown
+	private ArrayList<Integer> jumps;		// Positions of the jumps to the label
+
+	/**
+	 * Constructor
+	 */
+	public JvmLabel() {
+		position = -1;
+		stack = -1;
+		jumps = new ArrayList<Integer>();
+	}
+
+	/**
+	 * Get the position in the code
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Set the position in the code
+	 */
+	public void setPosition(int position) {
+		this.position = position;
+	}
+
+	/**
+	 * Get the depth of the operand stack in the label
+	 */
+	public int getStack() {
+		return stack;
+	}
+
+	/**
+	 * Set the depth of the operand stack in the label
+	 */
+	public void setStack(int stack) {
+		this.stack = stack;
+	}
+
+	/**
+	 * Get the positions of the jumps to the label
+	 */
+	public ArrayList<Integer> getJumps() {
+		return jumps;
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ * This class represents the profile of a method executed by the interpreter:
+ * the amount of invocations and of cycle iterations, and the compiled method
+ * once it becomes hot.
+ * @author Facundo Molina
+ */
+public class JvmMethodProfile {
+
+	private int counter;						// Invocations and cycle iterations
+	private JvmCompiledMethod compiledMethod;	// Compiled method, null while it is interpreted
+	private boolean failed;						// The method can not be compiled
+
+	/**
+	 * Constructor
+	 */
+	public JvmMethodProfile() {
+		counter = 0;
+		compiledMethod = null;
+		failed = false;
+	}
+
+	/**
+	 * Increment the counter and returns its new value
+	 */
+	public int increment() {
+		return ++counter;
+	}
+
+	/**
+	 * Get the counter
+	 */
+	public int getCounter() {
+		return counter;
+	}
+
+	/**
+	 * Get the compiled method
+	 */
+	public JvmCompiledMethod getCompiledMethod() {
+		return compiledMethod;
+	}
+
+	/**
+	 * Set the compiled method
+	 */
+	public void setCompiledMethod(JvmCompiledMethod compiledMethod) {
+		this.compiledMethod = compiledMethod;
+	}
+
+	/**
+	 * Returns true if the method can not be compiled
+	 */
+	public boolean hasFailed() {
+		return failed;
+	}
+
+	/**
+	 * Set if the method can not be compiled
+	 */
+	public void setFailed(boolean failed) {
+		this.failed = failed;
+	}
+
+}
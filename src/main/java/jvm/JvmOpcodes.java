@@ -0,0 +1,93 @@
+/**
+ * This class contains the JVM opcodes used by the JVM code generation.
+ * @author Facundo Molina
+ */
+public final class JvmOpcodes {
+
+	public static final int ACONST_NULL = 1;
+	public static final int ICONST_M1 = 2;
+	public static final int ICONST_0 = 3;
+	public static final int FCONST_0 = 11;
+	public static final int FCONST_1 = 12;
+	public static final int FCONST_2 = 13;
+	public static final int BIPUSH = 16;
+	public static final int SIPUSH = 17;
+	public static final int LDC = 18;
+	public static final int LDC_W = 19;
+	public static final int ILOAD = 21;
+	public static final int FLOAD = 23;
+	public static final int ALOAD = 25;
+	public static final int IALOAD = 46;
+	public static final int FALOAD = 48;
+	public static final int AALOAD = 50;
+	public static final int BALOAD = 51;
+	public static final int ISTORE = 54;
+	public static final int FSTORE = 56;
+	public static final int ASTORE = 58;
+	public static final int IASTORE = 79;
+	public static final int FASTORE = 81;
+	public static final int BASTORE = 84;
+	public static final int POP = 87;
+	public static final int DUP = 89;
+	public static final int DUP2 = 92;
+	public static final int SWAP = 95;
+	public static final int IADD = 96;
+	public static final int FADD = 98;
+	public static final int ISUB = 100;
+	public static final int FSUB = 102;
+	public static final int IMUL = 104;
+	public static final int FMUL = 106;
+	public static final int IDIV = 108;
+	public static final int FDIV = 110;
+	public static final int IREM = 112;
+	public static final int INEG = 116;
+	public static final int FNEG = 118;
+	public static final int IAND = 126;
+	public static final int IOR = 128;
+	public static final int IXOR = 130;
+	public static final int IINC = 132;
+	public static final int I2L = 133;
+	public static final int FCMPL = 149;
+	public static final int FCMPG = 150;
+	public static final int IFEQ = 153;
+	public static final int IFNE = 154;
+	public static final int IFLT = 155;
+	public static final int IFGE = 156;
+	public static final int IFGT = 157;
+	public static final int IFLE = 158;
+	public static final int IF_ICMPEQ = 159;
+	public static final int IF_ICMPNE = 160;
+	public static final int IF_ICMPLT = 161;
+	public static final int IF_ICMPGE = 162;
+	public static final int IF_ICMPGT = 163;
+	public static final int IF_ICMPLE = 164;
+	public static final int GOTO = 167;
+	public static final int IRETURN = 172;
+	public static final int FRETURN = 174;
+	public static final int ARETURN = 176;
+	public static final int RETURN = 177;
+	public static final int GETSTATIC = 178;
+	public static final int PUTSTATIC = 179;
+	public static final int INVOKEVIRTUAL = 182;
+	public static final int INVOKESPECIAL = 183;
+	public static final int INVOKESTATIC = 184;
+	public static final int NEW = 187;
+	public static final int NEWARRAY = 188;
+	public static final int ARRAYLENGTH = 190;
+	public static final int ATHROW = 191;
+	public static final int WIDE = 196;
+
+	public static final int T_BOOLEAN = 4;		// Types of the newarray instruction
+	public static final int T_FLOAT = 6;
+	public static final int T_INT = 10;
+
+	public static final int ACC_PUBLIC = 0x0001;	// Access flags
+	public static final int ACC_PRIVATE = 0x0002;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	private JvmOpcodes() {
+	}
+
+}
@@ -0,0 +1,143 @@
+import java.lang.invoke.MethodHandles;
+import java.util.IdentityHashMap;
+
+/**
+ * This class represents the second tier of the interpreter. It keeps the
+ * profile of each method and, when the invocations and cycle iterations of a
+ * method reach the threshold, it compiles the method and the methods that it
+ * calls to a hidden JVM class, so the JIT of the JVM optimizes them. The
+ * methods that reach an extern method are kept in the interpreter.
+ * @author Facundo Molina
+ */
+public class JvmTieredCompiler {
+
+	public static final int default_threshold = 1000;			// Default counter of a hot method
+	private static final String compiled_class = "CTdsCompiledMethod";	// Name of the compiled classes
+
+	private int threshold;											// Counter of a hot method
+	private IdentityHashMap<MethodDeclaration,JvmMethodProfile> profiles;	// Profile of each method
+
+	/**
+	 * Constructor
+	 */
+	public JvmTieredCompiler() {
+		this(default_threshold);
+	}
+
+	/**
+	 * Constructor with the counter that makes a method hot
+	 */
+	public JvmTieredCompiler(int threshold) {
+		this.threshold = threshold;
+		profiles = new IdentityHashMap<MethodDeclaration,JvmMethodProfile>();
+	}
+
+	/**
+	 * Get the profile of a method
+	 */
+	public JvmMethodProfile getProfile(MethodDeclaration decl) {
+		JvmMethodProfile profile = profiles.get(decl);
+		if (profile == null) {
+			profile = new JvmMethodProfile();
+			profiles.put(decl,profile);
+		}
+		return profile;
+	}
+
+	/**
+	 * Count an invocation of the method. Returns the compiled method if the
+	 * method is hot, or null if it must be interpreted.
+	 */
+	public JvmCompiledMethod invocation(MethodDeclaration decl, JvmMethodProfile profile) {
+		JvmCompiledMethod compiledMethod = profile.getCompiledMethod();
+		if (compiledMethod == null && !profile.hasFailed() && profile.increment() >= threshold) {
+			try {
+				compiledMethod = compile(decl);
+				profile.setCompiledMethod(compiledMethod);
+			} catch (IllegalStateException e) {
+				// The method can not be compiled
+				profile.setFailed(true);
+			}
+		}
+		return compiledMethod;
+	}
+
+	/**
+	 * Count an iteration of a cycle of the method
+	 */
+	public void backEdge(JvmMethodProfile profile) {
+		profile.increment();
+	}
+
+	/**
+	 * Compile a method and the methods that it calls to a hidden class
+	 */
+	private JvmCompiledMethod compile(MethodDeclaration decl) {
+		JvmClassWriter classWriter = new JvmClassWriter(compiled_class,"JvmCompiledMethod");
+		JvmCompilerVisitor compiler = new JvmCompilerVisitor(compiled_class,"InterpreterException");
+		compiler.compile(decl,classWriter);
+		while (!compiler.getPendingMethods().isEmpty()) {
+			compiler.compile(compiler.getPendingMethods().getFirst(),classWriter);
+		}
+		addConstructor(classWriter);
+		addInvoke(classWriter,compiler,decl);
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classWriter.toByteArray(),true);
+			return (JvmCompiledMethod)lookup.lookupClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Add the constructor of the compiled class
+	 */
+	private void addConstructor(JvmClassWriter classWriter) {
+		JvmCodeWriter code = new JvmCodeWriter(classWriter,1);
+		code.emitLocal(JvmOpcodes.ALOAD,0);
+		code.emitInvoke(JvmOpcodes.INVOKESPECIAL,"JvmCompiledMethod","<init>","()V");
+		code.emit(JvmOpcodes.RETURN);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC,"<init>","()V",code);
+	}
+
+	/**
+	 * Add the method that reads the globals and the arguments from the frames
+	 * of the interpreter and calls the compiled method
+	 */
+	private void addInvoke(JvmClassWriter classWriter, JvmCompilerVisitor compiler, MethodDeclaration decl) {
+		boolean isFloat = decl.getType().equals(Type.FLOAT);
+		JvmCodeWriter code = new JvmCodeWriter(classWriter,3);
+		code.emitLocal(JvmOpcodes.ALOAD,2);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"InterpreterFrame","getInts","()[I");
+		code.emitLocal(JvmOpcodes.ALOAD,2);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"InterpreterFrame","getFloats","()[F");
+		code.emitLocal(JvmOpcodes.ALOAD,2);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"InterpreterFrame","getBooleans","()[Z");
+		for (Argument argument : decl.getArguments()) {
+			DeclarationIdentifier ident = argument.getDeclaration();
+			code.emitLocal(JvmOpcodes.ALOAD,1);
+			if (ident.getType().equals(Type.FLOAT)) {
+				code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"InterpreterFrame","getFloats","()[F");
+				code.emitInt(ident.getSlot());
+				code.emit(JvmOpcodes.FALOAD);
+			} else if (ident.getType().equals(Type.BOOLEAN)) {
+				code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"InterpreterFrame","getBooleans","()[Z");
+				code.emitInt(ident.getSlot());
+				code.emit(JvmOpcodes.BALOAD);
+			} else {
+				code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"InterpreterFrame","getInts","()[I");
+				code.emitInt(ident.getSlot());
+				code.emit(JvmOpcodes.IALOAD);
+			}
+		}
+		code.emitInvoke(JvmOpcodes.INVOKESTATIC,compiled_class,compiler.getName(decl),JvmCompilerVisitor.getDescriptor(decl));
+		if (decl.getType().equals(Type.VOID)) {
+			code.emitInt(0);
+		}
+		code.emit(isFloat?JvmOpcodes.FRETURN:JvmOpcodes.IRETURN);
+		String name = isFloat?"invokeFloat":"invokeInt";
+		String descriptor = "(LInterpreterFrame;LInterpreterFrame;)" + (isFloat?"F":"I");
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC,name,descriptor,code);
+	}
+
+}
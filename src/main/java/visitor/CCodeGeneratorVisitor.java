@@ -0,0 +1,541 @@
+import java.util.List;
+import java.util.IdentityHashMap;
+
+/**
+ * This class represents the visitor that generates C code for the CTds
+ * program, so gcc can optimize it. The fields of the classes become global
+ * variables and the methods functions, both prefixed with the name of the
+ * class. The variables of a method are declared at the start of its
+ * function with the default values, as the interpreter does with the slots
+ * of the frame. The order of evaluation of the interpreter is kept with
+ * temporaries where C leaves it unspecified, and the right operand of && and
+ * || is only evaluated when the left one does not decide the value.
+ * @author Facundo Molina
+ */
+public class CCodeGeneratorVisitor implements ASTVisitor<String> {
+
+	// Runtime of the generated programs: index checks and print functions
+	private static final String runtime =
+		"#include <stdio.h>\n" +
+		"#include <stdlib.h>\n" +
+		"#include <string.h>\n" +
+		"#include <math.h>\n" +
+		"\n" +
+		"static inline int ctds_check(int index, int capacity, int line, int column) {\n" +
+		"\tif (index < 0 || index >= capacity) {\n" +
+		"\t\tprintf(\"%d:%d: Error: the index expression value is %d and must be greater or equal than 0 and less than %d\\n\",\n" +
+		"\t\t\tline, column, index, capacity);\n" +
+		"\t\texit(1);\n" +
+		"\t}\n" +
+		"\treturn index;\n" +
+		"}\n" +
+		"\n" +
+		"static void ctds_print_int(int value) {\n" +
+		"\tprintf(\"%d\\n\", value);\n" +
+		"}\n" +
+		"\n" +
+		"static void ctds_print_boolean(int value) {\n" +
+		"\tputs(value ? \"true\" : \"false\");\n" +
+		"}\n" +
+		"\n" +
+		"/* Prints a float as Java does: the shortest digits that read back as the value */\n" +
+		"static void ctds_print_float(float value) {\n" +
+		"\tchar buffer[32], digits[16], *c;\n" +
+		"\tint precision, exponent, count, i;\n" +
+		"\tif (isnan(value)) { puts(\"NaN\"); return; }\n" +
+		"\tif (isinf(value)) { puts(value > 0 ? \"Infinity\" : \"-Infinity\"); return; }\n" +
+		"\tif (value == 0.0f) { puts(signbit(value) ? \"-0.0\" : \"0.0\"); return; }\n" +
+		"\tif (value < 0) { putchar('-'); value = -value; }\n" +
+		"\tfor (precision = 1; precision < 9; precision++) {\n" +
+		"\t\tsnprintf(buffer, sizeof(buffer), \"%.*e\", precision - 1, value);\n" +
+		"\t\tif (strtof(buffer, NULL) == value) break;\n" +
+		"\t}\n" +
+		"\tsnprintf(buffer, sizeof(buffer), \"%.*e\", precision - 1, value);\n" +
+		"\tcount = 0;\n" +
+		"\tfor (c = buffer; *c != 'e'; c++) {\n" +
+		"\t\tif (*c != '.') digits[count++] = *c;\n" +
+		"\t}\n" +
+		"\texponent = atoi(c + 1);\n" +
+		"\twhile (count > 1 && digits[count - 1] == '0') count--;\n" +
+		"\tdigits[count] = '\\0';\n" +
+		"\tif (exponent >= -3 && exponent < 7) {\n" +
+		"\t\tif (exponent < 0) {\n" +
+		"\t\t\tprintf(\"0.\");\n" +
+		"\t\t\tfor (i = -1; i > exponent; i--) putchar('0');\n" +
+		"\t\t\tputs(digits);\n" +
+		"\t\t} else {\n" +
+		"\t\t\tfor (i = 0; i <= exponent; i++) putchar(i < count ? digits[i] : '0');\n" +
+		"\t\t\tputchar('.');\n" +
+		"\t\t\tputs(count > exponent + 1 ? digits + exponent + 1 : \"0\");\n" +
+		"\t\t}\n" +
+		"\t} else {\n" +
+		"\t\tprintf(\"%c.%sE%d\\n\", digits[0], count > 1 ? digits + 1 : \"0\", exponent);\n" +
+		"\t}\n" +
+		"}\n";
+
+	private IdentityHashMap<DeclarationIdentifier,String> names;	// C name of each variable
+	private IdentityHashMap<MethodDeclaration,String> functions;	// C name of each method
+	private MethodDeclaration method;								// Current method
+	private StringBuilder declarations;								// Declarations of the current function
+	private String indentation;										// Indentation of the current statement
+	private int variables;											// Variables declared in the current function
+
+	/**
+	 * Constructor
+	 */
+	public CCodeGeneratorVisitor() {
+		names = new IdentityHashMap<DeclarationIdentifier,String>();
+		functions = new IdentityHashMap<MethodDeclaration,String>();
+	}
+
+	/**
+	 * Visit a program generating the runtime, the global variables, the
+	 * prototypes of the functions, the functions and the C main function
+	 */
+	public String visit(Program p) {
+		StringBuilder code = new StringBuilder(runtime);
+		String mainFunction = null;
+		code.append("\n");
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			String prefix = "ctds_" + classDeclaration.getId() + "_";
+			for (FieldDeclaration fieldDeclaration : classDeclaration.getFieldDeclarations()) {
+				for (DeclarationIdentifier ident : fieldDeclaration.getListIds()) {
+					names.put(ident,prefix + ident.getId());
+					code.append("static ").append(declaration(ident)).append(";\n");
+				}
+			}
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				// The extern methods are C functions with the name of the method
+				String name = methodDeclaration.isExtern()?methodDeclaration.getId():prefix + methodDeclaration.getId();
+				functions.put(methodDeclaration,name);
+				if (methodDeclaration.getId().equals("main")) {
+					mainFunction = name;
+				}
+			}
+		}
+		code.append("\n");
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				code.append(methodDeclaration.isExtern()?"extern ":"static ").append(prototype(methodDeclaration)).append(";\n");
+			}
+		}
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			code.append(classDeclaration.accept(this));
+		}
+		code.append("\nint main(void) {\n\t").append(mainFunction).append("();\n\treturn 0;\n}\n");
+		return code.toString();
+	}
+
+	/**
+	 * Returns the C type of a CTds type. The booleans are ints with the
+	 * values 0 and 1.
+	 */
+	private String type(Type type) {
+		if (type.equals(Type.FLOAT)) {
+			return "float";
+		}
+		if (type.equals(Type.VOID)) {
+			return "void";
+		}
+		return "int";
+	}
+
+	/**
+	 * Returns the C declaration of a variable
+	 */
+	private String declaration(DeclarationIdentifier ident) {
+		String declaration = type(ident.getType()) + " " + names.get(ident);
+		if (ident.isArrayDeclarationId()) {
+			declaration += "[" + ident.getCapacity() + "]";
+		}
+		return declaration;
+	}
+
+	/**
+	 * Returns the prototype of the function of a method
+	 */
+	private String prototype(MethodDeclaration decl) {
+		String arguments = "";
+		for (Argument argument : decl.getArguments()) {
+			DeclarationIdentifier ident = argument.getDeclaration();
+			arguments += (arguments.isEmpty()?"":", ") + type(ident.getType());
+			if (names.containsKey(ident)) {
+				arguments += " " + names.get(ident);
+			}
+		}
+		return type(decl.getType()) + " " + functions.get(decl) + "(" + (arguments.isEmpty()?"void":arguments) + ")";
+	}
+
+	/**
+	 * Visit a class declaration generating the function of each method
+	 */
+	public String visit(ClassDeclaration decl) {
+		StringBuilder code = new StringBuilder();
+		for (MethodDeclaration methodDeclaration : decl.getMethodDeclarations()) {
+			code.append(methodDeclaration.accept(this));
+		}
+		return code.toString();
+	}
+
+	/**
+	 * Visit a field declaration of a block declaring its variables at the
+	 * start of the function
+	 */
+	public String visit(FieldDeclaration decl) {
+		for (DeclarationIdentifier ident : decl.getListIds()) {
+			names.put(ident,newVariable(ident.getId()));
+			declarations.append("\t").append(declaration(ident));
+			declarations.append(ident.isArrayDeclarationId()?" = {0};\n":" = 0;\n");
+		}
+		return "";
+	}
+
+	/**
+	 * Returns a new name for a variable of the current function
+	 */
+	private String newVariable(String id) {
+		return "v" + (variables++) + "_" + id;
+	}
+
+	/**
+	 * Returns a new temporary of the current function with the given type
+	 */
+	private String newTemporary(Type type) {
+		String name = "t" + (variables++);
+		declarations.append("\t").append(type(type)).append(" ").append(name).append(";\n");
+		return name;
+	}
+
+	/**
+	 * Visit a method declaration generating its function. The extern methods
+	 * only have a prototype.
+	 */
+	public String visit(MethodDeclaration decl) {
+		if (decl.isExtern()) {
+			return "";
+		}
+		method = decl;
+		declarations = new StringBuilder();
+		indentation = "\t";
+		variables = 0;
+		for (Argument argument : decl.getArguments()) {
+			names.put(argument.getDeclaration(),newVariable(argument.getDeclaration().getId()));
+		}
+		declareLocals(decl.getBlock());
+		String body = decl.getBlock().accept(this);
+		StringBuilder code = new StringBuilder("\nstatic ");
+		code.append(prototype(decl)).append(" {\n");
+		code.append(declarations).append(body);
+		List<Statement> statements = decl.getBlock().getStatements();
+		boolean returns = !statements.isEmpty() && statements.get(statements.size()-1) instanceof ReturnStatement;
+		if (!decl.getType().equals(Type.VOID) && !returns) {
+			// Return of a method that reaches its end
+			code.append("\treturn 0;\n");
+		}
+		code.append("}\n");
+		return code.toString();
+	}
+
+	/**
+	 * Declare the variables of a block and of its nested blocks
+	 */
+	private void declareLocals(Statement statement) {
+		if (statement instanceof Block) {
+			Block block = (Block)statement;
+			for (FieldDeclaration fieldDeclaration : block.getFieldDeclarations()) {
+				fieldDeclaration.accept(this);
+			}
+			for (Statement s : block.getStatements()) {
+				declareLocals(s);
+			}
+		} else if (statement instanceof IfStatement) {
+			IfStatement ifStatement = (IfStatement)statement;
+			declareLocals(ifStatement.getIfBlock());
+			if (ifStatement.hasElseBlock()) {
+				declareLocals(ifStatement.getElseBlock());
+			}
+		} else if (statement instanceof ForStatement) {
+			declareLocals(((ForStatement)statement).getBlock());
+		} else if (statement instanceof WhileStatement) {
+			declareLocals(((WhileStatement)statement).getBlock());
+		}
+	}
+
+	/**
+	 * Visit an argument
+	 */
+	public String visit(Argument arg) {
+		return "";
+	}
+
+	/**
+	 * Visit a declaration identifier
+	 */
+	public String visit(DeclarationIdentifier ident) {
+		return "";
+	}
+
+	/**
+	 * Visit an assign statement. If the expression calls a method it is
+	 * evaluated before the location, as in the interpreter.
+	 */
+	public String visit(AssignStatement stmt) {
+		Location location = stmt.getLocation();
+		Expression expression = stmt.getExpression();
+		String operator;
+		switch (stmt.getOperator()) {
+			case INCREMENT: operator = " += "; break;
+			case DECREMENT: operator = " -= "; break;
+			default: operator = " = "; break;
+		}
+		if (location.getType().equals(Type.BOOLEAN)) {
+			operator = " = ";
+		}
+		String value = expression.accept(this);
+		String code = "";
+		if (containsCall(expression)) {
+			String temporary = newTemporary(expression.getType());
+			code = indentation + temporary + " = " + value + ";\n";
+			value = temporary;
+		}
+		return code + indentation + location.accept(this) + operator + value + ";\n";
+	}
+
+	/**
+	 * Visit a method call statement
+	 */
+	public String visit(MethodCallStatement stmt) {
+		return indentation + stmt.getMethodCall().accept(this) + ";\n";
+	}
+
+	/**
+	 * Visit a return statement
+	 */
+	public String visit(ReturnStatement stmt) {
+		if (stmt.hasExpression() && !method.getType().equals(Type.VOID)) {
+			return indentation + "return " + stmt.getExpression().accept(this) + ";\n";
+		}
+		return indentation + "return;\n";
+	}
+
+	/**
+	 * Visit an if statement
+	 */
+	public String visit(IfStatement stmt) {
+		String code = indentation + "if (" + stmt.getCondition().accept(this) + ") {\n";
+		code += nestedBlock(stmt.getIfBlock());
+		if (stmt.hasElseBlock()) {
+			code += indentation + "} else {\n" + nestedBlock(stmt.getElseBlock());
+		}
+		return code + indentation + "}\n";
+	}
+
+	/**
+	 * Visit a for statement. The condition is evaluated once and the block
+	 * is executed while the index is less or equal than it.
+	 */
+	public String visit(ForStatement stmt) {
+		AssignStatement initialAssign = stmt.getInitialAssign();
+		String code = initialAssign.accept(this);
+		String end = newTemporary(Type.INT);
+		String index = initialAssign.getLocation().accept(this);
+		code += indentation + end + " = " + stmt.getConditionExpression().accept(this) + ";\n";
+		code += indentation + "for (; " + index + " <= " + end + "; " + index + "++) {\n";
+		return code + nestedBlock(stmt.getBlock()) + indentation + "}\n";
+	}
+
+	/**
+	 * Visit a while statement
+	 */
+	public String visit(WhileStatement stmt) {
+		String code = indentation + "while (" + stmt.getCondition().accept(this) + ") {\n";
+		return code + nestedBlock(stmt.getBlock()) + indentation + "}\n";
+	}
+
+	/**
+	 * Returns the code of a block nested in a statement
+	 */
+	private String nestedBlock(Block block) {
+		String outerIndentation = indentation;
+		indentation += "\t";
+		String code = block.accept(this);
+		indentation = outerIndentation;
+		return code;
+	}
+
+	/**
+	 * Visit break statement
+	 */
+	public String visit(BreakStatement stmt) {
+		return indentation + "break;\n";
+	}
+
+	/**
+	 * Visit continue statement
+	 */
+	public String visit(ContinueStatement stmt) {
+		return indentation + "continue;\n";
+	}
+
+	/**
+	 * Visit a binary expression. If the right operand calls a method the left
+	 * operand is evaluated first into a temporary, except for the && and ||
+	 * operators, that already evaluate the left operand first and only evaluate
+	 * the right one when the left one does not decide the value.
+	 */
+	public String visit(BinOpExpr expr) {
+		BinOpType op = expr.getOperator();
+		Expression left = expr.getLeftOperand();
+		Expression right = expr.getRightOperand();
+		String leftCode = left.accept(this);
+		String rightCode = right.accept(this);
+		if (op != BinOpType.AND && op != BinOpType.OR && containsCall(right) && !(left instanceof Literal)) {
+			String temporary = newTemporary(left.getType());
+			return "(" + temporary + " = " + leftCode + ", " + temporary + " " + op + " " + rightCode + ")";
+		}
+		return "(" + leftCode + " " + op + " " + rightCode + ")";
+	}
+
+	/**
+	 * Returns true if the evaluation of the expression calls a method
+	 */
+	private boolean containsCall(Expression expr) {
+		if (expr instanceof MethodCall) {
+			return true;
+		}
+		if (expr instanceof BinOpExpr) {
+			return containsCall(((BinOpExpr)expr).getLeftOperand()) || containsCall(((BinOpExpr)expr).getRightOperand());
+		}
+		if (expr instanceof UnaryOpExpr) {
+			return containsCall(((UnaryOpExpr)expr).getOperand());
+		}
+		if (expr instanceof NullaryExpr) {
+			return containsCall(((NullaryExpr)expr).getExpression());
+		}
+		if (expr instanceof VarArrayLocation) {
+			return containsCall(((VarArrayLocation)expr).getExpression());
+		}
+		return false;
+	}
+
+	/**
+	 * Visit a unary expression
+	 */
+	public String visit(UnaryOpExpr expr) {
+		String operator = expr.getType().equals(Type.BOOLEAN)?"!":"-";
+		return "(" + operator + expr.getOperand().accept(this) + ")";
+	}
+
+	/**
+	 * Visit a nullary expression
+	 */
+	public String visit(NullaryExpr expr) {
+		return expr.getExpression().accept(this);
+	}
+
+	/**
+	 * Visit int literal
+	 */
+	public String visit(IntLiteral lit) {
+		int value = lit.getIntegerValue();
+		if (value == Integer.MIN_VALUE) {
+			return "(-2147483647 - 1)";
+		}
+		return Integer.toString(value);
+	}
+
+	/**
+	 * Visit float literal
+	 */
+	public String visit(FloatLiteral lit) {
+		return Float.toString(lit.getFloatValue()) + "f";
+	}
+
+	/**
+	 * Visit boolean literal
+	 */
+	public String visit(BooleanLiteral lit) {
+		return lit.getBooleanValue()?"1":"0";
+	}
+
+	/**
+	 * Visit a var location
+	 */
+	public String visit(VarLocation loc) {
+		return names.get(loc.getDeclaration());
+	}
+
+	/**
+	 * Visit a var array location checking the index
+	 */
+	public String visit(VarArrayLocation loc) {
+		DeclarationIdentifier decl = loc.getDeclaration();
+		return names.get(decl) + "[ctds_check(" + loc.getExpression().accept(this) + ", " + decl.getCapacity()
+			+ ", " + loc.getLineNumber() + ", " + loc.getColumnNumber() + ")]";
+	}
+
+	/**
+	 * Visit method call. If an argument after the first one calls a method
+	 * the previous arguments are evaluated first into temporaries.
+	 */
+	public String visit(MethodCall call) {
+		String[] arguments = new String[call.getArguments().size()];
+		boolean sequence = false;
+		for (int i = 0; i < arguments.length; i++) {
+			Expression argument = call.getArguments().get(i);
+			arguments[i] = argument.accept(this);
+			sequence = sequence || (i > 0 && containsCall(argument));
+		}
+		String code = "";
+		for (int i = 0; i < arguments.length; i++) {
+			Expression argument = call.getArguments().get(i);
+			if (sequence && i < arguments.length - 1 && !(argument instanceof Literal)) {
+				String temporary = newTemporary(argument.getType());
+				code += temporary + " = " + arguments[i] + ", ";
+				arguments[i] = temporary;
+			}
+		}
+		String function = functions.get(call.getDeclaration()) + "(" + String.join(", ",arguments) + ")";
+		return code.isEmpty()?function:"(" + code + function + ")";
+	}
+
+	/**
+	 * Visit a block generating each statement. The statements after a
+	 * return, a break or a continue are not reached.
+	 */
+	public String visit(Block block) {
+		StringBuilder code = new StringBuilder();
+		for (Statement statement : block.getStatements()) {
+			code.append(statement.accept(this));
+			if (statement instanceof ReturnStatement || statement instanceof BreakStatement
+					|| statement instanceof ContinueStatement) {
+				break;
+			}
+		}
+		return code.toString();
+	}
+
+	/**
+	 * Visit a semicolon statement
+	 */
+	public String visit(SemicolonStatement s) {
+		return "";
+	}
+
+	/**
+	 * Visit a print statement
+	 */
+	public String visit(PrintStatement p) {
+		Expression expression = p.getExpression();
+		String function;
+		if (expression.getType().equals(Type.FLOAT)) {
+			function = "ctds_print_float";
+		} else if (expression.getType().equals(Type.BOOLEAN)) {
+			function = "ctds_print_boolean";
+		} else {
+			function = "ctds_print_int";
+		}
+		return indentation + function + "(" + expression.accept(this) + ");\n";
+	}
+
+}
@@ -17,22 +17,32 @@ public class CheckDeclarationVisitor implements ASTVisitor<List<String>> {
 
 	private static int inCycle;				// Increment every time that a cycle begins
 											// and decrement every time that a cycle ends
+	private boolean inMethod;				// True while visiting a method
+	private int intSlots;					// Int slots taken in the current frame
+	private int floatSlots;					// Float slots taken in the current frame
+	private int booleanSlots;				// Boolean slots taken in the current frame
 	/**
 	 * Constructor
 	 */
 	public CheckDeclarationVisitor() {
 		table = new SymbolsTable();
 		inCycle = 0;
+		inMethod = false;
 	}
 
 	/**
-	 * Visit a program accepting each class
+	 * Visit a program accepting each class. The fields of the classes take
+	 * the slots of the global frame.
 	 */
 	public List<String> visit(Program p) {
 	 	LinkedList<String> errorsList = new LinkedList<String>();
+	 	intSlots = 0;
+	 	floatSlots = 0;
+	 	booleanSlots = 0;
 		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
 			errorsList.addAll(classDeclaration.accept(this));
 		}
+		p.setSlots(intSlots,floatSlots,booleanSlots);
 		return errorsList;
 	}
 
@@ -64,11 +74,14 @@ public class CheckDeclarationVisitor implements ASTVisitor<List<String>> {
 	}
 
 	/**
-	 * Visit a field accepting it if it not exists in the symbols table.
+	 * Visit a field accepting it if it not exists in the symbols table and
+	 * assigning the slots in the current frame.
 	 */
 	public List<String> visit(FieldDeclaration decl) {
 		LinkedList<String> fieldErrors = new LinkedList<String>();
 		for (DeclarationIdentifier d : decl.getListIds()) {
+			d.setIsGlobal(!inMethod);
+			assignSlot(d);
 			if (d.isArrayDeclarationId()) {
 				// Is an array declaration. 
 				if (d.getCapacity()<=0) {
@@ -87,7 +100,8 @@ public class CheckDeclarationVisitor implements ASTVisitor<List<String>> {
 	/**
 	 * Visit a method accepting it if it not exists in the symbols table, 
 	 * checking that have a return statement if the type is not void 
-	 * and accepting the block.
+	 * and accepting the block. The arguments and the fields of the method 
+	 * take the slots of a new activation frame.
 	 */
 	public List<String> visit(MethodDeclaration decl) {
 		LinkedList<String> methodErrors = new LinkedList<String>();
@@ -98,12 +112,24 @@ public class CheckDeclarationVisitor implements ASTVisitor<List<String>> {
 						// The method does not have a return statement
 						methodErrors.add(decl.getMissingReturnStatementError());
 				} 
+				int globalIntSlots = intSlots;
+				int globalFloatSlots = floatSlots;
+				int globalBooleanSlots = booleanSlots;
+				intSlots = 0;
+				floatSlots = 0;
+				booleanSlots = 0;
+				inMethod = true;
 				table.incrementLevel();
 				for (Argument arg : decl.getArguments()) {
 					methodErrors.addAll(arg.accept(this));
 				}
 				methodErrors.addAll(decl.getBlock().accept(this));
 				table.decrementLevel();
+				decl.setSlots(intSlots,floatSlots,booleanSlots);
+				inMethod = false;
+				intSlots = globalIntSlots;
+				floatSlots = globalFloatSlots;
+				booleanSlots = globalBooleanSlots;
 			}
 		} else {
 			// The symbol already exists
@@ -119,6 +145,7 @@ public class CheckDeclarationVisitor implements ASTVisitor<List<String>> {
 		LinkedList<String> argErrors = new LinkedList<String>();
 		DeclarationIdentifier argDeclaration = new DeclarationIdentifier(arg.getId(),arg.getLineNumber(),arg.getColumnNumber());
 		argDeclaration.setType(arg.getType());
+		assignSlot(argDeclaration);
 		arg.setDeclaration(argDeclaration);
 		if (!table.addSymbol(argDeclaration)) {
 			// Already exists an argument with the same id
@@ -127,6 +154,24 @@ public class CheckDeclarationVisitor implements ASTVisitor<List<String>> {
 		return argErrors;
 	}
 
+	/**
+	 * Assign to the declaration the next free slots of its type in the
+	 * current frame
+	 */
+	private void assignSlot(DeclarationIdentifier d) {
+		int size = d.isArrayDeclarationId()?Math.max(d.getCapacity(),0):1;
+		if (d.getType().equals(Type.FLOAT)) {
+			d.setSlot(floatSlots);
+			floatSlots += size;
+		} else if (d.getType().equals(Type.BOOLEAN)) {
+			d.setSlot(booleanSlots);
+			booleanSlots += size;
+		} else {
+			d.setSlot(intSlots);
+			intSlots += size;
+		}
+	}
+
 	/**
 	 * Visit declaration identifier
 	 */
@@ -0,0 +1,814 @@
+import java.util.List;
+import java.util.IdentityHashMap;
+
+/**
+ * This class represents the visitor that compiles each node of the CTds program
+ * only once into an executable closure (IntNode, FloatNode, BoolNode or
+ * StatementNode). The operation, the types and the storage of the operands are
+ * resolved while compiling, so the execution does not dispatch over the AST
+ * nor switch over the types and operators.
+ * @author Facundo Molina
+ */
+public class ClosureCompilerVisitor implements ASTVisitor<Object> {
+
+	private static final int default_max_depth = 10000;	// Default maximum amount of nested calls
+
+	private IdentityHashMap<DeclarationIdentifier,Integer> globalSlots;	// Slots of the class fields
+	private IdentityHashMap<DeclarationIdentifier,Integer> localSlots;	// Slots of the current method
+	private IdentityHashMap<MethodDeclaration,ClosureMethod> methods;	// Compiled methods
+	private ClosureFrame globals;			// Frame of the class fields
+	private ClosureMethod mainMethod;		// Main method
+	private int intSlots;					// Int slots used by the current method
+	private int floatSlots;					// Float slots used by the current method
+	private int maxDepth;					// Maximum amount of nested calls
+
+	/**
+	 * Constructor
+	 */
+	public ClosureCompilerVisitor() {
+		this(default_max_depth);
+	}
+
+	/**
+	 * Constructor with a given maximum amount of nested calls
+	 */
+	public ClosureCompilerVisitor(int maxDepth) {
+		this.maxDepth = maxDepth;
+		globalSlots = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		localSlots = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		methods = new IdentityHashMap<MethodDeclaration,ClosureMethod>();
+	}
+
+	/**
+	 * Get the frame of the class fields
+	 */
+	public ClosureFrame getGlobals() {
+		return globals;
+	}
+
+	/**
+	 * Visit a program. The fields of all the classes take the slots of the
+	 * global frame and then each method is compiled. Returns the compiled
+	 * main method.
+	 */
+	public Object visit(Program p) {
+		intSlots = 0;
+		floatSlots = 0;
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			for (FieldDeclaration fieldDeclaration : classDeclaration.getFieldDeclarations()) {
+				for (DeclarationIdentifier ident : fieldDeclaration.getListIds()) {
+					globalSlots.put(ident,allocate(ident));
+				}
+			}
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				// The methods are created before compiling so the calls can be resolved
+				ClosureMethod method = new ClosureMethod(methodDeclaration.getId());
+				methods.put(methodDeclaration,method);
+				if (methodDeclaration.getId().equals("main")) {
+					mainMethod = method;
+				}
+			}
+		}
+		globals = new ClosureFrame(intSlots,floatSlots);
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			classDeclaration.accept(this);
+		}
+		return mainMethod;
+	}
+
+	/**
+	 * Visit a class declaration compiling each method
+	 */
+	public Object visit(ClassDeclaration decl) {
+		for (MethodDeclaration methodDeclaration : decl.getMethodDeclarations()) {
+			methodDeclaration.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a field declaration of a block taking the slots of the identifiers
+	 */
+	public Object visit(FieldDeclaration decl) {
+		for (DeclarationIdentifier ident : decl.getListIds()) {
+			localSlots.put(ident,allocate(ident));
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a method declaration compiling the block. The arguments take the
+	 * first slots of the frame.
+	 */
+	public Object visit(MethodDeclaration decl) {
+		ClosureMethod method = methods.get(decl);
+		if (decl.isExtern()) {
+			return method;
+		}
+		localSlots.clear();
+		intSlots = 0;
+		floatSlots = 0;
+		int[] argumentSlots = new int[decl.getArguments().size()];
+		boolean[] floatArguments = new boolean[decl.getArguments().size()];
+		for (int i = 0; i < argumentSlots.length; i++) {
+			DeclarationIdentifier argument = decl.getArguments().get(i).getDeclaration();
+			argumentSlots[i] = allocate(argument);
+			floatArguments[i] = argument.getType().equals(Type.FLOAT);
+			localSlots.put(argument,argumentSlots[i]);
+		}
+		method.setArgumentSlots(argumentSlots,floatArguments);
+		method.setBody((StatementNode)decl.getBlock().accept(this));
+		method.setSlots(intSlots,floatSlots);
+		return method;
+	}
+
+	/**
+	 * Visit an argument
+	 */
+	public Object visit(Argument arg) {
+		return null;
+	}
+
+	/**
+	 * Visit a declaration identifier
+	 */
+	public Object visit(DeclarationIdentifier ident) {
+		return null;
+	}
+
+	/**
+	 * Visit an assign statement compiling a store specialized for the
+	 * storage and the type of the location and for the operator
+	 */
+	public Object visit(AssignStatement stmt) {
+		Location location = stmt.getLocation();
+		DeclarationIdentifier decl = location.getDeclaration();
+		AssignOpType op = stmt.getOperator();
+		Expression expression = stmt.getExpression();
+		boolean global = isGlobal(decl);
+		final int slot = slot(decl);
+		final ClosureFrame g = globals;
+		if (location instanceof VarArrayLocation) {
+			final VarArrayLocation arrayLocation = (VarArrayLocation)location;
+			final int capacity = decl.getCapacity();
+			final IntNode index = (IntNode)arrayLocation.getExpression().accept(this);
+			if (decl.getType().equals(Type.FLOAT)) {
+				final FloatNode value = (FloatNode)expression.accept(this);
+				if (op.equals(AssignOpType.ASSIGN)) {
+					if (global) {
+						return (StatementNode) f -> { g.floats[slot+checkIndex(index.execute(f),capacity,arrayLocation)] = value.execute(f); return StatementNode.NORMAL; };
+					}
+					return (StatementNode) f -> { f.floats[slot+checkIndex(index.execute(f),capacity,arrayLocation)] = value.execute(f); return StatementNode.NORMAL; };
+				}
+				final float sign = op.equals(AssignOpType.INCREMENT)?1:-1;
+				if (global) {
+					return (StatementNode) f -> { g.floats[slot+checkIndex(index.execute(f),capacity,arrayLocation)] += sign*value.execute(f); return StatementNode.NORMAL; };
+				}
+				return (StatementNode) f -> { f.floats[slot+checkIndex(index.execute(f),capacity,arrayLocation)] += sign*value.execute(f); return StatementNode.NORMAL; };
+			}
+			final IntNode value = intValue(expression);
+			if (op.equals(AssignOpType.ASSIGN)) {
+				if (global) {
+					return (StatementNode) f -> { g.ints[slot+checkIndex(index.execute(f),capacity,arrayLocation)] = value.execute(f); return StatementNode.NORMAL; };
+				}
+				return (StatementNode) f -> { f.ints[slot+checkIndex(index.execute(f),capacity,arrayLocation)] = value.execute(f); return StatementNode.NORMAL; };
+			}
+			final int sign = op.equals(AssignOpType.INCREMENT)?1:-1;
+			if (global) {
+				return (StatementNode) f -> { g.ints[slot+checkIndex(index.execute(f),capacity,arrayLocation)] += sign*value.execute(f); return StatementNode.NORMAL; };
+			}
+			return (StatementNode) f -> { f.ints[slot+checkIndex(index.execute(f),capacity,arrayLocation)] += sign*value.execute(f); return StatementNode.NORMAL; };
+		}
+		if (decl.getType().equals(Type.FLOAT)) {
+			final FloatNode value = (FloatNode)expression.accept(this);
+			if (op.equals(AssignOpType.ASSIGN)) {
+				if (global) {
+					return (StatementNode) f -> { g.floats[slot] = value.execute(f); return StatementNode.NORMAL; };
+				}
+				return (StatementNode) f -> { f.floats[slot] = value.execute(f); return StatementNode.NORMAL; };
+			}
+			final float sign = op.equals(AssignOpType.INCREMENT)?1:-1;
+			if (global) {
+				return (StatementNode) f -> { g.floats[slot] += sign*value.execute(f); return StatementNode.NORMAL; };
+			}
+			return (StatementNode) f -> { f.floats[slot] += sign*value.execute(f); return StatementNode.NORMAL; };
+		}
+		if (!op.equals(AssignOpType.ASSIGN) && expression instanceof IntLiteral) {
+			// Increment or decrement of a variable by a literal
+			final int c = op.equals(AssignOpType.INCREMENT)?((IntLiteral)expression).getIntegerValue():-((IntLiteral)expression).getIntegerValue();
+			if (global) {
+				return (StatementNode) f -> { g.ints[slot] += c; return StatementNode.NORMAL; };
+			}
+			return (StatementNode) f -> { f.ints[slot] += c; return StatementNode.NORMAL; };
+		}
+		final IntNode value = intValue(expression);
+		if (op.equals(AssignOpType.ASSIGN)) {
+			if (global) {
+				return (StatementNode) f -> { g.ints[slot] = value.execute(f); return StatementNode.NORMAL; };
+			}
+			return (StatementNode) f -> { f.ints[slot] = value.execute(f); return StatementNode.NORMAL; };
+		}
+		final int sign = op.equals(AssignOpType.INCREMENT)?1:-1;
+		if (global) {
+			return (StatementNode) f -> { g.ints[slot] += sign*value.execute(f); return StatementNode.NORMAL; };
+		}
+		return (StatementNode) f -> { f.ints[slot] += sign*value.execute(f); return StatementNode.NORMAL; };
+	}
+
+	/**
+	 * Visit a method call statement
+	 */
+	public Object visit(MethodCallStatement stmt) {
+		final StatementNode call = compileCall(stmt.getMethodCall());
+		return call;
+	}
+
+	/**
+	 * Visit a return statement storing the value in the frame. A returned
+	 * call is a tail call.
+	 */
+	public Object visit(ReturnStatement stmt) {
+		if (!stmt.hasExpression()) {
+			return (StatementNode) f -> StatementNode.RETURN;
+		}
+		Expression expression = stmt.getExpression();
+		if (expression instanceof MethodCall) {
+			return compileTailCall((MethodCall)expression);
+		}
+		if (expression.getType().equals(Type.FLOAT)) {
+			final FloatNode value = (FloatNode)expression.accept(this);
+			return (StatementNode) f -> { f.returnFloat = value.execute(f); return StatementNode.RETURN; };
+		}
+		final IntNode value = intValue(expression);
+		return (StatementNode) f -> { f.returnInt = value.execute(f); return StatementNode.RETURN; };
+	}
+
+	/**
+	 * Visit an if statement
+	 */
+	public Object visit(IfStatement stmt) {
+		final BoolNode condition = (BoolNode)stmt.getCondition().accept(this);
+		final StatementNode ifBlock = (StatementNode)stmt.getIfBlock().accept(this);
+		if (stmt.hasElseBlock()) {
+			final StatementNode elseBlock = (StatementNode)stmt.getElseBlock().accept(this);
+			return (StatementNode) f -> condition.execute(f)?ifBlock.execute(f):elseBlock.execute(f);
+		}
+		return (StatementNode) f -> condition.execute(f)?ifBlock.execute(f):StatementNode.NORMAL;
+	}
+
+	/**
+	 * Visit a for statement. The index is incremented while it is less or
+	 * equal than the condition expression. A local index compared against a
+	 * literal is compiled to a counted loop over the slot.
+	 */
+	public Object visit(ForStatement stmt) {
+		final StatementNode initialAssign = (StatementNode)stmt.getInitialAssign().accept(this);
+		final StatementNode block = (StatementNode)stmt.getBlock().accept(this);
+		DeclarationIdentifier index = stmt.getInitialAssign().getLocation().getDeclaration();
+		final int slot = slot(index);
+		Expression condition = stmt.getConditionExpression();
+		if (!isGlobal(index) && condition instanceof IntLiteral) {
+			final int end = ((IntLiteral)condition).getIntegerValue();
+			return (StatementNode) f -> {
+				initialAssign.execute(f);
+				for (; f.ints[slot] <= end; f.ints[slot]++) {
+					int status = block.execute(f);
+					if (status == StatementNode.BREAK) {
+						break;
+					}
+					if (status == StatementNode.RETURN) {
+						return status;
+					}
+				}
+				return StatementNode.NORMAL;
+			};
+		}
+		final IntNode end = (IntNode)condition.accept(this);
+		final int[] storage = isGlobal(index)?globals.ints:null;
+		return (StatementNode) f -> {
+			int[] ints = storage!=null?storage:f.ints;
+			initialAssign.execute(f);
+			int limit = end.execute(f);
+			for (; ints[slot] <= limit; ints[slot]++) {
+				int status = block.execute(f);
+				if (status == StatementNode.BREAK) {
+					break;
+				}
+				if (status == StatementNode.RETURN) {
+					return status;
+				}
+			}
+			return StatementNode.NORMAL;
+		};
+	}
+
+	/**
+	 * Visit a while statement
+	 */
+	public Object visit(WhileStatement stmt) {
+		final BoolNode condition = (BoolNode)stmt.getCondition().accept(this);
+		final StatementNode block = (StatementNode)stmt.getBlock().accept(this);
+		return (StatementNode) f -> {
+			while (condition.execute(f)) {
+				int status = block.execute(f);
+				if (status == StatementNode.BREAK) {
+					break;
+				}
+				if (status == StatementNode.RETURN) {
+					return status;
+				}
+			}
+			return StatementNode.NORMAL;
+		};
+	}
+
+	/**
+	 * Visit break statement
+	 */
+	public Object visit(BreakStatement stmt) {
+		return (StatementNode) f -> StatementNode.BREAK;
+	}
+
+	/**
+	 * Visit continue statement
+	 */
+	public Object visit(ContinueStatement stmt) {
+		return (StatementNode) f -> StatementNode.CONTINUE;
+	}
+
+	/**
+	 * Visit a binary expression compiling a node for the operator and the
+	 * type of the operands
+	 */
+	public Object visit(BinOpExpr expr) {
+		Expression left = expr.getLeftOperand();
+		Expression right = expr.getRightOperand();
+		BinOpType op = expr.getOperator();
+		if (expr.getType().equals(Type.INT)) {
+			if (right instanceof IntLiteral) {
+				return compileIntConstant(op,left,((IntLiteral)right).getIntegerValue());
+			}
+			return compileInt(op,(IntNode)left.accept(this),(IntNode)right.accept(this));
+		}
+		if (expr.getType().equals(Type.FLOAT)) {
+			return compileFloat(op,(FloatNode)left.accept(this),(FloatNode)right.accept(this));
+		}
+		if (left.getType().equals(Type.INT)) {
+			if (right instanceof IntLiteral) {
+				return compileIntCompareConstant(op,left,((IntLiteral)right).getIntegerValue());
+			}
+			return compileIntCompare(op,(IntNode)left.accept(this),(IntNode)right.accept(this));
+		}
+		if (left.getType().equals(Type.FLOAT)) {
+			return compileFloatCompare(op,(FloatNode)left.accept(this),(FloatNode)right.accept(this));
+		}
+		final BoolNode l = (BoolNode)left.accept(this);
+		final BoolNode r = (BoolNode)right.accept(this);
+		switch (op) {
+			// The right operand is only executed when the left one does not
+			// decide the value, as in the interpreter visitor
+			case AND: return (BoolNode) f -> l.execute(f) && r.execute(f);
+			case OR: return (BoolNode) f -> l.execute(f) || r.execute(f);
+			case CEQ: return (BoolNode) f -> l.execute(f) == r.execute(f);
+			case NEQ: return (BoolNode) f -> l.execute(f) != r.execute(f);
+			default: throw new IllegalStateException("Invalid boolean operator " + op);
+		}
+	}
+
+	/**
+	 * Compile an int arithmetic operation
+	 */
+	private IntNode compileInt(BinOpType op, final IntNode l, final IntNode r) {
+		switch (op) {
+			case PLUS: return f -> l.execute(f) + r.execute(f);
+			case MINUS: return f -> l.execute(f) - r.execute(f);
+			case MULTIPLY: return f -> l.execute(f) * r.execute(f);
+			case DIVIDE: return f -> l.execute(f) / r.execute(f);
+			case MOD: return f -> l.execute(f) % r.execute(f);
+			default: throw new IllegalStateException("Invalid int operator " + op);
+		}
+	}
+
+	/**
+	 * Compile an int arithmetic operation whose right operand is a literal.
+	 * The addition and subtraction of a local variable read the slot directly.
+	 */
+	private IntNode compileIntConstant(BinOpType op, Expression left, final int c) {
+		if (isLocalVariable(left) && (op.equals(BinOpType.PLUS) || op.equals(BinOpType.MINUS))) {
+			final int slot = slot(((Location)left).getDeclaration());
+			final int d = op.equals(BinOpType.PLUS)?c:-c;
+			return f -> f.ints[slot] + d;
+		}
+		final IntNode l = (IntNode)left.accept(this);
+		switch (op) {
+			case PLUS: return f -> l.execute(f) + c;
+			case MINUS: return f -> l.execute(f) - c;
+			case MULTIPLY: return f -> l.execute(f) * c;
+			case DIVIDE: return f -> l.execute(f) / c;
+			case MOD: return f -> l.execute(f) % c;
+			default: throw new IllegalStateException("Invalid int operator " + op);
+		}
+	}
+
+	/**
+	 * Compile a float arithmetic operation
+	 */
+	private FloatNode compileFloat(BinOpType op, final FloatNode l, final FloatNode r) {
+		switch (op) {
+			case PLUS: return f -> l.execute(f) + r.execute(f);
+			case MINUS: return f -> l.execute(f) - r.execute(f);
+			case MULTIPLY: return f -> l.execute(f) * r.execute(f);
+			case DIVIDE: return f -> l.execute(f) / r.execute(f);
+			default: throw new IllegalStateException("Invalid float operator " + op);
+		}
+	}
+
+	/**
+	 * Compile an int comparison
+	 */
+	private BoolNode compileIntCompare(BinOpType op, final IntNode l, final IntNode r) {
+		switch (op) {
+			case LE: return f -> l.execute(f) < r.execute(f);
+			case LEQ: return f -> l.execute(f) <= r.execute(f);
+			case GE: return f -> l.execute(f) > r.execute(f);
+			case GEQ: return f -> l.execute(f) >= r.execute(f);
+			case CEQ: return f -> l.execute(f) == r.execute(f);
+			case NEQ: return f -> l.execute(f) != r.execute(f);
+			default: throw new IllegalStateException("Invalid int comparison " + op);
+		}
+	}
+
+	/**
+	 * Compile an int comparison whose right operand is a literal. A local
+	 * variable compared against the literal reads the slot directly.
+	 */
+	private BoolNode compileIntCompareConstant(BinOpType op, Expression left, final int c) {
+		if (isLocalVariable(left)) {
+			final int slot = slot(((Location)left).getDeclaration());
+			switch (op) {
+				case LE: return f -> f.ints[slot] < c;
+				case LEQ: return f -> f.ints[slot] <= c;
+				case GE: return f -> f.ints[slot] > c;
+				case GEQ: return f -> f.ints[slot] >= c;
+				case CEQ: return f -> f.ints[slot] == c;
+				case NEQ: return f -> f.ints[slot] != c;
+				default: throw new IllegalStateException("Invalid int comparison " + op);
+			}
+		}
+		final IntNode l = (IntNode)left.accept(this);
+		switch (op) {
+			case LE: return f -> l.execute(f) < c;
+			case LEQ: return f -> l.execute(f) <= c;
+			case GE: return f -> l.execute(f) > c;
+			case GEQ: return f -> l.execute(f) >= c;
+			case CEQ: return f -> l.execute(f) == c;
+			case NEQ: return f -> l.execute(f) != c;
+			default: throw new IllegalStateException("Invalid int comparison " + op);
+		}
+	}
+
+	/**
+	 * Compile a float comparison
+	 */
+	private BoolNode compileFloatCompare(BinOpType op, final FloatNode l, final FloatNode r) {
+		switch (op) {
+			case LE: return f -> l.execute(f) < r.execute(f);
+			case LEQ: return f -> l.execute(f) <= r.execute(f);
+			case GE: return f -> l.execute(f) > r.execute(f);
+			case GEQ: return f -> l.execute(f) >= r.execute(f);
+			case CEQ: return f -> l.execute(f) == r.execute(f);
+			case NEQ: return f -> l.execute(f) != r.execute(f);
+			default: throw new IllegalStateException("Invalid float comparison " + op);
+		}
+	}
+
+	/**
+	 * Visit a unary expression
+	 */
+	public Object visit(UnaryOpExpr expr) {
+		Object operand = expr.getOperand().accept(this);
+		if (expr.getType().equals(Type.INT)) {
+			final IntNode e = (IntNode)operand;
+			return (IntNode) f -> -e.execute(f);
+		}
+		if (expr.getType().equals(Type.FLOAT)) {
+			final FloatNode e = (FloatNode)operand;
+			return (FloatNode) f -> -e.execute(f);
+		}
+		final BoolNode e = (BoolNode)operand;
+		return (BoolNode) f -> !e.execute(f);
+	}
+
+	/**
+	 * Visit a nullary expression
+	 */
+	public Object visit(NullaryExpr expr) {
+		return expr.getExpression().accept(this);
+	}
+
+	/**
+	 * Visit int literal
+	 */
+	public Object visit(IntLiteral lit) {
+		final int value = lit.getIntegerValue();
+		return (IntNode) f -> value;
+	}
+
+	/**
+	 * Visit float literal
+	 */
+	public Object visit(FloatLiteral lit) {
+		final float value = lit.getFloatValue();
+		return (FloatNode) f -> value;
+	}
+
+	/**
+	 * Visit boolean literal
+	 */
+	public Object visit(BooleanLiteral lit) {
+		final boolean value = lit.getBooleanValue();
+		return (BoolNode) f -> value;
+	}
+
+	/**
+	 * Visit a var location compiling a load of the slot
+	 */
+	public Object visit(VarLocation loc) {
+		DeclarationIdentifier decl = loc.getDeclaration();
+		final int slot = slot(decl);
+		final ClosureFrame g = globals;
+		boolean global = isGlobal(decl);
+		if (decl.getType().equals(Type.FLOAT)) {
+			if (global) {
+				return (FloatNode) f -> g.floats[slot];
+			}
+			return (FloatNode) f -> f.floats[slot];
+		}
+		if (decl.getType().equals(Type.BOOLEAN)) {
+			if (global) {
+				return (BoolNode) f -> g.ints[slot] != 0;
+			}
+			return (BoolNode) f -> f.ints[slot] != 0;
+		}
+		if (global) {
+			return (IntNode) f -> g.ints[slot];
+		}
+		return (IntNode) f -> f.ints[slot];
+	}
+
+	/**
+	 * Visit a var array location compiling a checked load of the slot
+	 */
+	public Object visit(VarArrayLocation loc) {
+		final VarArrayLocation location = loc;
+		DeclarationIdentifier decl = loc.getDeclaration();
+		final int slot = slot(decl);
+		final int capacity = decl.getCapacity();
+		final IntNode index = (IntNode)loc.getExpression().accept(this);
+		final ClosureFrame g = globals;
+		boolean global = isGlobal(decl);
+		if (decl.getType().equals(Type.FLOAT)) {
+			if (global) {
+				return (FloatNode) f -> g.floats[slot+checkIndex(index.execute(f),capacity,location)];
+			}
+			return (FloatNode) f -> f.floats[slot+checkIndex(index.execute(f),capacity,location)];
+		}
+		if (decl.getType().equals(Type.BOOLEAN)) {
+			if (global) {
+				return (BoolNode) f -> g.ints[slot+checkIndex(index.execute(f),capacity,location)] != 0;
+			}
+			return (BoolNode) f -> f.ints[slot+checkIndex(index.execute(f),capacity,location)] != 0;
+		}
+		if (global) {
+			return (IntNode) f -> g.ints[slot+checkIndex(index.execute(f),capacity,location)];
+		}
+		return (IntNode) f -> f.ints[slot+checkIndex(index.execute(f),capacity,location)];
+	}
+
+	/**
+	 * Visit method call compiling a call that returns the value according
+	 * to the type of the method
+	 */
+	public Object visit(MethodCall call) {
+		final StatementNode execution = compileCall(call);
+		Type type = call.getDeclaration().getType();
+		if (type.equals(Type.FLOAT)) {
+			return (FloatNode) f -> { execution.execute(f); return f.returnFloat; };
+		}
+		if (type.equals(Type.BOOLEAN)) {
+			return (BoolNode) f -> { execution.execute(f); return f.returnInt != 0; };
+		}
+		return (IntNode) f -> { execution.execute(f); return f.returnInt; };
+	}
+
+	/**
+	 * Compile the execution of a method call. The arguments are written in
+	 * a new frame and the returned value is copied to the frame of the caller.
+	 * The new frame is one call deeper than the frame of the caller.
+	 */
+	private StatementNode compileCall(MethodCall call) {
+		final ClosureMethod method = getMethod(call);
+		final IntNode[] intArguments = new IntNode[call.getArguments().size()];
+		final FloatNode[] floatArguments = new FloatNode[intArguments.length];
+		compileArguments(call,intArguments,floatArguments);
+		final int maxDepth = this.maxDepth;
+		return f -> {
+			ClosureFrame callee = newCallFrame(method,method.newFrame(),intArguments,floatArguments,f,maxDepth);
+			callee = method.execute(callee);
+			f.returnInt = callee.returnInt;
+			f.returnFloat = callee.returnFloat;
+			return StatementNode.NORMAL;
+		};
+	}
+
+	/**
+	 * Compile a returned call. As in the interpreter, the arguments are
+	 * written in a new frame that takes the depth of the current method, and
+	 * the call is left in the current frame to be executed once the method
+	 * returns. The main method executes its returned calls as usual.
+	 */
+	private StatementNode compileTailCall(MethodCall call) {
+		final ClosureMethod method = getMethod(call);
+		final IntNode[] intArguments = new IntNode[call.getArguments().size()];
+		final FloatNode[] floatArguments = new FloatNode[intArguments.length];
+		compileArguments(call,intArguments,floatArguments);
+		final int maxDepth = this.maxDepth;
+		return f -> {
+			ClosureFrame callee = newCallFrame(method,method.newTailFrame(),intArguments,floatArguments,f,maxDepth);
+			if (f.depth == 0) {
+				callee = method.execute(callee);
+				f.returnInt = callee.returnInt;
+				f.returnFloat = callee.returnFloat;
+			} else {
+				callee.depth = f.depth;
+				f.tailMethod = method;
+				f.tailFrame = callee;
+			}
+			return StatementNode.RETURN;
+		};
+	}
+
+	/**
+	 * Get the compiled method of a call. Extern methods can not be
+	 * interpreted.
+	 */
+	private ClosureMethod getMethod(MethodCall call) {
+		MethodDeclaration decl = call.getDeclaration();
+		if (decl.isExtern()) {
+			throw new IllegalStateException("The extern method " + decl.getId() + " can not be interpreted");
+		}
+		return methods.get(decl);
+	}
+
+	/**
+	 * Compile the arguments of a call to the int nodes or to the float nodes
+	 * of their positions
+	 */
+	private void compileArguments(MethodCall call, IntNode[] intArguments, FloatNode[] floatArguments) {
+		for (int i = 0; i < intArguments.length; i++) {
+			Expression argument = call.getArguments().get(i);
+			if (argument.getType().equals(Type.FLOAT)) {
+				floatArguments[i] = (FloatNode)argument.accept(this);
+			} else {
+				intArguments[i] = intValue(argument);
+			}
+		}
+	}
+
+	/**
+	 * Prepare the given empty frame of a call one call deeper than the frame
+	 * of the caller, with the values of the arguments
+	 */
+	private static ClosureFrame newCallFrame(ClosureMethod method, ClosureFrame callee, IntNode[] intArguments,
+			FloatNode[] floatArguments, ClosureFrame f, int maxDepth) {
+		if (f.depth == maxDepth) {
+			throw new ClosureException("Error: the maximum amount of nested calls (" + maxDepth + ") was exceeded");
+		}
+		callee.depth = f.depth + 1;
+		for (int i = 0; i < intArguments.length; i++) {
+			if (intArguments[i] != null) {
+				callee.ints[method.getArgumentSlot(i)] = intArguments[i].execute(f);
+			} else {
+				callee.floats[method.getArgumentSlot(i)] = floatArguments[i].execute(f);
+			}
+		}
+		return callee;
+	}
+
+	/**
+	 * Visit a block compiling each statement. The compiled block stops
+	 * when a statement breaks the sequential flow.
+	 */
+	public Object visit(Block block) {
+		for (FieldDeclaration fieldDeclaration : block.getFieldDeclarations()) {
+			fieldDeclaration.accept(this);
+		}
+		List<Statement> statements = block.getStatements();
+		final StatementNode[] nodes = new StatementNode[statements.size()];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = (StatementNode)statements.get(i).accept(this);
+		}
+		if (nodes.length == 1) {
+			return nodes[0];
+		}
+		return (StatementNode) f -> {
+			for (StatementNode node : nodes) {
+				int status = node.execute(f);
+				if (status != StatementNode.NORMAL) {
+					return status;
+				}
+			}
+			return StatementNode.NORMAL;
+		};
+	}
+
+	/**
+	 * Visit a semicolon statement
+	 */
+	public Object visit(SemicolonStatement s) {
+		return (StatementNode) f -> StatementNode.NORMAL;
+	}
+
+	/**
+	 * Visit a print statement compiling the print for the expression type
+	 */
+	public Object visit(PrintStatement p) {
+		Expression expression = p.getExpression();
+		Object value = expression.accept(this);
+		if (expression.getType().equals(Type.FLOAT)) {
+			final FloatNode e = (FloatNode)value;
+			return (StatementNode) f -> { System.out.println(e.execute(f)); return StatementNode.NORMAL; };
+		}
+		if (expression.getType().equals(Type.BOOLEAN)) {
+			final BoolNode e = (BoolNode)value;
+			return (StatementNode) f -> { System.out.println(e.execute(f)); return StatementNode.NORMAL; };
+		}
+		final IntNode e = (IntNode)value;
+		return (StatementNode) f -> { System.out.println(e.execute(f)); return StatementNode.NORMAL; };
+	}
+
+	/**
+	 * Compile an int or boolean expression to a node that returns the value
+	 * stored in the int slots
+	 */
+	private IntNode intValue(Expression expression) {
+		if (expression.getType().equals(Type.BOOLEAN)) {
+			final BoolNode value = (BoolNode)expression.accept(this);
+			return f -> value.execute(f)?1:0;
+		}
+		return (IntNode)expression.accept(this);
+	}
+
+	/**
+	 * Returns the index if it is a valid position of the array, otherwise
+	 * throws the invalid index error of the location
+	 */
+	private static int checkIndex(int index, int capacity, VarArrayLocation location) {
+		if (index < 0 || index >= capacity) {
+			throw new ClosureException(location.getInvalidIndexError(index));
+		}
+		return index;
+	}
+
+	/**
+	 * Take the slots for the given declaration in the current frame
+	 */
+	private int allocate(DeclarationIdentifier decl) {
+		int size = decl.isArrayDeclarationId()?decl.getCapacity():1;
+		int slot;
+		if (decl.getType().equals(Type.FLOAT)) {
+			slot = floatSlots;
+			floatSlots += size;
+		} else {
+			slot = intSlots;
+			intSlots += size;
+		}
+		return slot;
+	}
+
+	/**
+	 * Get the slot of the given declaration
+	 */
+	private int slot(DeclarationIdentifier decl) {
+		Integer slot = localSlots.get(decl);
+		if (slot == null) {
+			slot = globalSlots.get(decl);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns true if the declaration is a field of a class
+	 */
+	private boolean isGlobal(DeclarationIdentifier decl) {
+		return !localSlots.containsKey(decl);
+	}
+
+	/**
+	 * Returns true if the expression is a variable of the current method
+	 */
+	private boolean isLocalVariable(Expression expression) {
+		return (expression instanceof VarLocation) && !isGlobal(((VarLocation)expression).getDeclaration());
+	}
+
+}
@@ -1,3 +1,5 @@
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Stack;
@@ -15,6 +17,10 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	private int offset;
 	private Stack<Label> inLabels;
 	private Stack<Label> outLabels;
+	private MethodDeclaration method;						// Method whose code is being generated
+	private LinkedList<DeclarationIdentifier> locals;		// Local variables of the method
+	private Label entryLabel;								// Label of the start of the method, for the tail calls to itself
+	private IdentityHashMap<MethodDeclaration,String> methodLabels;	// Labels of the methods qualified by their class
 
 	/**
 	 * Constructor
@@ -26,6 +32,8 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		offset = 0;
 		inLabels = new Stack<Label>();
 		outLabels = new Stack<Label>();
+		locals = new LinkedList<DeclarationIdentifier>();
+		methodLabels = new IdentityHashMap<MethodDeclaration,String>();
 	}
 
 	/**
@@ -37,6 +45,15 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		return tempName;
 	}
 
+	/**
+	 * Get the label of the given method, that is its name unless it is
+	 * qualified by its class
+	 */
+	private String getLabel(MethodDeclaration decl) {
+		String label = methodLabels.get(decl);
+		return label != null ? label : decl.getId();
+	}
+
 	/**
 	 * Get the amount of statements
 	 */
@@ -60,9 +77,26 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	}
 
 	/**
-	 * Visit a program accepting each class
+	 * Visit a program accepting each class. A method whose name is declared by
+	 * more than one class is labelled with the name of its class, except the
+	 * main method and the extern methods, so each label names only one method.
 	 */
 	public Location visit(Program p) {
+		HashMap<String,Integer> declarations = new HashMap<String,Integer>();
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				Integer previous = declarations.get(methodDeclaration.getId());
+				declarations.put(methodDeclaration.getId(),previous == null ? 1 : previous+1);
+			}
+		}
+		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+			for (MethodDeclaration methodDeclaration : classDeclaration.getMethodDeclarations()) {
+				boolean isMain = methodDeclaration.getId().equals("main") && methodDeclaration.getArguments().isEmpty();
+				if (declarations.get(methodDeclaration.getId()) > 1 && !methodDeclaration.isExtern() && !isMain) {
+					methodLabels.put(methodDeclaration,classDeclaration.getId() + "." + methodDeclaration.getId());
+				}
+			}
+		}
 		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
 			classDeclaration.accept(this);
 		}
@@ -103,16 +137,22 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	
 			// The method is not extern
 			// Create the instruction for init the label
-			VarLocation methodLocation = new VarLocation(decl.getId(),decl.getLineNumber(),decl.getColumnNumber());
+			VarLocation methodLocation = new VarLocation(getLabel(decl),decl.getLineNumber(),decl.getColumnNumber());
 			IntermediateCodeStatement initMLICStmt = new OneAddressStatement(IntermediateCodeInstruction.INITML,new Label(statementsCounter),methodLocation);
 			intermediateCodeStatements.add(initMLICStmt);
 			statementsCounter++;
 
-			// Set offset for each argument
+			// Set offset for each argument and create the instruction that
+			// declares it as a parameter of the method
 			int argumentOffset = 8;
 			for (Argument arg : decl.getArguments()) {
 				arg.getDeclaration().setOffset(argumentOffset);
 				argumentOffset += 4;
+				VarLocation argumentLocation = new VarLocation(arg.getDeclaration().getId(),arg.getLineNumber(),arg.getColumnNumber());
+				argumentLocation.setDeclaration(arg.getDeclaration());
+				IntermediateCodeStatement paramICStmt = new OneAddressStatement(IntermediateCodeInstruction.PARAM,new Label(statementsCounter),argumentLocation);
+				intermediateCodeStatements.add(paramICStmt);
+				statementsCounter++;
 			}
 
 			// Create the instruction for reserve space for local and temporal variables
@@ -121,15 +161,23 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 			IntermediateCodeStatement reserveICStmt = new OneAddressStatement(IntermediateCodeInstruction.RESERVE,new Label(statementsCounter),temporalLocation);
 			intermediateCodeStatements.add(reserveICStmt);
 			statementsCounter++;
-
-			int currentTemporalAmount = temporalVarsCounter;
+			int entryPosition = intermediateCodeStatements.size();
 
 			// Accept the block
+			method = decl;
+			locals.clear();
+			entryLabel = null;
 			decl.getBlock().accept(this);
 
-			// Set the correct number of local and temporal for reserve space
-			IntLiteral amount = new IntLiteral(decl.getAmountOfFieldDeclarations()
-				+ (temporalVarsCounter - currentTemporalAmount));
+			if (entryLabel != null) {
+				// The tail calls of the method to itself jump to the start of the
+				// method, where the local variables take their default values again
+				intermediateCodeStatements.addAll(entryPosition,generateEntry());
+			}
+
+			// Set the correct number of local and temporal for reserve space, including
+			// the declarations of the inner blocks
+			IntLiteral amount = new IntLiteral(-offset / 4);
 			DeclarationIdentifier declIdentifier = new DeclarationIdentifier("amount",decl.getLineNumber(),decl.getColumnNumber());
 			declIdentifier.setType(Type.INT);
 			temporalLocation.setDeclaration(declIdentifier);
@@ -174,6 +222,7 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 				// The declaration is a variable
 				ident.setOffset(getNextOffset());
 			}
+			locals.add(ident);
 			return null;
 		}
 		
@@ -296,7 +345,12 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	public Location visit(ReturnStatement stmt) {
 		IntermediateCodeStatement returnICStmt;
 		Location temporalLocation;
-		if (stmt.hasExpression()) {
+		if (stmt.hasExpression() && stmt.getExpression() instanceof MethodCall
+				&& ((MethodCall)stmt.getExpression()).getDeclaration() == method) {
+			// The method returns the result of a call to itself, so the call is
+			// replaced by the assignment of the parameters and a jump to the start
+			return generateTailCall((MethodCall)stmt.getExpression());
+		} else if (stmt.hasExpression()) {
 			// The return statement has an expression
 			Location temporalLocationExpr =  stmt.getExpression().accept(this);
 			Expression exprLocation;
@@ -319,27 +373,132 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	}
 
 	/**
-	 * Visit an if statement accepting the expression and the blocks
+	 * Generate a tail call of the current method to itself. Every argument is
+	 * evaluated before the parameters are assigned, since the arguments can read
+	 * the parameters.
 	 */
-	public Location visit(IfStatement stmt) {
+	private Location generateTailCall(MethodCall call) {
+		LinkedList<Expression> values = new LinkedList<Expression>();
+		for (Expression argument : call.getArguments()) {
+			if (argument instanceof Literal) {
+				values.add(argument);
+				continue;
+			}
+			Location argumentLocation = argument.accept(this);
+			DeclarationIdentifier argumentDecl = argumentLocation.getDeclaration();
+			if (argumentLocation instanceof VarLocation && (argumentDecl.isGlobal() || !isParameter(argumentDecl))) {
+				// The value does not change when the parameters are assigned
+				values.add(argumentLocation);
+				continue;
+			}
+			String tempVarName = getTempVarName();
+			VarLocation temporalLocation = new VarLocation(tempVarName,call.getLineNumber(),call.getColumnNumber());
+			DeclarationIdentifier declIdentifier = new DeclarationIdentifier(tempVarName,call.getLineNumber(),call.getColumnNumber());
+			declIdentifier.setOffset(getNextOffset());
+			declIdentifier.setType(argumentDecl.getType());
+			temporalLocation.setDeclaration(declIdentifier);
+			intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),argumentLocation,temporalLocation));
+			statementsCounter++;
+			values.add(temporalLocation);
+		}
+		for (int i = 0; i < values.size(); i++) {
+			DeclarationIdentifier parameter = method.getArguments().get(i).getDeclaration();
+			VarLocation parameterLocation = new VarLocation(parameter.getId(),call.getLineNumber(),call.getColumnNumber());
+			parameterLocation.setDeclaration(parameter);
+			intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),values.get(i),parameterLocation));
+			statementsCounter++;
+		}
+		if (entryLabel == null) {
+			entryLabel = new Label(amountOfStatements());
+			statementsCounter++;
+		}
+		IntermediateCodeStatement jumpICStmt = new OneAddressStatement(IntermediateCodeInstruction.JUMP,new Label(statementsCounter),new Label(entryLabel.getNumber()));
+		intermediateCodeStatements.add(jumpICStmt);
+		statementsCounter++;
+		return null;
+	}
 
-		Location temporalLocation = stmt.getCondition().accept(this);
-		Expression locationExpression;
-		if (temporalLocation == null ) {
-			locationExpression = stmt.getCondition();
-		} else {
-			locationExpression = temporalLocation;
+	/**
+	 * Returns true if the given declaration is a parameter of the current method
+	 */
+	private boolean isParameter(DeclarationIdentifier decl) {
+		for (Argument argument : method.getArguments()) {
+			if (argument.getDeclaration() == decl) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		int beforeBlockAmountOfStatements = amountOfStatements();
-		
-		// Add the jump instruction. Later will be modificated with the correct 
-		// label to jump
-		Label label = new Label(beforeBlockAmountOfStatements);
+	/**
+	 * Generate the start of the current method, where the tail calls jump to
+	 * assign the default values to the local variables again. A new call skips
+	 * the assignments, since its frame already starts in zero. The statements
+	 * are generated at the end of the list and then moved out of it.
+	 */
+	private List<IntermediateCodeStatement> generateEntry() {
+		int entryPosition = intermediateCodeStatements.size();
+		Label startLabel = new Label(0);
+		if (!locals.isEmpty()) {
+			intermediateCodeStatements.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,new Label(statementsCounter),startLabel));
+			statementsCounter++;
+		}
+		intermediateCodeStatements.add(new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(entryLabel.getNumber()),new Label(entryLabel.getNumber())));
+		for (DeclarationIdentifier local : locals) {
+			if (local.isArrayDeclarationId()) {
+				generateArrayReset(local);
+			} else {
+				VarLocation localLocation = new VarLocation(local.getId(),local.getLineNumber(),local.getColumnNumber());
+				localLocation.setDeclaration(local);
+				intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),local.getType().getDefaultValue(),localLocation));
+				statementsCounter++;
+			}
+		}
+		if (!locals.isEmpty()) {
+			generateLabel(startLabel);
+		}
+		List<IntermediateCodeStatement> generated = intermediateCodeStatements.subList(entryPosition,intermediateCodeStatements.size());
+		LinkedList<IntermediateCodeStatement> entry = new LinkedList<IntermediateCodeStatement>(generated);
+		generated.clear();
+		return entry;
+	}
+
+	/**
+	 * Generate a cycle that assigns the default value to each element of the
+	 * given local array, so the code does not grow with its capacity
+	 */
+	private void generateArrayReset(DeclarationIdentifier array) {
+		VarLocation index = newTemporalLocation(new IntLiteral(0));
+		intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),new IntLiteral(0),index));
+		statementsCounter++;
+
+		Label cycleLabel = new Label(0);
+		generateLabel(cycleLabel);
+		Label afterCycleLabel = new Label(0);
+		Expression condition = new BinOpExpr(index,BinOpType.LE,new IntLiteral(array.getCapacity()),array.getLineNumber(),array.getColumnNumber());
+		condition.setType(Type.BOOLEAN);
+		generateJumpF(condition,afterCycleLabel);
+
+		VarArrayLocation element = new VarArrayLocation(array.getId(),index,array.getLineNumber(),array.getColumnNumber());
+		element.setDeclaration(array);
+		intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),array.getType().getDefaultValue(),element));
+		statementsCounter++;
+		intermediateCodeStatements.add(new ThreeAddressStatement(IntermediateCodeInstruction.ADDI,new Label(statementsCounter),index,new IntLiteral(1),index));
+		statementsCounter++;
+		intermediateCodeStatements.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,new Label(statementsCounter),new Label(cycleLabel.getNumber())));
+		statementsCounter++;
+		generateLabel(afterCycleLabel);
+	}
+
+	/**
+	 * Visit an if statement accepting the expression and the blocks
+	 */
+	public Location visit(IfStatement stmt) {
+
+		// Add the jumps for the false condition. Later will be modificated with
+		// the correct label to jump
 		Label labelToJump = new Label(0);
-		IntermediateCodeStatement jumpFICStmt = new OneAddressStatement(IntermediateCodeInstruction.JUMPF,label,locationExpression,labelToJump);
-		intermediateCodeStatements.add(jumpFICStmt);
-		statementsCounter++; 
+		generateJumpF(stmt.getCondition(),labelToJump);
 
 		// Accept the if block
 		stmt.getIfBlock().accept(this);
@@ -354,10 +513,10 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 			statementsCounter++; 
 
 			// Set the correct label number to jump
-			labelToJump.setNumber(amountOfStatements()+1);
+			labelToJump.setNumber(amountOfStatements());
 
 			// Add a label instruction
-			IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()+1));
+			IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()));
 			intermediateCodeStatements.add(labelICStmt);
 			statementsCounter++;
 
@@ -373,11 +532,10 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		} else {
 
 			// Add a label instruction and set the correct label number to jump
-			IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()+1));
+			labelToJump.setNumber(amountOfStatements());
+			IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()));
 			intermediateCodeStatements.add(labelICStmt);
 			statementsCounter++; 
-
-			labelToJump.setNumber(amountOfStatements());
 		} 
 		return null;
 	}	
@@ -389,18 +547,32 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		
 		VarLocation temporalLocation = (VarLocation)stmt.getInitialAssign().accept(this);
 
+		// The limit of the cycle is evaluated only once, before the first
+		// comparation, so it is stored in a temporal location unless it is a literal
+		Expression limit = stmt.getConditionExpression();
+		if (!(limit instanceof IntLiteral)) {
+			Location limitLocation = limit.accept(this);
+			VarLocation limitTemporalLocation = newTemporalLocation(limit);
+			IntermediateCodeStatement limitICStmt = new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),limitLocation!=null?limitLocation:limit,limitTemporalLocation);
+			intermediateCodeStatements.add(limitICStmt);
+			statementsCounter++;
+			limit = limitTemporalLocation;
+		}
+
 		// Add a label instruction 
-		IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()+1));
+		Label toJumpAfterBlock = new Label(amountOfStatements()); 
+		IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()));
 		intermediateCodeStatements.add(labelICStmt);
 		statementsCounter++;
 
-		int beforeEvaluateExpression = amountOfStatements();
-		Label toJumpAfterBlock = new Label(beforeEvaluateExpression); 
-		inLabels.push(toJumpAfterBlock);
+		// The continue statements must jump to the increment of the cycle variable.
+		// Later will be modificated with the correct label to jump
+		Label toJumpIncrement = new Label(0);
+		inLabels.push(toJumpIncrement);
 
 		// Create an expression for compare if the location of
 		// initial variable is less or equal than the expression
-		Expression comparationExpression = new BinOpExpr(temporalLocation,BinOpType.LEQ,stmt.getConditionExpression(),0,0);
+		Expression comparationExpression = new BinOpExpr(temporalLocation,BinOpType.LEQ,limit,0,0);
 		comparationExpression.setType(Type.BOOLEAN);
 		VarLocation temporalLocation2 = (VarLocation)comparationExpression.accept(this);
 
@@ -416,6 +588,12 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		//int beforeBlockAmountOfStatements = amountOfStatements();
 		stmt.getBlock().accept(this);
 
+		// Add a label instruction for the continue statements
+		toJumpIncrement.setNumber(amountOfStatements());
+		IntermediateCodeStatement incrementLabelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()));
+		intermediateCodeStatements.add(incrementLabelICStmt);
+		statementsCounter++;
+
 		// Increment the cycle variable
 		Label l = new Label(amountOfStatements());
 		IntermediateCodeStatement addICStmt = new ThreeAddressStatement(IntermediateCodeInstruction.ADDI,l,temporalLocation,new IntLiteral(1),temporalLocation);
@@ -429,11 +607,11 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		statementsCounter++; 
 
 		// Add a label instruction and set the correct label number to jump
-		IntermediateCodeStatement labelICStmt2 = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()+1));
+		labelToJump.setNumber(amountOfStatements()); 
+		IntermediateCodeStatement labelICStmt2 = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()));
 		intermediateCodeStatements.add(labelICStmt2);
 		statementsCounter++;
 
-		labelToJump.setNumber(amountOfStatements()); 
 		/*if (!outLabels.isEmpty()) {
 			outLabels.pop();
 		}*/
@@ -455,25 +633,11 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 		Label conditionEvalLabel = new Label(0);
 		inLabels.push(conditionEvalLabel);
 
-		Location temporalLocation = stmt.getCondition().accept(this);
-		Expression locationExpression;
-		if (temporalLocation == null ) {
-			locationExpression = stmt.getCondition();
-		} else {
-			locationExpression = temporalLocation;
-		}
-
-		int amountOfStatementsAfterConditionEval = amountOfStatements();
-
-		// Add the jump instruction in the case that the expression
-		// result was false. Later will be modificated with the correct 
-		// label to jump
-		Label label = new Label(amountOfStatements());
+		// Add the jumps in the case that the expression result was false.
+		// Later will be modificated with the correct label to jump
 		Label labelToJump = new Label(0);
 		outLabels.push(labelToJump);
-		IntermediateCodeStatement jumpFICStmt = new OneAddressStatement(IntermediateCodeInstruction.JUMPF,label,locationExpression,labelToJump);
-		intermediateCodeStatements.add(jumpFICStmt);
-		statementsCounter++;
+		generateJumpF(stmt.getCondition(),labelToJump);
 
 		// Accept the block
 		stmt.getBlock().accept(this);
@@ -481,8 +645,7 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 
 		// After the block, jump to the condition evaluation label
 		Label afterBlockLabel = new Label(amountOfStatements());
-		//Label conditionEvalLabel = new Label(label.getNumber()-(amountOfStatementsAfterConditionEval-amountOfStatementsBeforeConditionEval));
-		conditionEvalLabel.setNumber(label.getNumber()-(amountOfStatementsAfterConditionEval-amountOfStatementsBeforeConditionEval));
+		conditionEvalLabel.setNumber(amountOfStatementsBeforeConditionEval);
 		IntermediateCodeStatement jumpICStmt = new OneAddressStatement(IntermediateCodeInstruction.JUMP,afterBlockLabel,conditionEvalLabel);
 		intermediateCodeStatements.add(jumpICStmt);
 		statementsCounter++;
@@ -523,9 +686,13 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	
 	/**
 	 * Visit a binary expression accepting the left and right operands and calculating
-	 * the value
+	 * the value. The && and || operators are generated with jumps, so the right
+	 * operand is only evaluated when the left one does not decide the value.
 	 */
 	public Location visit(BinOpExpr expr) {
+		if (expr.getOperator() == BinOpType.AND || expr.getOperator() == BinOpType.OR) {
+			return generateConditional(expr);
+		}
 		IntermediateCodeStatement exprICStmt;
 		IntermediateCodeInstruction instruction = getInstruction(expr.getOperator(),expr.getType());
 		Location leftExpressionLocation = expr.getLeftOperand().accept(this);
@@ -546,17 +713,91 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 			// The right expression result was stored in a temporal location
 			rightExpression = rightExpressionLocation;
 		}
+		VarLocation temporalLocation = newTemporalLocation(expr);
+		
+		exprICStmt = new ThreeAddressStatement(instruction,new Label(statementsCounter),leftExpression,rightExpression,temporalLocation);
+		intermediateCodeStatements.add(exprICStmt);
+		statementsCounter++;
+
+		return temporalLocation;
+	}
+
+	/**
+	 * Generate the value of a && or || expression in a temporal location, assigning
+	 * true or false after the jumps of the condition
+	 */
+	private Location generateConditional(BinOpExpr expr) {
+		VarLocation temporalLocation = newTemporalLocation(expr);
+		Label falseLabel = new Label(0);
+		Label endLabel = new Label(0);
+		generateJumpF(expr,falseLabel);
+		intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),new BooleanLiteral(true),temporalLocation));
+		statementsCounter++;
+		intermediateCodeStatements.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,new Label(statementsCounter),endLabel));
+		statementsCounter++;
+		generateLabel(falseLabel);
+		VarLocation falseLocation = new VarLocation(temporalLocation.getId(),expr.getLineNumber(),expr.getColumnNumber());
+		falseLocation.setDeclaration(temporalLocation.getDeclaration());
+		intermediateCodeStatements.add(new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),new BooleanLiteral(false),falseLocation));
+		statementsCounter++;
+		generateLabel(endLabel);
+		return temporalLocation;
+	}
+
+	/**
+	 * Generate the jumps to the given label when the condition is false. The right
+	 * operand of a && is only evaluated when the left one is true, and the one of
+	 * a || when the left one is false.
+	 */
+	private void generateJumpF(Expression condition, Label labelToJump) {
+		if (condition instanceof NullaryExpr) {
+			generateJumpF(((NullaryExpr)condition).getExpression(),labelToJump);
+			return;
+		}
+		if (condition instanceof BinOpExpr && ((BinOpExpr)condition).getOperator() == BinOpType.AND) {
+			generateJumpF(((BinOpExpr)condition).getLeftOperand(),labelToJump);
+			generateJumpF(((BinOpExpr)condition).getRightOperand(),labelToJump);
+			return;
+		}
+		if (condition instanceof BinOpExpr && ((BinOpExpr)condition).getOperator() == BinOpType.OR) {
+			// When the left operand is true the condition is true
+			Label rightLabel = new Label(0);
+			Label trueLabel = new Label(0);
+			generateJumpF(((BinOpExpr)condition).getLeftOperand(),rightLabel);
+			intermediateCodeStatements.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,new Label(statementsCounter),trueLabel));
+			statementsCounter++;
+			generateLabel(rightLabel);
+			generateJumpF(((BinOpExpr)condition).getRightOperand(),labelToJump);
+			generateLabel(trueLabel);
+			return;
+		}
+		Location temporalLocation = condition.accept(this);
+		Expression locationExpression = temporalLocation == null ? condition : temporalLocation;
+		IntermediateCodeStatement jumpFICStmt = new OneAddressStatement(IntermediateCodeInstruction.JUMPF,new Label(statementsCounter),locationExpression,labelToJump);
+		intermediateCodeStatements.add(jumpFICStmt);
+		statementsCounter++;
+	}
+
+	/**
+	 * Add a label instruction here, and set the given label to jump to it
+	 */
+	private void generateLabel(Label labelToJump) {
+		labelToJump.setNumber(amountOfStatements());
+		IntermediateCodeStatement labelICStmt = new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(amountOfStatements()),new Label(amountOfStatements()));
+		intermediateCodeStatements.add(labelICStmt);
+		statementsCounter++;
+	}
+
+	/**
+	 * Create a new temporal location for the value of the given expression
+	 */
+	private VarLocation newTemporalLocation(Expression expr) {
 		String tempVarName = getTempVarName();
 		VarLocation temporalLocation = new VarLocation(tempVarName,expr.getLineNumber(),expr.getColumnNumber());
 		DeclarationIdentifier declIdentifier = new DeclarationIdentifier(tempVarName,expr.getLineNumber(),expr.getColumnNumber());
 		declIdentifier.setOffset(getNextOffset());
 		temporalLocation.setDeclaration(declIdentifier);
 		temporalLocation.getDeclaration().setType(expr.getType());
-		
-		exprICStmt = new ThreeAddressStatement(instruction,new Label(statementsCounter),leftExpression,rightExpression,temporalLocation);
-		intermediateCodeStatements.add(exprICStmt);
-		statementsCounter++;
-
 		return temporalLocation;
 	}
 
@@ -617,7 +858,7 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	public Location visit(UnaryOpExpr expr) {
 		IntermediateCodeStatement exprICStmt;
 		IntermediateCodeInstruction instruction = getInstruction(expr.getOperator(),expr.getType());
-		VarLocation expressionLocation = (VarLocation)expr.getOperand().accept(this);
+		Location expressionLocation = expr.getOperand().accept(this);
 		String tempVarName = getTempVarName();
 		VarLocation temporalLocation = new VarLocation(tempVarName,expr.getLineNumber(),expr.getColumnNumber());
 		DeclarationIdentifier declIdentifier = new DeclarationIdentifier(tempVarName,expr.getLineNumber(),expr.getColumnNumber());
@@ -663,6 +904,7 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 			temporalLocation = new VarLocation(tempVarName,expr.getLineNumber(),expr.getColumnNumber());
 			DeclarationIdentifier declIdentifier = new DeclarationIdentifier(tempVarName,expr.getLineNumber(),expr.getColumnNumber());
 			declIdentifier.setOffset(getNextOffset());
+			declIdentifier.setType(expr.getExpression().getType());
 			temporalLocation.setDeclaration(declIdentifier);
 			
 			IntermediateCodeStatement assignICStmt = new TwoAddressStatement(IntermediateCodeInstruction.ASSIGN,new Label(statementsCounter),expr.getExpression(),temporalLocation);
@@ -739,7 +981,7 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 			statementsCounter++;
 		}
 
-		VarLocation methodLocation = new VarLocation(call.getDeclaration().getId(),call.getLineNumber(),call.getColumnNumber());
+		VarLocation methodLocation = new VarLocation(getLabel(call.getDeclaration()),call.getLineNumber(),call.getColumnNumber());
 
 		if (call.getDeclaration().getType().equals(Type.VOID)) {
 			// The method type is void
@@ -756,6 +998,7 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 			temporalLocation = new VarLocation(tempVarName,call.getLineNumber(),call.getColumnNumber());
 			DeclarationIdentifier declIdentifier = new DeclarationIdentifier(tempVarName,call.getLineNumber(),call.getColumnNumber());
 			declIdentifier.setOffset(getNextOffset());
+			declIdentifier.setType(call.getDeclaration().getType());
 			temporalLocation.setDeclaration(declIdentifier);
 			IntermediateCodeStatement callICStmt = new TwoAddressStatement(IntermediateCodeInstruction.CALL,new Label(statementsCounter),methodLocation,temporalLocation);
 			intermediateCodeStatements.add(callICStmt);
@@ -788,9 +1031,20 @@ public class IntermediateCodeGeneratorVisitor implements ASTVisitor<Location> {
 	}
 	
 	/**
-	 * Visit a print statement
+	 * Visit a print statement accepting the expression
 	 */
 	public Location visit(PrintStatement p) {
+		Location temporalLocation = p.getExpression().accept(this);
+		IntermediateCodeStatement printICStmt;
+		if (temporalLocation!=null) {
+			// The expression result was stored in a temporal location
+			printICStmt = new OneAddressStatement(IntermediateCodeInstruction.PRINT,new Label(statementsCounter),temporalLocation);
+		} else {
+			// The expression alone does not need a temporal location
+			printICStmt = new OneAddressStatement(IntermediateCodeInstruction.PRINT,new Label(statementsCounter),p.getExpression());
+		}
+		intermediateCodeStatements.add(printICStmt);
+		statementsCounter++;
 		return null;
 	}
 	
@@ -0,0 +1,18 @@
+/**
+ * This class represents an error found while the interpreter visitor executes
+ * the program. The exception does not fill the stack trace, so signalling an
+ * error only costs the creation of the message.
+ * @author Facundo Molina
+ */
+public class InterpreterException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 */
+	public InterpreterException(String error) {
+		super(error,null,false,false);
+	}
+
+}
@@ -0,0 +1,68 @@
+import java.util.Arrays;
+
+/**
+ * This class represents an activation frame of the interpreter. Each variable
+ * takes the slots assigned by the CheckDeclarationVisitor in the array of its
+ * type. The arrays take consecutive slots. The frames are reused between
+ * calls, so the arrays can be bigger than the frame of the current method.
+ * @author Facundo Molina
+ */
+public class InterpreterFrame {
+
+	private int[] ints;				// Int slots
+	private float[] floats;			// Float slots
+	private boolean[] booleans;		// Boolean slots
+
+	/**
+	 * Constructor with the amount of slots of each type
+	 */
+	public InterpreterFrame(int intSlots, int floatSlots, int booleanSlots) {
+		ints = new int[intSlots];
+		floats = new float[floatSlots];
+		booleans = new boolean[booleanSlots];
+	}
+
+	/**
+	 * Get the int slots
+	 */
+	public int[] getInts() {
+		return ints;
+	}
+
+	/**
+	 * Get the float slots
+	 */
+	public float[] getFloats() {
+		return floats;
+	}
+
+	/**
+	 * Get the boolean slots
+	 */
+	public boolean[] getBooleans() {
+		return booleans;
+	}
+
+	/**
+	 * Prepare the frame for a new call with the given amount of slots of
+	 * each type. The slots start with the default values.
+	 */
+	public void reset(int intSlots, int floatSlots, int booleanSlots) {
+		if (ints.length < intSlots) {
+			ints = new int[intSlots];
+		} else {
+			Arrays.fill(ints,0,intSlots,0);
+		}
+		if (floats.length < floatSlots) {
+			floats = new float[floatSlots];
+		} else {
+			Arrays.fill(floats,0,floatSlots,0.0f);
+		}
+		if (booleans.length < booleanSlots) {
+			booleans = new boolean[booleanSlots];
+		} else {
+			Arrays.fill(booleans,0,booleanSlots,false);
+		}
+	}
+
+}
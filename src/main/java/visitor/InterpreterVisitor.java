@@ -1,27 +1,87 @@
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
- * This class represents the interpreter visitor for evaluate the CTds program
+ * This class represents the interpreter visitor for evaluate the CTds program.
+ * The variables are stored in the slots of activation frames and the value of
+ * the last evaluated expression is kept in primitive fields, so the evaluation
+ * does not create literals. The frames of the call stack are created once for
+ * each depth and reused by the following calls. The visits of the nodes return
+ * nothing, the errors of the execution are thrown as InterpreterException and
+ * collected by the visit of the program. With a tiered compiler the calls and
+ * the cycle iterations of each method are counted, and the hot methods are
+ * executed compiled to JVM bytecode. A return of the result of a call is a tail
+ * call: the frame of the called method takes the place of the frame of the
+ * current method, so a chain of tail calls runs at the same depth.
  * @author Facundo Molina
  */
 public class InterpreterVisitor implements ASTVisitor<List<String>> {
 
+	private static final int default_max_depth = 10000;	// Default maximum amount of nested calls
+
+	private static final int normal_flow = 0;		// Continue with the next statement
+	private static final int break_flow = 1;		// A break statement was executed
+	private static final int continue_flow = 2;		// A continue statement was executed
+	private static final int return_flow = 3;		// A return statement was executed
+
 	private LinkedList<String> errorsList;			// Errors
+	private InterpreterFrame globals;				// Frame of the class fields
+	private InterpreterFrame frame;					// Frame of the current method
+	private InterpreterFrame[] callStack;			// Frames of each depth of the call stack
+	private int depth;								// Depth of the current method in the call stack
+	private int maxDepth;							// Maximum amount of nested calls
+	private int flow;								// How the execution continues after a statement
+	private JvmTieredCompiler tieredCompiler;		// Compiler of the hot methods, null if all are interpreted
+	private JvmMethodProfile profile;				// Profile of the current method
+	private MethodDeclaration tailCall;				// Method called by the return of the current method, or null
+
+	private int intValue;							// Value of the last int expression
+	private float floatValue;						// Value of the last float expression
+	private boolean booleanValue;					// Value of the last boolean expression
+	private int returnIntValue;						// Int value returned
+	private float returnFloatValue;					// Float value returned
+	private boolean returnBooleanValue;				// Boolean value returned
 
 	/**
 	 * Constructor
 	 */
 	public InterpreterVisitor() {
+		this(default_max_depth);
+	}
+
+	/**
+	 * Constructor with a given maximum amount of nested calls
+	 */
+	public InterpreterVisitor(int maxDepth) {
+		this(maxDepth,null);
+	}
+
+	/**
+	 * Constructor with a given maximum amount of nested calls and the compiler
+	 * of the hot methods
+	 */
+	public InterpreterVisitor(int maxDepth, JvmTieredCompiler tieredCompiler) {
 		errorsList = new LinkedList<String>();
+		this.maxDepth = maxDepth;
+		this.tieredCompiler = tieredCompiler;
 	}
 
 	/**
 	 * Visit a program accepting each class
 	 */
 	public List<String> visit(Program p) {
-		for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
-			errorsList.addAll(classDeclaration.accept(this));
+		globals = new InterpreterFrame(p.getIntSlots(),p.getFloatSlots(),p.getBooleanSlots());
+		callStack = new InterpreterFrame[16];
+		depth = 0;
+		flow = normal_flow;
+		try {
+			for (ClassDeclaration classDeclaration : p.getClassDeclarations()) {
+				classDeclaration.accept(this);
+			}
+		} catch (InterpreterException e) {
+			// The execution stops at the first error
+			errorsList.add(e.getMessage());
 		}
 		return errorsList;
 	}
@@ -30,109 +90,99 @@ public class InterpreterVisitor implements ASTVisitor<List<String>> {
 	 * Visit a class declaration accepting each method
 	 */
 	public List<String> visit(ClassDeclaration decl) {
-	 	LinkedList<String> classErrors = new LinkedList<String>();
 		for (MethodDeclaration methodDeclaration : decl.getMethodDeclarations()) {
-			classErrors.addAll(methodDeclaration.accept(this));
+			methodDeclaration.accept(this);
 		}
-		return classErrors;
+		return null;
 	}
 
 	/**
-	 * Visit a field declaration 
+	 * Visit a field declaration
 	 */
 	public List<String> visit(FieldDeclaration decl) {
-		return new LinkedList<String>();
+		return null;
 	}
 
 	/**
 	 * Visit a method declaration, accepting the block only if the method
-	 * is the main method 
+	 * is the main method
 	 */
 	public List<String> visit(MethodDeclaration decl) {
-		LinkedList<String> methodErrors = new LinkedList<String>();
 		if (decl.getId().equals("main")) {
-		 	methodErrors.addAll(decl.getBlock().accept(this));
+			frame = getFrame(0);
+			frame.reset(decl.getIntSlots(),decl.getFloatSlots(),decl.getBooleanSlots());
+			if (tieredCompiler != null) {
+				profile = tieredCompiler.getProfile(decl);
+			}
+		 	decl.getBlock().accept(this);
 		}
-		return methodErrors;
+		return null;
  	}
 
 	/**
 	 * Visit an argument
 	 */
 	public List<String> visit(Argument arg) {
-		return new LinkedList<String>();
+		return null;
 	}
 
 	/**
 	 * Visit a declaration identifier
 	 */
 	public List<String> visit(DeclarationIdentifier ident) {
-		return new LinkedList<String>();
+		return null;
 	}
- 	
+
 	/**
-	 * Visit an assign statement accepting the location and the expression
+	 * Visit an assign statement accepting the expression and the location and
+	 * storing the value in the slot of the location
 	 */
 	public List<String> visit(AssignStatement stmt) {
-		LinkedList<String> assignErrors = new LinkedList<String>();
 		Location location = stmt.getLocation();
-		Expression expression = stmt.getExpression();
-		assignErrors.addAll(expression.accept(this));
-		if (assignErrors.size()==0) {
-			// The expression is correct
-			if (location.getDeclaration().isArrayDeclarationId()) {
-				// The location is an array
-				assignErrors.addAll(location.accept(this));
-				if (assignErrors.size()==0) {
-					// There are no errors in the array location
-					VarArrayLocation arrayLocation = (VarArrayLocation)location;
-					Expression locationExpression = arrayLocation.getExpression();
-					IntLiteral position = (IntLiteral)locationExpression.getValue();
-					location.getDeclaration().setValue(position.getIntegerValue(),expression.getValue());
-				}
-			} else {
-				// The location is a var
-				if (stmt.getOperator().equals(AssignOpType.INCREMENT) || stmt.getOperator().equals(AssignOpType.DECREMENT)) {
-					// The location must have initialized
-					assignErrors.addAll(location.accept(this));
-				}
-				if (assignErrors.size()==0) {
-					location.getDeclaration().setValue(evaluateAssign(location,stmt.getOperator(),expression));
-				}
-			}
-				
+		DeclarationIdentifier decl = location.getDeclaration();
+		stmt.getExpression().accept(this);
+		int value = intValue;
+		float fvalue = floatValue;
+		boolean bvalue = booleanValue;
+		int slot = decl.getSlot();
+		if (decl.isArrayDeclarationId()) {
+			// The location is an array
+			evaluateIndex((VarArrayLocation)location);
+			slot += intValue;
 		}
-		return assignErrors;
+		InterpreterFrame f = decl.isGlobal()?globals:frame;
+		if (decl.getType().equals(Type.FLOAT)) {
+			f.getFloats()[slot] = evaluateAssign(stmt.getOperator(),f.getFloats()[slot],fvalue);
+		} else if (decl.getType().equals(Type.BOOLEAN)) {
+			f.getBooleans()[slot] = bvalue;
+		} else {
+			f.getInts()[slot] = evaluateAssign(stmt.getOperator(),f.getInts()[slot],value);
+		}
+		return null;
 	}
 
 	/**
-	 * Evaluate assign 
+	 * Evaluate an int assign
 	 */
-	private Literal evaluateAssign(Location l,AssignOpType op,Expression e) {
-		Literal locationValue = l.getDeclaration().getValue();
+	private int evaluateAssign(AssignOpType op,int locationValue,int value) {
 		switch (op) {
-			case ASSIGN: return e.getValue();
-			case INCREMENT: 
-				if (locationValue instanceof IntLiteral) {
-					Integer n = ((IntLiteral)locationValue).getIntegerValue()+((IntLiteral)e.getValue()).getIntegerValue();
-					return new IntLiteral(n);
-				}
-				if (locationValue instanceof FloatLiteral) {
-					Float f = ((FloatLiteral)locationValue).getFloatValue()+((FloatLiteral)e.getValue()).getFloatValue();
-					return new FloatLiteral(f);
-				}
-			case DECREMENT:
-				if (locationValue instanceof IntLiteral) {
-					Integer n = ((IntLiteral)locationValue).getIntegerValue()-((IntLiteral)e.getValue()).getIntegerValue();
-					return new IntLiteral(n);
-				}
-				if (locationValue instanceof FloatLiteral) {
-					Float f = ((FloatLiteral)locationValue).getFloatValue()-((FloatLiteral)e.getValue()).getFloatValue();
-					return new FloatLiteral(f);
-				}
-			default: return null;
+			case INCREMENT: return locationValue + value;
+			case DECREMENT: return locationValue - value;
+			default: return value;
+		}
+	}
+
+	/**
+	 * Evaluate a float assign
+	 */
+	private float evaluateAssign(AssignOpType op,float locationValue,float value) {
+		switch (op) {
+			case INCREMENT: return locationValue + value;
+			case DECREMENT: return locationValue - value;
+			default: return value;
 		}
 	}
+
 	/**
 	 * Visit a method call statement
 	 */
@@ -141,19 +191,27 @@ public class InterpreterVisitor implements ASTVisitor<List<String>> {
 	}
 
 	/**
-	 * Visit a return statement accepting the return expression and
-	 * setting the value to the associated method 
+	 * Visit a return statement accepting the return expression,
+	 * keeping the returned value and leaving the method
 	 */
 	public List<String> visit(ReturnStatement stmt) {
-		LinkedList<String> returnErrors = new LinkedList<String>();
-		if (stmt.hasExpression()) {
-			returnErrors.addAll(stmt.getExpression().accept(this));
-			if (returnErrors.size()==0) {
-				// There are no errors in the return expression
-				stmt.getMethodDeclaration().setValue(stmt.getExpression().getValue());
-			}
+		if (stmt.hasExpression() && stmt.getExpression() instanceof MethodCall && depth > 0) {
+			// The called method is executed after leaving the current method,
+			// in the frame of the current method
+			MethodCall call = (MethodCall)stmt.getExpression();
+			InterpreterFrame callFrame = evaluateArguments(call);
+			callStack[depth] = callStack[depth-1];
+			callStack[depth-1] = callFrame;
+			depth--;
+			tailCall = call.getDeclaration();
+		} else if (stmt.hasExpression()) {
+			stmt.getExpression().accept(this);
+			returnIntValue = intValue;
+			returnFloatValue = floatValue;
+			returnBooleanValue = booleanValue;
 		}
-		return returnErrors;
+		flow = return_flow;
+		return null;
 	}
 
 	/**
@@ -161,220 +219,206 @@ public class InterpreterVisitor implements ASTVisitor<List<String>> {
 	 * the else block according to the expression value
 	 */
 	public List<String> visit(IfStatement stmt) {
-		LinkedList<String> ifStmtErrors = new LinkedList<String>();
-		Expression expression = stmt.getCondition();
-		ifStmtErrors.addAll(expression.accept(this));
-		if (ifStmtErrors.size()==0) {
-			// There are no errors in the expression
-			BooleanLiteral value = (BooleanLiteral)expression.getValue();
-			if (value.getBooleanValue()) {
-				// The expression value is true so accept the if block
-				ifStmtErrors.addAll(stmt.getIfBlock().accept(this));
-			} else {
-				// The expression value is false, so if the statement has else block 
-				// accept the else block
-				if (stmt.hasElseBlock()) {
-					ifStmtErrors.addAll(stmt.getElseBlock().accept(this));
-				}
+		stmt.getCondition().accept(this);
+		if (booleanValue) {
+			// The expression value is true so accept the if block
+			stmt.getIfBlock().accept(this);
+		} else {
+			// The expression value is false, so if the statement has else block
+			// accept the else block
+			if (stmt.hasElseBlock()) {
+				stmt.getElseBlock().accept(this);
 			}
 		}
-		return ifStmtErrors;
-	}	
+		return null;
+	}
 
 	/**
-	 * Visit a for statement accepting the block 
+	 * Visit a for statement accepting the block while the index is less or
+	 * equal than the condition
 	 */
 	public List<String> visit(ForStatement stmt) {
-		LinkedList<String> forStmtErrors = new LinkedList<String>();
 		AssignStatement initialAssign = stmt.getInitialAssign();
-		Expression condition = stmt.getConditionExpression();
-		forStmtErrors.addAll(initialAssign.accept(this));
-		forStmtErrors.addAll(condition.accept(this));
-		if (forStmtErrors.size()==0) {
-			// There are no errors in the expression
-			DeclarationIdentifier index = (DeclarationIdentifier)initialAssign.getLocation().getDeclaration();
-			IntLiteral indexValue = (IntLiteral)index.getValue();
-			IntLiteral conditionValue = (IntLiteral)condition.getValue();
-			while ( (indexValue.getIntegerValue()<conditionValue.getIntegerValue()) 
-					&& (forStmtErrors.size()==0)) {
-				// Accept the block while index value < condition 
-				forStmtErrors.addAll(stmt.getBlock().accept(this));
-				indexValue.setIntegerValue(indexValue.getIntegerValue()+1); 
+		initialAssign.accept(this);
+		stmt.getConditionExpression().accept(this);
+		DeclarationIdentifier index = initialAssign.getLocation().getDeclaration();
+		int[] indexSlots = index.isGlobal()?globals.getInts():frame.getInts();
+		int slot = index.getSlot();
+		int conditionValue = intValue;
+		while (indexSlots[slot]<=conditionValue) {
+			// Accept the block while index value <= condition
+			stmt.getBlock().accept(this);
+			if (leaveCycle()) {
+				break;
 			}
+			if (tieredCompiler != null) {
+				tieredCompiler.backEdge(profile);
+			}
+			indexSlots[slot]++;
 		}
-		return forStmtErrors;
+		return null;
 	}
 
 	/**
-	 * Visit a while statement 
+	 * Visit a while statement
 	 */
 	public List<String> visit(WhileStatement stmt){
-		LinkedList<String> whileStmtErrors = new LinkedList<String>();
 		Expression condition = stmt.getCondition();
-		whileStmtErrors.addAll(condition.accept(this));
-		if (whileStmtErrors.size()==0) {
-			// There are no errors in the condition expression
-			while (((BooleanLiteral)condition.getValue()).getBooleanValue()
-					&& (whileStmtErrors.size()==0)) {
-				// Accept the block while the condition be true
-				whileStmtErrors.addAll(stmt.getBlock().accept(this));
-				whileStmtErrors.addAll(condition.accept(this));
+		condition.accept(this);
+		while (booleanValue) {
+			// Accept the block while the condition be true
+			stmt.getBlock().accept(this);
+			if (leaveCycle()) {
+				break;
 			}
+			if (tieredCompiler != null) {
+				tieredCompiler.backEdge(profile);
+			}
+			condition.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the execution must leave the current cycle after its
+	 * block, because of a break or a return. A continue only ends the block.
+	 */
+	private boolean leaveCycle() {
+		if (flow == return_flow) {
+			return true;
 		}
-		return whileStmtErrors;
+		boolean leave = flow == break_flow;
+		flow = normal_flow;
+		return leave;
 	}
 
 	/**
 	 * Visit break statement
 	 */
 	public List<String> visit(BreakStatement stmt) {
-		return new LinkedList<String>();
+		flow = break_flow;
+		return null;
 	}
 
 	/**
 	 * Visit continue statement
 	 */
 	public List<String> visit(ContinueStatement stmt) {
-		return new LinkedList<String>();
+		flow = continue_flow;
+		return null;
 	}
-	
+
 	/**
 	 * Visit a binary expression accepting the left and right operands and calculating
-	 * the value
+	 * the value. The right operand of && and || is only accepted when the left one
+	 * does not decide the value.
 	 */
 	public List<String> visit(BinOpExpr expr) {
-		LinkedList<String> errorBinExpr = new LinkedList<String>();
-		errorBinExpr.addAll(expr.getLeftOperand().accept(this));
-		errorBinExpr.addAll(expr.getRightOperand().accept(this));
-		if (errorBinExpr.size()==0) {
-			// There are no errors in the expressions
-			expr.setValue(evaluateBinExpr(expr.getType(),expr.getOperator(),expr.getLeftOperand(),expr.getRightOperand()));
+		Expression left = expr.getLeftOperand();
+		left.accept(this);
+		int leftInt = intValue;
+		float leftFloat = floatValue;
+		boolean leftBoolean = booleanValue;
+		if (expr.getOperator() == BinOpType.AND && !leftBoolean || expr.getOperator() == BinOpType.OR && leftBoolean) {
+			// The left operand decides the result, so the right one is not evaluated
+			return null;
 		}
-		return errorBinExpr;
-	}
-
-	/**
-	 * Evaluate a binary expression according to the expression type, the operator
-	 * and the operands
-	 */
-	private Literal evaluateBinExpr(Type exprType,BinOpType op,Expression e1,Expression e2) {
-		if (exprType.equals(Type.INT)) {
-			// The expression type is int. So the value of the left and right operands
-			// is an int literal.
-			IntLiteral value = new IntLiteral(0);
-			IntLiteral left = (IntLiteral)e1.getValue();
-			IntLiteral right = (IntLiteral)e2.getValue();
-			switch (op) {
-				case PLUS: value.setIntegerValue(left.getIntegerValue()+right.getIntegerValue()); break;
-				case MINUS: value.setIntegerValue(left.getIntegerValue()-right.getIntegerValue()); break;
-				case MULTIPLY: value.setIntegerValue(left.getIntegerValue()*right.getIntegerValue()); break;
-				case DIVIDE: value.setIntegerValue(left.getIntegerValue()/right.getIntegerValue());	break;
-				case MOD: value.setIntegerValue(left.getIntegerValue() % right.getIntegerValue());	break;
-				default: break;
-			}
-			return value;
-		} else if (exprType.equals(Type.FLOAT)) {
-			// The expression type is float. So the value of the left and right operands
-			// is a float literal.
-			FloatLiteral value = new FloatLiteral(new Float(0.0));
-			FloatLiteral left = (FloatLiteral)e1.getValue();
-			FloatLiteral right = (FloatLiteral)e2.getValue();
-			switch (op) {
-				case PLUS: value.setFloatValue(left.getFloatValue()+right.getFloatValue()); break;
-				case MINUS: value.setFloatValue(left.getFloatValue()-right.getFloatValue()); break;
-				case MULTIPLY: value.setFloatValue(left.getFloatValue()*right.getFloatValue()); break;
-				case DIVIDE: value.setFloatValue(left.getFloatValue()/right.getFloatValue());	break;
-				default: break;
-			}
-			return value;
-		} else if (exprType.equals(Type.BOOLEAN)) {
-			// The expression type is boolean.
-			BooleanLiteral value = new BooleanLiteral(); 
-			if (e1.getType().equals(Type.INT)) {
-				// The left and right expressions are of type int
-				IntLiteral left = (IntLiteral)e1.getValue();
-				IntLiteral right = (IntLiteral)e2.getValue();
-				switch (op) {
-					case LE: value.setBooleanValue(left.getIntegerValue()<right.getIntegerValue()); break;
-					case LEQ: value.setBooleanValue(left.getIntegerValue()<=right.getIntegerValue()); break;
-					case GE: value.setBooleanValue(left.getIntegerValue()>right.getIntegerValue()); break;
-					case GEQ: value.setBooleanValue(left.getIntegerValue()>=right.getIntegerValue()); break;
-					case CEQ: value.setBooleanValue(left.getIntegerValue()==right.getIntegerValue()); break;
-					case NEQ: value.setBooleanValue(left.getIntegerValue()!=right.getIntegerValue()); break;
-					default:break;
-				} 
-			} else if (e1.getType().equals(Type.FLOAT)) {
-				// The left and right expressions are of type float
-				FloatLiteral left = (FloatLiteral)e1.getValue();
-				FloatLiteral right = (FloatLiteral)e2.getValue();
-				switch (op) {
-					case LE: value.setBooleanValue(left.getFloatValue()<right.getFloatValue()); break;
-					case LEQ: value.setBooleanValue(left.getFloatValue()<=right.getFloatValue()); break;
-					case GE: value.setBooleanValue(left.getFloatValue()>right.getFloatValue()); break;
-					case GEQ: value.setBooleanValue(left.getFloatValue()>=right.getFloatValue()); break;
-					case CEQ: value.setBooleanValue(left.getFloatValue()==right.getFloatValue()); break;
-					case NEQ: value.setBooleanValue(left.getFloatValue()!=right.getFloatValue()); break;
-					default:break;
-				}
-			} else if (e1.getType().equals(Type.BOOLEAN)) {
-				BooleanLiteral left = (BooleanLiteral)e1.getValue();
-				BooleanLiteral right = (BooleanLiteral)e2.getValue();
-				switch (op) {
-					case AND: value.setBooleanValue(left.getBooleanValue()&&right.getBooleanValue()); break;
-					case OR:value.setBooleanValue(left.getBooleanValue()||right.getBooleanValue()); break;
-					default: break;
-				}
-			}
-			return value;
+		expr.getRightOperand().accept(this);
+		if (expr.getType().equals(Type.INT)) {
+			intValue = evaluateIntBinExpr(expr.getOperator(),leftInt,intValue);
+		} else if (expr.getType().equals(Type.FLOAT)) {
+			floatValue = evaluateFloatBinExpr(expr.getOperator(),leftFloat,floatValue);
+		} else if (left.getType().equals(Type.INT)) {
+			booleanValue = evaluateRelationalExpr(expr.getOperator(),leftInt,intValue);
+		} else if (left.getType().equals(Type.FLOAT)) {
+			booleanValue = evaluateRelationalExpr(expr.getOperator(),leftFloat,floatValue);
+		} else {
+			booleanValue = evaluateConditionalExpr(expr.getOperator(),leftBoolean,booleanValue);
 		}
 		return null;
 	}
 
 	/**
-	 * Visit a unary expression 
+	 * Evaluate an int binary expression according to the operator
+	 */
+	private int evaluateIntBinExpr(BinOpType op,int left,int right) {
+		switch (op) {
+			case PLUS: return left + right;
+			case MINUS: return left - right;
+			case MULTIPLY: return left * right;
+			case DIVIDE: return left / right;
+			case MOD: return left % right;
+			default: return 0;
+		}
+	}
+
+	/**
+	 * Evaluate a float binary expression according to the operator
+	 */
+	private float evaluateFloatBinExpr(BinOpType op,float left,float right) {
+		switch (op) {
+			case PLUS: return left + right;
+			case MINUS: return left - right;
+			case MULTIPLY: return left * right;
+			case DIVIDE: return left / right;
+			default: return 0;
+		}
+	}
+
+	/**
+	 * Evaluate a relational expression whose operands are of type int
+	 */
+	private boolean evaluateRelationalExpr(BinOpType op,int left,int right) {
+		switch (op) {
+			case LE: return left < right;
+			case LEQ: return left <= right;
+			case GE: return left > right;
+			case GEQ: return left >= right;
+			case CEQ: return left == right;
+			case NEQ: return left != right;
+			default: return false;
+		}
+	}
+
+	/**
+	 * Evaluate a relational expression whose operands are of type float
+	 */
+	private boolean evaluateRelationalExpr(BinOpType op,float left,float right) {
+		switch (op) {
+			case LE: return left < right;
+			case LEQ: return left <= right;
+			case GE: return left > right;
+			case GEQ: return left >= right;
+			case CEQ: return left == right;
+			case NEQ: return left != right;
+			default: return false;
+		}
+	}
+
+	/**
+	 * Evaluate an expression whose operands are of type boolean
+	 */
+	private boolean evaluateConditionalExpr(BinOpType op,boolean left,boolean right) {
+		switch (op) {
+			case AND: return left && right;
+			case OR: return left || right;
+			case CEQ: return left == right;
+			case NEQ: return left != right;
+			default: return false;
+		}
+	}
+
+	/**
+	 * Visit a unary expression
 	 */
 	public List<String> visit(UnaryOpExpr expr) {
-		LinkedList<String> errorUnExpr = new LinkedList<String>();
-		errorUnExpr.addAll(expr.getOperand().accept(this));
-		if (errorUnExpr.size()==0) {
-			// There are no errors in the expression
-			expr.setValue(evaluateUnaryExpr(expr.getType(),expr.getOperator(),expr.getOperand()));
-		} 
-		return errorUnExpr;
-	}
-
-	/**
-	 * Evaluate an unary expression according to the expression type, the operator
-	 * and the operand
-	 */
-	private Literal evaluateUnaryExpr(Type exprType,UnaryOpType op,Expression e) {
-		if (exprType.equals(Type.INT)) {
-			// The expression type is int. So the value of the operand is an int literal.
-			IntLiteral value = new IntLiteral(0);
-			IntLiteral exprValue = (IntLiteral)e.getValue();
-			switch (op) {
-				case MINUS: value.setIntegerValue(-exprValue.getIntegerValue()); break;
-				default: break;
-			}
-			return value;
-		} else if (exprType.equals(Type.FLOAT)) {
-			// The expression type is float. So the value of the operand is a float literal.
-			FloatLiteral value = new FloatLiteral(new Float(0.0));
-			FloatLiteral exprValue = (FloatLiteral)e.getValue();
-			switch (op) {
-				case MINUS: value.setFloatValue(-exprValue.getFloatValue()); break;
-				default: break;
-			}
-			return value;
-		} else if (exprType.equals(Type.BOOLEAN)) {
-			// The expression type is boolean. So the value of the operand is a boolean literal.
-			BooleanLiteral value = new BooleanLiteral(); 
-			BooleanLiteral exprValue = (BooleanLiteral)e.getValue();
-			switch (op) {
-				case NOT: value.setBooleanValue(!exprValue.getBooleanValue()); break;
-				default: break;
-			}
-			return value;
+		expr.getOperand().accept(this);
+		if (expr.getType().equals(Type.INT)) {
+			intValue = -intValue;
+		} else if (expr.getType().equals(Type.FLOAT)) {
+			floatValue = -floatValue;
+		} else if (expr.getType().equals(Type.BOOLEAN)) {
+			booleanValue = !booleanValue;
 		}
 		return null;
 	}
@@ -383,127 +427,216 @@ public class InterpreterVisitor implements ASTVisitor<List<String>> {
 	 * Visit a nullary expression
 	 */
 	public List<String> visit(NullaryExpr expr) {
-		LinkedList<String> errorNullExpr = new LinkedList<String>();
-		errorNullExpr.addAll(expr.getExpression().accept(this));
-		if (errorNullExpr.size()==0) {
-			// There are no errors in the expression
-			expr.setValue(expr.getExpression().getValue());
-		}
-		return errorNullExpr;
+		return expr.getExpression().accept(this);
 	}
 
 	/**
 	 * Visit int literal
-	 */	
+	 */
 	public List<String> visit(IntLiteral lit) {
-		return new LinkedList<String>();
+		intValue = lit.getIntegerValue();
+		return null;
 	}
 
 	/**
 	 * Visit float literal
 	 */
 	public List<String> visit(FloatLiteral lit) {
-		return new LinkedList<String>();
+		floatValue = lit.getFloatValue();
+		return null;
 	}
 
 	/**
 	 * Visit boolean literal
 	 */
 	public List<String> visit(BooleanLiteral lit) {
-		return new LinkedList<String>();
+		booleanValue = lit.getBooleanValue();
+		return null;
 	}
 
 	/**
-	 * Visit a var location accepting it if it has been initialized
+	 * Visit a var location loading the value of its slot
 	 */
 	public List<String> visit(VarLocation loc) {
-		LinkedList<String> varLocationError = new LinkedList<String>();
-		if (loc.getDeclaration().getValue()==null) {
-			varLocationError.add(loc.getInitializationError());
-		}	
-		return varLocationError;
+		DeclarationIdentifier decl = loc.getDeclaration();
+		load(decl,decl.getSlot());
+		return null;
 	}
 
 	/**
-	 * Visit a var array location
+	 * Visit a var array location loading the value of the slot of the position
 	 */
 	public List<String> visit(VarArrayLocation loc) {
-		LinkedList<String> varArrayLocError = new LinkedList<String>();
-		varArrayLocError.addAll(loc.getExpression().accept(this));
-		if (varArrayLocError.size()==0) {
-			// There are no previous errors
-			IntLiteral expressionValue = (IntLiteral)loc.getExpression().getValue();
-			Integer arrayCapacity = loc.getDeclaration().getCapacity();
-			if ((expressionValue.getIntegerValue()<0) || (expressionValue.getIntegerValue()>arrayCapacity-1)) {
-				// The expression value is less than zero or greater than the 
-				// array capacity
-				varArrayLocError.add(loc.getInvalidIndexError());
-			}
+		evaluateIndex(loc);
+		DeclarationIdentifier decl = loc.getDeclaration();
+		load(decl,decl.getSlot()+intValue);
+		return null;
+	}
+
+	/**
+	 * Evaluate the index expression of the array location checking that it is
+	 * a valid position. The index is left in the int value.
+	 */
+	private void evaluateIndex(VarArrayLocation loc) {
+		loc.getExpression().accept(this);
+		Integer arrayCapacity = loc.getDeclaration().getCapacity();
+		if ((intValue<0) || (intValue>arrayCapacity-1)) {
+			// The expression value is less than zero or greater than the
+			// array capacity
+			throw new InterpreterException(loc.getInvalidIndexError(intValue));
+		}
+	}
+
+	/**
+	 * Load the value of the given slot of the declaration
+	 */
+	private void load(DeclarationIdentifier decl,int slot) {
+		InterpreterFrame f = decl.isGlobal()?globals:frame;
+		if (decl.getType().equals(Type.FLOAT)) {
+			floatValue = f.getFloats()[slot];
+		} else if (decl.getType().equals(Type.BOOLEAN)) {
+			booleanValue = f.getBooleans()[slot];
+		} else {
+			intValue = f.getInts()[slot];
 		}
-		return varArrayLocError;
 	}
 
 	/**
 	 * Visit method call calculating the values for each arguments
-	 * and accepting of the declaration
+	 * in the frame of the next depth and executing the method, and then the
+	 * methods called by its tail calls in the same frame
 	 */
 	public List<String> visit(MethodCall call) {
-		LinkedList<String> methodCallErrors = new LinkedList<String>();
+		MethodDeclaration decl = call.getDeclaration();
+		InterpreterFrame callFrame = evaluateArguments(call);
+		JvmMethodProfile callerProfile = profile;
+		InterpreterFrame callerFrame = frame;
+		invoke(decl,callFrame);
+		while (tailCall != null) {
+			decl = tailCall;
+			tailCall = null;
+			invoke(decl,getFrame(depth));
+		}
+		frame = callerFrame;
+		profile = callerProfile;
+		flow = normal_flow;
+		depth--;
+		intValue = returnIntValue;
+		floatValue = returnFloatValue;
+		booleanValue = returnBooleanValue;
+		return null;
+	}
+
+	/**
+	 * Calculate the values of the arguments of a call in the frame of the next
+	 * depth, and get the frame. The depth is incremented.
+	 */
+	private InterpreterFrame evaluateArguments(MethodCall call) {
+		MethodDeclaration decl = call.getDeclaration();
+		if (depth == maxDepth) {
+			// There is no room for a new frame in the call stack
+			throw new InterpreterException("Error: the maximum amount of nested calls (" + maxDepth + ") was exceeded");
+		}
+		// The depth is incremented before the arguments so the calls in them
+		// take the following frames
+		depth++;
+		InterpreterFrame callFrame = getFrame(depth);
+		callFrame.reset(decl.getIntSlots(),decl.getFloatSlots(),decl.getBooleanSlots());
 		int i=0;
 		while (i < call.getArguments().size()) {
 			// Iterate over all the arguments resolving the values
-			Expression expression = call.getArguments().get(i);
-			methodCallErrors.addAll(expression.accept(this));
-			if (methodCallErrors.size()==0) {
-				// There are no errors in the expression
-				Argument arg = call.getDeclaration().getArguments().get(i);
-				arg.getDeclaration().setValue(expression.getValue());
+			call.getArguments().get(i).accept(this);
+			DeclarationIdentifier arg = decl.getArguments().get(i).getDeclaration();
+			if (arg.getType().equals(Type.FLOAT)) {
+				callFrame.getFloats()[arg.getSlot()] = floatValue;
+			} else if (arg.getType().equals(Type.BOOLEAN)) {
+				callFrame.getBooleans()[arg.getSlot()] = booleanValue;
+			} else {
+				callFrame.getInts()[arg.getSlot()] = intValue;
 			}
 			i++;
 		}
-		if (methodCallErrors.size()==0) {
-			// There are no errors in arguments. Accept the block of the method declaration
-			methodCallErrors.addAll(call.getDeclaration().getBlock().accept(this));
-		}
-		if (methodCallErrors.size()==0) {
-			// There are no errors in method execution
-			if (call.getDeclaration().hasReturnStatement()) {
-				call.setValue(call.getDeclaration().getValue());				
+		return callFrame;
+	}
+
+	/**
+	 * Execute a method with the given frame, accepting the block of the
+	 * declaration or invoking the compiled method if the method is hot, and
+	 * keep the returned value
+	 */
+	private void invoke(MethodDeclaration decl, InterpreterFrame callFrame) {
+		if (tieredCompiler != null) {
+			profile = tieredCompiler.getProfile(decl);
+			JvmCompiledMethod compiledMethod = tieredCompiler.invocation(decl,profile);
+			if (compiledMethod != null) {
+				// The compiled method takes its arguments from the frame
+				if (decl.getType().equals(Type.FLOAT)) {
+					returnFloatValue = compiledMethod.invokeFloat(callFrame,globals);
+				} else {
+					returnIntValue = compiledMethod.invokeInt(callFrame,globals);
+					returnBooleanValue = returnIntValue != 0;
+				}
+				return;
 			}
 		}
-		return methodCallErrors;
+		// Accept the block of the method declaration
+		frame = callFrame;
+		flow = normal_flow;
+		decl.getBlock().accept(this);
 	}
 
 	/**
-	 * Visit a block accepting only each statement 
+	 * Get the frame of the given depth of the call stack, creating it the
+	 * first time that the depth is reached
+	 */
+	private InterpreterFrame getFrame(int d) {
+		if (d >= callStack.length) {
+			callStack = Arrays.copyOf(callStack,2*callStack.length);
+		}
+		if (callStack[d] == null) {
+			callStack[d] = new InterpreterFrame(0,0,0);
+		}
+		return callStack[d];
+	}
+
+	/**
+	 * Visit a block accepting each statement until one of them breaks
+	 * the sequential execution
 	 */
 	public List<String> visit(Block block) {
-		LinkedList<String> blockErrors = new LinkedList<String>();
 		for (Statement statement : block.getStatements()) {
-			blockErrors.addAll(statement.accept(this));
+			statement.accept(this);
+			if (flow != normal_flow) {
+				break;
+			}
 		}
-		return blockErrors;
+		return null;
 	}
 
 	/**
 	 * Visit a semicolon statement
 	 */
 	public List<String> visit(SemicolonStatement s) {
-		return new LinkedList<String>();
+		return null;
 	}
-	
+
 	/**
-	 * Visit a print statement
+	 * Visit a print statement. The value is only turned into a literal
+	 * for printing it.
 	 */
 	public List<String> visit(PrintStatement p) {
-		LinkedList<String> printErrors = new LinkedList<String>();
 		Expression expression = p.getExpression();
-		printErrors.addAll(expression.accept(this));
-		if (printErrors.size()==0) {
-			// There are no errors in the expression. So print it
-			System.out.println(expression.getValue().toString());
+		expression.accept(this);
+		Literal value;
+		if (expression.getType().equals(Type.FLOAT)) {
+			value = new FloatLiteral(floatValue);
+		} else if (expression.getType().equals(Type.BOOLEAN)) {
+			value = new BooleanLiteral(booleanValue);
+		} else {
+			value = new IntLiteral(intValue);
 		}
-		return printErrors;
+		System.out.println(value.toString());
+		return null;
 	}
-	
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,899 @@
+import java.util.List;
+import java.util.LinkedList;
+import java.util.IdentityHashMap;
+
+/**
+ * This class represents the visitor that compiles the methods of the CTds
+ * program to static methods of JVM classes. The locals and the arguments of
+ * a method are JVM local variables and the class fields are accessed through
+ * the int, float and boolean arrays received as the first three arguments of
+ * every compiled method, indexed by the slots assigned by the
+ * CheckDeclarationVisitor. The methods called by a compiled method that
+ * were not compiled yet are kept as pending.
+ * @author Facundo Molina
+ */
+public class JvmCompilerVisitor implements ASTVisitor<Object> {
+
+	public static final String globals_descriptor = "[I[F[Z";	// Descriptor of the global arguments
+
+	private static final int int_globals = 0;		// Local with the int slots of the class fields
+	private static final int float_globals = 1;		// Local with the float slots of the class fields
+	private static final int boolean_globals = 2;	// Local with the boolean slots of the class fields
+
+	private String defaultOwner;									// Class of the methods without a given class
+	private String exceptionClass;									// Class of the exception of the invalid indexes
+	private String depthOwner;										// Class that counts the nested calls, null if they are not counted
+	private IdentityHashMap<MethodDeclaration,String> owners;		// Class of each method
+	private IdentityHashMap<MethodDeclaration,String> names;		// Name of each method
+	private LinkedList<MethodDeclaration> pendingMethods;			// Called methods not compiled yet
+
+	private JvmCodeWriter code;										// Code of the current method
+	private MethodDeclaration method;								// Current method
+	private IdentityHashMap<DeclarationIdentifier,Integer> locals;	// Local of each variable of the method
+	private LinkedList<JvmLabel> breakLabels;						// Targets of the breaks of the enclosing cycles
+	private LinkedList<JvmLabel> continueLabels;					// Targets of the continues of the enclosing cycles
+	private LinkedList<JvmLabel> errorLabels;						// Labels of the invalid index errors
+	private LinkedList<VarArrayLocation> errorLocations;			// Locations of the invalid index errors
+	private int indexLocal;											// Local with the last array index, -1 if not used
+	private int intTemp;											// Local with an int value to store, -1 if not used
+	private int floatTemp;											// Local with a float value to store, -1 if not used
+	private JvmLabel bodyLabel;										// Start of the body of the method, target of its tail calls
+
+	/**
+	 * Constructor with the class of the methods without a given class and
+	 * the class of the exception thrown by the invalid indexes, which must
+	 * have a constructor with the message
+	 */
+	public JvmCompilerVisitor(String defaultOwner, String exceptionClass) {
+		this.defaultOwner = defaultOwner;
+		this.exceptionClass = exceptionClass;
+		owners = new IdentityHashMap<MethodDeclaration,String>();
+		names = new IdentityHashMap<MethodDeclaration,String>();
+		pendingMethods = new LinkedList<MethodDeclaration>();
+	}
+
+	/**
+	 * Count the nested calls with the static methods enter and leave of the
+	 * given class. The enter method fails when there is no room for a new
+	 * call, as the interpreter does with its maximum amount of nested calls.
+	 */
+	public void countNestedCalls(String owner) {
+		depthOwner = owner;
+	}
+
+	/**
+	 * Set the class and the name of the static method of a declaration
+	 */
+	public void setMethod(MethodDeclaration decl, String owner, String name) {
+		owners.put(decl,owner);
+		names.put(decl,name);
+	}
+
+	/**
+	 * Get the class of the static method of a declaration. The methods without
+	 * a given class take the default class and become pending.
+	 */
+	public String getOwner(MethodDeclaration decl) {
+		if (!owners.containsKey(decl)) {
+			setMethod(decl,defaultOwner,decl.getId() + "$" + owners.size());
+			pendingMethods.add(decl);
+		}
+		return owners.get(decl);
+	}
+
+	/**
+	 * Get the name of the static method of a declaration
+	 */
+	public String getName(MethodDeclaration decl) {
+		getOwner(decl);
+		return names.get(decl);
+	}
+
+	/**
+	 * Get the called methods that were not compiled yet
+	 */
+	public LinkedList<MethodDeclaration> getPendingMethods() {
+		return pendingMethods;
+	}
+
+	/**
+	 * Returns the descriptor of the static method of a declaration
+	 */
+	public static String getDescriptor(MethodDeclaration decl) {
+		String descriptor = "(" + globals_descriptor;
+		for (Argument argument : decl.getArguments()) {
+			descriptor += typeDescriptor(argument.getDeclaration().getType());
+		}
+		return descriptor + ")" + typeDescriptor(decl.getType());
+	}
+
+	/**
+	 * Returns the descriptor of a type
+	 */
+	public static String typeDescriptor(Type type) {
+		if (type.equals(Type.FLOAT)) {
+			return "F";
+		}
+		if (type.equals(Type.BOOLEAN)) {
+			return "Z";
+		}
+		if (type.equals(Type.VOID)) {
+			return "V";
+		}
+		return "I";
+	}
+
+	/**
+	 * Compile a method to a static method of the given class. Extern methods
+	 * can not be compiled.
+	 */
+	public void compile(MethodDeclaration decl, JvmClassWriter classWriter) {
+		if (decl.isExtern()) {
+			throw new IllegalStateException("The extern method " + decl.getId() + " can not be compiled");
+		}
+		String name = getName(decl);
+		pendingMethods.remove(decl);
+		method = decl;
+		code = new JvmCodeWriter(classWriter,3);
+		locals = new IdentityHashMap<DeclarationIdentifier,Integer>();
+		breakLabels = new LinkedList<JvmLabel>();
+		continueLabels = new LinkedList<JvmLabel>();
+		errorLabels = new LinkedList<JvmLabel>();
+		errorLocations = new LinkedList<VarArrayLocation>();
+		indexLocal = -1;
+		intTemp = -1;
+		floatTemp = -1;
+		decl.accept(this);
+		classWriter.addMethod(JvmOpcodes.ACC_PUBLIC | JvmOpcodes.ACC_STATIC,name,getDescriptor(decl),code);
+	}
+
+	/**
+	 * Visit a program
+	 */
+	public Object visit(Program p) {
+		return null;
+	}
+
+	/**
+	 * Visit a class declaration
+	 */
+	public Object visit(ClassDeclaration decl) {
+		return null;
+	}
+
+	/**
+	 * Visit a field declaration of a block taking a local for each identifier.
+	 * The locals start with the default values, the arrays are created.
+	 */
+	public Object visit(FieldDeclaration decl) {
+		for (DeclarationIdentifier ident : decl.getListIds()) {
+			int local = code.newLocal();
+			locals.put(ident,local);
+			Type type = ident.getType();
+			if (ident.isArrayDeclarationId()) {
+				code.emitInt(ident.getCapacity());
+				if (type.equals(Type.FLOAT)) {
+					code.emitNewArray(JvmOpcodes.T_FLOAT);
+				} else if (type.equals(Type.BOOLEAN)) {
+					code.emitNewArray(JvmOpcodes.T_BOOLEAN);
+				} else {
+					code.emitNewArray(JvmOpcodes.T_INT);
+				}
+				code.emitLocal(JvmOpcodes.ASTORE,local);
+			} else if (type.equals(Type.FLOAT)) {
+				code.emitFloat(0.0f);
+				code.emitLocal(JvmOpcodes.FSTORE,local);
+			} else {
+				code.emitInt(0);
+				code.emitLocal(JvmOpcodes.ISTORE,local);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a method declaration. The arguments take the locals after the
+	 * globals and the variables of all the blocks are initialized at the
+	 * start, as the interpreter does with the slots of the frame. The tail
+	 * calls of the method to itself jump back to this start.
+	 */
+	public Object visit(MethodDeclaration decl) {
+		for (Argument argument : decl.getArguments()) {
+			locals.put(argument.getDeclaration(),code.newLocal());
+		}
+		bodyLabel = new JvmLabel();
+		code.placeLabel(bodyLabel);
+		declareLocals(decl.getBlock());
+		decl.getBlock().accept(this);
+		// Return of a method that reaches its end
+		if (decl.getType().equals(Type.FLOAT)) {
+			code.emitFloat(0.0f);
+			code.emit(JvmOpcodes.FRETURN);
+		} else if (decl.getType().equals(Type.VOID)) {
+			code.emit(JvmOpcodes.RETURN);
+		} else {
+			code.emitInt(0);
+			code.emit(JvmOpcodes.IRETURN);
+		}
+		emitIndexErrors();
+		return null;
+	}
+
+	/**
+	 * Declare the variables of a block and of its nested blocks
+	 */
+	private void declareLocals(Statement statement) {
+		if (statement instanceof Block) {
+			Block block = (Block)statement;
+			for (FieldDeclaration fieldDeclaration : block.getFieldDeclarations()) {
+				fieldDeclaration.accept(this);
+			}
+			for (Statement s : block.getStatements()) {
+				declareLocals(s);
+			}
+		} else if (statement instanceof IfStatement) {
+			IfStatement ifStatement = (IfStatement)statement;
+			declareLocals(ifStatement.getIfBlock());
+			if (ifStatement.hasElseBlock()) {
+				declareLocals(ifStatement.getElseBlock());
+			}
+		} else if (statement instanceof ForStatement) {
+			declareLocals(((ForStatement)statement).getBlock());
+		} else if (statement instanceof WhileStatement) {
+			declareLocals(((WhileStatement)statement).getBlock());
+		}
+	}
+
+	/**
+	 * Visit an argument
+	 */
+	public Object visit(Argument arg) {
+		return null;
+	}
+
+	/**
+	 * Visit a declaration identifier
+	 */
+	public Object visit(DeclarationIdentifier ident) {
+		return null;
+	}
+
+	/**
+	 * Visit an assign statement. The expression is evaluated before the
+	 * index of an array location, as in the interpreter.
+	 */
+	public Object visit(AssignStatement stmt) {
+		Location location = stmt.getLocation();
+		DeclarationIdentifier decl = location.getDeclaration();
+		AssignOpType op = stmt.getOperator();
+		Expression expression = stmt.getExpression();
+		boolean isFloat = decl.getType().equals(Type.FLOAT);
+		boolean isBoolean = decl.getType().equals(Type.BOOLEAN);
+		if (isBoolean) {
+			op = AssignOpType.ASSIGN;
+		}
+		if (decl.isArrayDeclarationId()) {
+			expression.accept(this);
+			int temp = isFloat?floatTemp():intTemp();
+			code.emitLocal(isFloat?JvmOpcodes.FSTORE:JvmOpcodes.ISTORE,temp);
+			loadElementAddress((VarArrayLocation)location);
+			if (op != AssignOpType.ASSIGN) {
+				code.emit(JvmOpcodes.DUP2);
+				code.emit(arrayLoad(decl));
+			}
+			code.emitLocal(isFloat?JvmOpcodes.FLOAD:JvmOpcodes.ILOAD,temp);
+			if (op != AssignOpType.ASSIGN) {
+				emitAssignOperator(op,isFloat);
+			}
+			code.emit(arrayStore(decl));
+		} else if (decl.isGlobal()) {
+			loadGlobals(decl);
+			code.emitInt(decl.getSlot());
+			if (op != AssignOpType.ASSIGN) {
+				code.emit(JvmOpcodes.DUP2);
+				code.emit(arrayLoad(decl));
+			}
+			expression.accept(this);
+			if (op != AssignOpType.ASSIGN) {
+				emitAssignOperator(op,isFloat);
+			}
+			code.emit(arrayStore(decl));
+		} else {
+			int local = locals.get(decl);
+			Integer increment = constantIncrement(op,expression);
+			if (!isFloat && increment != null) {
+				code.emitIinc(local,increment);
+			} else {
+				if (op != AssignOpType.ASSIGN) {
+					code.emitLocal(isFloat?JvmOpcodes.FLOAD:JvmOpcodes.ILOAD,local);
+				}
+				expression.accept(this);
+				if (op != AssignOpType.ASSIGN) {
+					emitAssignOperator(op,isFloat);
+				}
+				code.emitLocal(isFloat?JvmOpcodes.FSTORE:JvmOpcodes.ISTORE,local);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the increment of an assign of an int constant that fits in an
+	 * iinc instruction, or null
+	 */
+	private Integer constantIncrement(AssignOpType op, Expression expression) {
+		while (expression instanceof NullaryExpr) {
+			expression = ((NullaryExpr)expression).getExpression();
+		}
+		if (op == AssignOpType.ASSIGN || !(expression instanceof IntLiteral)) {
+			return null;
+		}
+		int value = ((IntLiteral)expression).getIntegerValue();
+		if (op == AssignOpType.DECREMENT) {
+			value = -value;
+		}
+		if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+			return null;
+		}
+		return value;
+	}
+
+	/**
+	 * Emit the operation of an increment or decrement assign
+	 */
+	private void emitAssignOperator(AssignOpType op, boolean isFloat) {
+		if (op == AssignOpType.INCREMENT) {
+			code.emit(isFloat?JvmOpcodes.FADD:JvmOpcodes.IADD);
+		} else {
+			code.emit(isFloat?JvmOpcodes.FSUB:JvmOpcodes.ISUB);
+		}
+	}
+
+	/**
+	 * Visit a method call statement discarding the returned value
+	 */
+	public Object visit(MethodCallStatement stmt) {
+		MethodCall call = stmt.getMethodCall();
+		call.accept(this);
+		if (!call.getDeclaration().getType().equals(Type.VOID)) {
+			code.emit(JvmOpcodes.POP);
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a return statement. A returned call is a tail call.
+	 */
+	public Object visit(ReturnStatement stmt) {
+		if (stmt.hasExpression() && stmt.getExpression() instanceof MethodCall && !method.getId().equals("main")) {
+			compileTailCall((MethodCall)stmt.getExpression());
+		} else if (stmt.hasExpression() && !method.getType().equals(Type.VOID)) {
+			stmt.getExpression().accept(this);
+			code.emit(method.getType().equals(Type.FLOAT)?JvmOpcodes.FRETURN:JvmOpcodes.IRETURN);
+		} else {
+			if (stmt.hasExpression()) {
+				stmt.getExpression().accept(this);
+				code.emit(JvmOpcodes.POP);
+			}
+			code.emit(JvmOpcodes.RETURN);
+		}
+		return null;
+	}
+
+	/**
+	 * Visit an if statement
+	 */
+	public Object visit(IfStatement stmt) {
+		JvmLabel elseLabel = new JvmLabel();
+		branch(stmt.getCondition(),false,elseLabel);
+		stmt.getIfBlock().accept(this);
+		if (stmt.hasElseBlock()) {
+			JvmLabel endLabel = new JvmLabel();
+			code.emitJump(JvmOpcodes.GOTO,endLabel);
+			code.placeLabel(elseLabel);
+			stmt.getElseBlock().accept(this);
+			code.placeLabel(endLabel);
+		} else {
+			code.placeLabel(elseLabel);
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a for statement. The condition is evaluated once and the block
+	 * is executed while the index is less or equal than it.
+	 */
+	public Object visit(ForStatement stmt) {
+		AssignStatement initialAssign = stmt.getInitialAssign();
+		initialAssign.accept(this);
+		stmt.getConditionExpression().accept(this);
+		int end = code.newLocal();
+		code.emitLocal(JvmOpcodes.ISTORE,end);
+		DeclarationIdentifier index = initialAssign.getLocation().getDeclaration();
+		JvmLabel blockLabel = new JvmLabel();
+		JvmLabel incrementLabel = new JvmLabel();
+		JvmLabel conditionLabel = new JvmLabel();
+		JvmLabel endLabel = new JvmLabel();
+		code.emitJump(JvmOpcodes.GOTO,conditionLabel);
+		code.placeLabel(blockLabel);
+		compileCycleBlock(stmt.getBlock(),endLabel,incrementLabel);
+		code.placeLabel(incrementLabel);
+		if (index.isGlobal()) {
+			loadGlobals(index);
+			code.emitInt(index.getSlot());
+			code.emit(JvmOpcodes.DUP2);
+			code.emit(JvmOpcodes.IALOAD);
+			code.emitInt(1);
+			code.emit(JvmOpcodes.IADD);
+			code.emit(JvmOpcodes.IASTORE);
+		} else {
+			code.emitIinc(locals.get(index),1);
+		}
+		code.placeLabel(conditionLabel);
+		load(index);
+		code.emitLocal(JvmOpcodes.ILOAD,end);
+		code.emitJump(JvmOpcodes.IF_ICMPLE,blockLabel);
+		code.placeLabel(endLabel);
+		code.freeLocal(end);
+		return null;
+	}
+
+	/**
+	 * Visit a while statement
+	 */
+	public Object visit(WhileStatement stmt) {
+		JvmLabel blockLabel = new JvmLabel();
+		JvmLabel conditionLabel = new JvmLabel();
+		JvmLabel endLabel = new JvmLabel();
+		code.emitJump(JvmOpcodes.GOTO,conditionLabel);
+		code.placeLabel(blockLabel);
+		compileCycleBlock(stmt.getBlock(),endLabel,conditionLabel);
+		code.placeLabel(conditionLabel);
+		branch(stmt.getCondition(),true,blockLabel);
+		code.placeLabel(endLabel);
+		return null;
+	}
+
+	/**
+	 * Compile the block of a cycle with the targets of its breaks and continues
+	 */
+	private void compileCycleBlock(Block block, JvmLabel breakLabel, JvmLabel continueLabel) {
+		breakLabels.push(breakLabel);
+		continueLabels.push(continueLabel);
+		block.accept(this);
+		breakLabels.pop();
+		continueLabels.pop();
+	}
+
+	/**
+	 * Visit break statement
+	 */
+	public Object visit(BreakStatement stmt) {
+		code.emitJump(JvmOpcodes.GOTO,breakLabels.peek());
+		return null;
+	}
+
+	/**
+	 * Visit continue statement
+	 */
+	public Object visit(ContinueStatement stmt) {
+		code.emitJump(JvmOpcodes.GOTO,continueLabels.peek());
+		return null;
+	}
+
+	/**
+	 * Visit a binary expression leaving its value in the stack. The booleans
+	 * are ints with the values 0 and 1.
+	 */
+	public Object visit(BinOpExpr expr) {
+		BinOpType op = expr.getOperator();
+		Expression left = expr.getLeftOperand();
+		if (expr.getType().equals(Type.INT) || expr.getType().equals(Type.FLOAT)) {
+			boolean isFloat = expr.getType().equals(Type.FLOAT);
+			left.accept(this);
+			expr.getRightOperand().accept(this);
+			switch (op) {
+				case PLUS: code.emit(isFloat?JvmOpcodes.FADD:JvmOpcodes.IADD); break;
+				case MINUS: code.emit(isFloat?JvmOpcodes.FSUB:JvmOpcodes.ISUB); break;
+				case MULTIPLY: code.emit(isFloat?JvmOpcodes.FMUL:JvmOpcodes.IMUL); break;
+				case DIVIDE: code.emit(isFloat?JvmOpcodes.FDIV:JvmOpcodes.IDIV); break;
+				default: code.emit(JvmOpcodes.IREM); break;
+			}
+		} else {
+			JvmLabel falseLabel = new JvmLabel();
+			JvmLabel endLabel = new JvmLabel();
+			branch(expr,false,falseLabel);
+			code.emitInt(1);
+			code.emitJump(JvmOpcodes.GOTO,endLabel);
+			code.placeLabel(falseLabel);
+			code.emitInt(0);
+			code.placeLabel(endLabel);
+		}
+		return null;
+	}
+
+	/**
+	 * Emit a jump to the target when the boolean expression has the given
+	 * value. The relational expressions are compiled to a compare and jump.
+	 */
+	private void branch(Expression condition, boolean value, JvmLabel target) {
+		if (condition instanceof NullaryExpr) {
+			branch(((NullaryExpr)condition).getExpression(),value,target);
+		} else if (condition instanceof UnaryOpExpr) {
+			branch(((UnaryOpExpr)condition).getOperand(),!value,target);
+		} else if (condition instanceof BooleanLiteral) {
+			if (((BooleanLiteral)condition).getBooleanValue() == value) {
+				code.emitJump(JvmOpcodes.GOTO,target);
+			}
+		} else if (condition instanceof BinOpExpr && isConditional((BinOpExpr)condition)) {
+			BinOpExpr expr = (BinOpExpr)condition;
+			// The left operand of && decides the value when it is false, and the
+			// one of || when it is true, so the right operand is skipped
+			boolean decisive = expr.getOperator() == BinOpType.OR;
+			if (value == decisive) {
+				branch(expr.getLeftOperand(),value,target);
+				branch(expr.getRightOperand(),value,target);
+			} else {
+				JvmLabel skipLabel = new JvmLabel();
+				branch(expr.getLeftOperand(),decisive,skipLabel);
+				branch(expr.getRightOperand(),value,target);
+				code.placeLabel(skipLabel);
+			}
+		} else if (condition instanceof BinOpExpr && isComparison((BinOpExpr)condition)) {
+			BinOpExpr expr = (BinOpExpr)condition;
+			BinOpType op = expr.getOperator();
+			expr.getLeftOperand().accept(this);
+			expr.getRightOperand().accept(this);
+			// Offset of the condition from ifeq: eq, ne, lt, ge, gt, le
+			int test;
+			switch (op) {
+				case LE: test = 2; break;
+				case LEQ: test = 5; break;
+				case GE: test = 4; break;
+				case GEQ: test = 3; break;
+				case CEQ: test = 0; break;
+				default: test = 1; break;
+			}
+			if (!value) {
+				// The negated conditions are consecutive pairs
+				test = test ^ 1;
+			}
+			if (expr.getLeftOperand().getType().equals(Type.FLOAT)) {
+				// A comparison with NaN is false, so the compare pushes the
+				// value that makes the less than conditions false
+				code.emit((op == BinOpType.LE || op == BinOpType.LEQ)?JvmOpcodes.FCMPG:JvmOpcodes.FCMPL);
+				code.emitJump(JvmOpcodes.IFEQ + test,target);
+			} else {
+				code.emitJump(JvmOpcodes.IF_ICMPEQ + test,target);
+			}
+		} else {
+			condition.accept(this);
+			code.emitJump(value?JvmOpcodes.IFNE:JvmOpcodes.IFEQ,target);
+		}
+	}
+
+	/**
+	 * Returns true if the expression is a conjunction or a disjunction
+	 */
+	private boolean isConditional(BinOpExpr expr) {
+		return expr.getOperator() == BinOpType.AND || expr.getOperator() == BinOpType.OR;
+	}
+
+	/**
+	 * Returns true if the expression compares two values
+	 */
+	private boolean isComparison(BinOpExpr expr) {
+		return expr.getOperator() != BinOpType.AND && expr.getOperator() != BinOpType.OR
+			&& expr.getType().equals(Type.BOOLEAN);
+	}
+
+	/**
+	 * Visit a unary expression
+	 */
+	public Object visit(UnaryOpExpr expr) {
+		expr.getOperand().accept(this);
+		if (expr.getType().equals(Type.INT)) {
+			code.emit(JvmOpcodes.INEG);
+		} else if (expr.getType().equals(Type.FLOAT)) {
+			code.emit(JvmOpcodes.FNEG);
+		} else {
+			code.emitInt(1);
+			code.emit(JvmOpcodes.IXOR);
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a nullary expression
+	 */
+	public Object visit(NullaryExpr expr) {
+		return expr.getExpression().accept(this);
+	}
+
+	/**
+	 * Visit int literal
+	 */
+	public Object visit(IntLiteral lit) {
+		code.emitInt(lit.getIntegerValue());
+		return null;
+	}
+
+	/**
+	 * Visit float literal
+	 */
+	public Object visit(FloatLiteral lit) {
+		code.emitFloat(lit.getFloatValue());
+		return null;
+	}
+
+	/**
+	 * Visit boolean literal
+	 */
+	public Object visit(BooleanLiteral lit) {
+		code.emitInt(lit.getBooleanValue()?1:0);
+		return null;
+	}
+
+	/**
+	 * Visit a var location loading its value
+	 */
+	public Object visit(VarLocation loc) {
+		load(loc.getDeclaration());
+		return null;
+	}
+
+	/**
+	 * Visit a var array location loading the value of the position
+	 */
+	public Object visit(VarArrayLocation loc) {
+		loadElementAddress(loc);
+		code.emit(arrayLoad(loc.getDeclaration()));
+		return null;
+	}
+
+	/**
+	 * Load the value of a variable that is not an array
+	 */
+	private void load(DeclarationIdentifier decl) {
+		if (decl.isGlobal()) {
+			loadGlobals(decl);
+			code.emitInt(decl.getSlot());
+			code.emit(arrayLoad(decl));
+		} else if (decl.getType().equals(Type.FLOAT)) {
+			code.emitLocal(JvmOpcodes.FLOAD,locals.get(decl));
+		} else {
+			code.emitLocal(JvmOpcodes.ILOAD,locals.get(decl));
+		}
+	}
+
+	/**
+	 * Evaluate and check the index of an array location, leaving in the
+	 * stack the array and the position of the element
+	 */
+	private void loadElementAddress(VarArrayLocation loc) {
+		DeclarationIdentifier decl = loc.getDeclaration();
+		loc.getExpression().accept(this);
+		int index = indexLocal();
+		code.emitLocal(JvmOpcodes.ISTORE,index);
+		JvmLabel errorLabel = new JvmLabel();
+		code.emitLocal(JvmOpcodes.ILOAD,index);
+		code.emitJump(JvmOpcodes.IFLT,errorLabel);
+		code.emitLocal(JvmOpcodes.ILOAD,index);
+		code.emitInt(decl.getCapacity());
+		code.emitJump(JvmOpcodes.IF_ICMPGE,errorLabel);
+		errorLabels.add(errorLabel);
+		errorLocations.add(loc);
+		if (decl.isGlobal()) {
+			loadGlobals(decl);
+			code.emitLocal(JvmOpcodes.ILOAD,index);
+			code.emitInt(decl.getSlot());
+			code.emit(JvmOpcodes.IADD);
+		} else {
+			code.emitLocal(JvmOpcodes.ALOAD,locals.get(decl));
+			code.emitLocal(JvmOpcodes.ILOAD,index);
+		}
+	}
+
+	/**
+	 * Emit the code that throws the invalid index errors, after the code of
+	 * the method so it does not take place in the cycles
+	 */
+	private void emitIndexErrors() {
+		for (int i = 0; i < errorLabels.size(); i++) {
+			VarArrayLocation loc = errorLocations.get(i);
+			code.placeLabel(errorLabels.get(i));
+			code.emitNew(exceptionClass);
+			code.emit(JvmOpcodes.DUP);
+			code.emitNew("java/lang/StringBuilder");
+			code.emit(JvmOpcodes.DUP);
+			code.emitString(loc.getInvalidIndexErrorPrefix());
+			code.emitInvoke(JvmOpcodes.INVOKESPECIAL,"java/lang/StringBuilder","<init>","(Ljava/lang/String;)V");
+			code.emitLocal(JvmOpcodes.ILOAD,indexLocal);
+			code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/lang/StringBuilder","append","(I)Ljava/lang/StringBuilder;");
+			code.emitString(loc.getInvalidIndexErrorSuffix());
+			code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/lang/StringBuilder","append","(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+			code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/lang/StringBuilder","toString","()Ljava/lang/String;");
+			code.emitInvoke(JvmOpcodes.INVOKESPECIAL,exceptionClass,"<init>","(Ljava/lang/String;)V");
+			code.emit(JvmOpcodes.ATHROW);
+		}
+	}
+
+	/**
+	 * Load the array with the global slots of the type of the declaration
+	 */
+	private void loadGlobals(DeclarationIdentifier decl) {
+		if (decl.getType().equals(Type.FLOAT)) {
+			code.emitLocal(JvmOpcodes.ALOAD,float_globals);
+		} else if (decl.getType().equals(Type.BOOLEAN)) {
+			code.emitLocal(JvmOpcodes.ALOAD,boolean_globals);
+		} else {
+			code.emitLocal(JvmOpcodes.ALOAD,int_globals);
+		}
+	}
+
+	/**
+	 * Returns the array load instruction of the type of the declaration
+	 */
+	private int arrayLoad(DeclarationIdentifier decl) {
+		if (decl.getType().equals(Type.FLOAT)) {
+			return JvmOpcodes.FALOAD;
+		}
+		return decl.getType().equals(Type.BOOLEAN)?JvmOpcodes.BALOAD:JvmOpcodes.IALOAD;
+	}
+
+	/**
+	 * Returns the array store instruction of the type of the declaration
+	 */
+	private int arrayStore(DeclarationIdentifier decl) {
+		if (decl.getType().equals(Type.FLOAT)) {
+			return JvmOpcodes.FASTORE;
+		}
+		return decl.getType().equals(Type.BOOLEAN)?JvmOpcodes.BASTORE:JvmOpcodes.IASTORE;
+	}
+
+	/**
+	 * Get the local of the array indexes
+	 */
+	private int indexLocal() {
+		if (indexLocal < 0) {
+			indexLocal = code.newLocal();
+		}
+		return indexLocal;
+	}
+
+	/**
+	 * Get the local of the int values stored in arrays
+	 */
+	private int intTemp() {
+		if (intTemp < 0) {
+			intTemp = code.newLocal();
+		}
+		return intTemp;
+	}
+
+	/**
+	 * Get the local of the float values stored in arrays
+	 */
+	private int floatTemp() {
+		if (floatTemp < 0) {
+			floatTemp = code.newLocal();
+		}
+		return floatTemp;
+	}
+
+	/**
+	 * Visit method call passing the globals and the arguments to the static
+	 * method of the declaration
+	 */
+	public Object visit(MethodCall call) {
+		MethodDeclaration decl = call.getDeclaration();
+		emitEnter();
+		loadArguments(call);
+		code.emitInvoke(JvmOpcodes.INVOKESTATIC,getOwner(decl),getName(decl),getDescriptor(decl));
+		emitLeave();
+		return null;
+	}
+
+	/**
+	 * Compile a returned call. As in the interpreter, the called method takes
+	 * the depth of the current one once the arguments are evaluated. A call
+	 * of the method to itself stores the arguments in the locals of its
+	 * arguments and jumps to the start of the body, so the java stack does
+	 * not grow either.
+	 */
+	private void compileTailCall(MethodCall call) {
+		MethodDeclaration decl = call.getDeclaration();
+		emitEnter();
+		if (decl == method) {
+			for (Expression argument : call.getArguments()) {
+				argument.accept(this);
+			}
+			emitLeave();
+			for (int i = decl.getArguments().size() - 1; i >= 0; i--) {
+				DeclarationIdentifier argument = decl.getArguments().get(i).getDeclaration();
+				code.emitLocal(argument.getType().equals(Type.FLOAT)?JvmOpcodes.FSTORE:JvmOpcodes.ISTORE,locals.get(argument));
+			}
+			code.emitJump(JvmOpcodes.GOTO,bodyLabel);
+			return;
+		}
+		loadArguments(call);
+		emitLeave();
+		code.emitInvoke(JvmOpcodes.INVOKESTATIC,getOwner(decl),getName(decl),getDescriptor(decl));
+		if (method.getType().equals(Type.VOID)) {
+			if (!decl.getType().equals(Type.VOID)) {
+				code.emit(JvmOpcodes.POP);
+			}
+			code.emit(JvmOpcodes.RETURN);
+		} else {
+			code.emit(method.getType().equals(Type.FLOAT)?JvmOpcodes.FRETURN:JvmOpcodes.IRETURN);
+		}
+	}
+
+	/**
+	 * Stack the globals and the arguments of a call
+	 */
+	private void loadArguments(MethodCall call) {
+		MethodDeclaration decl = call.getDeclaration();
+		if (decl.isExtern()) {
+			throw new IllegalStateException("The extern method " + decl.getId() + " can not be compiled");
+		}
+		code.emitLocal(JvmOpcodes.ALOAD,int_globals);
+		code.emitLocal(JvmOpcodes.ALOAD,float_globals);
+		code.emitLocal(JvmOpcodes.ALOAD,boolean_globals);
+		for (Expression argument : call.getArguments()) {
+			argument.accept(this);
+		}
+	}
+
+	/**
+	 * Emit the count of a new nested call, if the nested calls are counted
+	 */
+	private void emitEnter() {
+		if (depthOwner != null) {
+			code.emitInvoke(JvmOpcodes.INVOKESTATIC,depthOwner,"enter","()V");
+		}
+	}
+
+	/**
+	 * Emit the end of a nested call, if the nested calls are counted
+	 */
+	private void emitLeave() {
+		if (depthOwner != null) {
+			code.emitInvoke(JvmOpcodes.INVOKESTATIC,depthOwner,"leave","()V");
+		}
+	}
+
+	/**
+	 * Visit a block compiling each statement. The statements after a return,
+	 * a break or a continue are not reached.
+	 */
+	public Object visit(Block block) {
+		for (Statement statement : block.getStatements()) {
+			statement.accept(this);
+			if (statement instanceof ReturnStatement || statement instanceof BreakStatement
+					|| statement instanceof ContinueStatement) {
+				break;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a semicolon statement
+	 */
+	public Object visit(SemicolonStatement s) {
+		return null;
+	}
+
+	/**
+	 * Visit a print statement
+	 */
+	public Object visit(PrintStatement p) {
+		Expression expression = p.getExpression();
+		code.emitField(JvmOpcodes.GETSTATIC,"java/lang/System","out","Ljava/io/PrintStream;");
+		expression.accept(this);
+		code.emitInvoke(JvmOpcodes.INVOKEVIRTUAL,"java/io/PrintStream","println","(" + typeDescriptor(expression.getType()) + ")V");
+		return null;
+	}
+
+}
@@ -0,0 +1,284 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+import java.util.List;
+
+/*
+ * This class provides a set of tests for the AssemblerCodeGenerator
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AssemblerCodeGeneratorTest {
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing AssemblerCodeGenerator -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/*
+	 * Test that the arguments are passed in registers and on the stack
+	 */
+	@Test
+	public void ArgumentsTest() throws Exception {
+		assertSameOutput("../src/test/resource/assembler/Arguments.ctds");
+	}
+
+	/*
+	 * Test that the arrays are accessed correctly
+	 */
+	@Test
+	public void ArraysTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/Arrays.ctds");
+	}
+
+	/*
+	 * Test that the comparisons only read by a conditional jump branch on their
+	 * flags, also with the unordered floats, and that the stored booleans keep
+	 * their value
+	 */
+	@Test
+	public void ConditionsTest() throws Exception {
+		assertSameOutput("../src/test/resource/assembler/Conditions.ctds");
+	}
+
+	/*
+	 * Test that the float operations give the values of the interpreter
+	 */
+	@Test
+	public void FloatsTest() throws Exception {
+		assertSameOutput("../src/test/resource/c/Floats.ctds");
+	}
+
+	/*
+	 * Test that the limit of a for cycle is evaluated only once, before the
+	 * first iteration
+	 */
+	@Test
+	public void ForLimitTest() throws Exception {
+		String expected = BytecodeVMTest.readExpected("ForLimit.expected");
+		assertEquals(expected,assertSameOutput("../src/test/resource/bytecode/ForLimit.ctds"));
+	}
+
+	/*
+	 * Test that an invalid array index is reported with the message of the
+	 * interpreter, also when the index is constant
+	 */
+	@Test
+	public void InvalidIndexTest() throws Exception {
+		String output = assertSameOutput("../src/test/resource/jvm/InvalidIndex.ctds");
+		assertSameOutput("../src/test/resource/visitor/interpreter/InvalidIndex.ctds");
+		System.out.println("Error founded, as expected: ");
+		System.out.print(output);
+	}
+
+	/*
+	 * Test that the loops, including break and continue, are executed correctly
+	 */
+	@Test
+	public void LoopsTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/Loops.ctds");
+	}
+
+	/*
+	 * Test that the calls between methods of the program are executed correctly
+	 */
+	@Test
+	public void MethodsTest() throws Exception {
+		assertSameOutput("../src/test/resource/jvm/Tiered.ctds");
+		assertSameOutput("../src/test/resource/bytecode/Recursion.ctds");
+	}
+
+	/*
+	 * Test that the peephole optimizer deletes the redundant moves and jumps,
+	 * inverts the conditional jumps over a jump and simplifies the arithmetic,
+	 * but keeps the instructions whose flags are read and the 32-bit
+	 * instructions that clear the upper half of a register
+	 */
+	@Test
+	public void PeepholeTest() throws Exception {
+		String code = "f:\n"
+			+ "\tmovq %rbx, -8(%rbp)\n"
+			+ "\tmovq -8(%rbp), %rbx\n"
+			+ "\tmovq -8(%rbp), %rcx\n"
+			+ "\tmovq %rcx, %rcx\n"
+			+ "\tmovl %ecx, %ecx\n"
+			+ "\tmovl %edx, -16(%rbp)\n"
+			+ "\tmovl -16(%rbp), %edx\n"
+			+ "\tleaq a(%rip), %r11\n"
+			+ "\tmovl (%r11), %eax\n"
+			+ "\tleaq a(%rip), %r11\n"
+			+ "\taddl $0, %eax\n"
+			+ "\taddq $0, %rax\n"
+			+ "\timull $1, %eax\n"
+			+ "\timulq $1, %rax\n"
+			+ "\timull $8, %ecx\n"
+			+ "\tsubl $0, %ecx\n"
+			+ "\tje L1\n"
+			+ "\tjmp L2\n"
+			+ "\tmovl $1, %eax\n"
+			+ "L1:\n"
+			+ "\tjmp L3\n"
+			+ "L2:\n"
+			+ "\tincl %eax\n"
+			+ "L3:\n"
+			+ "\tret\n"
+			+ "g:\n"
+			+ "\tcmpl $1, %eax\n"
+			+ "\tjl L4\n"
+			+ "\tjmp L5\n"
+			+ "L4:\n"
+			+ "\tincl %eax\n"
+			+ "L5:\n"
+			+ "\tret\n";
+		String expected = "f:\n"
+			+ "\tmovq %rbx, -8(%rbp)\n"
+			+ "\tmovq %rbx, %rcx\n"
+			+ "\tmovl %ecx, %ecx\n"
+			+ "\tmovl %edx, -16(%rbp)\n"
+			+ "\tmovl %edx, %edx\n"
+			+ "\tleaq a(%rip), %r11\n"
+			+ "\tmovl (%r11), %eax\n"
+			+ "\taddl $0, %eax\n"
+			+ "\timull $1, %eax\n"
+			+ "\tshll $3, %ecx\n"
+			+ "\tsubl $0, %ecx\n"
+			+ "\tje L3\n"
+			+ "\tjmp L2\n"
+			+ "L1:\n"
+			+ "\tjmp L3\n"
+			+ "L2:\n"
+			+ "\tincl %eax\n"
+			+ "L3:\n"
+			+ "\tret\n"
+			+ "g:\n"
+			+ "\tcmpl $1, %eax\n"
+			+ "\tjge L5\n"
+			+ "L4:\n"
+			+ "\tincl %eax\n"
+			+ "L5:\n"
+			+ "\tret\n";
+		assertEquals(expected,PeepholeOptimizer.optimize(code));
+	}
+
+	/*
+	 * Test that the variables kept in registers, and the ones spilled when there
+	 * are not enough registers, keep their values across the calls
+	 */
+	@Test
+	public void RegistersTest() throws Exception {
+		assertSameOutput("../src/test/resource/assembler/Registers.ctds");
+	}
+
+	/*
+	 * Test that the calls to methods of different classes with the same name
+	 * execute the method of the called class
+	 */
+	@Test
+	public void SameNamesTest() throws Exception {
+		String expected = BytecodeVMTest.readExpected("SameNames.expected");
+		assertEquals(expected,assertSameOutput("../src/test/resource/bytecode/SameNames.ctds"));
+	}
+
+	/*
+	 * Test that the right operand of && and || is only evaluated when the left
+	 * one does not decide the value
+	 */
+	@Test
+	public void ShortCircuitTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/ShortCircuit.ctds");
+	}
+
+	/*
+	 * Test that the tail calls jump to the called method, and that the tail calls
+	 * of a method to itself restart it with the local variables reset
+	 */
+	@Test
+	public void TailCallsTest() throws Exception {
+		assertSameOutput("../src/test/resource/visitor/interpreter/TailCall.ctds");
+	}
+
+	/*
+	 * Check that the program compiled from the assembler code of the given input
+	 * file prints the same than the interpreter, including the errors. Returns the
+	 * output.
+	 */
+	public static String assertSameOutput(String inputFile) throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		Program program = JvmCodeGeneratorTest.check(inputFile,errors);
+		assertEquals(0,errors.size());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream standardOutput = System.out;
+		try {
+ 			System.setOut(new PrintStream(output,true));
+ 			InterpreterVisitor interpreter = new InterpreterVisitor();
+ 			for (String error : interpreter.visit(program)) {
+ 				System.out.println(error);
+ 			}
+		} finally {
+			System.setOut(standardOutput);
+		}
+		String programOutput = run(JvmCodeGeneratorTest.check(inputFile,errors));
+		assertEquals(output.toString(),programOutput);
+		return programOutput;
+	}
+
+	/*
+	 * Generate the optimized assembler code of the program, link it with gcc, run
+	 * it and returns the printed output, including the error of an invalid index
+	 */
+	public static String run(Program program) throws Exception {
+		File source = File.createTempFile("ctds",".s");
+		File executable = new File(source.getPath() + ".exec");
+		try {
+			IntermediateCodeGeneratorVisitor iCGVisitor = new IntermediateCodeGeneratorVisitor();
+			iCGVisitor.visit(program);
+			List<IntermediateCodeStatement> iCodeStatements = IntermediateCodeOptimizer.optimize(iCGVisitor.getIntermediateCodeList());
+			AssemblerCodeGenerator.generateAssemblerCode(iCodeStatements,source.getPath());
+			Process gcc = new ProcessBuilder("gcc",source.getPath(),"-o",executable.getPath()).inheritIO().start();
+			assertEquals(0,gcc.waitFor());
+			ProcessBuilder builder = new ProcessBuilder(executable.getPath());
+			builder.redirectErrorStream(true);
+			Process process = builder.start();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			InputStream input = process.getInputStream();
+			byte[] buffer = new byte[4096];
+			int read = input.read(buffer);
+			while (read >= 0) {
+				output.write(buffer,0,read);
+				read = input.read(buffer);
+			}
+			// The program exits with status 1 after an invalid index
+			assertEquals(output.toString().contains("Error: the index") ? 1 : 0,process.waitFor());
+			return output.toString();
+		} finally {
+			source.delete();
+			executable.delete();
+		}
+	}
+
+}
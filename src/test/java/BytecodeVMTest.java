@@ -0,0 +1,151 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+
+/* 
+ * This class provides a set of tests for the BytecodeVM
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BytecodeVMTest {
+
+	private static final String resources = "../src/test/resource/bytecode/";
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing BytecodeVM -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/* 
+	 * Test that the arrays are accessed correctly
+	 */
+	@Test
+	public void ArraysTest() throws IOException {
+		assertEquals(readExpected("Arrays.expected"),execute("Arrays.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that an invalid array index is reported
+	 */
+	@Test
+	public void InvalidIndexTest() throws IOException {
+		LinkedList<String> errors = new LinkedList<String>();
+		execute("InvalidIndex.ctds",errors);
+		assertEquals(1,errors.size());
+		System.out.println("Error founded, as expected: ");
+		System.out.println(errors.get(0));
+	}
+
+	/* 
+	 * Test that the limit of a for cycle is evaluated only once, before the
+	 * first iteration
+	 */
+	@Test
+	public void ForLimitTest() throws IOException {
+		assertEquals(readExpected("ForLimit.expected"),execute("ForLimit.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the loops, including break and continue, are executed correctly
+	 */
+	@Test
+	public void LoopsTest() throws IOException {
+		assertEquals(readExpected("Loops.expected"),execute("Loops.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the recursive calls are executed correctly
+	 */
+	@Test
+	public void RecursionTest() throws IOException {
+		assertEquals(readExpected("Recursion.expected"),execute("Recursion.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the calls to methods of different classes with the same name
+	 * execute the method of the called class
+	 */
+	@Test
+	public void SameNamesTest() throws IOException {
+		assertEquals(readExpected("SameNames.expected"),execute("SameNames.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the right operand of && and || is only evaluated when the left
+	 * one does not decide the value
+	 */
+	@Test
+	public void ShortCircuitTest() throws IOException {
+		assertEquals(readExpected("ShortCircuit.expected"),execute("ShortCircuit.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	* Execute the given input file in the bytecode vm, adds the errors
+	* founded to the given list and returns the printed output.
+	*/
+	public static String execute(String inputFile, LinkedList<String> errors) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			CTdsParser parser = new CTdsParser(new CTdsScanner(new FileReader(resources+inputFile)));
+			Program program = (Program)parser.parse().value;
+
+			CheckDeclarationVisitor declarationVisitor = new CheckDeclarationVisitor();
+ 			errors.addAll(declarationVisitor.visit(program));
+
+			CheckTypeVisitor typeVisitor = new CheckTypeVisitor();
+ 			errors.addAll(typeVisitor.visit(program));
+
+ 			IntermediateCodeGeneratorVisitor iCGVisitor = new IntermediateCodeGeneratorVisitor();
+ 			iCGVisitor.visit(program);
+ 			BytecodeProgram bytecodeProgram = new BytecodeGenerator().generate(iCGVisitor.getIntermediateCodeList());
+ 			BytecodeVM vm = new BytecodeVM(bytecodeProgram,new PrintStream(output,true),1000);
+ 			errors.addAll(vm.run());
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return output.toString();
+	}
+
+	/* 
+	* Returns the content of the given expected output file.
+	*/
+	public static String readExpected(String expectedFile) throws IOException {
+		StringBuilder expected = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new FileReader(resources+expectedFile));
+		String line = reader.readLine();
+		while (line != null) {
+			expected.append(line).append(System.lineSeparator());
+			line = reader.readLine();
+		}
+		reader.close();
+		return expected.toString();
+	}
+
+}
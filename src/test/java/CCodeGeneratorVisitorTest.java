@@ -0,0 +1,164 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+
+/* 
+ * This class provides a set of tests for the CCodeGeneratorVisitor
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CCodeGeneratorVisitorTest {
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing CCodeGeneratorVisitor -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/* 
+	 * Test that the arrays are accessed correctly
+	 */
+	@Test
+	public void ArraysTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/Arrays.ctds");
+	}
+
+	/* 
+	 * Test that the floats are printed as in the interpreter
+	 */
+	@Test
+	public void FloatsTest() throws Exception {
+		assertSameOutput("../src/test/resource/c/Floats.ctds");
+	}
+
+	/* 
+	 * Test that the limit of a for cycle is evaluated only once, before the
+	 * first iteration
+	 */
+	@Test
+	public void ForLimitTest() throws Exception {
+		String expected = BytecodeVMTest.readExpected("ForLimit.expected");
+		assertEquals(expected,assertSameOutput("../src/test/resource/bytecode/ForLimit.ctds"));
+	}
+
+	/* 
+	 * Test that an invalid array index is reported with the message of the
+	 * interpreter
+	 */
+	@Test
+	public void InvalidIndexTest() throws Exception {
+		String output = assertSameOutput("../src/test/resource/jvm/InvalidIndex.ctds");
+		System.out.println("Error founded, as expected: ");
+		System.out.print(output);
+	}
+
+	/* 
+	 * Test that the loops, including break and continue, are executed correctly
+	 */
+	@Test
+	public void LoopsTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/Loops.ctds");
+	}
+
+	/* 
+	 * Test that the calls between methods of the program are executed correctly
+	 */
+	@Test
+	public void MethodsTest() throws Exception {
+		assertSameOutput("../src/test/resource/jvm/Tiered.ctds");
+		assertSameOutput("../src/test/resource/bytecode/Recursion.ctds");
+	}
+
+	/* 
+	 * Test that the right operand of && and || is only evaluated when the left
+	 * one does not decide the value
+	 */
+	@Test
+	public void ShortCircuitTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/ShortCircuit.ctds");
+	}
+
+	/* 
+	 * Check that the program compiled from the C code of the given input file
+	 * prints the same than the interpreter, including the errors. Returns the
+	 * output.
+	 */
+	public static String assertSameOutput(String inputFile) throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		Program program = JvmCodeGeneratorTest.check(inputFile,errors);
+		assertEquals(0,errors.size());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream standardOutput = System.out;
+		try {
+ 			System.setOut(new PrintStream(output,true));
+ 			InterpreterVisitor interpreter = new InterpreterVisitor();
+ 			for (String error : interpreter.visit(program)) {
+ 				System.out.println(error);
+ 			}
+		} finally {
+			System.setOut(standardOutput);
+		}
+		String programOutput = run(JvmCodeGeneratorTest.check(inputFile,errors));
+		assertEquals(output.toString(),programOutput);
+		return programOutput;
+	}
+
+	/* 
+	 * Generate the C code of the program, compile it with gcc, run it and
+	 * returns the printed output
+	 */
+	public static String run(Program program) throws Exception {
+		File source = File.createTempFile("ctds",".c");
+		File executable = new File(source.getPath() + ".exec");
+		try {
+			PrintWriter writer = new PrintWriter(source,"UTF-8");
+			writer.print(new CCodeGeneratorVisitor().visit(program));
+			writer.close();
+			Process gcc = new ProcessBuilder("gcc","-O2","-fwrapv",source.getPath(),"-o",executable.getPath()).inheritIO().start();
+			assertEquals(0,gcc.waitFor());
+			ProcessBuilder builder = new ProcessBuilder(executable.getPath());
+			builder.redirectErrorStream(true);
+			Process process = builder.start();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			InputStream input = process.getInputStream();
+			byte[] buffer = new byte[4096];
+			int read = input.read(buffer);
+			while (read >= 0) {
+				output.write(buffer,0,read);
+				read = input.read(buffer);
+			}
+			process.waitFor();
+			return output.toString();
+		} finally {
+			source.delete();
+			executable.delete();
+		}
+	}
+
+}
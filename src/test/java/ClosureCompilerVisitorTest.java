@@ -0,0 +1,171 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+
+/* 
+ * This class provides a set of tests for the ClosureCompilerVisitor
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ClosureCompilerVisitorTest {
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing ClosureCompilerVisitor -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/* 
+	 * Test that the arrays are accessed correctly
+	 */
+	@Test
+	public void ArraysTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("Arrays.expected");
+		assertEquals(expected,execute("../src/test/resource/bytecode/Arrays.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the assign statement is performed correctly
+	 */
+	@Test
+	public void AssignStatementTest() throws IOException {
+		LinkedList<String> errors = new LinkedList<String>();
+		assertEquals("5"+System.lineSeparator(),execute("../src/test/resource/visitor/interpreter/AssignStatement.ctds",errors));
+		assertEquals(0,errors.size());
+	}
+
+	/* 
+	 * Test that the limit of a for cycle is evaluated only once, before the
+	 * first iteration
+	 */
+	@Test
+	public void ForLimitTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("ForLimit.expected");
+		assertEquals(expected,execute("../src/test/resource/bytecode/ForLimit.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that an invalid array index is reported
+	 */
+	@Test
+	public void InvalidIndexTest() throws IOException {
+		LinkedList<String> errors = new LinkedList<String>();
+		execute("../src/test/resource/bytecode/InvalidIndex.ctds",errors);
+		assertEquals(1,errors.size());
+		System.out.println("Error founded, as expected: ");
+		System.out.println(errors.get(0));
+	}
+
+	/* 
+	 * Test that the loops, including break and continue, are executed correctly
+	 */
+	@Test
+	public void LoopsTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("Loops.expected");
+		assertEquals(expected,execute("../src/test/resource/bytecode/Loops.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the calls nested more times than the given maximum are reported
+	 */
+	@Test
+	public void MaxDepthTest() throws IOException {
+		LinkedList<String> errors = new LinkedList<String>();
+		execute("../src/test/resource/bytecode/Recursion.ctds",errors,new ClosureInterpreter(5));
+		assertEquals(1,errors.size());
+		assertEquals("Error: the maximum amount of nested calls (5) was exceeded",errors.get(0));
+	}
+
+	/* 
+	 * Test that the recursive calls are executed correctly
+	 */
+	@Test
+	public void RecursionTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("Recursion.expected");
+		assertEquals(expected,execute("../src/test/resource/bytecode/Recursion.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the right operand of && and || is only evaluated when the left
+	 * one does not decide the value
+	 */
+	@Test
+	public void ShortCircuitTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("ShortCircuit.expected");
+		assertEquals(expected,execute("../src/test/resource/bytecode/ShortCircuit.ctds",new LinkedList<String>()));
+	}
+
+	/* 
+	 * Test that the returned calls are executed after leaving the calling
+	 * method, so a tail recursion deeper than the maximum amount of nested
+	 * calls completes as in the interpreter
+	 */
+	@Test
+	public void TailCallTest() throws IOException {
+		LinkedList<String> errors = new LinkedList<String>();
+		String expected = BytecodeVMTest.readExpected("TailCall.expected");
+		assertEquals(expected,execute("../src/test/resource/visitor/interpreter/TailCall.ctds",errors));
+		assertEquals(0,errors.size());
+	}
+
+	/* 
+	* Compile the given input file to closures and execute it, adds the errors
+	* founded to the given list and returns the printed output.
+	*/
+	public static String execute(String inputFile, LinkedList<String> errors) throws IOException {
+		return execute(inputFile,errors,new ClosureInterpreter());
+	}
+
+	/* 
+	* Execute the given input file with the given closure interpreter, adds the
+	* errors founded to the given list and returns the printed output.
+	*/
+	public static String execute(String inputFile, LinkedList<String> errors, ClosureInterpreter interpreter) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream standardOutput = System.out;
+		try {
+			CTdsParser parser = new CTdsParser(new CTdsScanner(new FileReader(inputFile)));
+			Program program = (Program)parser.parse().value;
+
+			CheckDeclarationVisitor declarationVisitor = new CheckDeclarationVisitor();
+ 			errors.addAll(declarationVisitor.visit(program));
+
+			CheckTypeVisitor typeVisitor = new CheckTypeVisitor();
+ 			errors.addAll(typeVisitor.visit(program));
+
+ 			System.setOut(new PrintStream(output,true));
+ 			errors.addAll(interpreter.run(program));
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			System.setOut(standardOutput);
+		}
+		return output.toString();
+	}
+
+}
@@ -0,0 +1,166 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+import java.util.List;
+
+/*
+ * This class provides a set of tests for the ControlFlowGraph
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ControlFlowGraphTest {
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing ControlFlowGraph -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/*
+	 * Test that the blocks partition the statements and that the edges follow the jumps
+	 */
+	@Test
+	public void BlocksTest() throws Exception {
+		ControlFlowGraph graph = build("../src/test/resource/intermediatecode/Nested.ctds");
+		int position = 0;
+		for (BasicBlock block : graph.getBlocks()) {
+			assertEquals(position,block.getFirst());
+			for (int i = block.getFirst(); i <= block.getLast(); i++) {
+				assertSame(block,graph.getBlock(i));
+			}
+			for (BasicBlock successor : block.getSuccessors()) {
+				assertTrue(successor.getPredecessors().contains(block));
+			}
+			IntermediateCodeInstruction last = block.getLastStatement().getInstruction();
+			if (last == IntermediateCodeInstruction.RET) {
+				assertEquals(0,block.getSuccessors().size());
+			} else if (last == IntermediateCodeInstruction.JUMPF) {
+				assertEquals(2,block.getSuccessors().size());
+			}
+			position = block.getLast()+1;
+		}
+		assertEquals(graph.getStatements().size(),position);
+		assertSame(graph.getEntry(),graph.getReversePostorder().get(0));
+	}
+
+	/*
+	 * Test that the immediate dominator of each block dominates it and its predecessors
+	 */
+	@Test
+	public void DominatorsTest() throws Exception {
+		ControlFlowGraph graph = build("../src/test/resource/intermediatecode/Nested.ctds");
+		BasicBlock entry = graph.getEntry();
+		assertNull(entry.getDominator());
+		for (BasicBlock block : graph.getReversePostorder()) {
+			assertTrue(entry.dominates(block));
+			assertTrue(block.dominates(block));
+			if (block != entry) {
+				BasicBlock dominator = block.getDominator();
+				assertTrue(dominator.dominates(block));
+				assertFalse(block.dominates(dominator));
+				assertTrue(dominator.getOrder() < block.getOrder());
+				for (BasicBlock predecessor : block.getPredecessors()) {
+					if (predecessor.isReachable()) {
+						assertTrue(dominator.dominates(predecessor));
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Test that the loops are found with their nesting
+	 */
+	@Test
+	public void LoopsTest() throws Exception {
+		ControlFlowGraph graph = build("../src/test/resource/intermediatecode/Nested.ctds");
+		assertEquals(3,graph.getLoops().size());
+		Loop outer = graph.getLoops().get(0);
+		Loop inner = graph.getLoops().get(1);
+		Loop last = graph.getLoops().get(2);
+		assertNull(outer.getParent());
+		assertSame(outer,inner.getParent());
+		assertNull(last.getParent());
+		assertEquals(2,inner.getDepth());
+		assertEquals(1,last.getDepth());
+		assertEquals(1,outer.getChildren().size());
+		for (BasicBlock block : inner.getBlocks()) {
+			assertTrue(outer.contains(block));
+			assertTrue(inner.getHeader().dominates(block));
+			assertEquals(2,block.getLoopDepth());
+		}
+		for (BasicBlock block : last.getBlocks()) {
+			assertFalse(outer.contains(block));
+		}
+		// The outer loop is left by its condition and by the break
+		assertFalse(outer.getExits().isEmpty());
+		for (BasicBlock exit : outer.getExits()) {
+			assertFalse(outer.contains(exit));
+		}
+		assertEquals(0,graph.getEntry().getLoopDepth());
+	}
+
+	/*
+	 * Test that the graph of a method with thousands of loops and statements is
+	 * built in a reasonable time
+	 */
+	@Test(timeout=10000)
+	public void ScaleTest() throws Exception {
+		int loops = 20000;
+		LinkedList<IntermediateCodeStatement> statements = new LinkedList<IntermediateCodeStatement>();
+		int line = 0;
+		statements.add(new OneAddressStatement(IntermediateCodeInstruction.INITML,new Label(line++)));
+		for (int i = 0; i < loops; i++) {
+			Label begin = new Label(2*i);
+			Label end = new Label(2*i+1);
+			statements.add(new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(line++),begin));
+			statements.add(new OneAddressStatement(IntermediateCodeInstruction.JUMPF,new Label(line++),null,end));
+			statements.add(new OneAddressStatement(IntermediateCodeInstruction.JUMP,new Label(line++),begin));
+			statements.add(new OneAddressStatement(IntermediateCodeInstruction.LABEL,new Label(line++),end));
+		}
+		statements.add(new IntermediateCodeStatement(IntermediateCodeInstruction.RET,new Label(line++)));
+		ControlFlowGraph graph = new ControlFlowGraph(statements);
+		assertEquals(loops,graph.getLoops().size());
+		assertEquals(3*loops+1,graph.getBlocks().size());
+		assertEquals(3*loops+1,graph.getReversePostorder().size());
+		new LivenessAnalysis(graph);
+	}
+
+	/*
+	 * Build the control flow graph of the main method of the given input file
+	 */
+	private static ControlFlowGraph build(String inputFile) throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		Program program = JvmCodeGeneratorTest.check(inputFile,errors);
+		assertEquals(0,errors.size());
+		IntermediateCodeGeneratorVisitor iCGVisitor = new IntermediateCodeGeneratorVisitor();
+		iCGVisitor.visit(program);
+		List<List<IntermediateCodeStatement>> methods = ControlFlowGraph.getMethods(iCGVisitor.getIntermediateCodeList());
+		return new ControlFlowGraph(methods.get(methods.size()-1));
+	}
+
+}
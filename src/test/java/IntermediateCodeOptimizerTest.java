@@ -0,0 +1,361 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+import java.util.List;
+
+/*
+ * This class provides a set of tests for the IntermediateCodeOptimizer
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IntermediateCodeOptimizerTest {
+
+	private static final String resources = "../src/test/resource/intermediatecode/";
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing IntermediateCodeOptimizer -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/*
+	 * Test that the constants are propagated and folded, and that the branches
+	 * that are never executed are removed
+	 */
+	@Test
+	public void ConstantsTest() throws Exception {
+		List<IntermediateCodeStatement> optimized = assertSameOutput(resources+"Constants.ctds");
+		List<IntermediateCodeStatement> main = getMethod(optimized,"main");
+		for (IntermediateCodeStatement stmt : main) {
+			if (stmt instanceof ThreeAddressStatement) {
+				ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+				assertFalse(threeStmt.getExpressionOne() instanceof Literal && threeStmt.getExpressionTwo() instanceof Literal);
+			}
+			if (stmt.getInstruction() == IntermediateCodeInstruction.PRINT) {
+				// Only the total and the calls are not constant
+				Expression printed = ((OneAddressStatement)stmt).getExpression();
+				assertTrue(printed instanceof Literal || printed.toString().startsWith("total") || printed.toString().equals("calls"));
+			}
+		}
+		// The only condition left is the one of the for statement
+		assertEquals(1,count(main,IntermediateCodeInstruction.JUMPF));
+		// The calls are inlined, and the one in the branch that is never executed is removed
+		assertEquals(0,count(main,IntermediateCodeInstruction.CALL));
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"Constants.ctds");
+	}
+
+	/*
+	 * Test that the unused assignments and the code after the returns are deleted,
+	 * and that the frames only keep the slots of the variables still used
+	 */
+	@Test
+	public void DeadCodeTest() throws Exception {
+		List<IntermediateCodeStatement> original = generate(resources+"DeadCode.ctds");
+		List<IntermediateCodeStatement> optimized = assertSameOutput(resources+"DeadCode.ctds");
+		List<IntermediateCodeStatement> sum = getMethod(optimized,"sum");
+		// Only the assignments of the total and the counter are left
+		for (IntermediateCodeStatement stmt : sum) {
+			DeclarationIdentifier decl = SSAForm.getDefinition(stmt);
+			assertTrue(decl == null || decl.getId().startsWith("t") || decl.getId().startsWith("i"));
+		}
+		assertEquals(0,count(sum,IntermediateCodeInstruction.PRINT));
+		assertEquals(1,count(sum,IntermediateCodeInstruction.RET));
+		// The division is kept since the divisor could be zero
+		List<IntermediateCodeStatement> keep = getMethod(optimized,"keep");
+		assertEquals(1,count(keep,IntermediateCodeInstruction.DIVI));
+		assertEquals(0,count(keep,IntermediateCodeInstruction.MOD));
+		List<IntermediateCodeStatement> main = getMethod(optimized,"main");
+		assertEquals(0,count(main,IntermediateCodeInstruction.MULTI));
+		assertEquals(3,count(main,IntermediateCodeInstruction.PRINT));
+		assertTrue(getReserve(main) < getReserve(getMethod(original,"main")));
+		assertTrue(getReserve(keep) < getReserve(getMethod(original,"keep")));
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"DeadCode.ctds");
+	}
+
+	/*
+	 * Test that the repeated computations are reused, including the products of
+	 * array elements and the indexes, but not the reads of a global after a call
+	 */
+	@Test
+	public void ValueNumberingTest() throws Exception {
+		List<IntermediateCodeStatement> main = getMethod(assertSameOutput(resources+"ValueNumbering.ctds"),"main");
+		int arrayProducts = 0;
+		int globalProducts = 0;
+		for (IntermediateCodeStatement stmt : main) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.MULTI) {
+				ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+				if (threeStmt.getExpressionOne() instanceof VarArrayLocation) {
+					arrayProducts++;
+				} else if (threeStmt.getExpressionOne().toString().equals("g")) {
+					globalProducts++;
+				}
+			}
+		}
+		assertEquals(1,arrayProducts);
+		// Once in the loop and before and after the call
+		assertEquals(3,globalProducts);
+		// The index i + 1 - 1 and the negation of k are computed once
+		assertEquals(2,count(main,IntermediateCodeInstruction.SUBI));
+		List<IntermediateCodeStatement> original = getMethod(generate(resources+"ValueNumbering.ctds"),"main");
+		assertTrue(count(main,IntermediateCodeInstruction.ADDI) < count(original,IntermediateCodeInstruction.ADDI));
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"ValueNumbering.ctds");
+	}
+
+	/*
+	 * Test that the copies are coalesced without breaking the swaps of variables,
+	 * and that the variables that are not live at the same time share slots
+	 */
+	@Test
+	public void CoalescingTest() throws Exception {
+		List<IntermediateCodeStatement> original = generate(resources+"Coalescing.ctds");
+		List<IntermediateCodeStatement> optimized = assertSameOutput(resources+"Coalescing.ctds");
+		List<IntermediateCodeStatement> main = getMethod(optimized,"main");
+		assertTrue(count(main,IntermediateCodeInstruction.ASSIGN) < count(getMethod(original,"main"),IntermediateCodeInstruction.ASSIGN));
+		// The counters are incremented in place
+		for (IntermediateCodeStatement stmt : main) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.ADDI && ((ThreeAddressStatement)stmt).getExpressionTwo() instanceof IntLiteral) {
+				assertEquals(((ThreeAddressStatement)stmt).getExpressionOne().toString(),((ThreeAddressStatement)stmt).getResult().toString());
+			}
+		}
+		List<IntermediateCodeStatement> depth = getMethod(optimized,"depth");
+		assertTrue(getReserve(depth) < getReserve(getMethod(original,"depth")));
+		assertTrue(getReserve(main) < getReserve(getMethod(original,"main")));
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"Coalescing.ctds");
+	}
+
+	/*
+	 * Test that the invariant computations are moved out of the loops, but not the
+	 * reads of the arrays and globals stored or changed by a call in the loop
+	 */
+	@Test
+	public void InvariantsTest() throws Exception {
+		List<IntermediateCodeStatement> main = getMethod(assertSameOutput(resources+"Invariants.ctds"),"main");
+		ControlFlowGraph graph = new ControlFlowGraph(main);
+		for (BasicBlock block : graph.getBlocks()) {
+			for (IntermediateCodeStatement stmt : block.getStatements()) {
+				if (!(stmt instanceof ThreeAddressStatement)) {
+					continue;
+				}
+				ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+				String operand1 = threeStmt.getExpressionOne().toString();
+				String operand2 = threeStmt.getExpressionTwo().toString();
+				if (operand1.equals("size") || operand1.equals("scale") && operand2.equals("size")) {
+					// The bounds and the factor only depend on the globals
+					assertEquals(0,block.getLoopDepth());
+				} else if (operand2.equals("size")) {
+					// The row only depends on the outer counter
+					assertEquals(1,block.getLoopDepth());
+				} else if (operand1.equals("scale") || operand1.startsWith("m[0]")) {
+					// The global is changed by the call and the array is stored
+					assertEquals(1,block.getLoopDepth());
+				}
+			}
+		}
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"Invariants.ctds");
+	}
+
+	/*
+	 * Test that the products of the counters of the loops by invariant values are
+	 * replaced by additions, but not the products by a global stored in the loop
+	 */
+	@Test
+	public void InductionTest() throws Exception {
+		List<IntermediateCodeStatement> main = getMethod(assertSameOutput(resources+"Induction.ctds"),"main");
+		int products = 0;
+		for (IntermediateCodeStatement stmt : main) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.MULTI) {
+				ThreeAddressStatement threeStmt = (ThreeAddressStatement)stmt;
+				// Only the product by an array element and the one by the stride are left
+				assertTrue(threeStmt.getExpressionOne() instanceof VarArrayLocation || threeStmt.getExpressionTwo().toString().equals("stride"));
+				products++;
+			}
+		}
+		assertEquals(2,products);
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"Induction.ctds");
+	}
+
+	/*
+	 * Test that the indexes bounded by the conditions of the loops, and the ones
+	 * already checked, are not checked again, but the ones that could be out of
+	 * the bounds are
+	 */
+	@Test
+	public void BoundsTest() throws Exception {
+		List<IntermediateCodeStatement> optimized = assertSameOutput(resources+"Bounds.ctds");
+		assertEquals(0,countChecked(getMethod(optimized,"fill")));
+		assertEquals(0,countChecked(getMethod(optimized,"find")));
+		assertEquals(0,countChecked(getMethod(optimized,"reversed")));
+		// Only the first read of the parameter index is checked
+		assertEquals(1,countChecked(getMethod(optimized,"twice")));
+		// The counter could overflow when the parameter is the greatest int
+		assertEquals(1,countChecked(getMethod(optimized,"sum")));
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"Bounds.ctds");
+	}
+
+	/*
+	 * Test that the calls to the small methods that do not call other methods are
+	 * inlined, but not the calls to the recursive methods and to the big methods
+	 * outside the loops
+	 */
+	@Test
+	public void InliningTest() throws Exception {
+		List<IntermediateCodeStatement> optimized = assertSameOutput(resources+"Inlining.ctds");
+		List<IntermediateCodeStatement> main = getMethod(optimized,"main");
+		for (IntermediateCodeStatement stmt : main) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.CALL) {
+				String name = ((Location)((TwoAddressStatement)stmt).getExpression()).getId();
+				assertTrue(name.equals("fact") || name.equals("big"));
+			}
+		}
+		assertEquals(3,count(main,IntermediateCodeInstruction.CALL));
+		// The calls of a method are inlined once the called methods are inlined in it
+		assertEquals(0,count(getMethod(optimized,"around"),IntermediateCodeInstruction.CALL));
+		assertEquals(1,count(getMethod(optimized,"fact"),IntermediateCodeInstruction.CALL));
+		AssemblerCodeGeneratorTest.assertSameOutput(resources+"Inlining.ctds");
+	}
+
+	/*
+	 * Test that a method with thousands of conditions, each one dominating the
+	 * next statements, is optimized without exhausting the java stack
+	 */
+	@Test(timeout=60000)
+	public void ScaleTest() throws Exception {
+		File source = File.createTempFile("ctds",".ctds");
+		try {
+			PrintWriter writer = new PrintWriter(source,"UTF-8");
+			writer.println("class Scale {");
+			writer.println("\tvoid main() {");
+			writer.println("\t\tint a[10];");
+			writer.println("\t\tint x, y;");
+			for (int i = 0; i < 5000; i++) {
+				writer.println("\t\tx = x + a[" + (i % 10) + "] * y;");
+				writer.println("\t\tif (x > " + i + ") { y = y + 1; } else { a[x % 10] = y; }");
+			}
+			writer.println("\t\tprint(x);");
+			writer.println("\t\tprint(y);");
+			writer.println("\t\treturn;");
+			writer.println("\t}");
+			writer.println("}");
+			writer.close();
+			List<IntermediateCodeStatement> main = getMethod(assertSameOutput(source.getPath()),"main");
+			assertTrue(countChecked(main) > 0);
+		} finally {
+			source.delete();
+		}
+	}
+
+	/*
+	 * Check that the optimized intermediate code of the given input file prints
+	 * the same than the original code in the bytecode vm, and returns the
+	 * optimized code
+	 */
+	public static List<IntermediateCodeStatement> assertSameOutput(String inputFile) throws Exception {
+		String expected = execute(generate(inputFile));
+		List<IntermediateCodeStatement> optimized = IntermediateCodeOptimizer.optimize(generate(inputFile));
+		assertEquals(expected,execute(optimized));
+		return optimized;
+	}
+
+	/*
+	 * Get the statements of the method with the given name
+	 */
+	public static List<IntermediateCodeStatement> getMethod(List<IntermediateCodeStatement> iCodeStatements, String name) {
+		for (List<IntermediateCodeStatement> method : ControlFlowGraph.getMethods(iCodeStatements)) {
+			if (((Location)((OneAddressStatement)method.get(0)).getExpression()).getId().equals(name)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Count the statements with the given instruction
+	 */
+	public static int count(List<IntermediateCodeStatement> statements, IntermediateCodeInstruction instruction) {
+		int amount = 0;
+		for (IntermediateCodeStatement stmt : statements) {
+			if (stmt.getInstruction() == instruction) {
+				amount++;
+			}
+		}
+		return amount;
+	}
+
+	/*
+	 * Count the array elements whose index is not known to be in bounds
+	 */
+	public static int countChecked(List<IntermediateCodeStatement> statements) {
+		int amount = 0;
+		for (IntermediateCodeStatement stmt : statements) {
+			for (Expression operand : SSAForm.getOperands(stmt)) {
+				if (operand instanceof VarArrayLocation && !((VarArrayLocation)operand).isInBounds()) {
+					amount++;
+				}
+			}
+		}
+		return amount;
+	}
+
+	/*
+	 * Get the amount of slots reserved by a method
+	 */
+	public static int getReserve(List<IntermediateCodeStatement> method) {
+		for (IntermediateCodeStatement stmt : method) {
+			if (stmt.getInstruction() == IntermediateCodeInstruction.RESERVE) {
+				return ((IntLiteral)((Location)((OneAddressStatement)stmt).getExpression()).getValue()).getIntegerValue();
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Generate the intermediate code of the given input file
+	 */
+	public static List<IntermediateCodeStatement> generate(String inputFile) throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		Program program = JvmCodeGeneratorTest.check(inputFile,errors);
+		assertEquals(0,errors.size());
+		IntermediateCodeGeneratorVisitor iCGVisitor = new IntermediateCodeGeneratorVisitor();
+		iCGVisitor.visit(program);
+		return iCGVisitor.getIntermediateCodeList();
+	}
+
+	/*
+	 * Execute the given intermediate code in the bytecode vm and returns the
+	 * printed output
+	 */
+	public static String execute(List<IntermediateCodeStatement> iCodeStatements) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BytecodeProgram bytecodeProgram = new BytecodeGenerator().generate(iCodeStatements);
+		BytecodeVM vm = new BytecodeVM(bytecodeProgram,new PrintStream(output,true),1000);
+		assertEquals(0,vm.run().size());
+		return output.toString();
+	}
+
+}
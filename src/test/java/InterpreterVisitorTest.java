@@ -51,6 +51,48 @@ public class InterpreterVisitorTest {
 		assertEquals(genericTest("AssignStatement.ctds"),false);
 	}
 
+	/* 
+	 * Test that the limit of a for cycle is evaluated only once, before the
+	 * first iteration
+	 */
+	@Test
+	public void ForLimitTest() throws IOException {
+		assertEquals(genericTest("ForLimit.ctds"),false);
+	}
+
+	/* 
+	 * Test that an invalid array index is reported
+	 */
+	@Test
+	public void InvalidIndexTest() throws IOException {
+		assertEquals(genericTest("InvalidIndex.ctds"),true);
+	}
+
+	/* 
+	 * Test that the arguments of a method call are stored in the new frame
+	 */
+	@Test
+	public void MethodCallTest() throws IOException {
+		assertEquals(genericTest("MethodCall.ctds"),false);
+	}
+
+	/* 
+	 * Test that the recursive calls take their own frames
+	 */
+	@Test
+	public void RecursionTest() throws IOException {
+		assertEquals(genericTest("Recursion.ctds"),false);
+	}
+
+	/* 
+	 * Test that the tail calls do not take new frames, so they can be nested
+	 * more times than the maximum amount of nested calls
+	 */
+	@Test
+	public void TailCallTest() throws IOException {
+		assertEquals(genericTest("TailCall.ctds"),false);
+	}
+
 	/* 
 	* Execute the interpreter visitor for the given input file and returns 
 	* true if an error is founded.
@@ -0,0 +1,233 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+
+/* 
+ * This class provides a set of tests for the JvmCodeGenerator
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class JvmCodeGeneratorTest {
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing JvmCodeGenerator -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/* 
+	 * Test that the arrays are accessed correctly
+	 */
+	@Test
+	public void ArraysTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/Arrays.ctds");
+	}
+
+	/* 
+	 * Test that a recursion deeper than the maximum amount of nested calls
+	 * is reported with the message of the interpreter. The interpreter is
+	 * not run, as its calls would exhaust the stack of the test.
+	 */
+	@Test
+	public void DeepRecursionTest() throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		String output = runJar(check("../src/test/resource/jvm/DeepRecursion.ctds",errors));
+		assertEquals(0,errors.size());
+		assertEquals("Error: the maximum amount of nested calls (10000) was exceeded\n",output);
+	}
+
+	/* 
+	 * Test that the limit of a for cycle is evaluated only once, before the
+	 * first iteration
+	 */
+	@Test
+	public void ForLimitTest() throws Exception {
+		String expected = BytecodeVMTest.readExpected("ForLimit.expected");
+		assertEquals(expected,assertSameOutput("../src/test/resource/bytecode/ForLimit.ctds"));
+	}
+
+	/* 
+	 * Test that an invalid array index is reported with the message of the
+	 * interpreter
+	 */
+	@Test
+	public void InvalidIndexTest() throws Exception {
+		String output = assertSameOutput("../src/test/resource/jvm/InvalidIndex.ctds");
+		System.out.println("Error founded, as expected: ");
+		System.out.print(output);
+	}
+
+	/* 
+	 * Test that a main with more than 256 locals and hundreds of for cycles
+	 * uses the wide instructions and reuses the locals of the for limits
+	 */
+	@Test
+	public void LocalsTest() throws Exception {
+		File source = File.createTempFile("ctds",".ctds");
+		try {
+			PrintWriter writer = new PrintWriter(source,"UTF-8");
+			writer.println("class Locals {");
+			writer.println("\tvoid main() {");
+			writer.print("\t\tint s");
+			for (int i = 0; i < 150; i++) {
+				writer.print(", v" + i);
+			}
+			writer.println(";");
+			writer.print("\t\tfloat w0");
+			for (int i = 1; i < 150; i++) {
+				writer.print(", w" + i);
+			}
+			writer.println(";");
+			for (int i = 0; i < 500; i++) {
+				int a = i % 150;
+				writer.println("\t\tv" + a + " = v" + (a+7)%150 + " + " + i%13 + ";");
+				writer.println("\t\tw" + a + " = w" + (a+3)%150 + " * 0.5 + 1.0;");
+				writer.println("\t\tfor v" + (a+1)%150 + " = 0, " + i%3 + " { s += v" + a + "; }");
+				writer.println("\t\tv" + (a+2)%150 + " -= 200;");
+				writer.println("\t\tv" + (a+4)%150 + " += 7;");
+				writer.println("\t\tw" + (a+4)%150 + " = w" + (a+4)%150 + " - 0.25;");
+				writer.println("\t\ts = s + v" + (a+4)%150 + " % 100;");
+				writer.println("\t\tv" + (a+5)%150 + " = s;");
+			}
+			writer.println("\t\tprint(s);");
+			writer.println("\t\tprint(v3);");
+			writer.println("\t\tprint(w149);");
+			writer.println("\t\treturn;");
+			writer.println("\t}");
+			writer.println("}");
+			writer.close();
+			assertEquals("38325\n44\n1.640625\n",assertSameOutput(source.getPath()));
+		} finally {
+			source.delete();
+		}
+	}
+
+	/* 
+	 * Test that the loops, including break and continue, are executed correctly
+	 */
+	@Test
+	public void LoopsTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/Loops.ctds");
+	}
+
+	/* 
+	 * Test that the calls between methods of the program are executed correctly
+	 */
+	@Test
+	public void MethodsTest() throws Exception {
+		assertSameOutput("../src/test/resource/jvm/Tiered.ctds");
+		assertSameOutput("../src/test/resource/bytecode/Recursion.ctds");
+	}
+
+	/* 
+	 * Test that the right operand of && and || is only evaluated when the left
+	 * one does not decide the value
+	 */
+	@Test
+	public void ShortCircuitTest() throws Exception {
+		assertSameOutput("../src/test/resource/bytecode/ShortCircuit.ctds");
+	}
+
+	/* 
+	 * Test that the tail calls take the depth of the calling method, so deep
+	 * tail recursions complete as in the interpreter
+	 */
+	@Test
+	public void TailCallTest() throws Exception {
+		assertSameOutput("../src/test/resource/visitor/interpreter/TailCall.ctds");
+	}
+
+	/* 
+	 * Check that running the jar of the given input file prints the same
+	 * than the interpreter, including the errors. Returns the output.
+	 */
+	public static String assertSameOutput(String inputFile) throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		Program program = check(inputFile,errors);
+		assertEquals(0,errors.size());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream standardOutput = System.out;
+		try {
+ 			System.setOut(new PrintStream(output,true));
+ 			InterpreterVisitor interpreter = new InterpreterVisitor();
+ 			for (String error : interpreter.visit(program)) {
+ 				System.out.println(error);
+ 			}
+		} finally {
+			System.setOut(standardOutput);
+		}
+		String jarOutput = runJar(check(inputFile,errors));
+		assertEquals(output.toString(),jarOutput);
+		return jarOutput;
+	}
+
+	/* 
+	 * Parse and check the given input file adding the errors founded to the
+	 * given list
+	 */
+	public static Program check(String inputFile, LinkedList<String> errors) throws Exception {
+		CTdsParser parser = new CTdsParser(new CTdsScanner(new FileReader(inputFile)));
+		Program program = (Program)parser.parse().value;
+
+		CheckDeclarationVisitor declarationVisitor = new CheckDeclarationVisitor();
+		errors.addAll(declarationVisitor.visit(program));
+
+		CheckTypeVisitor typeVisitor = new CheckTypeVisitor();
+		errors.addAll(typeVisitor.visit(program));
+		return program;
+	}
+
+	/* 
+	 * Generate the jar of the program, run it in a new JVM and returns the
+	 * printed output
+	 */
+	public static String runJar(Program program) throws Exception {
+		File jar = File.createTempFile("ctds",".jar");
+		try {
+			JvmCodeGenerator.generateJar(program,jar.getPath());
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			ProcessBuilder builder = new ProcessBuilder(java,"-jar",jar.getPath());
+			builder.redirectErrorStream(true);
+			Process process = builder.start();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			InputStream input = process.getInputStream();
+			byte[] buffer = new byte[4096];
+			int read = input.read(buffer);
+			while (read >= 0) {
+				output.write(buffer,0,read);
+				read = input.read(buffer);
+			}
+			process.waitFor();
+			return output.toString();
+		} finally {
+			jar.delete();
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.LinkedList;
+
+/* 
+ * This class provides a set of tests for the JvmTieredCompiler
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class JvmTieredCompilerTest {
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing JvmTieredCompiler -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/* 
+	 * Test that the hot methods compiled to JVM bytecode give the same output
+	 * than the interpreter
+	 */
+	@Test
+	public void CompiledMethodsTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("../jvm/Tiered.expected");
+		LinkedList<String> errors = new LinkedList<String>();
+		assertEquals(expected,execute("../src/test/resource/jvm/Tiered.ctds",1,errors));
+		assertEquals(0,errors.size());
+		assertEquals(expected,execute("../src/test/resource/jvm/Tiered.ctds",JvmTieredCompiler.default_threshold,errors));
+		assertEquals(0,errors.size());
+	}
+
+	/* 
+	 * Test that an invalid array index in a compiled method is reported with
+	 * the message of the interpreter
+	 */
+	@Test
+	public void InvalidIndexTest() throws IOException {
+		LinkedList<String> interpreterErrors = new LinkedList<String>();
+		execute("../src/test/resource/jvm/InvalidIndex.ctds",Integer.MAX_VALUE,interpreterErrors);
+		LinkedList<String> errors = new LinkedList<String>();
+		execute("../src/test/resource/jvm/InvalidIndex.ctds",1,errors);
+		assertEquals(1,errors.size());
+		assertEquals(interpreterErrors,errors);
+		System.out.println("Error founded, as expected: ");
+		System.out.println(errors.get(0));
+	}
+
+	/* 
+	 * Test that the recursive calls are executed correctly
+	 */
+	@Test
+	public void RecursionTest() throws IOException {
+		String expected = BytecodeVMTest.readExpected("Recursion.expected");
+		assertEquals(expected,execute("../src/test/resource/bytecode/Recursion.ctds",1,new LinkedList<String>()));
+	}
+
+	/* 
+	* Interpret the given input file compiling the methods called the given
+	* amount of times, adds the errors founded to the given list and returns
+	* the printed output.
+	*/
+	public static String execute(String inputFile, int threshold, LinkedList<String> errors) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream standardOutput = System.out;
+		try {
+			CTdsParser parser = new CTdsParser(new CTdsScanner(new FileReader(inputFile)));
+			Program program = (Program)parser.parse().value;
+
+			CheckDeclarationVisitor declarationVisitor = new CheckDeclarationVisitor();
+ 			errors.addAll(declarationVisitor.visit(program));
+
+			CheckTypeVisitor typeVisitor = new CheckTypeVisitor();
+ 			errors.addAll(typeVisitor.visit(program));
+
+ 			System.setOut(new PrintStream(output,true));
+ 			InterpreterVisitor interpreter = new InterpreterVisitor(10000,new JvmTieredCompiler(threshold));
+ 			errors.addAll(interpreter.visit(program));
+
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			System.setOut(standardOutput);
+		}
+		return output.toString();
+	}
+
+}
@@ -0,0 +1,145 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.FixMethodOrder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/*
+ * This class provides a set of tests for the SSAForm
+ * @author Facundo Molina
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SSAFormTest {
+
+	private static final String[] programs = {
+		"../src/test/resource/intermediatecode/Nested.ctds",
+		"../src/test/resource/bytecode/Arrays.ctds",
+		"../src/test/resource/bytecode/Loops.ctds",
+		"../src/test/resource/bytecode/Recursion.ctds",
+		"../src/test/resource/assembler/Registers.ctds"
+	};
+
+	@BeforeClass
+    public static void initTest() {
+        System.out.println("----------------- Testing SSAForm -----------------");
+    	System.out.println();
+    }
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+   		protected void starting(Description description) {
+    		System.out.println("Starting test: " + description.getMethodName());
+   		}
+	};
+
+	@After
+	public void after() {
+		System.out.println();
+	}
+
+	/*
+	 * Test that each variable is assigned only once in the SSA form
+	 */
+	@Test
+	public void AssignmentsTest() throws Exception {
+		for (String program : programs) {
+			for (List<IntermediateCodeStatement> method : ControlFlowGraph.getMethods(generate(program))) {
+				SSAForm ssa = new SSAForm(method,10000);
+				IdentityHashMap<DeclarationIdentifier,Boolean> assigned = new IdentityHashMap<DeclarationIdentifier,Boolean>();
+				for (BasicBlock block : ssa.getGraph().getReversePostorder()) {
+					for (PhiStatement phi : ssa.getPhis(block)) {
+						assertNull(assigned.put(phi.getResult().getDeclaration(),true));
+						for (Expression operand : phi.getOperands()) {
+							assertNotNull(operand);
+						}
+					}
+					for (IntermediateCodeStatement stmt : ssa.getStatements(block)) {
+						Expression result = null;
+						if (stmt instanceof ThreeAddressStatement) {
+							result = ((ThreeAddressStatement)stmt).getResult();
+						} else if (stmt instanceof TwoAddressStatement) {
+							result = ((TwoAddressStatement)stmt).getResult();
+						}
+						if (result instanceof VarLocation && !((VarLocation)result).getDeclaration().isGlobal()) {
+							assertNull(assigned.put(((VarLocation)result).getDeclaration(),true));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Test that the phi statements are placed only at the headers of the loops
+	 * and after the if statements where the variables are live
+	 */
+	@Test
+	public void PhisTest() throws Exception {
+		List<List<IntermediateCodeStatement>> methods = ControlFlowGraph.getMethods(generate(programs[0]));
+		SSAForm ssa = new SSAForm(methods.get(0),10000);
+		for (Loop loop : ssa.getGraph().getLoops()) {
+			assertFalse(ssa.getPhis(loop.getHeader()).isEmpty());
+		}
+		for (BasicBlock block : ssa.getGraph().getBlocks()) {
+			if (block.getPredecessors().size() < 2) {
+				assertTrue(ssa.getPhis(block).isEmpty());
+			}
+			for (PhiStatement phi : ssa.getPhis(block)) {
+				assertEquals(block.getPredecessors().size(),phi.getOperands().size());
+				// The temporals are never merged
+				assertFalse(ssa.getOriginal(phi.getResult().getDeclaration()).getId().startsWith("t"));
+			}
+		}
+	}
+
+	/*
+	 * Test that the code converted back from the SSA form prints the same than
+	 * the original code in the bytecode vm
+	 */
+	@Test
+	public void RoundTripTest() throws Exception {
+		for (String program : programs) {
+			String expected = execute(generate(program));
+			assertEquals(expected,execute(IntermediateCodeOptimizer.optimize(generate(program))));
+		}
+	}
+
+	/*
+	 * Generate the intermediate code of the given input file
+	 */
+	private static List<IntermediateCodeStatement> generate(String inputFile) throws Exception {
+		LinkedList<String> errors = new LinkedList<String>();
+		Program program = JvmCodeGeneratorTest.check(inputFile,errors);
+		assertEquals(0,errors.size());
+		IntermediateCodeGeneratorVisitor iCGVisitor = new IntermediateCodeGeneratorVisitor();
+		iCGVisitor.visit(program);
+		return iCGVisitor.getIntermediateCodeList();
+	}
+
+	/*
+	 * Execute the given intermediate code in the bytecode vm and returns the
+	 * printed output
+	 */
+	private static String execute(List<IntermediateCodeStatement> iCodeStatements) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BytecodeProgram bytecodeProgram = new BytecodeGenerator().generate(iCodeStatements);
+		BytecodeVM vm = new BytecodeVM(bytecodeProgram,new PrintStream(output,true),1000);
+		assertEquals(0,vm.run().size());
+		return output.toString();
+	}
+
+}
@@ -6,4 +6,13 @@ java -cp $CLASSPATH:. org.junit.runner.JUnitCore CTdsScannerTest
 java -cp $CLASSPATH:. org.junit.runner.JUnitCore CTdsParserTest
 java -cp $CLASSPATH:. org.junit.runner.JUnitCore CheckDeclarationVisitorTest
 java -cp $CLASSPATH:. org.junit.runner.JUnitCore CheckTypeVisitorTest
-java -cp $CLASSPATH:. org.junit.runner.JUnitCore InterpreterVisitorTest
\ No newline at end of file
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore InterpreterVisitorTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore BytecodeVMTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore ClosureCompilerVisitorTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore JvmTieredCompilerTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore JvmCodeGeneratorTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore CCodeGeneratorVisitorTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore AssemblerCodeGeneratorTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore ControlFlowGraphTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore SSAFormTest
+java -cp $CLASSPATH:. org.junit.runner.JUnitCore IntermediateCodeOptimizerTest
\ No newline at end of file